@@ -30,10 +30,14 @@
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.slf4j.Logger;
+
 /**
- * Hook into phenotips startup to pre-initialize BOQA.
+ * Hook into phenotips startup to pre-initialize BOQA. The initialization runs in a background thread, so that the
+ * application startup doesn't wait for it; diagnosis requests made in the meantime wait until BOQA is ready.
  *
  * @since 1.1M1
  * @version $Id$
@@ -44,9 +48,11 @@
 @Singleton
 public class BoqaInitializer implements EventListener
 {
-    @SuppressWarnings("unused")
     @Inject
-    private DiagnosisService service;
+    private Provider<DiagnosisService> service;
+
+    @Inject
+    private Logger logger;
 
     @Override
     public String getName()
@@ -63,6 +69,21 @@ public List<Event> getEvents()
     @Override
     public void onEvent(Event event, Object o, Object o2)
     {
-        // don't do anything, just injecting the diagnosis service.
+        Thread initializer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // Looking up the diagnosis service is enough to initialize it
+                try {
+                    BoqaInitializer.this.service.get();
+                } catch (RuntimeException ex) {
+                    BoqaInitializer.this.logger.error("Failed to initialize BOQA: {}", ex.getMessage(), ex);
+                }
+            }
+        }, "BOQA initializer");
+        initializer.setDaemon(true);
+        initializer.setPriority(Thread.MIN_PRIORITY);
+        initializer.start();
     }
 }
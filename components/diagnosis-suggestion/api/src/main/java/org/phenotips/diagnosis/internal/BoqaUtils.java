@@ -20,11 +20,28 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.environment.Environment;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.inject.Inject;
 
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+
 import ontologizer.FileCache;
 import ontologizer.association.AssociationContainer;
 import ontologizer.go.Ontology;
@@ -32,7 +49,11 @@
 import ontologizer.worksets.WorkSetLoadThread;
 
 /**
- * Utility functions for BOQA's integration into PhenoTips. Currently deals only with data loading.
+ * Utility functions for BOQA's integration into PhenoTips. Currently deals only with data loading. Parsing the
+ * ontology and the annotations is slow, so once parsed, they are also stored as a binary snapshot in the permanent
+ * directory, named after the checksum of the data files. As long as the data files don't change, the next loads
+ * deserialize the snapshot instead of parsing the files again. The data files are only hashed again when their size or
+ * modification time changed since the checksum was last computed.
  *
  * @since 1.1M2
  * @version $Id$
@@ -40,6 +61,18 @@
 @Component
 public class BoqaUtils implements Utils
 {
+    /** The directory, relative to the permanent directory, where snapshots are stored. */
+    private static final String SNAPSHOT_DIRECTORY = "boqa";
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    /** The file remembering the last computed checksum, and the data files it was computed for. */
+    private static final String SOURCES_FILE = "sources.properties";
+
+    private static final String FINGERPRINT = "fingerprint";
+
+    private static final String CHECKSUM = "checksum";
+
     private Ontology graph;
 
     private AssociationContainer dataAssociation;
@@ -47,6 +80,9 @@ public class BoqaUtils implements Utils
     @Inject
     private Environment env;
 
+    @Inject
+    private Logger logger;
+
     /**
      * Loads an ontology graph and an association container. Taken from a benchmark class in ontologizer.
      *
@@ -56,6 +92,19 @@ public class BoqaUtils implements Utils
      * @throws IOException if the graph or the association container fail to load
      */
     public void loadDataFiles(String oboFileName, String associationFileName) throws InterruptedException, IOException
+    {
+        File snapshot = getSnapshotFile(oboFileName, associationFileName);
+        if (snapshot != null && loadSnapshot(snapshot)) {
+            return;
+        }
+        parseDataFiles(oboFileName, associationFileName);
+        if (snapshot != null) {
+            saveSnapshot(snapshot);
+        }
+    }
+
+    private void parseDataFiles(String oboFileName, String associationFileName)
+        throws InterruptedException, IOException
     {
         File workspace = new File(env.getTemporaryDirectory(), "ontologizer");
         if (!workspace.exists()) {
@@ -96,6 +145,131 @@ public void run()
         }
     }
 
+    /**
+     * The snapshot file corresponding to the current content of the data files.
+     *
+     * @param dataFiles the paths of the files to load the data from
+     * @return a file in the permanent directory, which may not exist yet, or {@code null} if the permanent directory
+     *         isn't available
+     * @throws IOException if reading the data files fails
+     */
+    File getSnapshotFile(String... dataFiles) throws IOException
+    {
+        File permanentDirectory = this.env.getPermanentDirectory();
+        if (permanentDirectory == null) {
+            return null;
+        }
+        File directory = new File(permanentDirectory, SNAPSHOT_DIRECTORY);
+        return new File(directory, SNAPSHOT_PREFIX + getChecksum(directory, dataFiles) + ".bin.gz");
+    }
+
+    /**
+     * The checksum of the data files. The path, size and modification time of the data files are remembered along with
+     * their checksum, and while they stay the same, the remembered checksum is reused instead of reading the files.
+     *
+     * @param directory the directory where the last computed checksum is remembered
+     * @param dataFiles the paths of the files to load the data from
+     * @return the checksum, as a hexadecimal string
+     * @throws IOException if reading the data files fails
+     */
+    private String getChecksum(File directory, String... dataFiles) throws IOException
+    {
+        StringBuilder fingerprint = new StringBuilder();
+        for (String dataFile : dataFiles) {
+            File file = new File(dataFile);
+            fingerprint.append(file.getAbsolutePath()).append('|').append(file.length()).append('|')
+                .append(file.lastModified()).append('|');
+        }
+        File sourcesFile = new File(directory, SOURCES_FILE);
+        Properties sources = new Properties();
+        if (sourcesFile.isFile()) {
+            try (InputStream in = new FileInputStream(sourcesFile)) {
+                sources.load(in);
+            } catch (IOException | IllegalArgumentException ex) {
+                this.logger.debug("Failed to read [{}], hashing the data files: {}", sourcesFile, ex.getMessage());
+            }
+        }
+        String checksum = sources.getProperty(CHECKSUM);
+        if (checksum != null && fingerprint.toString().equals(sources.getProperty(FINGERPRINT))) {
+            return checksum;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            // MD5 is a mandatory algorithm in every Java implementation
+            throw new IllegalStateException(ex);
+        }
+        for (String dataFile : dataFiles) {
+            digest.update(FileUtils.readFileToByteArray(new File(dataFile)));
+        }
+        checksum = new BigInteger(1, digest.digest()).toString(16);
+        sources.setProperty(FINGERPRINT, fingerprint.toString());
+        sources.setProperty(CHECKSUM, checksum);
+        try {
+            FileUtils.forceMkdir(directory);
+            try (OutputStream out = new FileOutputStream(sourcesFile)) {
+                sources.store(out, null);
+            }
+        } catch (IOException ex) {
+            this.logger.debug("Failed to store [{}]: {}", sourcesFile, ex.getMessage());
+        }
+        return checksum;
+    }
+
+    private boolean loadSnapshot(File snapshot)
+    {
+        if (!snapshot.isFile()) {
+            return false;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+            new BufferedInputStream(new GZIPInputStream(new FileInputStream(snapshot))))) {
+            Ontology snapshotGraph = (Ontology) in.readObject();
+            AssociationContainer snapshotAssociation = (AssociationContainer) in.readObject();
+            this.graph = snapshotGraph;
+            this.dataAssociation = snapshotAssociation;
+            this.logger.debug("Loaded BOQA data from snapshot [{}]", snapshot);
+            return true;
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            this.logger.warn("Failed to load BOQA snapshot [{}], parsing the data files instead: {}", snapshot,
+                ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Store the parsed data as a snapshot, replacing any snapshot of older data files. The snapshot is first written
+     * to a temporary file, so that an interrupted write doesn't leave a corrupted snapshot behind.
+     *
+     * @param snapshot the file to write
+     */
+    private void saveSnapshot(File snapshot)
+    {
+        File directory = snapshot.getParentFile();
+        File temporary = new File(directory, snapshot.getName() + ".tmp");
+        try {
+            FileUtils.forceMkdir(directory);
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temporary))))) {
+                out.writeObject(this.graph);
+                out.writeObject(this.dataAssociation);
+            }
+            File[] previous = directory.listFiles();
+            if (previous != null) {
+                for (File file : previous) {
+                    if (file.getName().startsWith(SNAPSHOT_PREFIX) && !file.equals(temporary)) {
+                        FileUtils.deleteQuietly(file);
+                    }
+                }
+            }
+            FileUtils.moveFile(temporary, snapshot);
+        } catch (IOException ex) {
+            this.logger.warn("Failed to store BOQA snapshot [{}]: {}", snapshot, ex.getMessage());
+            FileUtils.deleteQuietly(temporary);
+        }
+    }
+
     /**
      * @return ontology graph which could be null
      */
@@ -18,29 +18,36 @@
 package org.phenotips.diagnosis.internal;
 
 import org.phenotips.diagnosis.DiagnosisService;
+import org.phenotips.vocabulary.Vocabulary;
 import org.phenotips.vocabulary.VocabularyManager;
 import org.phenotips.vocabulary.VocabularyTerm;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.environment.Environment;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.apache.commons.io.IOUtils;
@@ -54,7 +61,14 @@
 
 /**
  * An implementation of {@link DiagnosisService} using BOQA, see <a
- * href="http://bioinformatics.oxfordjournals.org/content/28/19/2502.abstract">this article</a>.
+ * href="http://bioinformatics.oxfordjournals.org/content/28/19/2502.abstract">this article</a>. The ontology and the
+ * annotations are loaded once and shared, read-only, by all requests, while the scoring of the diseases for one request
+ * is split by BOQA across a number of worker threads, configured with the {@value #THREADS_SETTING} setting in
+ * {@code xwiki.properties} and defaulting to the number of available processors. Only the best scoring diseases are
+ * selected for the results, instead of sorting all of them, and they are resolved in batches. The raw BOQA ranking is
+ * cached in the {@link DiagnosisCache} for each distinct set of phenotypes, regardless of their order, so reopening an
+ * unchanged patient doesn't score all the diseases again; the diseases are still resolved against the current OMIM
+ * vocabulary for each request.
  *
  * @since 1.1M1
  * @version $Id$
@@ -63,12 +77,38 @@
 @Component
 public class DefaultDiagnosisService implements DiagnosisService, Initializable
 {
+    /** The name of the configuration setting holding the number of threads used for scoring the diseases. */
+    public static final String THREADS_SETTING = "phenotips.diagnosis.threads";
+
+    /** Diseases whose name starts with *, + or ^ are not suggested. */
+    private static final Pattern EXCLUDED_NAMES = Pattern.compile("^[*+^]");
+
+    private static final String OMIM_PREFIX = "OMIM:";
+
+    /** The identifier of the vocabulary used for resolving the suggested diseases. */
+    private static final String OMIM_VOCABULARY = "MIM";
+
     @Inject
     private Logger logger;
 
     private BOQA boqa;
 
-    private Map<Integer, ByteString> omimMap;
+    /** The BOQA index of each OMIM disease, other diseases (BOQA has ORPHANET and DECIPHER as well) are left out. */
+    private int[] omimItems;
+
+    /** The OMIM identifier of each BOQA item, {@code null} for items that aren't OMIM diseases. */
+    private String[] termIds;
+
+    /** The ranked diseases for recently requested phenotype sets. */
+    @Inject
+    private DiagnosisCache cache;
+
+    /** The number of threads used by BOQA for scoring the diseases. */
+    private int threads;
+
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
 
     @Inject
     private VocabularyManager vocabulary;
@@ -96,10 +136,10 @@ public void initialize() throws InitializationException
         String vocabularyPath = null;
         try {
             annotationPath =
-                stream2file(BOQA.class.getClassLoader().getResourceAsStream("new_phenotype.gz"), "annotation")
+                stream2file(BOQA.class.getClassLoader().getResource("new_phenotype.gz"), "annotation")
                     .getPath();
             vocabularyPath =
-                stream2file(BOQA.class.getClassLoader().getResourceAsStream("hp.obo.gz"), "ontology").getPath();
+                stream2file(BOQA.class.getClassLoader().getResource("hp.obo.gz"), "ontology").getPath();
         } catch (IOException e) {
             throw new InitializationException(e.getMessage());
         }
@@ -116,12 +156,26 @@ public void initialize() throws InitializationException
         this.boqa.setup(utils.getGraph(), utils.getDataAssociation());
 
         // Set up our index -> OMIM mapping by flipping the OMIM -> Index mapping in boqa
-        Set<Map.Entry<ByteString, Integer>> omimtonum = this.boqa.item2Index.entrySet();
-        this.omimMap = new HashMap<Integer, ByteString>(omimtonum.size());
-
-        for (Map.Entry<ByteString, Integer> item : omimtonum) {
-            this.omimMap.put(item.getValue(), item.getKey());
+        this.termIds = new String[this.boqa.item2Index.size()];
+        int omimCount = 0;
+        for (Map.Entry<ByteString, Integer> item : this.boqa.item2Index.entrySet()) {
+            String itemId = String.valueOf(item.getKey());
+            if (itemId.startsWith(OMIM_PREFIX)) {
+                // OMIM terms are indexed by their bare number
+                this.termIds[item.getValue()] = itemId.substring(OMIM_PREFIX.length());
+                ++omimCount;
+            }
         }
+        this.omimItems = new int[omimCount];
+        for (int item = 0, i = 0; item < this.termIds.length; ++item) {
+            if (this.termIds[item] != null) {
+                this.omimItems[i++] = item;
+            }
+        }
+
+        Integer configuredThreads = this.configuration.getProperty(THREADS_SETTING, Integer.class);
+        this.threads = configuredThreads != null && configuredThreads > 0 ? configuredThreads
+            : Runtime.getRuntime().availableProcessors();
     }
 
     @Override
@@ -131,104 +185,158 @@ public List<VocabularyTerm> getDiagnosis(List<String> phenotypes, List<String> n
 
         Observations o = new Observations();
         o.observations = new boolean[this.boqa.getOntology().getNumberOfTerms()];
-        boolean searchIsEmpty = true;
+        SortedSet<Integer> observed = new TreeSet<Integer>();
 
         // Add all hpo terms with ancestors to array of booleans
         for (String hpo : phenotypes) {
             Term t = this.boqa.getOntology().getTerm(hpo);
-            searchIsEmpty = !addTermAndAncestors(t, o) && searchIsEmpty;
+            int id = addTermAndAncestors(t, o);
+            if (id >= 0) {
+                observed.add(id);
+            }
         }
 
-        if (searchIsEmpty) {
+        if (observed.isEmpty()) {
             return Collections.emptyList();
         }
 
-        // Get marginals
-        final BOQA.Result res = this.boqa.assignMarginals(o, false, 1);
+        int[] ranking = this.cache.get(observed);
+        boolean rankingChanged = false;
+        BOQA.Result res = null;
+
+        // Get top limit results; some of the best scoring diseases may be skipped, so fetch more candidates as needed
+        List<VocabularyTerm> results = new ArrayList<VocabularyTerm>(Math.max(limit, 0));
+        int candidates = Math.min(Math.max(limit, 1), this.omimItems.length) * 2;
+        int checked = 0;
+        while (results.size() < limit && checked < this.omimItems.length) {
+            if (ranking == null || ranking.length <= checked) {
+                // The cached ranking is missing or too short, compute the marginals and rank more diseases
+                if (res == null) {
+                    res = this.boqa.assignMarginals(o, false, this.threads);
+                }
+                candidates = Math.max(candidates, checked * 2);
+                ranking = selectTop(res, candidates);
+                rankingChanged = true;
+                candidates *= 2;
+            }
+            List<String> batch = new ArrayList<String>(ranking.length - checked);
+            for (int i = checked; i < ranking.length; ++i) {
+                batch.add(this.termIds[ranking[i]]);
+            }
+            results.addAll(resolveTerms(batch, limit - results.size()));
+            checked = ranking.length;
+        }
 
-        // All of this is sorting diseases by marginals
-        Integer[] order = new Integer[res.size()];
-        for (int i = 0; i < order.length; i++) {
-            order[i] = i;
+        // Empty results may come from an unavailable vocabulary, don't keep them
+        if (rankingChanged && !results.isEmpty()) {
+            this.cache.set(observed, ranking);
         }
 
-        Arrays.sort(order, new Comparator<Integer>()
+        this.logger.debug(String.valueOf(results));
+
+        return results;
+    }
+
+    /**
+     * Select the OMIM diseases with the highest marginals using a bounded heap, without sorting all the diseases.
+     * Diseases with equal marginals are ordered by their BOQA index, so that selecting more diseases only appends to
+     * a previous selection.
+     *
+     * @param result the marginals computed by BOQA
+     * @param count the maximum number of diseases to select
+     * @return the BOQA indexes of the selected diseases, best first
+     */
+    private int[] selectTop(final BOQA.Result result, int count)
+    {
+        // Worst first, so that the head of the heap is the first disease to drop
+        Comparator<Integer> worstFirst = new Comparator<Integer>()
         {
             @Override
             public int compare(Integer o1, Integer o2)
             {
-                if (res.getMarginal(o1) < res.getMarginal(o2)) {
-                    return 1;
-                }
-                if (res.getMarginal(o1) > res.getMarginal(o2)) {
-                    return -1;
-                }
-                return 0;
-            }
-        });
-
-        // Get top limit results
-        List<VocabularyTerm> results = new ArrayList<VocabularyTerm>();
-        for (int id : order) {
-            if (results.size() >= limit) {
-                break;
+                int diff = Double.compare(result.getMarginal(o1), result.getMarginal(o2));
+                return diff != 0 ? diff : Integer.compare(o2, o1);
             }
-
-            String termId = String.valueOf(this.omimMap.get(id));
-            String vocabularyId = StringUtils.substringBefore(termId, ":");
-
-            // ignore non-OMIM diseases (BOQA has ORPHANIET and DECIPHER as well)
-            if (!"OMIM".equals(vocabularyId)) {
-                continue;
+        };
+        PriorityQueue<Integer> heap =
+            new PriorityQueue<Integer>(Math.min(count, this.omimItems.length) + 1, worstFirst);
+        for (int item : this.omimItems) {
+            if (heap.size() < count) {
+                heap.add(item);
+            } else if (worstFirst.compare(item, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(item);
             }
+        }
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; --i) {
+            top[i] = heap.poll();
+        }
+        return top;
+    }
 
-            // Strip 'O' in "OMIM"
-            termId = termId.substring(1);
-
-            VocabularyTerm term = this.vocabulary.resolveTerm(termId);
+    /**
+     * Resolve OMIM diseases with a single vocabulary query, skipping the ones that can't be suggested.
+     *
+     * @param ids the OMIM identifiers of the diseases, best first
+     * @param max the maximum number of terms to return
+     * @return the resolved terms that can be suggested, in the same order as the identifiers, may be empty
+     */
+    private List<VocabularyTerm> resolveTerms(List<String> ids, int max)
+    {
+        List<VocabularyTerm> result = new ArrayList<VocabularyTerm>();
+        Vocabulary omim = this.vocabulary.getVocabulary(OMIM_VOCABULARY);
+        if (omim == null) {
+            this.logger.warn("The OMIM vocabulary is not available, no diagnosis can be suggested");
+            return result;
+        }
 
-            if (term == null) {
-                this.logger.warn(String.format(
-                    "Unable to resolve OMIM term '%s' due to outdated OMIM vocabulary.", termId));
-                continue;
+        Set<VocabularyTerm> terms = omim.getTerms(ids);
+        if (terms.size() < ids.size()) {
+            this.logger.warn("Unable to resolve {} OMIM terms due to outdated OMIM vocabulary.",
+                ids.size() - terms.size());
+        }
+        for (VocabularyTerm term : terms) {
+            if (result.size() >= max) {
+                break;
             }
-
             // Do not suggest diseases that start with *, +, and ^
-            Pattern pattern = Pattern.compile("[*+^]");
-            if (pattern.matcher(term.getName().substring(0, 1)).matches()) {
-                continue;
+            if (!EXCLUDED_NAMES.matcher(StringUtils.defaultString(term.getName())).find()) {
+                result.add(term);
             }
-
-            results.add(term);
-
         }
-
-        this.logger.debug(String.valueOf(results));
-
-        return results;
+        return result;
     }
 
-    private boolean addTermAndAncestors(Term t, Observations o)
+    /**
+     * Mark a term and its ancestors as observed.
+     *
+     * @param t the observed term, may be {@code null}
+     * @param o the observations to update
+     * @return the BOQA index of the term, or {@code -1} if the term is unknown
+     */
+    private int addTermAndAncestors(Term t, Observations o)
     {
         try {
             int id = this.boqa.getTermIndex(t);
             o.observations[id] = true;
             this.boqa.activateAncestors(id, o.observations);
+            return id;
         } catch (Exception e) {
             this.logger.warn("Unable to find the boqa index of [{}].", t);
-            return false;
+            return -1;
         }
-        return true;
     }
 
     /**
-     * Convert a stream into a file.
+     * Copy a resource into a file. The file keeps the modification time of the resource, so that the data files look
+     * unchanged to {@link BoqaUtils} as long as the resource doesn't change.
      *
-     * @param in an inputstream
+     * @param resource the resource to copy
      * @return a File
      * @throws IOException when we can't open file
      */
-    private File stream2file(InputStream in, String nameRoot) throws IOException
+    private File stream2file(URL resource, String nameRoot) throws IOException
     {
         File tempDir = this.env.getTemporaryDirectory();
         final File tempFile;
@@ -239,8 +347,16 @@ private File stream2file(InputStream in, String nameRoot) throws IOException
         }
         tempFile.deleteOnExit();
 
-        FileOutputStream out = new FileOutputStream(tempFile);
-        IOUtils.copy(in, out);
+        if (resource == null) {
+            throw new IOException("Missing BOQA data file: " + nameRoot);
+        }
+        URLConnection connection = resource.openConnection();
+        try (InputStream in = connection.getInputStream(); OutputStream out = new FileOutputStream(tempFile)) {
+            IOUtils.copy(in, out);
+        }
+        if (connection.getLastModified() > 0) {
+            tempFile.setLastModified(connection.getLastModified());
+        }
 
         return tempFile;
     }
@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.diagnosis.internal;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+
+import java.util.SortedSet;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Caches the raw BOQA ranking of the diseases for recently requested sets of observed phenotypes, before the diseases
+ * are resolved against the OMIM vocabulary, so that reopening an unchanged patient doesn't score all the diseases
+ * again. Cleared by {@link DiagnosisCacheInvalidator} whenever OMIM or HPO are reindexed.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Component(roles = { DiagnosisCache.class })
+@Singleton
+public class DiagnosisCache implements Initializable
+{
+    /** The maximum number of phenotype sets whose ranking is cached. */
+    private static final int CACHE_SIZE = 1000;
+
+    @Inject
+    private CacheManager cacheFactory;
+
+    /** The BOQA indexes of the best ranked diseases, best first, for each set of observed phenotypes. */
+    private Cache<int[]> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheFactory.createNewLocalCache(
+                new CacheConfiguration(new LRUEvictionConfiguration(CACHE_SIZE)));
+        } catch (CacheException ex) {
+            throw new InitializationException("Cannot create cache: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Get the ranking cached for a set of observed phenotypes.
+     *
+     * @param observed the BOQA indexes of the observed phenotypes
+     * @return the BOQA indexes of the best ranked diseases, best first, or {@code null} if nothing is cached
+     */
+    public int[] get(SortedSet<Integer> observed)
+    {
+        return this.cache.get(getKey(observed));
+    }
+
+    /**
+     * Cache the ranking computed for a set of observed phenotypes.
+     *
+     * @param observed the BOQA indexes of the observed phenotypes
+     * @param ranking the BOQA indexes of the best ranked diseases, best first; must not be changed afterwards
+     */
+    public void set(SortedSet<Integer> observed, int[] ranking)
+    {
+        this.cache.set(getKey(observed), ranking);
+    }
+
+    /** Discard all the cached rankings. */
+    public void clear()
+    {
+        this.cache.removeAll();
+    }
+
+    /**
+     * The key is the same for the same observed phenotypes, in any order, since they are sorted.
+     *
+     * @param observed the BOQA indexes of the observed phenotypes
+     * @return the cache key
+     */
+    private String getKey(SortedSet<Integer> observed)
+    {
+        return StringUtils.join(observed, ',');
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.diagnosis.internal;
+
+import org.xwiki.environment.Environment;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ontologizer.association.AssociationContainer;
+import ontologizer.go.Ontology;
+import sonumina.boqa.calculation.BOQA;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the snapshots of the parsed data stored by {@link BoqaUtils}.
+ *
+ * @version $Id$
+ */
+public class BoqaUtilsTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<Utils> parsing = new MockitoComponentMockingRule<Utils>(BoqaUtils.class);
+
+    @Rule
+    public final MockitoComponentMockingRule<Utils> restoring =
+        new MockitoComponentMockingRule<Utils>(BoqaUtils.class);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File permanentDirectory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.permanentDirectory = this.folder.newFolder("permanent");
+        for (MockitoComponentMockingRule<Utils> mocker : Arrays.asList(this.parsing, this.restoring)) {
+            Environment env = mocker.getInstance(Environment.class);
+            when(env.getPermanentDirectory()).thenReturn(this.permanentDirectory);
+        }
+        when(this.parsing.getInstance(Environment.class).getTemporaryDirectory())
+            .thenReturn(this.folder.newFolder("parsing"));
+        when(this.restoring.getInstance(Environment.class).getTemporaryDirectory())
+            .thenReturn(this.folder.newFolder("restoring"));
+    }
+
+    @Test
+    public void snapshotRestoresTheParsedData() throws Exception
+    {
+        String vocabularyPath = copyResource("hp.obo.gz");
+        String annotationPath = copyResource("new_phenotype.gz");
+
+        Utils parsed = this.parsing.getComponentUnderTest();
+        parsed.loadDataFiles(vocabularyPath, annotationPath);
+        // Failing to write the snapshot, for example because something isn't serializable, is only logged
+        verify(this.parsing.getMockedLogger(), never()).warn(anyString(), any(), any());
+        File snapshot = ((BoqaUtils) parsed).getSnapshotFile(vocabularyPath, annotationPath);
+        Assert.assertTrue(snapshot.isFile());
+
+        Utils restored = this.restoring.getComponentUnderTest();
+        restored.loadDataFiles(vocabularyPath, annotationPath);
+        verify(this.restoring.getMockedLogger(), never()).warn(anyString(), any(), any());
+        // The data files weren't parsed again
+        Assert.assertFalse(new File(this.restoring.getInstance(Environment.class).getTemporaryDirectory(),
+            "ontologizer").exists());
+
+        Ontology graph = restored.getGraph();
+        AssociationContainer associations = restored.getDataAssociation();
+        Assert.assertNotSame(parsed.getGraph(), graph);
+        Assert.assertEquals(parsed.getGraph().getNumberOfTerms(), graph.getNumberOfTerms());
+        Assert.assertEquals(parsed.getDataAssociation().getAllAnnotatedGenes(), associations.getAllAnnotatedGenes());
+
+        BOQA fromParsed = new BOQA();
+        fromParsed.setup(parsed.getGraph(), parsed.getDataAssociation());
+        BOQA fromSnapshot = new BOQA();
+        fromSnapshot.setup(graph, associations);
+        Assert.assertEquals(fromParsed.item2Index, fromSnapshot.item2Index);
+    }
+
+    @Test
+    public void unchangedFilesAreNotHashedAgain() throws Exception
+    {
+        File data = this.folder.newFile("data.txt");
+        FileUtils.writeStringToFile(data, "first");
+        data.setLastModified(1000000000000L);
+        BoqaUtils utils = (BoqaUtils) this.parsing.getComponentUnderTest();
+        File snapshot = utils.getSnapshotFile(data.getPath());
+
+        // Same size and modification time, the remembered checksum is used
+        FileUtils.writeStringToFile(data, "other");
+        data.setLastModified(1000000000000L);
+        Assert.assertEquals(snapshot, utils.getSnapshotFile(data.getPath()));
+
+        // A different modification time, the file is hashed again
+        data.setLastModified(1000000060000L);
+        File changed = utils.getSnapshotFile(data.getPath());
+        Assert.assertNotEquals(snapshot, changed);
+
+        // Same content as the first time, same checksum
+        FileUtils.writeStringToFile(data, "first");
+        Assert.assertEquals(snapshot, utils.getSnapshotFile(data.getPath()));
+    }
+
+    private String copyResource(String name) throws IOException
+    {
+        File target = this.folder.newFile(name);
+        try (InputStream in = BOQA.class.getClassLoader().getResourceAsStream(name)) {
+            Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target.getPath();
+    }
+}
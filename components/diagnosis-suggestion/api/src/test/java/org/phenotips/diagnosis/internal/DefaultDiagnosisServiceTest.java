@@ -18,6 +18,7 @@
 package org.phenotips.diagnosis.internal;
 
 import org.phenotips.diagnosis.DiagnosisService;
+import org.phenotips.vocabulary.Vocabulary;
 import org.phenotips.vocabulary.VocabularyManager;
 import org.phenotips.vocabulary.VocabularyTerm;
 
@@ -30,8 +31,15 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
@@ -41,11 +49,15 @@
 
 import sonumina.boqa.calculation.BOQA;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -75,27 +87,30 @@ public void returnsCorrectDiagnosis() throws ComponentLookupException, IOExcepti
         disorderIds.add(Arrays.asList(new String[0]));
         phenotypes.add(
             Arrays.asList("HP:0000028", "HP:0000049", "HP:0000202", "HP:0000204", "HP:0000316", "HP:0001869"));
-        disorderIds.add(Arrays.asList("MIM:100050"));
+        disorderIds.add(Arrays.asList("100050"));
         phenotypes.add(
             Arrays.asList("HP:0000707", "HP:0001939", "HP:0003811"));
-        disorderIds.add(Arrays.asList("MIM:306300"));
+        disorderIds.add(Arrays.asList("306300"));
         phenotypes.add(Arrays.asList("HP:0001417", "HP:0001287"));
-        disorderIds.add(Arrays.asList("MIM:308250"));
+        disorderIds.add(Arrays.asList("308250"));
         /* Harder tests */
         phenotypes.add(Arrays.asList("HP:0001419", "HP:0001939", "HP:0001005"));
-        disorderIds.add(Arrays.asList("MIM:308600"));
+        disorderIds.add(Arrays.asList("308600"));
         phenotypes.add(Arrays.asList("HP:0011495", "HP:0000502", "HP:0001005", "HP:0000534"));
-        disorderIds.add(Arrays.asList("MIM:308800"));
+        disorderIds.add(Arrays.asList("308800"));
         /* An empty/invalid HPO term will fail to find a boqa index and should be handled correctly */
         phenotypes.add(Arrays.asList("HP:"));
         disorderIds.add(Arrays.asList(new String[0]));
         phenotypes.add(
             Arrays.asList("HP:0000028", "HP:0000049", "HP:", "HP:0000202", "HP:0000204", "HP:0000316", "HP:0001869"));
-        disorderIds.add(Arrays.asList("MIM:100050"));
+        disorderIds.add(Arrays.asList("100050"));
 
         int invalidPhenotypes = 2;
 
         VocabularyManager vocabulary = this.mocker.getInstance(VocabularyManager.class);
+        Vocabulary omim = mock(Vocabulary.class);
+        doReturn(omim).when(vocabulary).getVocabulary("MIM");
+        DiagnosisCache cache = mockCache();
         Environment env = this.mocker.getInstance(Environment.class);
         Utils utils = this.mocker.getInstance(Utils.class);
 
@@ -114,18 +129,21 @@ public void returnsCorrectDiagnosis() throws ComponentLookupException, IOExcepti
         doReturn(tempSpy).when(utilsEnv).getTemporaryDirectory();
         workingUtilsComponent.loadDataFiles(vocabularyPath, annotationPath);
 
-        doAnswer(new Answer<VocabularyTerm>()
+        doAnswer(new Answer<Set<VocabularyTerm>>()
         {
             @Override
-            public VocabularyTerm answer(InvocationOnMock invocationOnMock) throws Throwable
+            public Set<VocabularyTerm> answer(InvocationOnMock invocationOnMock) throws Throwable
             {
-                String id = (String) invocationOnMock.getArguments()[0];
-                VocabularyTerm term = mock(VocabularyTerm.class);
-                doReturn(id).when(term).getId();
-                doReturn("test").when(term).getName();
-                return term;
+                Set<VocabularyTerm> terms = new LinkedHashSet<>();
+                for (Object id : (Collection<?>) invocationOnMock.getArguments()[0]) {
+                    VocabularyTerm term = mock(VocabularyTerm.class);
+                    doReturn(id).when(term).getId();
+                    doReturn("test").when(term).getName();
+                    terms.add(term);
+                }
+                return terms;
             }
-        }).when(vocabulary).resolveTerm(anyString());
+        }).when(omim).getTerms(anyCollectionOf(String.class));
 
         doReturn(tempSpy).when(env).getTemporaryDirectory();
         doReturn(workingUtilsComponent.getGraph()).when(utils).getGraph();
@@ -145,7 +163,62 @@ public VocabularyTerm answer(InvocationOnMock invocationOnMock) throws Throwable
             assertTrue(diagnosisIds.containsAll(disorderIds.get(i)));
             i++;
         }
-        verify(vocabulary, times(limit * (i - invalidPhenotypes))).resolveTerm(anyString());
+        // The candidates for each valid phenotype set are resolved at once
+        verify(omim, times(i - invalidPhenotypes)).getTerms(anyCollectionOf(String.class));
+        verify(vocabulary, never()).resolveTerm(anyString());
+        // The last phenotype set only adds an invalid term to an earlier set, so its ranking is already cached
+        int computed = i - invalidPhenotypes - 1;
+        verify(cache, times(computed)).set(anySortedSet(), any(int[].class));
+
+        // The same phenotypes in a different order reuse the cached ranking, and only resolve the terms again
+        List<String> reordered = new LinkedList<>(phenotypes.get(1));
+        Collections.reverse(reordered);
+        List<VocabularyTerm> diagnoses = diagnosisService.getDiagnosis(reordered, nonstandardPhenotypeSet, limit);
+        assertEquals(limit, diagnoses.size());
+        List<String> diagnosisIds = new LinkedList<>();
+        for (VocabularyTerm diagnosis : diagnoses) {
+            diagnosisIds.add(diagnosis.getId());
+        }
+        assertTrue(diagnosisIds.containsAll(disorderIds.get(1)));
+        verify(omim, times(i - invalidPhenotypes + 1)).getTerms(anyCollectionOf(String.class));
+        verify(cache, times(computed)).set(anySortedSet(), any(int[].class));
+
+        // Without the OMIM vocabulary nothing can be suggested, and the empty result isn't cached
+        doReturn(null).when(vocabulary).getVocabulary("MIM");
+        assertTrue(diagnosisService.getDiagnosis(Arrays.asList("HP:0001250"), nonstandardPhenotypeSet, limit)
+            .isEmpty());
+        verify(cache, times(computed)).set(anySortedSet(), any(int[].class));
+    }
+
+    private DiagnosisCache mockCache() throws ComponentLookupException
+    {
+        final Map<String, int[]> entries = new HashMap<>();
+        DiagnosisCache cache = this.mocker.getInstance(DiagnosisCache.class);
+        doAnswer(new Answer<int[]>()
+        {
+            @Override
+            public int[] answer(InvocationOnMock invocationOnMock) throws Throwable
+            {
+                return entries.get(String.valueOf(invocationOnMock.getArguments()[0]));
+            }
+        }).when(cache).get(anySortedSet());
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocationOnMock) throws Throwable
+            {
+                entries.put(String.valueOf(invocationOnMock.getArguments()[0]),
+                    (int[]) invocationOnMock.getArguments()[1]);
+                return null;
+            }
+        }).when(cache).set(anySortedSet(), any(int[].class));
+        return cache;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SortedSet<Integer> anySortedSet()
+    {
+        return any(SortedSet.class);
     }
 
     private File stream2file(InputStream in) throws IOException
@@ -0,0 +1,91 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.diagnosis.internal;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DiagnosisCacheTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<DiagnosisCache> mocker =
+        new MockitoComponentMockingRule<DiagnosisCache>(DiagnosisCache.class);
+
+    private Cache<int[]> cache;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setup() throws ComponentLookupException, CacheException
+    {
+        this.cache = mock(Cache.class);
+        CacheManager cacheManager = this.mocker.getInstance(CacheManager.class);
+        when(cacheManager.<int[]>createNewLocalCache(any(CacheConfiguration.class))).thenReturn(this.cache);
+    }
+
+    @Test
+    public void rankingsAreKeyedBySortedPhenotypes() throws ComponentLookupException
+    {
+        int[] ranking = new int[] { 5, 3, 8 };
+        SortedSet<Integer> observed = new TreeSet<>(Arrays.asList(12, 4, 7));
+        this.mocker.getComponentUnderTest().set(observed, ranking);
+        verify(this.cache).set("4,7,12", ranking);
+
+        when(this.cache.get("4,7,12")).thenReturn(ranking);
+        Assert.assertSame(ranking, this.mocker.getComponentUnderTest().get(new TreeSet<>(Arrays.asList(7, 12, 4))));
+        Assert.assertNull(this.mocker.getComponentUnderTest().get(new TreeSet<>(Arrays.asList(7, 12))));
+    }
+
+    @Test
+    public void clearRemovesAllRankings() throws ComponentLookupException
+    {
+        this.mocker.getComponentUnderTest().clear();
+        verify(this.cache).removeAll();
+    }
+
+    @Test(expected = InitializationException.class)
+    public void cacheCreationFailureIsReported() throws Throwable
+    {
+        CacheManager cacheManager = this.mocker.getInstance(CacheManager.class);
+        when(cacheManager.<int[]>createNewLocalCache(any(CacheConfiguration.class)))
+            .thenThrow(new CacheException("failed"));
+        try {
+            this.mocker.getComponentUnderTest();
+        } catch (ComponentLookupException ex) {
+            throw ex.getCause();
+        }
+    }
+}
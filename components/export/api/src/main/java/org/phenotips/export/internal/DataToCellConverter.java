@@ -22,7 +22,7 @@
 import org.phenotips.data.FeatureMetadatum;
 import org.phenotips.data.Patient;
 import org.phenotips.data.PatientData;
-import org.phenotips.vocabulary.internal.solr.SolrVocabularyTerm;
+import org.phenotips.vocabulary.VocabularyTerm;
 
 import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.model.reference.DocumentReference;
@@ -794,12 +794,12 @@ public DataSection familyHistoryBody(Patient patient)
         PatientData<List<String>> ethnicities = patient.getData("ethnicity");
         int x = 0;
         if (present.contains("global_mode_of_inheritance")) {
-            PatientData<List<SolrVocabularyTerm>> globalControllers = patient.getData("global-qualifiers");
-            List<SolrVocabularyTerm> modeTermList =
+            PatientData<List<VocabularyTerm>> globalControllers = patient.getData("global-qualifiers");
+            List<VocabularyTerm> modeTermList =
                 globalControllers != null ? globalControllers.get("global_mode_of_inheritance") : null;
             int y = 0;
             if (modeTermList != null && !modeTermList.isEmpty()) {
-                for (SolrVocabularyTerm term : modeTermList) {
+                for (VocabularyTerm term : modeTermList) {
                     String mode = term != null ? term.getName() : "";
                     DataCell cell = new DataCell(mode, x, y);
                     bodySection.addCell(cell);
@@ -1270,11 +1270,11 @@ public DataSection medicalHistoryBody(Patient patient)
         }
 
         if (present.contains("global_age_of_onset")) {
-            PatientData<List<SolrVocabularyTerm>> qualifiers = patient.getData("global-qualifiers");
-            List<SolrVocabularyTerm> ageOfOnsetList = qualifiers != null ? qualifiers.get("global_age_of_onset") : null;
+            PatientData<List<VocabularyTerm>> qualifiers = patient.getData("global-qualifiers");
+            List<VocabularyTerm> ageOfOnsetList = qualifiers != null ? qualifiers.get("global_age_of_onset") : null;
             int y = 0;
             if (ageOfOnsetList != null && !ageOfOnsetList.isEmpty()) {
-                for (SolrVocabularyTerm term : ageOfOnsetList) {
+                for (VocabularyTerm term : ageOfOnsetList) {
                     String onset = term != null ? term.getName() : "";
                     DataCell cell = new DataCell(onset, x, y);
                     bodySection.addCell(cell);
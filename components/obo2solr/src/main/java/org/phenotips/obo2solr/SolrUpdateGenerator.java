@@ -18,10 +18,17 @@
 package org.phenotips.obo2solr;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -37,6 +44,8 @@
 
     private static final String FIELD_NAME_VALUE_SEPARATOR = "\\s*:\\s+";
 
+    private static final String ENCODING = "UTF-8";
+
     private int counter;
 
     private TermData crtTerm = new TermData();
@@ -63,43 +72,14 @@ public Map<String, TermData> transform(URL input, Map<String, Double> fieldSelec
         this.fieldSelection = fieldSelection;
         try {
             BufferedReader in = new BufferedReader(new InputStreamReader(input.openConnection().getInputStream()));
-            String line;
-            this.counter = 0;
-
-            /*
-             * When encountering a separator that is not a term separator, all data should be skipped until a term
-             * separator is encountered again
-             */
-            boolean skip = false;
-            while ((line = in.readLine()) != null) {
-                if (line.trim().matches(ENTITY_SEPARATION_REGEX)) {
-                    if (this.counter > 0) {
-                        storeCrtTerm();
-                    }
-                    // Overridden below
-                    skip = true;
-                }
-                if (line.trim().equalsIgnoreCase(TERM_MARKER)) {
-                    ++this.counter;
-                    skip = false;
-                    continue;
-                }
-                if (!skip) {
-                    String[] pieces = line.split(FIELD_NAME_VALUE_SEPARATOR, 2);
-                    if (pieces.length != 2) {
-                        continue;
-                    }
-                    if (pieces[0].trim().equals("data-version")) {
-                        this.crtTerm.addTo("version", pieces[1]);
-                        this.crtTerm.addTo(TermData.ID_FIELD_NAME, "HEADER_INFO");
-                        this.counter++;
-                    }
-                    loadField(pieces[0], pieces[1]);
+            parse(in, new TermConsumer()
+            {
+                @Override
+                public void accept(TermData term)
+                {
+                    SolrUpdateGenerator.this.data.put(term.getId(), term);
                 }
-            }
-            if (this.counter > 0) {
-                storeCrtTerm();
-            }
+            });
             if (isFieldSelected(TermData.TERM_CATEGORY_FIELD_NAME)) {
                 propagateAncestors();
             }
@@ -113,10 +93,137 @@ public Map<String, TermData> transform(URL input, Map<String, Double> fieldSelec
         return this.data;
     }
 
-    private void storeCrtTerm()
+    /**
+     * Parse an OBO file and pass each term to a consumer as soon as it is complete, without keeping the whole ontology
+     * in memory. The source is read twice: a first pass only records the {@code is_a} edges in a compact
+     * {@link TermGraph}, and the second pass emits the terms with the full {@code term_category} closure, if that
+     * field is selected. Remote sources are downloaded to a temporary file first, so that they are fetched only once.
+     *
+     * @param ontologyUrl the location of the OBO file
+     * @param fieldSelection the fields to include in the parsed terms; if empty, all fields are included
+     * @param consumer receives the parsed terms
+     * @return the number of terms passed to the consumer, or {@code -1} if the source could not be read
+     * @throws IOException if the consumer failed to process a term
+     */
+    public int transform(String ontologyUrl, Map<String, Double> fieldSelection, final TermConsumer consumer)
+        throws IOException
+    {
+        File source = null;
+        boolean temporary = false;
+        final TermGraph graph = new TermGraph();
+        try {
+            URL url = new URL(ontologyUrl);
+            if ("file".equals(url.getProtocol())) {
+                source = new File(url.toURI());
+            } else {
+                source = File.createTempFile("obo2solr", ".obo");
+                temporary = true;
+                try (InputStream in = url.openConnection().getInputStream()) {
+                    Files.copy(in, source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            // First pass, only the structure is needed
+            Map<String, Double> structureSelection = new HashMap<String, Double>();
+            structureSelection.put(TermData.ID_FIELD_NAME, ParameterPreparer.DEFAULT_BOOST);
+            structureSelection.put(TermData.PARENT_FIELD_NAME, ParameterPreparer.DEFAULT_BOOST);
+            this.fieldSelection = structureSelection;
+            try (BufferedReader in = open(source)) {
+                parse(in, new TermConsumer()
+                {
+                    @Override
+                    public void accept(TermData term)
+                    {
+                        graph.add(term.getId(), term.getParentIds());
+                    }
+                });
+            }
+        } catch (IOException | URISyntaxException ex) {
+            this.logger.error("Failed to read the ontology structure from [{}]: {}", ontologyUrl, ex.getMessage());
+            this.fieldSelection = null;
+            if (temporary) {
+                source.delete();
+            }
+            return -1;
+        }
+
+        // Second pass, emit the terms with the expanded categories
+        this.fieldSelection = fieldSelection;
+        final boolean expandCategories = isFieldSelected(TermData.TERM_CATEGORY_FIELD_NAME);
+        final int[] count = new int[1];
+        try (BufferedReader in = open(source)) {
+            parse(in, new TermConsumer()
+            {
+                @Override
+                public void accept(TermData term) throws IOException
+                {
+                    if (expandCategories) {
+                        term.reset(TermData.TERM_CATEGORY_FIELD_NAME);
+                        term.get(TermData.TERM_CATEGORY_FIELD_NAME).addAll(graph.getAncestorsAndSelf(term.getId()));
+                    }
+                    consumer.accept(term);
+                    ++count[0];
+                }
+            });
+        } finally {
+            this.fieldSelection = null;
+            if (temporary) {
+                source.delete();
+            }
+        }
+        return count[0];
+    }
+
+    private BufferedReader open(File source) throws IOException
+    {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(source), ENCODING));
+    }
+
+    private void parse(BufferedReader in, TermConsumer consumer) throws IOException
+    {
+        String line;
+        this.counter = 0;
+        this.crtTerm = new TermData();
+
+        /*
+         * When encountering a separator that is not a term separator, all data should be skipped until a term
+         * separator is encountered again
+         */
+        boolean skip = false;
+        while ((line = in.readLine()) != null) {
+            if (line.trim().matches(ENTITY_SEPARATION_REGEX)) {
+                if (this.counter > 0) {
+                    storeCrtTerm(consumer);
+                }
+                // Overridden below
+                skip = true;
+            }
+            if (line.trim().equalsIgnoreCase(TERM_MARKER)) {
+                ++this.counter;
+                skip = false;
+                continue;
+            }
+            if (!skip) {
+                String[] pieces = line.split(FIELD_NAME_VALUE_SEPARATOR, 2);
+                if (pieces.length != 2) {
+                    continue;
+                }
+                if (pieces[0].trim().equals("data-version")) {
+                    this.crtTerm.addTo("version", pieces[1]);
+                    this.crtTerm.addTo(TermData.ID_FIELD_NAME, "HEADER_INFO");
+                    this.counter++;
+                }
+                loadField(pieces[0], pieces[1]);
+            }
+        }
+        if (this.counter > 0) {
+            storeCrtTerm(consumer);
+        }
+    }
+
+    private void storeCrtTerm(TermConsumer consumer) throws IOException
     {
         if (this.crtTerm.getId() != null) {
-            this.data.put(this.crtTerm.getId(), this.crtTerm);
+            consumer.accept(this.crtTerm);
         }
         this.crtTerm = new TermData();
     }
@@ -134,11 +241,21 @@ private void loadField(String name, String value)
         this.crtTerm.addTo(name, value.replaceFirst("^\"(.+)\"\\s*?(?:[A-Z]+|\\[).*", "$1").replace("\\\"", "\""));
     }
 
+    /**
+     * Expand the {@code term_category} of each term to include all its ancestors. The closure is computed only once
+     * per term, in topological order, over a compact integer-indexed graph.
+     */
     private void propagateAncestors()
     {
-        for (String id : this.data.keySet()) {
-            TermData term = this.data.get(id);
-            term.expandTermCategories(this.data);
+        TermGraph graph = new TermGraph();
+        for (TermData term : this.data.values()) {
+            graph.add(term.getId(), term.get(TermData.TERM_CATEGORY_FIELD_NAME));
+        }
+        for (TermData term : this.data.values()) {
+            if (term.get(TermData.TERM_CATEGORY_FIELD_NAME) == null) {
+                term.reset(TermData.TERM_CATEGORY_FIELD_NAME);
+            }
+            term.get(TermData.TERM_CATEGORY_FIELD_NAME).addAll(graph.getAncestorsAndSelf(term.getId()));
         }
     }
 }
@@ -0,0 +1,37 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.obo2solr;
+
+import java.io.IOException;
+
+/**
+ * Receives the terms parsed from an OBO file one at a time, as soon as they are complete.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public interface TermConsumer
+{
+    /**
+     * Process a parsed term.
+     *
+     * @param term the parsed term, with all the selected fields
+     * @throws IOException if processing the term failed, which aborts parsing
+     */
+    void accept(TermData term) throws IOException;
+}
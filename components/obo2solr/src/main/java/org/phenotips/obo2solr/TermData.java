@@ -19,10 +19,9 @@
 
 import org.phenotips.obo2solr.maps.SetMap;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.Collections;
 
 public class TermData extends SetMap<String, String>
 {
@@ -45,11 +44,35 @@ public void clear()
         super.clear();
     };
 
-    String getId()
+    /**
+     * The identifier of this term.
+     *
+     * @return the identifier, or {@code null} if it wasn't set yet
+     */
+    public String getId()
     {
         return this.id;
     }
 
+    /**
+     * The identifiers of the direct parents of this term, extracted from the {@code is_a} values, which may also
+     * contain the name of the parent, for example {@code HP:0000118 ! Phenotypic abnormality}.
+     *
+     * @return the parent identifiers, may be empty
+     */
+    public Collection<String> getParentIds()
+    {
+        Collection<String> values = this.get(PARENT_FIELD_NAME);
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        Collection<String> result = new ArrayList<String>(values.size());
+        for (String value : values) {
+            result.add(value.trim().split("\\s", 2)[0]);
+        }
+        return result;
+    }
+
     @Override
     public boolean addTo(String key, String value)
     {
@@ -70,35 +93,4 @@ public boolean addTo(String key, Collection<String> values)
         }
         return result;
     }
-
-    public void expandTermCategories(Map<String, TermData> data)
-    {
-        Set<String> result = new HashSet<String>();
-        Set<String> front = new HashSet<String>();
-
-        if (this.get(TERM_CATEGORY_FIELD_NAME) == null) {
-            this.put(TERM_CATEGORY_FIELD_NAME, super.getEmptyCollection());
-        }
-
-        front.addAll(this.get(TERM_CATEGORY_FIELD_NAME));
-        Set<String> newFront = new HashSet<String>();
-        while (!front.isEmpty()) {
-            for (String nextTermId : front) {
-                if (data.get(nextTermId).get(TERM_CATEGORY_FIELD_NAME) == null) {
-                    continue;
-                }
-                for (String parentTermId : data.get(nextTermId).get(TERM_CATEGORY_FIELD_NAME)) {
-                    if (!result.contains(parentTermId)) {
-                        newFront.add(parentTermId);
-                        result.add(parentTermId);
-                    }
-                }
-            }
-            front.clear();
-            front.addAll(newFront);
-            newFront.clear();
-        }
-        result.add(this.id);
-        this.addTo(TERM_CATEGORY_FIELD_NAME, result);
-    }
 }
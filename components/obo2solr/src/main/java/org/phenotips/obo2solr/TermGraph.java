@@ -0,0 +1,340 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.obo2solr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact representation of the {@code is_a} edges of an ontology, with terms identified internally by an integer
+ * index and parents stored as primitive arrays. Used for computing the transitive closure of the ancestors of a term
+ * without keeping the full term data in memory.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public class TermGraph
+{
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+    private final List<String> ids = new ArrayList<String>();
+
+    private int[][] parents = new int[1024][];
+
+    /**
+     * The memoized (direct or indirect) ancestors of each term, as sorted indexes, computed on demand. Each closure is
+     * computed only once, from the already computed closures of the parents.
+     */
+    private int[][] ancestors;
+
+    /**
+     * The order in which terms were reached by the traversals, {@code 0} for terms not reached yet. Used with
+     * {@link #lowLinks} for finding the cycles, since all the terms of a cycle share the same ancestors.
+     */
+    private int[] order;
+
+    /** The earliest reached term still being processed that each term leads to, on its own or through its parents. */
+    private int[] lowLinks;
+
+    private int counter;
+
+    /** The terms reached but not yet assigned to a completed cycle, or to a group of their own. */
+    private int[] componentStack;
+
+    private boolean[] onComponentStack;
+
+    /** Marks the terms already collected while merging the closures of the parents of a term. */
+    private int[] visited;
+
+    private int stamp;
+
+    private int[] buffer;
+
+    /** The terms on the traversal stack, reused by all the traversals. */
+    private int[] stackNodes;
+
+    /** The next parent to visit for each term on the traversal stack. */
+    private int[] stackPositions;
+
+    /**
+     * Add a term and its direct parents to the graph. Parents don't have to be added to the graph beforehand.
+     *
+     * @param id the identifier of the term
+     * @param parentIds the identifiers of the direct parents, may be {@code null}
+     */
+    public void add(String id, Collection<String> parentIds)
+    {
+        int index = getOrCreateIndex(id);
+        if (parentIds == null || parentIds.isEmpty()) {
+            return;
+        }
+        // The structure changed, the memoized closures are no longer valid
+        this.ancestors = null;
+        int[] crtParents = this.parents[index];
+        int count = crtParents.length;
+        crtParents = Arrays.copyOf(crtParents, count + parentIds.size());
+        for (String parentId : parentIds) {
+            crtParents[count++] = getOrCreateIndex(parentId);
+        }
+        this.parents[index] = crtParents;
+    }
+
+    /**
+     * The number of terms in the graph, including parents referenced by other terms but never added explicitly.
+     *
+     * @return a positive number
+     */
+    public int size()
+    {
+        return this.ids.size();
+    }
+
+    /**
+     * Get the identifiers of a term and all its (direct or indirect) ancestors.
+     *
+     * @param id the identifier of the term
+     * @return the identifiers of the term and its ancestors, starting with the term itself; a list containing just the
+     *         identifier if the term isn't part of the graph
+     */
+    public List<String> getAncestorsAndSelf(String id)
+    {
+        Integer index = this.indexes.get(id);
+        if (index == null) {
+            List<String> result = new ArrayList<String>(1);
+            result.add(id);
+            return result;
+        }
+        int[] crtAncestors = getAncestors(index);
+        List<String> result = new ArrayList<String>(crtAncestors.length + 1);
+        result.add(id);
+        for (int ancestor : crtAncestors) {
+            result.add(this.ids.get(ancestor));
+        }
+        return result;
+    }
+
+    private int[] getAncestors(int index)
+    {
+        int size = this.ids.size();
+        if (this.ancestors == null || this.ancestors.length < size) {
+            this.ancestors = new int[size][];
+            this.order = new int[size];
+            this.lowLinks = new int[size];
+            this.counter = 0;
+            this.componentStack = new int[size];
+            this.onComponentStack = new boolean[size];
+            this.visited = new int[size];
+            this.buffer = new int[size];
+            this.stackNodes = new int[size];
+            this.stackPositions = new int[size];
+            this.stamp = 0;
+        }
+        if (this.ancestors[index] == null) {
+            computeAncestors(index);
+        }
+        return this.ancestors[index];
+    }
+
+    /**
+     * Compute the closures of a term and all its ancestors that weren't already computed, in topological order: a
+     * depth-first traversal of the parents, where the closure of a term is computed once all its parents are done.
+     * Terms that are part of a cycle are ancestors of each other, so their closures are computed together, once the
+     * whole cycle was traversed, following Tarjan's strongly connected components algorithm. Uses an explicit stack,
+     * since ontologies can be deep.
+     *
+     * @param root the index of the term to process
+     */
+    private void computeAncestors(int root)
+    {
+        // The stacks never hold a term twice, so they can't be deeper than the number of terms
+        int[] nodes = this.stackNodes;
+        int[] positions = this.stackPositions;
+        int top = 0;
+        int componentTop = 0;
+        reach(root, componentTop++);
+        nodes[0] = root;
+        positions[0] = 0;
+        while (top >= 0) {
+            int node = nodes[top];
+            int[] crtParents = this.parents[node];
+            if (positions[top] < crtParents.length) {
+                int parent = crtParents[positions[top]++];
+                if (this.ancestors[parent] != null) {
+                    continue;
+                }
+                if (this.order[parent] == 0) {
+                    reach(parent, componentTop++);
+                    ++top;
+                    nodes[top] = parent;
+                    positions[top] = 0;
+                } else if (this.onComponentStack[parent]) {
+                    this.lowLinks[node] = Math.min(this.lowLinks[node], this.order[parent]);
+                }
+            } else {
+                if (this.lowLinks[node] == this.order[node]) {
+                    // The term and the terms above it on the component stack form a cycle, or the term is alone
+                    int start = componentTop;
+                    do {
+                        --start;
+                        this.onComponentStack[this.componentStack[start]] = false;
+                    } while (this.componentStack[start] != node);
+                    completeComponent(start, componentTop);
+                    componentTop = start;
+                }
+                --top;
+                if (top >= 0) {
+                    this.lowLinks[nodes[top]] = Math.min(this.lowLinks[nodes[top]], this.lowLinks[node]);
+                }
+            }
+        }
+    }
+
+    private void reach(int node, int componentPosition)
+    {
+        this.order[node] = ++this.counter;
+        this.lowLinks[node] = this.order[node];
+        this.componentStack[componentPosition] = node;
+        this.onComponentStack[node] = true;
+    }
+
+    /**
+     * Compute the closures of a group of terms which are all ancestors of each other, or of a single term. Their
+     * parents outside the group are already done.
+     *
+     * @param start the position of the first term of the group on the component stack
+     * @param end the position after the last term of the group on the component stack
+     */
+    private void completeComponent(int start, int end)
+    {
+        if (end - start == 1) {
+            int node = this.componentStack[start];
+            this.ancestors[node] = mergeParents(node);
+            return;
+        }
+        // A new stamp value avoids clearing the visited markers between merges
+        ++this.stamp;
+        int count = 0;
+        for (int i = start; i < end; ++i) {
+            count = collect(this.componentStack[i], count);
+        }
+        for (int i = start; i < end; ++i) {
+            count = collectParents(this.componentStack[i], count);
+        }
+        int[] closure = Arrays.copyOf(this.buffer, count);
+        Arrays.sort(closure);
+        for (int i = start; i < end; ++i) {
+            this.ancestors[this.componentStack[i]] = remove(closure, this.componentStack[i]);
+        }
+    }
+
+    /**
+     * Compute the closure of a term as the union of its parents and their closures.
+     *
+     * @param node the index of the term, whose parents are all done, unless the term is its own parent
+     * @return the sorted indexes of the ancestors, never including the term itself
+     */
+    private int[] mergeParents(int node)
+    {
+        int[] crtParents = this.parents[node];
+        if (crtParents.length == 0) {
+            return NONE;
+        }
+        if (crtParents.length == 1 && crtParents[0] != node) {
+            // Most terms have just one parent, in which case the closure is the parent's closure plus the parent
+            return insert(this.ancestors[crtParents[0]], crtParents[0]);
+        }
+        ++this.stamp;
+        this.visited[node] = this.stamp;
+        int count = collectParents(node, 0);
+        int[] result = Arrays.copyOf(this.buffer, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int collectParents(int node, int count)
+    {
+        int result = count;
+        for (int parent : this.parents[node]) {
+            result = collect(parent, result);
+            // Parents from the same group aren't done yet, but they are collected as members of the group
+            if (this.ancestors[parent] != null) {
+                for (int ancestor : this.ancestors[parent]) {
+                    result = collect(ancestor, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private int collect(int index, int count)
+    {
+        if (this.visited[index] == this.stamp) {
+            return count;
+        }
+        this.visited[index] = this.stamp;
+        this.buffer[count] = index;
+        return count + 1;
+    }
+
+    private static int[] insert(int[] sorted, int value)
+    {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position >= 0) {
+            return sorted;
+        }
+        position = -position - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(sorted, position, result, position + 1, sorted.length - position);
+        return result;
+    }
+
+    private static int[] remove(int[] sorted, int value)
+    {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, sorted.length - position - 1);
+        return result;
+    }
+
+    private int getOrCreateIndex(String id)
+    {
+        Integer index = this.indexes.get(id);
+        if (index == null) {
+            index = this.ids.size();
+            this.indexes.put(id, index);
+            this.ids.add(id);
+            if (index == this.parents.length) {
+                this.parents = Arrays.copyOf(this.parents, this.parents.length * 2);
+            }
+            this.parents[index] = NONE;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.obo2solr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link SolrUpdateGenerator} class, checking that the streamed terms get the same {@code term_category}
+ * closure as the one computed by the original breadth-first expansion over the whole ontology.
+ *
+ * @version $Id$
+ */
+public class SolrUpdateGeneratorTest
+{
+    private static final String CATEGORY = TermData.TERM_CATEGORY_FIELD_NAME;
+
+    /** Deeper than the initial capacity of the term graph, and than the traversal stack would be with recursion. */
+    private static final int CHAIN_LENGTH = 2500;
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final String fixture = getClass().getResource("/closure-test.obo").toString();
+
+    @Test
+    public void streamedCategoriesMatchTheBreadthFirstExpansion() throws IOException
+    {
+        Map<String, TermData> terms = stream(this.fixture, new HashMap<String, Double>());
+        Map<String, Set<String>> expected = expandCategories(readParents(this.fixture));
+
+        Assert.assertEquals(expected.keySet(), terms.keySet());
+        for (TermData term : terms.values()) {
+            Assert.assertEquals(term.getId(), expected.get(term.getId()), new HashSet<String>(term.get(CATEGORY)));
+        }
+    }
+
+    @Test
+    public void inMemoryCategoriesMatchTheBreadthFirstExpansion() throws IOException
+    {
+        Map<String, TermData> terms = new SolrUpdateGenerator().transform(this.fixture, new HashMap<String, Double>());
+        Map<String, Set<String>> expected = expandCategories(readParents(this.fixture));
+
+        Assert.assertEquals(expected.keySet(), terms.keySet());
+        for (TermData term : terms.values()) {
+            Assert.assertEquals(term.getId(), expected.get(term.getId()), new HashSet<String>(term.get(CATEGORY)));
+        }
+    }
+
+    @Test
+    public void categoriesIncludeAllTheParents() throws IOException
+    {
+        Map<String, TermData> terms = stream(this.fixture, new HashMap<String, Double>());
+
+        Assert.assertEquals(set("HP:0000240", "HP:0000234", "HP:0000152", "HP:0000707", "HP:0000118", "HP:0000001"),
+            new HashSet<String>(terms.get("HP:0000240").get(CATEGORY)));
+        Assert.assertEquals(set("HP:0000001"), new HashSet<String>(terms.get("HP:0000001").get(CATEGORY)));
+    }
+
+    @Test
+    public void cyclesDontPreventTheExpansion() throws IOException
+    {
+        Map<String, TermData> terms = stream(this.fixture, new HashMap<String, Double>());
+
+        Assert.assertEquals(set("HP:0000900", "HP:0000901", "HP:0000118", "HP:0000001"),
+            new HashSet<String>(terms.get("HP:0000900").get(CATEGORY)));
+        Assert.assertEquals(set("HP:0000901", "HP:0000900", "HP:0000118", "HP:0000001"),
+            new HashSet<String>(terms.get("HP:0000901").get(CATEGORY)));
+        Assert.assertEquals(set("HP:0000902", "HP:0000901", "HP:0000900", "HP:0000118", "HP:0000001"),
+            new HashSet<String>(terms.get("HP:0000902").get(CATEGORY)));
+    }
+
+    @Test
+    public void alternativeAndReplacementIdentifiersAreKept() throws IOException
+    {
+        Map<String, TermData> terms = stream(this.fixture, new HashMap<String, Double>());
+
+        Assert.assertEquals(set("HP:0000233"), new HashSet<String>(terms.get("HP:0000234").get("alt_id")));
+        TermData obsolete = terms.get("HP:0000235");
+        Assert.assertEquals(set("HP:0000234"), new HashSet<String>(obsolete.get("replaced_by")));
+        Assert.assertEquals(set("true"), new HashSet<String>(obsolete.get("is_obsolete")));
+        // Replacements aren't parents
+        Assert.assertEquals(set("HP:0000235"), new HashSet<String>(obsolete.get(CATEGORY)));
+    }
+
+    @Test
+    public void headerIsEmittedAndTypedefsAreSkipped() throws IOException
+    {
+        Map<String, TermData> terms = stream(this.fixture, new HashMap<String, Double>());
+
+        Assert.assertEquals(set("closure-test/2016-10-17"),
+            new HashSet<String>(terms.get("HEADER_INFO").get("version")));
+        Assert.assertFalse(terms.containsKey("part_of"));
+        Assert.assertEquals(11, terms.size());
+    }
+
+    @Test
+    public void unselectedCategoriesAreNotExpanded() throws IOException
+    {
+        Map<String, TermData> terms =
+            stream(this.fixture, selection(TermData.ID_FIELD_NAME, TermData.PARENT_FIELD_NAME));
+
+        // Only the direct parents, taken from is_a
+        Assert.assertEquals(set("HP:0000152", "HP:0000707"),
+            new HashSet<String>(terms.get("HP:0000234").get(CATEGORY)));
+        Assert.assertNull(terms.get("HP:0000234").get("name"));
+    }
+
+    @Test
+    public void deepOntologiesAreStreamedAcrossBatches() throws IOException
+    {
+        File source = this.folder.newFile("chain.obo");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < CHAIN_LENGTH; ++i) {
+            content.append("[Term]\nid: T:").append(i).append('\n');
+            if (i > 0) {
+                content.append("is_a: T:").append(i - 1).append('\n');
+            }
+            content.append('\n');
+        }
+        Files.write(source.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        final List<List<TermData>> batches = new ArrayList<List<TermData>>();
+
+        int count = new SolrUpdateGenerator().transform(source.toURI().toURL().toString(),
+            new HashMap<String, Double>(), new TermConsumer()
+            {
+                @Override
+                public void accept(TermData term)
+                {
+                    if (batches.isEmpty() || batches.get(batches.size() - 1).size() == BATCH_SIZE) {
+                        batches.add(new ArrayList<TermData>(BATCH_SIZE));
+                    }
+                    batches.get(batches.size() - 1).add(term);
+                }
+            });
+
+        Assert.assertEquals(CHAIN_LENGTH, count);
+        Assert.assertEquals((CHAIN_LENGTH + BATCH_SIZE - 1) / BATCH_SIZE, batches.size());
+        Assert.assertEquals(CHAIN_LENGTH % BATCH_SIZE, batches.get(batches.size() - 1).size());
+        // Terms already handed over in previous batches aren't changed by the following terms
+        for (int i = 0; i < batches.size(); ++i) {
+            List<TermData> batch = batches.get(i);
+            for (int j = 0; j < batch.size(); ++j) {
+                int position = i * BATCH_SIZE + j;
+                TermData term = batch.get(j);
+                Assert.assertEquals("T:" + position, term.getId());
+                Assert.assertEquals(position + 1, term.get(CATEGORY).size());
+            }
+        }
+        Assert.assertTrue(batches.get(batches.size() - 1).get(CHAIN_LENGTH % BATCH_SIZE - 1).get(CATEGORY)
+            .contains("T:0"));
+    }
+
+    @Test
+    public void missingSourceIsReported() throws IOException
+    {
+        Assert.assertEquals(-1, new SolrUpdateGenerator().transform(new File(this.folder.getRoot(), "missing.obo")
+            .toURI().toURL().toString(), new HashMap<String, Double>(), new TermConsumer()
+            {
+                @Override
+                public void accept(TermData term)
+                {
+                    Assert.fail("No terms expected");
+                }
+            }));
+    }
+
+    private Map<String, TermData> stream(String url, Map<String, Double> fieldSelection) throws IOException
+    {
+        final Map<String, TermData> result = new LinkedHashMap<String, TermData>();
+        int count = new SolrUpdateGenerator().transform(url, fieldSelection, new TermConsumer()
+        {
+            @Override
+            public void accept(TermData term)
+            {
+                result.put(term.getId(), term);
+            }
+        });
+        Assert.assertEquals(result.size(), count);
+        return result;
+    }
+
+    private Map<String, Collection<String>> readParents(String url) throws IOException
+    {
+        Map<String, Collection<String>> result = new LinkedHashMap<String, Collection<String>>();
+        for (TermData term : stream(url, selection(TermData.ID_FIELD_NAME, TermData.PARENT_FIELD_NAME)).values()) {
+            result.put(term.getId(), term.getParentIds());
+        }
+        return result;
+    }
+
+    /**
+     * The original expansion, done for each term separately: a breadth-first walk over the parents, collecting every
+     * term reached, and the term itself.
+     */
+    private Map<String, Set<String>> expandCategories(Map<String, Collection<String>> parents)
+    {
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        for (Map.Entry<String, Collection<String>> term : parents.entrySet()) {
+            Set<String> categories = new HashSet<String>(term.getValue());
+            Set<String> front = new HashSet<String>(term.getValue());
+            while (!front.isEmpty()) {
+                Set<String> newFront = new HashSet<String>();
+                for (String id : front) {
+                    if (!parents.containsKey(id)) {
+                        continue;
+                    }
+                    for (String parent : parents.get(id)) {
+                        if (categories.add(parent)) {
+                            newFront.add(parent);
+                        }
+                    }
+                }
+                front = newFront;
+            }
+            categories.add(term.getKey());
+            result.put(term.getKey(), categories);
+        }
+        return result;
+    }
+
+    private Map<String, Double> selection(String... fields)
+    {
+        Map<String, Double> result = new HashMap<String, Double>();
+        for (String field : fields) {
+            result.put(field, ParameterPreparer.DEFAULT_BOOST);
+        }
+        return result;
+    }
+
+    private Set<String> set(String... values)
+    {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+}
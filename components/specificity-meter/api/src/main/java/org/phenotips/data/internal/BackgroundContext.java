@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.model.reference.DocumentReference;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Prepares tasks for running on background threads, where no execution context is available, by giving them a fresh
+ * XWiki context for the same wiki and user as the request that created them. The request context itself is not shared,
+ * since the servlet request and response it holds are recycled once the request is over.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Component(roles = { BackgroundContext.class })
+@Singleton
+public class BackgroundContext
+{
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager contextManager;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Wrap a task so that it runs in a new execution context, with an XWiki context created from the stub context and
+     * targeting the same wiki and user as the current one. Must be called on the thread which has the current context,
+     * usually a request thread.
+     *
+     * @param task the task to wrap
+     * @return a task which sets up the execution context, runs the wrapped task, and then discards the context
+     */
+    public Runnable wrap(final Runnable task)
+    {
+        XWikiContext current = this.xcontextProvider.get();
+        final String wikiId = current.getWikiId();
+        final DocumentReference user = current.getUserReference();
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    // Without an XWiki context in the new execution context, the initializers create one from the stub
+                    BackgroundContext.this.contextManager.initialize(new ExecutionContext());
+                    XWikiContext xcontext = BackgroundContext.this.xcontextProvider.get();
+                    if (xcontext == null) {
+                        BackgroundContext.this.logger.warn("No XWiki context available for background tasks");
+                        return;
+                    }
+                    xcontext.setWikiId(wikiId);
+                    xcontext.setUserReference(user);
+                    task.run();
+                } catch (ExecutionContextException ex) {
+                    BackgroundContext.this.logger.warn("Failed to initialize the background context: {}",
+                        ex.getMessage());
+                } finally {
+                    BackgroundContext.this.execution.removeContext();
+                }
+            }
+        };
+    }
+}
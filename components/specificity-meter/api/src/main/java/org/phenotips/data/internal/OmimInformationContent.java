@@ -0,0 +1,329 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import org.xwiki.component.annotation.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+
+/**
+ * Information content of the HPO terms with regards to identifying OMIM disorders. The number of disorders annotated
+ * with each phenotype, directly or through a descendant, is counted once, in a single pass over the OMIM index, instead
+ * of querying the index for each scored feature. The information content of each term is then kept in memory, so that
+ * scoring patients only requires arithmetic. The counts are discarded when OMIM or HPO are reindexed, see
+ * {@link OmimInformationContentInvalidator}. If counting fails, zero is returned for a while before trying again, so
+ * that an unavailable index doesn't turn every scored feature into a full scan.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Component(roles = { OmimInformationContent.class })
+@Singleton
+public class OmimInformationContent
+{
+    /** The OMIM field holding the phenotypes directly annotated to a disorder. */
+    private static final String ANNOTATIONS_FIELD = "actual_symptom";
+
+    /** The HPO field holding the ancestors of a term. */
+    private static final String ANCESTORS_FIELD = "term_category";
+
+    /** The OMIM field holding the annotated phenotypes and all their ancestors. */
+    private static final String SEARCH_FOR = "symptom";
+
+    /** The root of the HPO, selecting all the disorders that have phenotypes. */
+    private static final String ROOT = "HP:0000001";
+
+    /** The number of disorders to fetch at once. */
+    private static final int PAGE_SIZE = 1000;
+
+    /** How many ancestors to try for a term that doesn't select any disorders. */
+    private static final int MAX_ANCESTORS = 5;
+
+    /** How long to wait before counting the annotations again after a failure, in milliseconds. */
+    private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(10);
+
+    /** Provides access to the OMIM ontology, where the information content is checked. */
+    @Inject
+    @Named("omim")
+    private Vocabulary omim;
+
+    /** The HPO ontology, needed for accessing the ancestors of a term that might not be present in OMIM. */
+    @Inject
+    @Named("hpo")
+    private Vocabulary hpo;
+
+    @Inject
+    private Logger logger;
+
+    /** The number of disorders selected by each phenotype, loaded when first needed. */
+    private volatile AnnotationCounts counts;
+
+    /** When counting the annotations last failed, {@code 0} if it didn't. */
+    private volatile long loadFailure;
+
+    /**
+     * How much information is captured by a term? In other words, how many diseases are selected by a term out of the
+     * total selectable diseases. If a term doesn't select any diseases at all, the information content of its nearest
+     * represented ancestor is considered, with a slight boost for even more specificity.
+     *
+     * @param termId the identifier of the HPO term to measure
+     * @return the information content captured by this term, {@code 0} if neither the term nor its close ancestors
+     *         select any disorder
+     */
+    public double getInformationContent(String termId)
+    {
+        AnnotationCounts currentCounts = getCounts();
+        if (currentCounts == null) {
+            return 0;
+        }
+        // Computed values are kept with the counts they were computed from, so a computation that started before a
+        // clear can't leave a stale value behind
+        Double result = currentCounts.computed.get(termId);
+        if (result == null) {
+            result = computeInformationContent(termId, currentCounts);
+            currentCounts.computed.putIfAbsent(termId, result);
+        }
+        return result;
+    }
+
+    /** Discard the counts and the computed information content, for example after OMIM or HPO were reindexed. */
+    public synchronized void clear()
+    {
+        this.counts = null;
+        this.loadFailure = 0;
+    }
+
+    private double computeInformationContent(String termId, AnnotationCounts currentCounts)
+    {
+        String toSearch = termId;
+        double ic = currentCounts.informationContent(toSearch);
+        int i = 0;
+
+        while (ic == 0 && ++i < MAX_ANCESTORS) {
+            VocabularyTerm term = this.hpo.getTerm(toSearch);
+            if (term == null) {
+                break;
+            }
+            Set<VocabularyTerm> parents = term.getParents();
+            if (parents.isEmpty()) {
+                break;
+            }
+            toSearch = parents.iterator().next().getId();
+            ic = currentCounts.informationContent(toSearch);
+        }
+        return ic * (1 + i / MAX_ANCESTORS);
+    }
+
+    private AnnotationCounts getCounts()
+    {
+        AnnotationCounts result = this.counts;
+        if (result == null && !isBackingOff()) {
+            synchronized (this) {
+                result = this.counts;
+                if (result == null && !isBackingOff()) {
+                    result = loadCounts();
+                    this.counts = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isBackingOff()
+    {
+        return this.loadFailure > 0 && System.currentTimeMillis() - this.loadFailure < RETRY_DELAY;
+    }
+
+    /**
+     * Count the disorders annotated with each phenotype, going through all the OMIM disorders in pages. A disorder is
+     * counted for a phenotype if it is annotated with the phenotype or with any of its descendants, which is what the
+     * {@code symptom} field of the OMIM index holds; that field isn't stored, so it is rebuilt from the direct
+     * annotations and the ancestors stored in the HPO index, fetched once per page for all the new phenotypes.
+     *
+     * @return the counts, or {@code null} if OMIM couldn't be queried
+     */
+    private AnnotationCounts loadCounts()
+    {
+        long startTime = System.currentTimeMillis();
+        Map<String, int[]> annotations = new HashMap<>();
+        Map<String, Set<String>> ancestors = new HashMap<>();
+        Map<String, String> queryOptions = new HashMap<>();
+        queryOptions.put("fl", "id " + ANNOTATIONS_FIELD);
+        queryOptions.put("sort", "id asc");
+        queryOptions.put("rows", String.valueOf(PAGE_SIZE));
+        queryOptions.put("spellcheck", Boolean.toString(false));
+        int total = 0;
+        try {
+            for (int start = 0;; start += PAGE_SIZE) {
+                queryOptions.put("start", String.valueOf(start));
+                List<VocabularyTerm> page = this.omim.search(Collections.singletonMap(SEARCH_FOR, ROOT), queryOptions);
+                loadAncestors(page, ancestors);
+                for (VocabularyTerm disorder : page) {
+                    ++total;
+                    for (String phenotype : getPhenotypes(disorder, ancestors)) {
+                        int[] count = annotations.get(phenotype);
+                        if (count == null) {
+                            annotations.put(phenotype, new int[] { 1 });
+                        } else {
+                            ++count[0];
+                        }
+                    }
+                }
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+            }
+        } catch (RuntimeException ex) {
+            this.loadFailure = System.currentTimeMillis();
+            this.logger.warn("Failed to count the OMIM phenotype annotations: {}", ex.getMessage());
+            return null;
+        }
+        AnnotationCounts result = new AnnotationCounts(annotations, total);
+        this.logger.debug("Counted the annotations of {} phenotypes in {} OMIM disorders in {} ms", annotations.size(),
+            total, System.currentTimeMillis() - startTime);
+        return result;
+    }
+
+    /**
+     * Fetch, with a single lookup, the ancestors of the phenotypes annotated to a page of disorders which weren't seen
+     * in the previous pages.
+     *
+     * @param page the disorders whose phenotypes are needed
+     * @param ancestors the known ancestors of each phenotype, including the phenotype itself, where the new phenotypes
+     *            will be added
+     */
+    private void loadAncestors(List<VocabularyTerm> page, Map<String, Set<String>> ancestors)
+    {
+        Set<String> missing = new HashSet<>();
+        for (VocabularyTerm disorder : page) {
+            for (Object annotation : getAnnotations(disorder, ANNOTATIONS_FIELD)) {
+                String termId = String.valueOf(annotation);
+                if (!ancestors.containsKey(termId)) {
+                    missing.add(termId);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        for (VocabularyTerm term : this.hpo.getTerms(missing)) {
+            Set<String> termAncestors = new HashSet<>();
+            termAncestors.add(term.getId());
+            for (Object ancestor : getAnnotations(term, ANCESTORS_FIELD)) {
+                termAncestors.add(StringUtils.substringBefore(String.valueOf(ancestor), " "));
+            }
+            ancestors.put(term.getId(), termAncestors);
+        }
+        for (String termId : missing) {
+            if (!ancestors.containsKey(termId)) {
+                ancestors.put(termId, Collections.<String>emptySet());
+            }
+        }
+    }
+
+    private Set<String> getPhenotypes(VocabularyTerm disorder, Map<String, Set<String>> ancestors)
+    {
+        Collection<?> annotations = getAnnotations(disorder, ANNOTATIONS_FIELD);
+        if (annotations.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> result = new HashSet<>();
+        for (Object annotation : annotations) {
+            Set<String> annotationAncestors = ancestors.get(String.valueOf(annotation));
+            if (annotationAncestors != null) {
+                result.addAll(annotationAncestors);
+            }
+        }
+        return result;
+    }
+
+    private Collection<?> getAnnotations(VocabularyTerm term, String field)
+    {
+        Object value = term.get(field);
+        if (value instanceof Collection) {
+            return (Collection<?>) value;
+        } else if (value != null) {
+            return Collections.singleton(value);
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * Immutable table of the number of disorders selected by each phenotype. Phenotypes are identified by their
+     * position in a sorted array, and the counts are kept in a parallel primitive array. The information content
+     * computed from these counts is cached alongside, and discarded together with them.
+     */
+    private static final class AnnotationCounts
+    {
+        private final String[] terms;
+
+        private final int[] counts;
+
+        /** The total number of disorders that have phenotypes. */
+        private final double total;
+
+        /** The information content of the terms computed so far, including the fallback on ancestors. */
+        private final ConcurrentMap<String, Double> computed = new ConcurrentHashMap<>();
+
+        AnnotationCounts(Map<String, int[]> annotations, int total)
+        {
+            this.terms = annotations.keySet().toArray(new String[annotations.size()]);
+            Arrays.sort(this.terms);
+            this.counts = new int[this.terms.length];
+            for (int i = 0; i < this.terms.length; ++i) {
+                this.counts[i] = annotations.get(this.terms[i])[0];
+            }
+            this.total = total;
+        }
+
+        /**
+         * How much information is contained in the disorders selected by a term out of the whole ontology?
+         *
+         * @param termId the identifier of the HPO term
+         * @return the information content captured by the selected disorders, {@code 0} if no disorder is selected
+         */
+        double informationContent(String termId)
+        {
+            int position = Arrays.binarySearch(this.terms, termId);
+            if (position < 0) {
+                return 0;
+            }
+            return -Math.log(this.counts[position] / this.total) / Math.log(2);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.phenotips.vocabulary.events.VocabularyIndexedEvent;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Clears the {@link OmimInformationContent} whenever OMIM or HPO are reindexed, since the phenotype annotations or the
+ * phenotype hierarchy may have changed.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Component
+@Named("omim-information-content-invalidator")
+@Singleton
+public class OmimInformationContentInvalidator extends AbstractEventListener
+{
+    @Inject
+    private OmimInformationContent informationContent;
+
+    /** Default constructor, sets up the listener name and the list of events to subscribe to. */
+    public OmimInformationContentInvalidator()
+    {
+        super("omim-information-content-invalidator", new VocabularyIndexedEvent("omim"),
+            new VocabularyIndexedEvent("hpo"));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        this.informationContent.clear();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.phenotips.data.Patient;
+import org.phenotips.data.events.PatientChangedEvent;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Schedules patients for scoring when their features change, so that an up to date specificity score is stored by the
+ * time the patient is loaded again.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Component
+@Named("specificity-score-updater")
+@Singleton
+public class SpecificityScoreUpdater extends AbstractEventListener
+{
+    @Inject
+    private SpecificityStore store;
+
+    @Inject
+    private SpecificityScoringQueue queue;
+
+    /** Default constructor, sets up the listener name and the list of events to subscribe to. */
+    public SpecificityScoreUpdater()
+    {
+        super("specificity-score-updater", new PatientChangedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        Patient patient = ((PatientChangedEvent) event).getPatient();
+        // Storing the score also changes the patient, but not its features, so the stored score is up to date
+        if (patient != null && this.store.get(patient) == null) {
+            this.queue.schedule(patient.getId());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.phenotips.data.Patient;
+import org.phenotips.data.PatientRepository;
+import org.phenotips.data.PatientScorer;
+import org.phenotips.data.PatientSpecificity;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+
+/**
+ * Computes patient specificity scores with the remote scorer on a background thread, and stores them with the
+ * {@link SpecificityStore}, so that slow remote scorers never delay the requests loading a patient. Only remote scores
+ * are stored: if the remote scorer fails, nothing is stored, and the patient is scored again the next time it is
+ * needed. Patients are scored one at a time, with at least {@link #INTERVAL_SETTING a configurable interval} between
+ * two scorings, so that rescoring all the patients doesn't flood the remote scoring service.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Component(roles = { SpecificityScoringQueue.class })
+@Singleton
+public class SpecificityScoringQueue implements Initializable, Disposable
+{
+    /** The configuration property holding the minimum time between two scorings, in milliseconds. */
+    public static final String INTERVAL_SETTING = "phenotips.patientScoring.minimumInterval";
+
+    private static final long DEFAULT_INTERVAL = 1000L;
+
+    @Inject
+    @Named("monarch")
+    private PatientScorer remoteScorer;
+
+    @Inject
+    private SpecificityStore store;
+
+    @Inject
+    private PatientRepository repository;
+
+    @Inject
+    private BackgroundContext context;
+
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The patients waiting to be scored or being scored, used for not scheduling the same patient several times, for
+     * example when the patient is loaded while it is being scored.
+     */
+    private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private ExecutorService executor;
+
+    /** The minimum time between two scorings, in milliseconds. */
+    private long interval;
+
+    /** When the previous scoring finished, only accessed from the scoring thread. */
+    private long lastScoring;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        Long configured = this.configuration.getProperty(INTERVAL_SETTING, Long.class);
+        this.interval = configured != null && configured >= 0 ? configured : DEFAULT_INTERVAL;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable task)
+            {
+                Thread result = new Thread(task, "Specificity scorer");
+                result.setDaemon(true);
+                result.setPriority(Thread.MIN_PRIORITY);
+                return result;
+            }
+        });
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Schedule a patient for scoring, unless it is already waiting to be scored or being scored. The score is only
+     * computed if the stored one is outdated when the patient's turn comes. The stored score records the features it
+     * was computed from, so a patient changed while being scored is scored again the next time it is needed.
+     *
+     * @param patientId the {@link Patient#getId() identifier} of the patient to score
+     */
+    public void schedule(final String patientId)
+    {
+        if (patientId == null || !this.pending.add(patientId)) {
+            return;
+        }
+        try {
+            this.executor.execute(this.context.wrap(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        score(patientId);
+                    } finally {
+                        SpecificityScoringQueue.this.pending.remove(patientId);
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException ex) {
+            // Shutting down
+            this.pending.remove(patientId);
+        }
+    }
+
+    private void score(String patientId)
+    {
+        try {
+            Patient patient = this.repository.get(patientId);
+            if (patient == null || this.store.get(patient) != null || !waitForTurn()) {
+                return;
+            }
+            PatientSpecificity specificity = this.remoteScorer.getSpecificity(patient);
+            this.lastScoring = System.currentTimeMillis();
+            if (specificity != null) {
+                this.store.store(patient, specificity);
+            } else {
+                this.logger.debug("The remote scorer failed to score patient [{}]", patientId);
+            }
+        } catch (RuntimeException ex) {
+            this.logger.warn("Failed to score patient [{}]: {}", patientId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Wait until enough time passed since the previous scoring.
+     *
+     * @return {@code false} if the scoring thread was interrupted while waiting, {@code true} otherwise
+     */
+    private boolean waitForTurn()
+    {
+        long wait = this.lastScoring + this.interval - System.currentTimeMillis();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.phenotips.Constants;
+import org.phenotips.data.Feature;
+import org.phenotips.data.Patient;
+import org.phenotips.data.PatientSpecificity;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.EntityReference;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Persists the specificity score of a patient in the patient document, along with a hash of the features it was
+ * computed from, so that the score can be served without recomputing it, as long as the features didn't change.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Component(roles = { SpecificityStore.class })
+@Singleton
+public class SpecificityStore
+{
+    /** The XClass used for storing the specificity score. */
+    public static final EntityReference CLASS_REFERENCE = new EntityReference("SpecificityClass",
+        EntityType.DOCUMENT, Constants.CODE_SPACE_REFERENCE);
+
+    private static final String SCORE_FIELD = "score";
+
+    private static final String DATE_FIELD = "date";
+
+    private static final String SERVER_FIELD = "server";
+
+    private static final String HASH_FIELD = "features_hash";
+
+    /** Serializes the stores, so that the version check and the save aren't interleaved with another store. */
+    private final Object lock = new Object();
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Get the score stored for a patient, if it was computed from the current features of the patient.
+     *
+     * @param patient the patient whose score is needed
+     * @return the stored specificity, or {@code null} if the patient wasn't scored yet, or if its features changed
+     *         since it was scored
+     */
+    public PatientSpecificity get(Patient patient)
+    {
+        if (patient == null || patient.getDocument() == null) {
+            return null;
+        }
+        try {
+            XWikiContext context = this.xcontextProvider.get();
+            XWikiDocument doc = context.getWiki().getDocument(patient.getDocument(), context);
+            BaseObject stored = doc.getXObject(CLASS_REFERENCE);
+            if (stored == null || !StringUtils.equals(stored.getStringValue(HASH_FIELD), getFeaturesHash(patient))) {
+                return null;
+            }
+            return new PatientSpecificity(stored.getDoubleValue(SCORE_FIELD), stored.getDateValue(DATE_FIELD),
+                stored.getStringValue(SERVER_FIELD));
+        } catch (XWikiException ex) {
+            this.logger.warn("Failed to read the specificity of [{}]: {}", patient.getDocument(), ex.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Store the score of a patient, marking it as computed from the current features of the patient. Saving the
+     * patient document doesn't change its features, so the stored score stays up to date. The document is copied
+     * before being changed, since the cached instance is shared with the other threads. If the document is saved by
+     * someone else in the meantime, the score isn't stored, so that their changes aren't overwritten; the patient will
+     * be scored again when needed. Storing the score doesn't add a new version to the document history.
+     *
+     * @param patient the scored patient
+     * @param specificity the computed score
+     */
+    public void store(Patient patient, PatientSpecificity specificity)
+    {
+        try {
+            XWikiContext context = this.xcontextProvider.get();
+            synchronized (this.lock) {
+                XWikiDocument doc = context.getWiki().getDocument(patient.getDocument(), context).clone();
+                BaseObject stored = doc.getXObject(CLASS_REFERENCE);
+                if (stored == null) {
+                    stored = doc.newXObject(CLASS_REFERENCE, context);
+                }
+                stored.setDoubleValue(SCORE_FIELD, specificity.getScore());
+                stored.setDateValue(DATE_FIELD, specificity.getComputationDate());
+                stored.setStringValue(SERVER_FIELD, specificity.getComputingMethod());
+                stored.setStringValue(HASH_FIELD, getFeaturesHash(patient));
+                String version = context.getWiki().getDocument(patient.getDocument(), context).getVersion();
+                if (!StringUtils.equals(version, doc.getVersion())) {
+                    this.logger.debug("[{}] changed while storing its specificity, skipped", patient.getDocument());
+                    return;
+                }
+                // Not a user change, keep it out of the document history
+                doc.setMetaDataDirty(false);
+                doc.setContentDirty(false);
+                context.getWiki().saveDocument(doc, "Updated specificity score", true, context);
+            }
+        } catch (XWikiException ex) {
+            this.logger.warn("Failed to store the specificity of [{}]: {}", patient.getDocument(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Compute a hash identifying the set of features of a patient, regardless of their order. Negative features are
+     * distinguished from the positive ones.
+     *
+     * @param patient the patient whose features to hash
+     * @return a hexadecimal MD5 hash
+     */
+    static String getFeaturesHash(Patient patient)
+    {
+        List<String> ids = new ArrayList<>();
+        for (Feature f : patient.getFeatures()) {
+            if (StringUtils.isNotEmpty(f.getId())) {
+                ids.add((f.isPresent() ? "" : "-") + f.getId());
+            }
+        }
+        Collections.sort(ids);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            for (String id : ids) {
+                digest.update(id.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) ',');
+            }
+            return new BigInteger(1, digest.digest()).toString(16);
+        } catch (NoSuchAlgorithmException ex) {
+            // MD5 is always available, but just in case, the plain list is just as good an identifier
+            return StringUtils.join(ids, ',');
+        }
+    }
+}
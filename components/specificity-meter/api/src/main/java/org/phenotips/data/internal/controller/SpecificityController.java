@@ -21,8 +21,10 @@
 import org.phenotips.data.Patient;
 import org.phenotips.data.PatientData;
 import org.phenotips.data.PatientDataController;
+import org.phenotips.data.PatientScorer;
 import org.phenotips.data.PatientSpecificity;
-import org.phenotips.data.PatientSpecificityService;
+import org.phenotips.data.internal.SpecificityScoringQueue;
+import org.phenotips.data.internal.SpecificityStore;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.phase.Initializable;
@@ -46,7 +48,8 @@
 import org.json.JSONObject;
 
 /**
- * Exposes the patient profile specificity.
+ * Exposes the patient profile specificity. The score stored on the patient document is served when it is up to date,
+ * otherwise the patient is scheduled for scoring in the background, and the fast local score is served meanwhile.
  *
  * @version $Id$
  * @since 1.0M12
@@ -60,9 +63,18 @@ public class SpecificityController implements PatientDataController<Object>, Ini
     /** The name of the data module exposed by this class. */
     private static final String NAME = "specificity";
 
-    /** The actual service performing the specificity computation. */
+    /** Provides the score stored on the patient document. */
     @Inject
-    private PatientSpecificityService service;
+    private SpecificityStore store;
+
+    /** Computes and stores the score in the background. */
+    @Inject
+    private SpecificityScoringQueue queue;
+
+    /** The local scorer, used until the score is computed in the background. */
+    @Inject
+    @Named("omimInformationContent")
+    private PatientScorer localScorer;
 
     private DateFormat isoDateFormat;
 
@@ -76,7 +88,11 @@ public void initialize() throws InitializationException
     @Override
     public PatientData<Object> load(Patient patient)
     {
-        PatientSpecificity spec = this.service.getSpecificity(patient);
+        PatientSpecificity spec = this.store.get(patient);
+        if (spec == null) {
+            this.queue.schedule(patient.getId());
+            spec = this.localScorer.getSpecificity(patient);
+        }
         if (spec != null) {
             Map<String, Object> data = new LinkedHashMap<String, Object>();
             data.put("score", spec.getScore());
@@ -90,7 +106,7 @@ public PatientData<Object> load(Patient patient)
     @Override
     public void save(Patient patient)
     {
-        // Nothing to save, the score is always computed
+        // Nothing to save, the score is stored by the background scorer
     }
 
     @Override
@@ -123,7 +139,7 @@ public void writeJSON(Patient patient, JSONObject json, Collection<String> selec
     @Override
     public PatientData<Object> readJSON(JSONObject json)
     {
-        // No need to read this, the score is not persisted
+        // No need to read this, the score is always computed on the server
         return null;
     }
 
@@ -23,11 +23,17 @@
 import org.phenotips.data.Patient;
 import org.phenotips.data.PatientData;
 import org.phenotips.data.PatientSpecificityService;
+import org.phenotips.data.internal.SpecificityScoringQueue;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
 import org.xwiki.script.service.ScriptService;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
 import org.xwiki.stability.Unstable;
 
 import java.util.Collection;
@@ -43,6 +49,7 @@
 import javax.inject.Singleton;
 
 import org.json.JSONObject;
+import org.slf4j.Logger;
 
 /**
  * A service that computes the patient specificity, a score estimating how "good" a patient record is.
@@ -60,6 +67,21 @@ public class PatientSpecificityScriptService implements ScriptService
     @Inject
     private PatientSpecificityService service;
 
+    /** Computes and stores the scores in the background. */
+    @Inject
+    private SpecificityScoringQueue queue;
+
+    /** Used for checking that only administrators can rescore all the patients. */
+    @Inject
+    private ContextualAuthorizationManager access;
+
+    /** Used for listing all the patients. */
+    @Inject
+    private QueryManager qm;
+
+    @Inject
+    private Logger logger;
+
     /**
      * Compute the raw specificity score for a patient.
      *
@@ -85,6 +107,35 @@ public double getScore(String[] features, String[] negativeFeatures)
         return this.service.getScore(patient);
     }
 
+    /**
+     * Recompute, in the background, the stored scores of all the patients whose features changed since they were
+     * scored, at the rate allowed for the remote scoring service. Only administrators can do this.
+     *
+     * @return the number of patients checked, or {@code -1} if the current user isn't an administrator or the patients
+     *         couldn't be listed
+     * @since 1.3M2
+     */
+    public int rescoreAll()
+    {
+        if (!this.access.hasAccess(Right.ADMIN)) {
+            return -1;
+        }
+        try {
+            // Scheduled by document name, the same identifier used when a patient is saved or displayed
+            Query query = this.qm.createQuery("select doc.name from Document doc, doc.object(PhenoTips.PatientClass)"
+                + " as patient where doc.name <> :t", Query.XWQL);
+            query.bindValue("t", "PatientTemplate");
+            List<String> patients = query.execute();
+            for (String patientId : patients) {
+                this.queue.schedule(patientId);
+            }
+            return patients.size();
+        } catch (QueryException ex) {
+            this.logger.warn("Failed to list the patients to score: {}", ex.getMessage());
+        }
+        return -1;
+    }
+
     private static final class FakeFeature implements Feature
     {
         private final String id;
@@ -0,0 +1,128 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import javax.inject.Provider;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BackgroundContextTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<BackgroundContext> mocker =
+        new MockitoComponentMockingRule<BackgroundContext>(BackgroundContext.class);
+
+    private XWikiContext context;
+
+    private XWikiContext background;
+
+    private DocumentReference user = new DocumentReference("xwiki", "XWiki", "Admin");
+
+    private Execution execution;
+
+    private ExecutionContextManager contextManager;
+
+    @Before
+    public void setup() throws Exception
+    {
+        this.context = mock(XWikiContext.class);
+        when(this.context.getWikiId()).thenReturn("xwiki");
+        when(this.context.getUserReference()).thenReturn(this.user);
+        this.background = mock(XWikiContext.class);
+        Provider<XWikiContext> provider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(provider.get()).thenReturn(this.context, this.background);
+        this.execution = this.mocker.getInstance(Execution.class);
+        this.contextManager = this.mocker.getInstance(ExecutionContextManager.class);
+    }
+
+    @Test
+    public void wrappedTaskRunsWithFreshContextForTheSameWikiAndUser() throws Exception
+    {
+        Runnable task = mock(Runnable.class);
+        Runnable wrapped = this.mocker.getComponentUnderTest().wrap(task);
+        verify(task, never()).run();
+
+        wrapped.run();
+        ArgumentCaptor<ExecutionContext> context = ArgumentCaptor.forClass(ExecutionContext.class);
+        InOrder order = Mockito.inOrder(this.contextManager, this.background, task, this.execution);
+        order.verify(this.contextManager).initialize(context.capture());
+        order.verify(this.background).setWikiId("xwiki");
+        order.verify(this.background).setUserReference(this.user);
+        order.verify(task).run();
+        order.verify(this.execution).removeContext();
+        Assert.assertNull(context.getValue().getProperty(XWikiContext.EXECUTIONCONTEXT_KEY));
+        verify(this.context, never()).clone();
+    }
+
+    @Test
+    public void taskIsSkippedWhenNoContextIsCreated() throws Exception
+    {
+        Provider<XWikiContext> provider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(provider.get()).thenReturn(this.context, (XWikiContext) null);
+        Runnable task = mock(Runnable.class);
+        this.mocker.getComponentUnderTest().wrap(task).run();
+        verify(task, never()).run();
+        verify(this.execution).removeContext();
+    }
+
+    @Test
+    public void contextIsRemovedWhenTheTaskFails() throws Exception
+    {
+        Runnable task = mock(Runnable.class);
+        doThrow(new IllegalStateException()).when(task).run();
+        try {
+            this.mocker.getComponentUnderTest().wrap(task).run();
+            Assert.fail("The task failure should be propagated");
+        } catch (IllegalStateException ex) {
+            verify(this.execution).removeContext();
+        }
+    }
+
+    @Test
+    public void taskIsSkippedWhenTheContextCannotBeInitialized() throws Exception
+    {
+        Runnable task = mock(Runnable.class);
+        doThrow(new ExecutionContextException("failed")).when(this.contextManager)
+            .initialize(any(ExecutionContext.class));
+        this.mocker.getComponentUnderTest().wrap(task).run();
+        verify(task, never()).run();
+        verify(this.execution).removeContext();
+    }
+}
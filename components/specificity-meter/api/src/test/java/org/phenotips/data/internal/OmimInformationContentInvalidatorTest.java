@@ -0,0 +1,63 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.phenotips.vocabulary.events.VocabularyIndexedEvent;
+
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.mockito.Mockito.verify;
+
+public class OmimInformationContentInvalidatorTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<EventListener> mocker =
+        new MockitoComponentMockingRule<EventListener>(OmimInformationContentInvalidator.class);
+
+    @Test
+    public void listensToOmimAndHpoReindexing() throws ComponentLookupException
+    {
+        EventListener listener = this.mocker.getComponentUnderTest();
+        Assert.assertEquals("omim-information-content-invalidator", listener.getName());
+        boolean omim = false;
+        boolean hpo = false;
+        boolean other = false;
+        for (Event event : listener.getEvents()) {
+            omim |= event.matches(new VocabularyIndexedEvent("omim"));
+            hpo |= event.matches(new VocabularyIndexedEvent("hpo"));
+            other |= event.matches(new VocabularyIndexedEvent("hgnc"));
+        }
+        Assert.assertTrue(omim);
+        Assert.assertTrue(hpo);
+        Assert.assertFalse(other);
+    }
+
+    @Test
+    public void onEventClearsInformationContent() throws ComponentLookupException
+    {
+        this.mocker.getComponentUnderTest().onEvent(new VocabularyIndexedEvent("omim"), null, null);
+        verify(this.mocker.getInstance(OmimInformationContent.class)).clear();
+    }
+}
@@ -21,10 +21,7 @@
 import org.phenotips.data.Patient;
 import org.phenotips.data.PatientScorer;
 import org.phenotips.data.PatientSpecificity;
-import org.phenotips.vocabulary.Vocabulary;
-import org.phenotips.vocabulary.VocabularyTerm;
 
-import org.xwiki.cache.CacheException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
@@ -50,16 +47,14 @@
 
     private Set<Feature> features = new LinkedHashSet<>();
 
-    private Vocabulary hpo;
-
-    private Vocabulary omim;
+    private OmimInformationContent informationContent;
 
     @Rule
     public final MockitoComponentMockingRule<PatientScorer> mocker =
         new MockitoComponentMockingRule<PatientScorer>(OmimInformationContentPatientScorer.class);
 
     @Before
-    public void setup() throws CacheException, ComponentLookupException
+    public void setup() throws ComponentLookupException
     {
         MockitoAnnotations.initMocks(this);
         Feature feature = mock(Feature.class);
@@ -78,19 +73,11 @@ public void setup() throws CacheException, ComponentLookupException
         when(feature.getName()).thenReturn("custom");
         this.features.add(feature);
 
-        this.hpo = this.mocker.getInstance(Vocabulary.class, "hpo");
-        VocabularyTerm hp3 = mock(VocabularyTerm.class);
-        VocabularyTerm hp4 = mock(VocabularyTerm.class);
-        when(this.hpo.getTerm("HP:3")).thenReturn(hp3);
-        when(hp3.getParents()).thenReturn(Collections.singleton(hp4));
-        when(hp4.getId()).thenReturn("HP:4");
-
-        this.omim = this.mocker.getInstance(Vocabulary.class, "omim");
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:0000001"))).thenReturn(60L);
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:1"))).thenReturn(3L);
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:2"))).thenReturn(1L);
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:3"))).thenReturn(0L);
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:4"))).thenReturn(2L);
+        // 3, 1 and 2 disorders out of 60
+        this.informationContent = this.mocker.getInstance(OmimInformationContent.class);
+        when(this.informationContent.getInformationContent("HP:1")).thenReturn(Math.log(20) / Math.log(2));
+        when(this.informationContent.getInformationContent("HP:2")).thenReturn(Math.log(60) / Math.log(2));
+        when(this.informationContent.getInformationContent("HP:3")).thenReturn(Math.log(30) / Math.log(2));
     }
 
     @Test
@@ -130,54 +117,6 @@ public void getSpecificityUsesInformationContent() throws Exception
     @Test
     public void getScoreWithNonInformativeFeaturesReturns0() throws ComponentLookupException
     {
-        VocabularyTerm hp10 = mock(VocabularyTerm.class);
-        VocabularyTerm hp11 = mock(VocabularyTerm.class);
-        VocabularyTerm hp12 = mock(VocabularyTerm.class);
-        VocabularyTerm hp13 = mock(VocabularyTerm.class);
-        VocabularyTerm hp14 = mock(VocabularyTerm.class);
-        VocabularyTerm hp15 = mock(VocabularyTerm.class);
-        when(this.hpo.getTerm("HP:10")).thenReturn(hp10);
-        when(this.hpo.getTerm("HP:11")).thenReturn(hp11);
-        when(this.hpo.getTerm("HP:12")).thenReturn(hp12);
-        when(this.hpo.getTerm("HP:13")).thenReturn(hp13);
-        when(this.hpo.getTerm("HP:14")).thenReturn(hp14);
-        when(this.hpo.getTerm("HP:15")).thenReturn(hp15);
-        when(hp10.getId()).thenReturn("HP:10");
-        when(hp11.getId()).thenReturn("HP:11");
-        when(hp12.getId()).thenReturn("HP:12");
-        when(hp13.getId()).thenReturn("HP:13");
-        when(hp14.getId()).thenReturn("HP:14");
-        when(hp15.getId()).thenReturn("HP:15");
-        when(hp10.getParents()).thenReturn(Collections.singleton(hp11));
-        when(hp11.getParents()).thenReturn(Collections.singleton(hp12));
-        when(hp12.getParents()).thenReturn(Collections.singleton(hp13));
-        when(hp13.getParents()).thenReturn(Collections.singleton(hp14));
-        when(hp14.getParents()).thenReturn(Collections.singleton(hp15));
-
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:10"))).thenReturn(0L);
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:11"))).thenReturn(0L);
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:12"))).thenReturn(0L);
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:13"))).thenReturn(0L);
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:14"))).thenReturn(0L);
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:15"))).thenReturn(0L);
-
-        Feature feature = mock(Feature.class);
-        when(feature.getId()).thenReturn("HP:10");
-        when(feature.isPresent()).thenReturn(true);
-        Mockito.doReturn(Collections.singleton(feature)).when(this.patient).getFeatures();
-
-        Assert.assertEquals(0.0, this.mocker.getComponentUnderTest().getScore(this.patient), 0.0);
-    }
-
-    @Test
-    public void getScoreWithParentlessTermDoesntThrowException() throws ComponentLookupException
-    {
-        VocabularyTerm hp10 = mock(VocabularyTerm.class);
-        when(this.hpo.getTerm("HP:10")).thenReturn(hp10);
-        when(hp10.getId()).thenReturn("HP:10");
-        when(hp10.getParents()).thenReturn(Collections.<VocabularyTerm>emptySet());
-        when(this.omim.count(Collections.singletonMap("symptom", "HP:10"))).thenReturn(0L);
-
         Feature feature = mock(Feature.class);
         when(feature.getId()).thenReturn("HP:10");
         when(feature.isPresent()).thenReturn(true);
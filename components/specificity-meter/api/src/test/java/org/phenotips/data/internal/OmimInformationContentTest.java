@@ -0,0 +1,265 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OmimInformationContentTest
+{
+    private static final String ROOT = "HP:0000001";
+
+    private static final String ANNOTATIONS = "actual_symptom";
+
+    private static final String ANCESTORS = "term_category";
+
+    @Rule
+    public final MockitoComponentMockingRule<OmimInformationContent> mocker =
+        new MockitoComponentMockingRule<OmimInformationContent>(OmimInformationContent.class);
+
+    private Vocabulary hpo;
+
+    private Vocabulary omim;
+
+    private List<VocabularyTerm> disorders = new ArrayList<>();
+
+    private Map<String, VocabularyTerm> hpoTerms = new HashMap<>();
+
+    @Before
+    public void setup() throws ComponentLookupException
+    {
+        this.hpo = this.mocker.getInstance(Vocabulary.class, "hpo");
+        when(this.hpo.getTerms(anyCollectionOf(String.class))).thenAnswer(new Answer<Set<VocabularyTerm>>()
+        {
+            @Override
+            public Set<VocabularyTerm> answer(InvocationOnMock invocation)
+            {
+                Set<VocabularyTerm> result = new LinkedHashSet<>();
+                for (Object id : (Collection<?>) invocation.getArguments()[0]) {
+                    VocabularyTerm term = OmimInformationContentTest.this.hpoTerms.get(id);
+                    if (term != null) {
+                        result.add(term);
+                    }
+                }
+                return result;
+            }
+        });
+        VocabularyTerm root = mockTerm(ROOT);
+        mockTerm("HP:1", root);
+        mockTerm("HP:2", root);
+        VocabularyTerm hp4 = mockTerm("HP:4", root);
+        mockTerm("HP:3", hp4, root);
+
+        // 60 disorders: 3 annotated with HP:1, 1 with HP:2, 2 with HP:4, 1 with an unknown phenotype, 1 without
+        // phenotypes, and 52 with just the root phenotype
+        for (int i = 0; i < 3; ++i) {
+            addDisorder(Arrays.asList("HP:1"));
+        }
+        addDisorder("HP:2");
+        addDisorder(Arrays.asList("HP:4"));
+        addDisorder(Arrays.asList("HP:4", ROOT));
+        addDisorder(Arrays.asList("HP:unknown"));
+        addDisorder(null);
+        for (int i = 0; i < 52; ++i) {
+            addDisorder(Arrays.asList(ROOT));
+        }
+
+        this.omim = this.mocker.getInstance(Vocabulary.class, "omim");
+        when(this.omim.search(anyMapOf(String.class, Object.class), anyMapOf(String.class, String.class)))
+            .thenReturn(this.disorders);
+    }
+
+    @Test
+    public void getInformationContentCountsAnnotatedDisorders() throws ComponentLookupException
+    {
+        OmimInformationContent ic = this.mocker.getComponentUnderTest();
+        Assert.assertEquals(log2(60.0 / 3), ic.getInformationContent("HP:1"), 0.0001);
+        Assert.assertEquals(log2(60.0), ic.getInformationContent("HP:2"), 0.0001);
+        Assert.assertEquals(log2(60.0 / 2), ic.getInformationContent("HP:4"), 0.0001);
+        Assert.assertEquals(log2(60.0 / 58), ic.getInformationContent(ROOT), 0.0001);
+    }
+
+    @Test
+    public void getInformationContentUsesAncestorsOfUnannotatedTerms() throws ComponentLookupException
+    {
+        Assert.assertEquals(log2(60.0 / 2), this.mocker.getComponentUnderTest().getInformationContent("HP:3"),
+            0.0001);
+    }
+
+    @Test
+    public void getInformationContentWithNonInformativeAncestorsReturns0() throws ComponentLookupException
+    {
+        VocabularyTerm parent = mockTerm("HP:15");
+        for (int i = 14; i >= 10; --i) {
+            VocabularyTerm term = mockTerm("HP:" + i);
+            when(term.getParents()).thenReturn(Collections.singleton(parent));
+            parent = term;
+        }
+        Assert.assertEquals(0.0, this.mocker.getComponentUnderTest().getInformationContent("HP:10"), 0.0);
+    }
+
+    @Test
+    public void getInformationContentWithParentlessOrUnknownTermReturns0() throws ComponentLookupException
+    {
+        mockTerm("HP:10");
+        OmimInformationContent ic = this.mocker.getComponentUnderTest();
+        Assert.assertEquals(0.0, ic.getInformationContent("HP:10"), 0.0);
+        Assert.assertEquals(0.0, ic.getInformationContent("HP:unknown"), 0.0);
+    }
+
+    @Test
+    public void annotationsAreCountedOnlyOnce() throws ComponentLookupException
+    {
+        OmimInformationContent ic = this.mocker.getComponentUnderTest();
+        ic.getInformationContent("HP:1");
+        ic.getInformationContent("HP:2");
+        ic.getInformationContent("HP:3");
+        ic.getInformationContent("HP:3");
+        verify(this.omim, times(1)).search(anyMapOf(String.class, Object.class),
+            anyMapOf(String.class, String.class));
+        // The annotated phenotypes are fetched all at once, and their stored ancestors are used
+        verify(this.hpo, times(1)).getTerms(anyCollectionOf(String.class));
+        verify(this.hpo, never()).getTerm("HP:1");
+        verify(this.hpoTerms.get("HP:4"), never()).getAncestorsAndSelf();
+        // The ancestors of HP:3 are only looked up the first time
+        verify(this.hpo, times(1)).getTerm("HP:3");
+    }
+
+    @Test
+    public void valuesComputedBeforeClearAreDiscarded() throws ComponentLookupException
+    {
+        final OmimInformationContent ic = this.mocker.getComponentUnderTest();
+        final VocabularyTerm hp3 = this.hpoTerms.get("HP:3");
+        addDisorder(Arrays.asList("HP:4"));
+        final VocabularyTerm added = this.disorders.remove(this.disorders.size() - 1);
+        // Simulate a reindex happening while the information content of HP:3 is being computed
+        when(this.hpo.getTerm("HP:3")).thenAnswer(new Answer<VocabularyTerm>()
+        {
+            @Override
+            public VocabularyTerm answer(InvocationOnMock invocation)
+            {
+                OmimInformationContentTest.this.disorders.add(added);
+                ic.clear();
+                return hp3;
+            }
+        }).thenReturn(hp3);
+
+        Assert.assertEquals(log2(60.0 / 2), ic.getInformationContent("HP:3"), 0.0001);
+        Assert.assertEquals(log2(61.0 / 3), ic.getInformationContent("HP:3"), 0.0001);
+    }
+
+    @Test
+    public void clearReloadsAnnotations() throws ComponentLookupException
+    {
+        OmimInformationContent ic = this.mocker.getComponentUnderTest();
+        Assert.assertEquals(log2(60.0 / 3), ic.getInformationContent("HP:1"), 0.0001);
+        this.disorders.remove(0);
+        ic.clear();
+        Assert.assertEquals(log2(59.0 / 2), ic.getInformationContent("HP:1"), 0.0001);
+        verify(this.omim, times(2)).search(anyMapOf(String.class, Object.class),
+            anyMapOf(String.class, String.class));
+    }
+
+    @Test
+    public void failedSearchReturns0AndIsRetriedLater() throws ComponentLookupException
+    {
+        when(this.omim.search(anyMapOf(String.class, Object.class), anyMapOf(String.class, String.class)))
+            .thenThrow(new IllegalStateException("Solr is down")).thenReturn(this.disorders);
+        OmimInformationContent ic = this.mocker.getComponentUnderTest();
+        Assert.assertEquals(0.0, ic.getInformationContent("HP:1"), 0.0);
+        Assert.assertEquals(0.0, ic.getInformationContent("HP:2"), 0.0);
+        verify(this.omim, times(1)).search(anyMapOf(String.class, Object.class),
+            anyMapOf(String.class, String.class));
+
+        // Pretend the failure happened long ago
+        ReflectionUtils.setFieldValue(ic, "loadFailure", 1L);
+        Assert.assertEquals(log2(60.0 / 3), ic.getInformationContent("HP:1"), 0.0001);
+    }
+
+    @Test
+    public void clearStopsBackingOff() throws ComponentLookupException
+    {
+        when(this.omim.search(anyMapOf(String.class, Object.class), anyMapOf(String.class, String.class)))
+            .thenThrow(new IllegalStateException("Solr is down")).thenReturn(this.disorders);
+        OmimInformationContent ic = this.mocker.getComponentUnderTest();
+        Assert.assertEquals(0.0, ic.getInformationContent("HP:1"), 0.0);
+        ic.clear();
+        Assert.assertEquals(log2(60.0 / 3), ic.getInformationContent("HP:1"), 0.0001);
+    }
+
+    private VocabularyTerm mockTerm(String id, VocabularyTerm... ancestors)
+    {
+        VocabularyTerm term = mock(VocabularyTerm.class);
+        when(term.getId()).thenReturn(id);
+        Set<VocabularyTerm> ancestorsAndSelf = new LinkedHashSet<>();
+        ancestorsAndSelf.add(term);
+        ancestorsAndSelf.addAll(Arrays.asList(ancestors));
+        when(term.getAncestorsAndSelf()).thenReturn(ancestorsAndSelf);
+        List<String> ancestorIds = new ArrayList<>();
+        for (VocabularyTerm ancestor : ancestors) {
+            ancestorIds.add(ancestor.getId());
+        }
+        when(term.get(ANCESTORS)).thenReturn(ancestorIds);
+        when(term.getParents()).thenReturn(ancestors.length > 0 ? Collections.singleton(ancestors[0])
+            : Collections.<VocabularyTerm>emptySet());
+        when(this.hpo.getTerm(id)).thenReturn(term);
+        this.hpoTerms.put(id, term);
+        return term;
+    }
+
+    private void addDisorder(Object annotations)
+    {
+        VocabularyTerm disorder = mock(VocabularyTerm.class);
+        when(disorder.get(ANNOTATIONS)).thenReturn(annotations);
+        this.disorders.add(disorder);
+    }
+
+    private double log2(double value)
+    {
+        return Math.log(value) / Math.log(2);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.phenotips.data.Patient;
+import org.phenotips.data.PatientSpecificity;
+import org.phenotips.data.events.PatientChangedEvent;
+
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.observation.EventListener;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SpecificityScoreUpdaterTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<EventListener> mocker =
+        new MockitoComponentMockingRule<EventListener>(SpecificityScoreUpdater.class);
+
+    @Test
+    public void listensToPatientChanges() throws ComponentLookupException
+    {
+        EventListener listener = this.mocker.getComponentUnderTest();
+        Assert.assertEquals("specificity-score-updater", listener.getName());
+        Assert.assertEquals(1, listener.getEvents().size());
+        Assert.assertTrue(listener.getEvents().get(0) instanceof PatientChangedEvent);
+    }
+
+    @Test
+    public void outdatedScoreIsScheduled() throws ComponentLookupException
+    {
+        Patient patient = mock(Patient.class);
+        when(patient.getId()).thenReturn("data.P0000001");
+        this.mocker.getComponentUnderTest().onEvent(new PatientChangedEvent(patient, null), null, null);
+        verify(this.mocker.getInstance(SpecificityScoringQueue.class)).schedule("data.P0000001");
+    }
+
+    @Test
+    public void upToDateScoreIsNotScheduled() throws ComponentLookupException
+    {
+        Patient patient = mock(Patient.class);
+        when(patient.getId()).thenReturn("data.P0000001");
+        SpecificityStore store = this.mocker.getInstance(SpecificityStore.class);
+        when(store.get(patient)).thenReturn(mock(PatientSpecificity.class));
+        this.mocker.getComponentUnderTest().onEvent(new PatientChangedEvent(patient, null), null, null);
+        verify(this.mocker.getInstance(SpecificityScoringQueue.class), never()).schedule("data.P0000001");
+    }
+
+    @Test
+    public void eventsWithoutPatientAreIgnored() throws ComponentLookupException
+    {
+        this.mocker.getComponentUnderTest().onEvent(new PatientChangedEvent(), null, null);
+        Mockito.verifyZeroInteractions(this.mocker.getInstance(SpecificityScoringQueue.class));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.phenotips.data.Patient;
+import org.phenotips.data.PatientRepository;
+import org.phenotips.data.PatientScorer;
+import org.phenotips.data.PatientSpecificity;
+
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SpecificityScoringQueueTest
+{
+    private static final String P1 = "data.P0000001";
+
+    private static final String P2 = "data.P0000002";
+
+    @Rule
+    public final MockitoComponentMockingRule<SpecificityScoringQueue> mocker =
+        new MockitoComponentMockingRule<SpecificityScoringQueue>(SpecificityScoringQueue.class);
+
+    @Mock
+    private Patient patient1;
+
+    @Mock
+    private Patient patient2;
+
+    private PatientSpecificity spec = new PatientSpecificity(0.5, new Date(), "monarchinitiative.org");
+
+    private ConfigurationSource configuration;
+
+    private PatientRepository repository;
+
+    private PatientScorer remoteScorer;
+
+    private SpecificityStore store;
+
+    @Before
+    public void setup() throws ComponentLookupException
+    {
+        MockitoAnnotations.initMocks(this);
+        BackgroundContext context = this.mocker.getInstance(BackgroundContext.class);
+        when(context.wrap(any(Runnable.class))).thenAnswer(new Answer<Runnable>()
+        {
+            @Override
+            public Runnable answer(InvocationOnMock invocation)
+            {
+                return (Runnable) invocation.getArguments()[0];
+            }
+        });
+        this.configuration = this.mocker.getInstance(ConfigurationSource.class, "xwikiproperties");
+        when(this.configuration.getProperty(SpecificityScoringQueue.INTERVAL_SETTING, Long.class)).thenReturn(0L);
+        this.repository = this.mocker.getInstance(PatientRepository.class);
+        when(this.repository.get(P1)).thenReturn(this.patient1);
+        when(this.repository.get(P2)).thenReturn(this.patient2);
+        this.remoteScorer = this.mocker.getInstance(PatientScorer.class, "monarch");
+        when(this.remoteScorer.getSpecificity(this.patient1)).thenReturn(this.spec);
+        when(this.remoteScorer.getSpecificity(this.patient2)).thenReturn(this.spec);
+        this.store = this.mocker.getInstance(SpecificityStore.class);
+    }
+
+    @Test
+    public void scheduledPatientIsScoredAndStored() throws ComponentLookupException
+    {
+        this.mocker.getComponentUnderTest().schedule(P1);
+        verify(this.store, timeout(1000)).store(this.patient1, this.spec);
+    }
+
+    @Test
+    public void failedRemoteScoringIsNotStored() throws ComponentLookupException
+    {
+        when(this.remoteScorer.getSpecificity(this.patient1)).thenReturn(null);
+        this.mocker.getComponentUnderTest().schedule(P1);
+        this.mocker.getComponentUnderTest().schedule(P2);
+        verify(this.store, timeout(1000)).store(this.patient2, this.spec);
+        verify(this.remoteScorer).getSpecificity(this.patient1);
+        verify(this.store, never()).store(this.patient1, null);
+    }
+
+    @Test
+    public void upToDateScoreIsNotRecomputed() throws ComponentLookupException
+    {
+        when(this.store.get(this.patient1)).thenReturn(this.spec);
+        this.mocker.getComponentUnderTest().schedule(P1);
+        this.mocker.getComponentUnderTest().schedule(P2);
+        verify(this.store, timeout(1000)).store(this.patient2, this.spec);
+        verify(this.remoteScorer, never()).getSpecificity(this.patient1);
+        verify(this.store, never()).store(this.patient1, this.spec);
+    }
+
+    @Test
+    public void missingPatientsAreSkipped() throws ComponentLookupException
+    {
+        when(this.repository.get(P1)).thenThrow(new IllegalArgumentException());
+        this.mocker.getComponentUnderTest().schedule(P1);
+        this.mocker.getComponentUnderTest().schedule(P2);
+        verify(this.store, timeout(1000)).store(this.patient2, this.spec);
+        verify(this.remoteScorer, never()).getSpecificity(this.patient1);
+    }
+
+    @Test
+    public void patientBeingScoredIsNotScheduledAgain() throws ComponentLookupException
+    {
+        final SpecificityScoringQueue queue = this.mocker.getComponentUnderTest();
+        when(this.remoteScorer.getSpecificity(this.patient1)).thenAnswer(new Answer<PatientSpecificity>()
+        {
+            @Override
+            public PatientSpecificity answer(InvocationOnMock invocation)
+            {
+                // Loading the patient while it is being scored
+                queue.schedule(P1);
+                return SpecificityScoringQueueTest.this.spec;
+            }
+        });
+        queue.schedule(P1);
+        queue.schedule(P2);
+        verify(this.store, timeout(1000)).store(this.patient2, this.spec);
+        verify(this.repository).get(P1);
+        verify(this.store).store(this.patient1, this.spec);
+    }
+
+    @Test
+    public void scoringsAreSpacedByTheMinimumInterval() throws ComponentLookupException
+    {
+        when(this.configuration.getProperty(SpecificityScoringQueue.INTERVAL_SETTING, Long.class)).thenReturn(200L);
+        long start = System.currentTimeMillis();
+        this.mocker.getComponentUnderTest().schedule(P1);
+        this.mocker.getComponentUnderTest().schedule(P2);
+        verify(this.store, timeout(2000)).store(this.patient2, this.spec);
+        verify(this.store).store(this.patient1, this.spec);
+        Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+
+    @Test
+    public void scheduleIgnoresNullAndStoppedQueue() throws Exception
+    {
+        SpecificityScoringQueue queue = this.mocker.getComponentUnderTest();
+        queue.schedule(null);
+        ((Disposable) queue).dispose();
+        queue.schedule(P1);
+        verify(this.repository, never()).get(P1);
+    }
+}
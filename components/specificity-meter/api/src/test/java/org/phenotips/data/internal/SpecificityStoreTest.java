@@ -0,0 +1,225 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.data.internal;
+
+import org.phenotips.data.Feature;
+import org.phenotips.data.Patient;
+import org.phenotips.data.PatientSpecificity;
+
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.inject.Provider;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SpecificityStoreTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<SpecificityStore> mocker =
+        new MockitoComponentMockingRule<SpecificityStore>(SpecificityStore.class);
+
+    @Mock
+    private Patient patient;
+
+    @Mock
+    private XWikiContext context;
+
+    @Mock
+    private XWiki xwiki;
+
+    @Mock
+    private XWikiDocument doc;
+
+    @Mock
+    private XWikiDocument copy;
+
+    @Mock
+    private BaseObject stored;
+
+    private DocumentReference reference = new DocumentReference("xwiki", "data", "P0000001");
+
+    private Date date = new Date(1476662400000L);
+
+    @Before
+    public void setup() throws ComponentLookupException, XWikiException
+    {
+        MockitoAnnotations.initMocks(this);
+        Provider<XWikiContext> provider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(provider.get()).thenReturn(this.context);
+        when(this.context.getWiki()).thenReturn(this.xwiki);
+        when(this.xwiki.getDocument(this.reference, this.context)).thenReturn(this.doc);
+        when(this.patient.getDocument()).thenReturn(this.reference);
+        doReturn(features(feature("HP:0000002", true), feature("HP:0000001", false))).when(this.patient).getFeatures();
+        when(this.doc.getXObject(SpecificityStore.CLASS_REFERENCE)).thenReturn(this.stored);
+        when(this.doc.clone()).thenReturn(this.copy);
+        when(this.doc.getVersion()).thenReturn("3.1");
+        when(this.copy.getVersion()).thenReturn("3.1");
+        when(this.copy.getXObject(SpecificityStore.CLASS_REFERENCE)).thenReturn(this.stored);
+        when(this.stored.getDoubleValue("score")).thenReturn(0.25);
+        when(this.stored.getDateValue("date")).thenReturn(this.date);
+        when(this.stored.getStringValue("server")).thenReturn("monarchinitiative.org");
+        when(this.stored.getStringValue("features_hash")).thenReturn(SpecificityStore.getFeaturesHash(this.patient));
+    }
+
+    @Test
+    public void getReturnsUpToDateScore() throws ComponentLookupException
+    {
+        PatientSpecificity result = this.mocker.getComponentUnderTest().get(this.patient);
+        Assert.assertEquals(0.25, result.getScore(), 0.0);
+        Assert.assertEquals(this.date, result.getComputationDate());
+        Assert.assertEquals("monarchinitiative.org", result.getComputingMethod());
+    }
+
+    @Test
+    public void getIgnoresScoreComputedFromOtherFeatures() throws ComponentLookupException
+    {
+        doReturn(features(feature("HP:0000002", true), feature("HP:0000001", true))).when(this.patient).getFeatures();
+        Assert.assertNull(this.mocker.getComponentUnderTest().get(this.patient));
+    }
+
+    @Test
+    public void getWithoutStoredScoreReturnsNull() throws ComponentLookupException
+    {
+        when(this.doc.getXObject(SpecificityStore.CLASS_REFERENCE)).thenReturn(null);
+        Assert.assertNull(this.mocker.getComponentUnderTest().get(this.patient));
+    }
+
+    @Test
+    public void getWithoutDocumentReturnsNull() throws ComponentLookupException
+    {
+        when(this.patient.getDocument()).thenReturn(null);
+        Assert.assertNull(this.mocker.getComponentUnderTest().get(this.patient));
+        Assert.assertNull(this.mocker.getComponentUnderTest().get(null));
+    }
+
+    @Test
+    public void getWithStorageErrorReturnsNull() throws ComponentLookupException, XWikiException
+    {
+        when(this.xwiki.getDocument(this.reference, this.context)).thenThrow(new XWikiException());
+        Assert.assertNull(this.mocker.getComponentUnderTest().get(this.patient));
+    }
+
+    @Test
+    public void storeCreatesObjectAndSavesDocumentCopy() throws ComponentLookupException, XWikiException
+    {
+        BaseObject created = mock(BaseObject.class);
+        when(this.copy.getXObject(SpecificityStore.CLASS_REFERENCE)).thenReturn(null);
+        when(this.copy.newXObject(SpecificityStore.CLASS_REFERENCE, this.context)).thenReturn(created);
+        this.mocker.getComponentUnderTest().store(this.patient, new PatientSpecificity(0.5, this.date, "local-omim"));
+        verify(created).setDoubleValue("score", 0.5);
+        verify(created).setDateValue("date", this.date);
+        verify(created).setStringValue("server", "local-omim");
+        verify(created).setStringValue("features_hash", SpecificityStore.getFeaturesHash(this.patient));
+        verify(this.xwiki).saveDocument(this.copy, "Updated specificity score", true, this.context);
+    }
+
+    @Test
+    public void storeDoesNotAddVersionsToTheHistory() throws ComponentLookupException, XWikiException
+    {
+        this.mocker.getComponentUnderTest().store(this.patient, new PatientSpecificity(0.5, this.date, "local-omim"));
+        InOrder order = Mockito.inOrder(this.copy, this.xwiki);
+        order.verify(this.copy).setMetaDataDirty(false);
+        order.verify(this.copy).setContentDirty(false);
+        order.verify(this.xwiki).saveDocument(this.copy, "Updated specificity score", true, this.context);
+    }
+
+    @Test
+    public void storeSkipsDocumentsChangedInTheMeantime() throws ComponentLookupException, XWikiException
+    {
+        XWikiDocument saved = mock(XWikiDocument.class);
+        when(saved.getVersion()).thenReturn("4.1");
+        when(this.xwiki.getDocument(this.reference, this.context)).thenReturn(this.doc, saved);
+        this.mocker.getComponentUnderTest().store(this.patient, new PatientSpecificity(0.5, this.date, "local-omim"));
+        verify(this.xwiki, never()).saveDocument(Mockito.any(XWikiDocument.class), Mockito.anyString(),
+            Mockito.anyBoolean(), Mockito.any(XWikiContext.class));
+    }
+
+    @Test
+    public void storeUpdatesExistingObject() throws ComponentLookupException, XWikiException
+    {
+        this.mocker.getComponentUnderTest().store(this.patient, new PatientSpecificity(0.5, this.date, "local-omim"));
+        verify(this.stored).setDoubleValue("score", 0.5);
+        verify(this.copy, never()).newXObject(SpecificityStore.CLASS_REFERENCE, this.context);
+        verify(this.doc, never()).getXObject(SpecificityStore.CLASS_REFERENCE);
+        verify(this.xwiki).saveDocument(this.copy, "Updated specificity score", true, this.context);
+    }
+
+    @Test
+    public void storeIgnoresStorageErrors() throws ComponentLookupException, XWikiException
+    {
+        Mockito.doThrow(new XWikiException()).when(this.xwiki).saveDocument(this.copy, "Updated specificity score",
+            true, this.context);
+        this.mocker.getComponentUnderTest().store(this.patient, new PatientSpecificity(0.5, this.date, "local-omim"));
+        verify(this.stored).setDoubleValue("score", 0.5);
+    }
+
+    @Test
+    public void featuresHashIgnoresOrderButNotPresence()
+    {
+        Patient other = mock(Patient.class);
+        doReturn(features(feature("HP:0000001", false), feature("HP:0000002", true), feature("", true)))
+            .when(other).getFeatures();
+        Assert.assertEquals(SpecificityStore.getFeaturesHash(this.patient), SpecificityStore.getFeaturesHash(other));
+        doReturn(features(feature("HP:0000001", true), feature("HP:0000002", true))).when(other).getFeatures();
+        Assert.assertNotEquals(SpecificityStore.getFeaturesHash(this.patient),
+            SpecificityStore.getFeaturesHash(other));
+        doReturn(Collections.emptySet()).when(other).getFeatures();
+        Assert.assertNotEquals(SpecificityStore.getFeaturesHash(this.patient),
+            SpecificityStore.getFeaturesHash(other));
+    }
+
+    private Feature feature(String id, boolean present)
+    {
+        Feature result = mock(Feature.class);
+        when(result.getId()).thenReturn(id);
+        when(result.isPresent()).thenReturn(present);
+        return result;
+    }
+
+    private Set<Feature> features(Feature... features)
+    {
+        return new HashSet<>(Arrays.asList(features));
+    }
+}
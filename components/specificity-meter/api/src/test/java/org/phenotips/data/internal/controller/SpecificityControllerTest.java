@@ -22,8 +22,10 @@
 import org.phenotips.data.Patient;
 import org.phenotips.data.PatientData;
 import org.phenotips.data.PatientDataController;
+import org.phenotips.data.PatientScorer;
 import org.phenotips.data.PatientSpecificity;
-import org.phenotips.data.PatientSpecificityService;
+import org.phenotips.data.internal.SpecificityScoringQueue;
+import org.phenotips.data.internal.SpecificityStore;
 
 import org.xwiki.cache.CacheException;
 import org.xwiki.component.manager.ComponentLookupException;
@@ -48,6 +50,8 @@
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SpecificityControllerTest
@@ -58,7 +62,14 @@
     @Mock
     private PatientSpecificity spec;
 
-    private PatientSpecificityService service;
+    @Mock
+    private PatientSpecificity localSpec;
+
+    private SpecificityStore store;
+
+    private SpecificityScoringQueue queue;
+
+    private PatientScorer localScorer;
 
     private Date date;
 
@@ -76,7 +87,9 @@ public void setup() throws CacheException, ComponentLookupException
         MockitoAnnotations.initMocks(this);
         this.isoDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
         this.isoDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-        this.service = this.mocker.getInstance(PatientSpecificityService.class);
+        this.store = this.mocker.getInstance(SpecificityStore.class);
+        this.queue = this.mocker.getInstance(SpecificityScoringQueue.class);
+        this.localScorer = this.mocker.getInstance(PatientScorer.class, "omimInformationContent");
         when(this.spec.getComputingMethod()).thenReturn("monarchinitiative.org");
         Calendar c = Calendar.getInstance(TimeZone.getTimeZone("GMT+02:00"), Locale.ROOT);
         c.set(2010, 2, 20, 14, 20, 0);
@@ -86,7 +99,8 @@ public void setup() throws CacheException, ComponentLookupException
         when(this.spec.getComputationDate()).thenReturn(this.date);
         when(this.spec.getScore()).thenReturn(0.25);
 
-        when(this.service.getSpecificity(this.patient)).thenReturn(this.spec);
+        when(this.store.get(this.patient)).thenReturn(this.spec);
+        when(this.patient.getId()).thenReturn("data.P0000001");
     }
 
     @Test
@@ -98,13 +112,31 @@ public void load() throws ComponentLookupException
         Assert.assertEquals(0.25, (double) result.get("score"), 0.0);
         Assert.assertEquals(this.dateStr, result.get("date"));
         Assert.assertEquals("monarchinitiative.org", result.get("server"));
+        verify(this.queue, never()).schedule("data.P0000001");
+        Mockito.verifyZeroInteractions(this.localScorer);
+    }
+
+    @Test
+    public void loadWithOutdatedScoreSchedulesScoringAndServesLocalScore() throws ComponentLookupException
+    {
+        when(this.store.get(this.patient)).thenReturn(null);
+        when(this.localScorer.getSpecificity(this.patient)).thenReturn(this.localSpec);
+        when(this.localSpec.getScore()).thenReturn(0.5);
+        when(this.localSpec.getComputationDate()).thenReturn(this.date);
+        when(this.localSpec.getComputingMethod()).thenReturn("local-omim");
+        PatientData<Object> result = this.mocker.getComponentUnderTest().load(this.patient);
+        Assert.assertEquals(0.5, (double) result.get("score"), 0.0);
+        Assert.assertEquals(this.dateStr, result.get("date"));
+        Assert.assertEquals("local-omim", result.get("server"));
+        verify(this.queue).schedule("data.P0000001");
     }
 
     @Test
     public void loadWithNoSpecificityDoesNothing() throws ComponentLookupException
     {
-        when(this.service.getSpecificity(this.patient)).thenReturn(null);
+        when(this.store.get(this.patient)).thenReturn(null);
         Assert.assertNull(this.mocker.getComponentUnderTest().load(this.patient));
+        verify(this.queue).schedule("data.P0000001");
     }
 
     @Test
@@ -193,7 +225,7 @@ public void saveDoesNothing() throws ComponentLookupException
     {
         this.mocker.getComponentUnderTest().save(this.patient);
         this.mocker.getComponentUnderTest().save(null);
-        Mockito.verifyZeroInteractions(this.service);
+        Mockito.verifyZeroInteractions(this.store, this.queue, this.localScorer);
     }
 
     @Test
@@ -20,10 +20,17 @@
 import org.phenotips.data.Feature;
 import org.phenotips.data.Patient;
 import org.phenotips.data.PatientSpecificityService;
+import org.phenotips.data.internal.SpecificityScoringQueue;
 
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
 
@@ -34,10 +41,15 @@
 import org.mockito.internal.matchers.CapturingMatcher;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class PatientSpecificityScriptServiceTest
 {
+    private static final String PATIENTS_QUERY =
+        "select doc.name from Document doc, doc.object(PhenoTips.PatientClass) as patient where doc.name <> :t";
+
     @Rule
     public final MockitoComponentMockingRule<PatientSpecificityScriptService> mocker =
         new MockitoComponentMockingRule<>(PatientSpecificityScriptService.class);
@@ -185,4 +197,37 @@ public void getScoreWithNullFeaturesDoesntFail() throws ComponentLookupException
         patient = patientCapture.getLastValue();
         Assert.assertTrue(patient.getFeatures().isEmpty());
     }
+
+    @Test
+    public void rescoreAllSchedulesAllPatientsForAdministrators() throws ComponentLookupException, QueryException
+    {
+        ContextualAuthorizationManager access = this.mocker.getInstance(ContextualAuthorizationManager.class);
+        when(access.hasAccess(Right.ADMIN)).thenReturn(true);
+        Query query = mock(Query.class);
+        when(this.mocker.getInstance(QueryManager.class).createQuery(PATIENTS_QUERY, Query.XWQL)).thenReturn(query);
+        when(query.<String>execute()).thenReturn(Arrays.asList("P0000001", "P0000002"));
+        Assert.assertEquals(2, this.mocker.getComponentUnderTest().rescoreAll());
+        verify(query).bindValue("t", "PatientTemplate");
+        SpecificityScoringQueue queue = this.mocker.getInstance(SpecificityScoringQueue.class);
+        verify(queue).schedule("P0000001");
+        verify(queue).schedule("P0000002");
+    }
+
+    @Test
+    public void rescoreAllWithQueryErrorReturnsMinusOne() throws ComponentLookupException, QueryException
+    {
+        ContextualAuthorizationManager access = this.mocker.getInstance(ContextualAuthorizationManager.class);
+        when(access.hasAccess(Right.ADMIN)).thenReturn(true);
+        when(this.mocker.getInstance(QueryManager.class).createQuery(PATIENTS_QUERY, Query.XWQL))
+            .thenThrow(new QueryException("failed", null, null));
+        Assert.assertEquals(-1, this.mocker.getComponentUnderTest().rescoreAll());
+    }
+
+    @Test
+    public void rescoreAllIsDeniedForNonAdministrators() throws ComponentLookupException
+    {
+        Assert.assertEquals(-1, this.mocker.getComponentUnderTest().rescoreAll());
+        verifyZeroInteractions(this.mocker.getInstance(QueryManager.class));
+        verifyZeroInteractions(this.mocker.getInstance(SpecificityScoringQueue.class));
+    }
 }
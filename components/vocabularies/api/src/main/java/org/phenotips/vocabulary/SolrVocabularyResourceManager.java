@@ -56,4 +56,33 @@
      * @return a Solr client for communication with the target core
      */
     SolrClient getSolrConnection();
+
+    /**
+     * Get a new, empty Solr core where a new version of the target vocabulary can be indexed without affecting the
+     * core currently in use, which keeps serving requests until {@link #replaceCore()} is called. Any leftover
+     * replacement core from a previous, interrupted reindex is discarded.
+     *
+     * @return a Solr client for communication with the replacement core, or {@code null} if a replacement core cannot
+     *         be created, in which case the current core must be reindexed in place
+     * @since 1.3M2
+     */
+    SolrClient getReplacementSolrConnection();
+
+    /**
+     * Atomically replace the core currently in use with the {@link #getReplacementSolrConnection() replacement core},
+     * and discard the old data. The {@link #getSolrConnection() Solr client} and the {@link #getTermCache() term
+     * cache} remain valid, but the cache must be cleared by the caller.
+     *
+     * @return {@code true} if the cores were swapped, {@code false} if there's no replacement core or swapping failed
+     * @since 1.3M2
+     */
+    boolean replaceCore();
+
+    /**
+     * Discard the {@link #getReplacementSolrConnection() replacement core}, if any, leaving the core currently in use
+     * untouched. Used when indexing a new version of the vocabulary failed.
+     *
+     * @since 1.3M2
+     */
+    void discardReplacementCore();
 }
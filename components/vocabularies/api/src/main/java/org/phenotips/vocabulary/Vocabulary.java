@@ -169,6 +169,19 @@
      */
     int reindex(String sourceUrl);
 
+    /**
+     * Update the indexed vocabulary to match the source from the specified location, applying only the terms that
+     * were added, changed or removed since the last update, and evicting only those terms from the cache. This is much
+     * cheaper than a full {@link #reindex(String) reindex} when new releases only change a small part of the
+     * vocabulary. Vocabularies that don't support incremental updates perform a full reindex instead.
+     *
+     * @param sourceUrl the URL to be indexed
+     * @return {@code 0} if the update succeeded, {@code 1} if writing to the Solr server failed, {@code 2} if the
+     *         specified URL is invalid
+     * @since 1.3M2
+     */
+    int update(String sourceUrl);
+
     /**
      * Get the default location where the sources for this vocabulary can be fetched from.
      *
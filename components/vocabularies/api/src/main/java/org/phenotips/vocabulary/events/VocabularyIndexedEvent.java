@@ -0,0 +1,74 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.events;
+
+import org.xwiki.observation.event.Event;
+import org.xwiki.stability.Unstable;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Notifies that the indexed data of a vocabulary changed, after a {@link org.phenotips.vocabulary.Vocabulary#reindex
+ * reindex} or an {@link org.phenotips.vocabulary.Vocabulary#update incremental update} completed. Components caching
+ * information derived from the index, such as the vocabulary version, should discard it when receiving this event.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Unstable
+public class VocabularyIndexedEvent implements Event
+{
+    /** The identifier of the affected vocabulary. */
+    private final String vocabulary;
+
+    /**
+     * Simple constructor passing all the required information.
+     *
+     * @param vocabulary the identifier of the vocabulary that was reindexed
+     */
+    public VocabularyIndexedEvent(String vocabulary)
+    {
+        this.vocabulary = vocabulary;
+    }
+
+    /** Default constructor, to be used for declaring the events a listener wants to observe. */
+    public VocabularyIndexedEvent()
+    {
+        this(null);
+    }
+
+    /**
+     * The vocabulary that was reindexed.
+     *
+     * @return the identifier of the vocabulary, or {@code null} for events matching any vocabulary
+     */
+    public String getVocabulary()
+    {
+        return this.vocabulary;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        if (otherEvent instanceof VocabularyIndexedEvent) {
+            return this.vocabulary == null
+                || StringUtils.equals(this.vocabulary, ((VocabularyIndexedEvent) otherEvent).getVocabulary());
+        }
+        return false;
+    }
+}
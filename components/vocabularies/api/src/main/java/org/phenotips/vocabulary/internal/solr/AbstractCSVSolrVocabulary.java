@@ -28,6 +28,7 @@
 import java.util.HashSet;
 import java.util.Iterator;
 
+import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.QueryResponse;
@@ -51,8 +52,11 @@ public abstract class AbstractCSVSolrVocabulary extends AbstractSolrVocabulary
 
     protected static final String SYMBOL_EXACT = "symbolExact^100";
 
+    /** The terms indexed by a running reindex, {@code null} when not reindexing. */
+    private Collection<SolrInputDocument> reindexed;
+
     /**
-     * The number of documents to be added and committed to Solr at a time.
+     * The number of documents to be added to Solr at a time.
      *
      * @return a positive integer, or a negative number to disable batching and pushing all terms in one go
      */
@@ -61,20 +65,73 @@ public abstract class AbstractCSVSolrVocabulary extends AbstractSolrVocabulary
     protected abstract Collection<SolrInputDocument> load(URL url);
 
     @Override
-    public int reindex(String sourceUrl)
+    public synchronized int reindex(String sourceUrl)
+    {
+        SolrClient target = startReindex();
+        if (target == null) {
+            return 1;
+        }
+        int result = finishReindex(target, index(sourceUrl, target));
+        this.reindexed = null;
+        return result;
+    }
+
+    @Override
+    protected void indexReplaced(boolean complete)
+    {
+        indexChanged(complete ? this.reindexed : null);
+    }
+
+    @Override
+    public synchronized int update(String sourceUrl)
     {
-        this.clear();
-        return this.index(sourceUrl);
+        Collection<SolrInputDocument> data = null;
+        try {
+            data = load(new URL(sourceUrl));
+        } catch (MalformedURLException e) {
+            return 2;
+        }
+        if (data == null) {
+            return 2;
+        }
+        IncrementalUpdate delta;
+        try {
+            delta = new IncrementalUpdate(this.externalServicesAccess.getSolrConnection(), getSolrDocsPerBatch(),
+                getContentHashFile());
+        } catch (SolrServerException | SolrException | IOException ex) {
+            this.logger.warn("Failed to read the indexed ontology: {}", ex.getMessage());
+            return 1;
+        }
+        try {
+            for (SolrInputDocument item : data) {
+                delta.add(item);
+            }
+            invalidate(delta.finish());
+            indexChanged(data);
+            notifyIndexChanged();
+            this.logger.info("Updated [{}]: {}", getCoreName(), delta);
+            return 0;
+        } catch (SolrServerException | IOException ex) {
+            this.logger.warn("Failed to update ontology: {}", ex.getMessage());
+        }
+        if (!delta.abort()) {
+            // Some changes may have been applied already
+            this.externalServicesAccess.getTermCache().removeAll();
+            indexChanged(null);
+            notifyIndexChanged();
+        }
+        return 1;
     }
 
     /**
-     * Add an ontology to the index.
+     * Add an ontology to the index. The new terms are added in batches, and committed all at once at the end.
      *
      * @param sourceUrl the URL to be indexed
+     * @param target the Solr core where the ontology must be indexed
      * @return {@code 0} if the indexing succeeded, {@code 1} if writing to the Solr server failed, {@code 2} if the
      *         specified URL is invalid
      */
-    protected int index(String sourceUrl)
+    protected int index(String sourceUrl, SolrClient target)
     {
         Collection<SolrInputDocument> data = null;
         try {
@@ -92,7 +149,7 @@ protected int index(String sourceUrl)
             while (dataIterator.hasNext()) {
                 /* Resetting when the batch fills */
                 if (batchCounter == getSolrDocsPerBatch()) {
-                    commitTerms(termBatch);
+                    target.add(termBatch);
                     termBatch = new HashSet<>();
                     batchCounter = 0;
                 }
@@ -100,7 +157,10 @@ protected int index(String sourceUrl)
                 termBatch.add(item);
                 batchCounter++;
             }
-            commitTerms(termBatch);
+            target.add(termBatch);
+            target.commit();
+            // Derived structures are only refreshed once the new data is in use
+            this.reindexed = data;
             return 0;
         } catch (SolrServerException ex) {
             this.logger.warn("Failed to index ontology: {}", ex.getMessage());
@@ -112,30 +172,17 @@ protected int index(String sourceUrl)
         return 1;
     }
 
-    protected void commitTerms(Collection<SolrInputDocument> batch)
-        throws SolrServerException, IOException, OutOfMemoryError
-    {
-        this.externalServicesAccess.getSolrConnection().add(batch);
-        this.externalServicesAccess.getSolrConnection().commit();
-        this.externalServicesAccess.getTermCache().removeAll();
-    }
-
     /**
-     * Delete all the data in the Solr index.
+     * Called after the indexed data changed, so that subclasses can refresh any structure derived from it. Does nothing
+     * by default.
      *
-     * @return {@code 0} if the command was successful, {@code 1} otherwise
+     * @param data all the terms now in the index, or {@code null} if the index is in an unknown state, and derived
+     *            structures should be reloaded from Solr when needed
+     * @since 1.3M2
      */
-    protected int clear()
+    protected void indexChanged(Collection<SolrInputDocument> data)
     {
-        try {
-            this.externalServicesAccess.getSolrConnection().deleteByQuery("*:*");
-            return 0;
-        } catch (SolrServerException ex) {
-            this.logger.error("SolrServerException while clearing the Solr index", ex);
-        } catch (IOException ex) {
-            this.logger.error("IOException while clearing the Solr index", ex);
-        }
-        return 1;
+        // Nothing to do by default
     }
 
     protected VocabularyTerm requestTerm(String queryString, String phraseFields)
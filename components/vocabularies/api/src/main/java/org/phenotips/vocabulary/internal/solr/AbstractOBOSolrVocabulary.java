@@ -19,18 +19,22 @@
 
 import org.phenotips.obo2solr.ParameterPreparer;
 import org.phenotips.obo2solr.SolrUpdateGenerator;
+import org.phenotips.obo2solr.TermConsumer;
 import org.phenotips.obo2solr.TermData;
 import org.phenotips.vocabulary.VocabularyTerm;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.QueryResponse;
@@ -54,8 +58,35 @@ public abstract class AbstractOBOSolrVocabulary extends AbstractSolrVocabulary
 
     protected static final String VERSION_FIELD_NAME = "version";
 
+    /** The number of documents to fetch at once when loading the vocabulary structure from the index. */
+    private static final int GRAPH_PAGE_SIZE = 10000;
+
+    /** How long to wait before loading a structure from the index again after a failure, in milliseconds. */
+    private static final long STRUCTURE_RETRY_DELAY = TimeUnit.MINUTES.toMillis(10);
+
+    /** The compiled vocabulary structure, {@code null} until it is first needed. */
+    private volatile OntologyGraph graph;
+
+    /** When loading the vocabulary structure last failed, {@code 0} if it didn't. */
+    private volatile long graphFailure;
+
+    /** The index of alternative and obsolete identifiers, {@code null} until it is first needed. */
+    private volatile AlternativeIdIndex alternativeIds;
+
+    /** When loading the alternative identifiers last failed, {@code 0} if it didn't. */
+    private volatile long alternativeIdsFailure;
+
+    /**
+     * Guards loading and replacing the compiled structures. This isn't the vocabulary itself, which stays locked for
+     * the whole duration of a reindex or update, so that lookups only wait for the structures being loaded.
+     */
+    private final Object structureLock = new Object();
+
+    /** The structures compiled by a running reindex, {@code null} when not reindexing. */
+    private CompiledStructures reindexed;
+
     /**
-     * The number of documents to be added and committed to Solr at a time.
+     * The number of documents to be added to Solr at a time.
      *
      * @return a positive integer, or a negative number to disable batching and pushing all terms in one go
      */
@@ -64,100 +95,328 @@ public abstract class AbstractOBOSolrVocabulary extends AbstractSolrVocabulary
     @Override
     public VocabularyTerm getTerm(String id)
     {
+        AlternativeIdIndex index = getAlternativeIds();
+        String currentId = index != null ? index.resolve(id) : null;
+        if (currentId != null) {
+            return super.getTerm(currentId);
+        }
         VocabularyTerm result = super.getTerm(id);
-        if (result == null) {
+        if (result == null && index == null) {
+            // The index of alternative identifiers isn't available, ask Solr
             Map<String, String> queryParameters = new HashMap<>();
             queryParameters.put(ALTERNATIVE_ID_FIELD_NAME, id);
             List<VocabularyTerm> results = search(queryParameters);
             if (results != null && !results.isEmpty()) {
-                result = search(queryParameters).iterator().next();
+                result = results.get(0);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<VocabularyTerm> getTerms(Collection<String> ids)
+    {
+        AlternativeIdIndex index = getAlternativeIds();
+        if (index == null || index.size() == 0) {
+            return super.getTerms(ids);
+        }
+        List<String> currentIds = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            currentIds.add(StringUtils.defaultString(index.resolve(id), id));
+        }
+        return super.getTerms(currentIds);
+    }
+
+    /**
+     * The index resolving alternative identifiers and identifiers of obsolete terms to the identifier of the current
+     * term, built while indexing, or loaded from Solr the first time it is needed.
+     *
+     * @return the index, or {@code null} if it couldn't be loaded recently, in which case alternative identifiers are
+     *         resolved with Solr queries until the next retry
+     */
+    private AlternativeIdIndex getAlternativeIds()
+    {
+        AlternativeIdIndex result = this.alternativeIds;
+        if (result == null && !isBackingOff(this.alternativeIdsFailure)) {
+            synchronized (this.structureLock) {
+                result = this.alternativeIds;
+                if (result == null && !isBackingOff(this.alternativeIdsFailure)) {
+                    result = loadAlternativeIds();
+                    this.alternativeIds = result;
+                    this.alternativeIdsFailure = result == null ? System.currentTimeMillis() : 0;
+                }
             }
         }
         return result;
     }
 
     @Override
-    public int reindex(String sourceUrl)
+    public long getDistance(String fromTermId, String toTermId)
     {
-        this.clear();
-        return this.index(sourceUrl);
+        OntologyGraph crtGraph = getGraph();
+        if (crtGraph != null && crtGraph.contains(fromTermId) && crtGraph.contains(toTermId)) {
+            return crtGraph.getDistance(fromTermId, toTermId);
+        }
+        return super.getDistance(fromTermId, toTermId);
+    }
+
+    /**
+     * Whether this vocabulary should maintain an {@link OntologyGraph in-memory compiled structure}, used for
+     * computing ancestors and distances without querying Solr. This is only worth it for vocabularies that are heavily
+     * used in structural computations, so it is disabled by default.
+     *
+     * @return {@code true} if the structure should be compiled, {@code false} otherwise
+     */
+    protected boolean useCompiledGraph()
+    {
+        return false;
+    }
+
+    @Override
+    protected OntologyGraph getGraph()
+    {
+        if (!useCompiledGraph()) {
+            return null;
+        }
+        OntologyGraph result = this.graph;
+        if (result == null && !isBackingOff(this.graphFailure)) {
+            synchronized (this.structureLock) {
+                result = this.graph;
+                if (result == null && !isBackingOff(this.graphFailure)) {
+                    result = loadGraph();
+                    this.graph = result;
+                    // Until the next retry, structural queries are answered by Solr
+                    this.graphFailure = result == null ? System.currentTimeMillis() : 0;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isBackingOff(long failure)
+    {
+        return failure > 0 && System.currentTimeMillis() - failure < STRUCTURE_RETRY_DELAY;
+    }
+
+    @Override
+    public long warmUp()
+    {
+        // Compile the structure first, it is cheaper and more useful than the individual terms
+        getGraph();
+        getAlternativeIds();
+        return super.warmUp();
+    }
+
+    @Override
+    public synchronized int reindex(String sourceUrl)
+    {
+        SolrClient target = startReindex();
+        if (target == null) {
+            return 1;
+        }
+        int result = finishReindex(target, index(sourceUrl, target));
+        this.reindexed = null;
+        return result;
+    }
+
+    @Override
+    protected void indexReplaced(boolean complete)
+    {
+        synchronized (this.structureLock) {
+            this.graphFailure = 0;
+            this.alternativeIdsFailure = 0;
+            if (complete && this.reindexed != null) {
+                this.graph = this.reindexed.graph;
+                this.alternativeIds = this.reindexed.alternativeIds;
+            } else {
+                // The index is in an unknown state, reload the structure from Solr when it is needed again
+                this.graph = null;
+                this.alternativeIds = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized int update(String sourceUrl)
+    {
+        String realOntologyUrl = StringUtils.defaultIfBlank(sourceUrl, getDefaultSourceLocation());
+        final OntologyGraph.Builder graphBuilder = useCompiledGraph() ? OntologyGraph.builder() : null;
+        final PrefixSuggester.Builder suggestions = suggesterBuilder();
+        final AlternativeIdIndex.Builder alternatives = AlternativeIdIndex.builder();
+        final IncrementalUpdate delta;
+        try {
+            delta = new IncrementalUpdate(this.externalServicesAccess.getSolrConnection(), getSolrDocsPerBatch(),
+                getContentHashFile());
+        } catch (SolrServerException | SolrException | IOException ex) {
+            this.logger.warn("Failed to read the indexed ontology: {}", ex.getMessage());
+            return 1;
+        }
+        try {
+            int count = new SolrUpdateGenerator().transform(realOntologyUrl, new HashMap<String, Double>(),
+                new TermConsumer()
+                {
+                    @Override
+                    public void accept(TermData term) throws IOException
+                    {
+                        SolrInputDocument doc = toDocument(term);
+                        try {
+                            delta.add(doc);
+                        } catch (SolrServerException ex) {
+                            throw new IOException(ex.getMessage(), ex);
+                        }
+                        addSuggestion(suggestions, doc);
+                        addAlternativeIds(alternatives, term);
+                        if (graphBuilder != null) {
+                            graphBuilder.add(term.getId(), term.getParentIds());
+                        }
+                    }
+                });
+            if (count <= 0) {
+                return 2;
+            }
+            invalidate(delta.finish());
+            synchronized (this.structureLock) {
+                this.graphFailure = 0;
+                this.alternativeIdsFailure = 0;
+                if (graphBuilder != null) {
+                    this.graph = graphBuilder.build();
+                }
+                this.alternativeIds = alternatives.build();
+            }
+            setSuggester(suggestions);
+            notifyIndexChanged();
+            this.logger.info("Updated [{}]: {}", getCoreName(), delta);
+            return 0;
+        } catch (SolrServerException | IOException ex) {
+            this.logger.warn("Failed to update ontology: {}", ex.getMessage());
+        }
+        if (!delta.abort()) {
+            // Some changes may have been applied already
+            this.externalServicesAccess.getTermCache().removeAll();
+            synchronized (this.structureLock) {
+                this.graphFailure = 0;
+                this.alternativeIdsFailure = 0;
+                this.graph = null;
+                this.alternativeIds = null;
+            }
+            setSuggester(null);
+            notifyIndexChanged();
+        }
+        return 1;
     }
 
     /**
-     * Add a vocabulary to the index.
+     * Add a vocabulary to the index. The new terms are added in batches, and committed all at once at the end.
      *
      * @param sourceUrl the address from where to get the vocabulary source file
+     * @param target the Solr core where the vocabulary must be indexed
      * @return {@code 0} if the indexing succeeded, {@code 1} if writing to the Solr server failed, {@code 2} if the
      *         specified URL is invalid
      */
-    protected int index(String sourceUrl)
+    protected int index(String sourceUrl, SolrClient target)
     {
         String realOntologyUrl = StringUtils.defaultIfBlank(sourceUrl, getDefaultSourceLocation());
 
         SolrUpdateGenerator generator = new SolrUpdateGenerator();
         Map<String, Double> fieldSelection = new HashMap<>();
-        Map<String, TermData> data = generator.transform(realOntologyUrl, fieldSelection);
-        if (data == null || data.isEmpty()) {
-            return 2;
-        }
+        BatchingTermConsumer consumer = new BatchingTermConsumer(target);
         try {
-            Collection<SolrInputDocument> termBatch = new HashSet<>();
-            Iterator<Map.Entry<String, TermData>> dataIterator = data.entrySet().iterator();
-            int batchCounter = 0;
-            while (dataIterator.hasNext()) {
-                /* Resetting when the batch fills */
-                if (batchCounter == getSolrDocsPerBatch()) {
-                    commitTerms(termBatch);
-                    termBatch = new HashSet<>();
-                    batchCounter = 0;
-                }
-                Map.Entry<String, TermData> item = dataIterator.next();
-                SolrInputDocument doc = new SolrInputDocument();
-                for (Map.Entry<String, Collection<String>> property : item.getValue().entrySet()) {
-                    String name = property.getKey();
-                    for (String value : property.getValue()) {
-                        doc.addField(name, value, ParameterPreparer.DEFAULT_BOOST.floatValue());
-                    }
-                }
-                termBatch.add(doc);
-                batchCounter++;
+            if (generator.transform(realOntologyUrl, fieldSelection, consumer) <= 0) {
+                return 2;
             }
-            commitTerms(termBatch);
+            consumer.flush();
+            target.commit();
+            // Compiled now, but only published once the new data is in use
+            this.reindexed = new CompiledStructures(consumer);
+            prepareSuggester(consumer.suggestions);
             return 0;
         } catch (SolrServerException ex) {
             this.logger.warn("Failed to index ontology: {}", ex.getMessage());
         } catch (IOException ex) {
             this.logger.warn("Failed to communicate with the Solr server while indexing ontology: {}", ex.getMessage());
-        } catch (OutOfMemoryError ex) {
-            this.logger.warn("Failed to add terms to the Solr. Ran out of memory. {}", ex.getMessage());
         }
         return 1;
     }
 
-    protected void commitTerms(Collection<SolrInputDocument> batch)
-        throws SolrServerException, IOException, OutOfMemoryError
+    /**
+     * Compile the vocabulary structure from the Solr index, fetching only the identifiers and the direct parents of all
+     * the indexed terms, in pages.
+     *
+     * @return the compiled graph, or {@code null} if accessing the index failed
+     */
+    private OntologyGraph loadGraph()
     {
-        this.externalServicesAccess.getSolrConnection().add(batch);
-        this.externalServicesAccess.getSolrConnection().commit();
-        this.externalServicesAccess.getTermCache().removeAll();
+        long startTime = System.currentTimeMillis();
+        OntologyGraph.Builder builder = OntologyGraph.builder();
+        SolrQuery query = new SolrQuery("*:*");
+        query.setFields(ID_FIELD_NAME, TermData.PARENT_FIELD_NAME);
+        query.setSort(ID_FIELD_NAME, SolrQuery.ORDER.asc);
+        query.setRows(GRAPH_PAGE_SIZE);
+        try {
+            long total = 1;
+            for (int start = 0; start < total; start += GRAPH_PAGE_SIZE) {
+                query.setStart(start);
+                SolrDocumentList page = this.externalServicesAccess.getSolrConnection().query(query).getResults();
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                total = page.getNumFound();
+                for (SolrDocument doc : page) {
+                    builder.add((String) doc.getFirstValue(ID_FIELD_NAME),
+                        toParentIds(doc.getFieldValues(TermData.PARENT_FIELD_NAME)));
+                }
+            }
+            OntologyGraph result = builder.build();
+            this.logger.debug("Compiled the structure of [{}] with {} terms in {}ms", getCoreName(), result.size(),
+                System.currentTimeMillis() - startTime);
+            return result;
+        } catch (SolrServerException | SolrException | IOException ex) {
+            this.logger.warn("Failed to load the vocabulary structure: {}", ex.getMessage());
+        }
+        return null;
     }
 
     /**
-     * Delete all the data in the Solr index.
+     * Load the index of alternative and obsolete identifiers from the Solr index.
      *
-     * @return {@code 0} if the command was successful, {@code 1} otherwise
+     * @return the loaded index, or {@code null} if accessing the index failed
      */
-    protected int clear()
+    private AlternativeIdIndex loadAlternativeIds()
     {
+        long startTime = System.currentTimeMillis();
         try {
-            this.externalServicesAccess.getSolrConnection().deleteByQuery("*:*");
-            return 0;
-        } catch (SolrServerException ex) {
-            this.logger.error("SolrServerException while clearing the Solr index", ex);
-        } catch (IOException ex) {
-            this.logger.error("IOException while clearing the Solr index", ex);
+            AlternativeIdIndex result = AlternativeIdIndex.load(this.externalServicesAccess.getSolrConnection());
+            this.logger.debug("Loaded {} alternative identifiers of [{}] in {}ms", result.size(), getCoreName(),
+                System.currentTimeMillis() - startTime);
+            return result;
+        } catch (SolrServerException | SolrException | IOException ex) {
+            this.logger.warn("Failed to load the alternative identifiers: {}", ex.getMessage());
         }
-        return 1;
+        return null;
+    }
+
+    private void addAlternativeIds(AlternativeIdIndex.Builder builder, TermData term)
+    {
+        builder.add(term.getId(), term.get(ALTERNATIVE_ID_FIELD_NAME), term.get(AlternativeIdIndex.REPLACED_BY_FIELD));
+    }
+
+    /**
+     * Extract the parent identifiers from {@code is_a} values, which may contain the parent name as well, for example
+     * {@code HP:0000118 ! Phenotypic abnormality}.
+     *
+     * @param values the raw {@code is_a} values, may be {@code null}
+     * @return the identifiers of the parents, or {@code null} if there are no parents
+     */
+    private Collection<String> toParentIds(Collection<?> values)
+    {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        Collection<String> result = new LinkedList<>();
+        for (Object value : values) {
+            result.add(StringUtils.substringBefore(String.valueOf(value), " "));
+        }
+        return result;
     }
 
     @Override
@@ -183,4 +442,82 @@ public String getVersion()
         }
         return null;
     }
+
+    private SolrInputDocument toDocument(TermData term)
+    {
+        SolrInputDocument doc = new SolrInputDocument();
+        for (Map.Entry<String, Collection<String>> property : term.entrySet()) {
+            String name = property.getKey();
+            for (String value : property.getValue()) {
+                doc.addField(name, value, ParameterPreparer.DEFAULT_BOOST.floatValue());
+            }
+        }
+        return doc;
+    }
+
+    /** The structures compiled while reindexing, waiting for the new data to be in use. */
+    private static final class CompiledStructures
+    {
+        private final OntologyGraph graph;
+
+        private final AlternativeIdIndex alternativeIds;
+
+        CompiledStructures(BatchingTermConsumer consumer)
+        {
+            this.graph = consumer.graphBuilder != null ? consumer.graphBuilder.build() : null;
+            this.alternativeIds = consumer.alternatives.build();
+        }
+    }
+
+    /**
+     * Receives terms as they are parsed and pushes them to Solr in batches of {@link #getSolrDocsPerBatch()}
+     * documents, so that the whole vocabulary never has to be held in memory. The vocabulary structure, if
+     * {@link #useCompiledGraph() needed}, the index of alternative identifiers and the prefix index are compiled along
+     * the way. Nothing is committed, that is left to the caller.
+     */
+    private final class BatchingTermConsumer implements TermConsumer
+    {
+        private final OntologyGraph.Builder graphBuilder = useCompiledGraph() ? OntologyGraph.builder() : null;
+
+        private final PrefixSuggester.Builder suggestions = suggesterBuilder();
+
+        private final AlternativeIdIndex.Builder alternatives = AlternativeIdIndex.builder();
+
+        private final SolrClient target;
+
+        private Collection<SolrInputDocument> batch = new LinkedList<>();
+
+        BatchingTermConsumer(SolrClient target)
+        {
+            this.target = target;
+        }
+
+        @Override
+        public void accept(TermData term) throws IOException
+        {
+            /* Resetting when the batch fills */
+            if (this.batch.size() == getSolrDocsPerBatch()) {
+                try {
+                    flush();
+                } catch (SolrServerException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+            }
+            SolrInputDocument doc = toDocument(term);
+            this.batch.add(doc);
+            addSuggestion(this.suggestions, doc);
+            addAlternativeIds(this.alternatives, term);
+            if (this.graphBuilder != null) {
+                this.graphBuilder.add(term.getId(), term.getParentIds());
+            }
+        }
+
+        void flush() throws SolrServerException, IOException
+        {
+            if (!this.batch.isEmpty()) {
+                this.target.add(this.batch);
+                this.batch = new LinkedList<>();
+            }
+        }
+    }
 }
@@ -20,24 +20,39 @@
 import org.phenotips.vocabulary.SolrVocabularyResourceManager;
 import org.phenotips.vocabulary.Vocabulary;
 import org.phenotips.vocabulary.VocabularyTerm;
+import org.phenotips.vocabulary.events.VocabularyIndexedEvent;
 
+import org.xwiki.cache.Cache;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
+import org.xwiki.observation.ObservationManager;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.util.ClientUtils;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
@@ -56,6 +71,20 @@ public abstract class AbstractSolrVocabulary implements Vocabulary, Initializabl
     /** The name of the ID field. */
     protected static final String ID_FIELD_NAME = "id";
 
+    /** The maximum number of terms to request from Solr at once, when fetching several terms by their identifiers. */
+    private static final int MAX_TERMS_PER_QUERY = 500;
+
+    /** The number of documents to fetch at once when warming up the term cache. */
+    private static final int WARM_UP_PAGE_SIZE = 1000;
+
+    /** The number of documents to fetch at once when loading the suggestion index from Solr. */
+    private static final int SUGGESTER_PAGE_SIZE = 1000;
+
+    /** How long to wait before loading the suggestion index from Solr again after a failure, in milliseconds. */
+    private static final long SUGGESTER_RETRY_DELAY = TimeUnit.MINUTES.toMillis(10);
+
+    private static final String SPELLCHECK = "spellcheck";
+
     /**
      * Object used to mark in the cache that a term doesn't exist, since null means that the cache doesn't contain the
      * requested entry.
@@ -70,6 +99,32 @@ public abstract class AbstractSolrVocabulary implements Vocabulary, Initializabl
     @Inject
     protected SolrVocabularyResourceManager externalServicesAccess;
 
+    /** Provides access to the permanent directory, where the content hashes used for incremental updates are kept. */
+    @Inject
+    private Environment environment;
+
+    /** Notifies other components when the indexed data changes. */
+    @Inject
+    private ObservationManager observationManager;
+
+    /** Strings shared between the cached terms, replaced when the vocabulary is reindexed. */
+    private volatile StringPool stringPool = new StringPool();
+
+    /** The in-memory prefix index used for suggestions, {@code null} until it is first needed. */
+    private volatile PrefixSuggester suggester;
+
+    /** When loading the suggestion index last failed, {@code 0} if it didn't. */
+    private volatile long suggesterFailure;
+
+    /**
+     * Guards loading and replacing the prefix index. This isn't the vocabulary itself, which stays locked for the whole
+     * duration of a reindex, so that searches only wait for the prefix index being loaded.
+     */
+    private final Object suggesterLock = new Object();
+
+    /** The prefix index compiled while reindexing, published only once the new data is in use. */
+    private PrefixSuggester pendingSuggester;
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -92,11 +147,13 @@ public VocabularyTerm getTerm(String id)
     {
         VocabularyTerm result = this.externalServicesAccess.getTermCache().get(id);
         if (result == null) {
+            long startTime = System.nanoTime();
             ModifiableSolrParams params = new ModifiableSolrParams();
             params.set(CommonParams.Q, ID_FIELD_NAME + ':' + ClientUtils.escapeQueryChars(id));
             SolrDocumentList allResults = this.search(params);
+            recordLoad(startTime);
             if (allResults != null && !allResults.isEmpty()) {
-                result = new SolrVocabularyTerm(allResults.get(0), this);
+                result = createCachedTerm(allResults.get(0));
                 this.externalServicesAccess.getTermCache().set(id, result);
             } else {
                 this.externalServicesAccess.getTermCache().set(id, EMPTY_MARKER);
@@ -108,30 +165,98 @@ public VocabularyTerm getTerm(String id)
     @Override
     public Set<VocabularyTerm> getTerms(Collection<String> ids)
     {
-        Set<VocabularyTerm> result = new LinkedHashSet<VocabularyTerm>();
-        StringBuilder query = new StringBuilder("id:(");
+        Map<String, VocabularyTerm> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
         for (String id : ids) {
             VocabularyTerm cachedTerm = this.externalServicesAccess.getTermCache().get(id);
-            if (cachedTerm != null) {
-                if (cachedTerm != EMPTY_MARKER) {
-                    result.add(cachedTerm);
-                }
-            } else {
-                query.append(ClientUtils.escapeQueryChars(id));
-                query.append(' ');
+            if (cachedTerm == null) {
+                missing.add(id);
+            } else if (cachedTerm != EMPTY_MARKER) {
+                found.put(id, cachedTerm);
             }
         }
-        query.append(')');
 
-        // There's at least one more term not found in the cache
-        if (query.length() > 5) {
-            for (SolrDocument doc : this.search(SolrQueryUtils.transformQueryToSolrParams(query.toString()))) {
-                result.add(new SolrVocabularyTerm(doc, this));
+        // Fetch the terms not found in the cache in chunks, so that the query stays reasonably small
+        for (int start = 0; start < missing.size(); start += MAX_TERMS_PER_QUERY) {
+            fetchTerms(missing.subList(start, Math.min(start + MAX_TERMS_PER_QUERY, missing.size())), found);
+        }
+
+        // Preserve the order of the requested identifiers
+        Set<VocabularyTerm> result = new LinkedHashSet<>();
+        for (String id : ids) {
+            VocabularyTerm term = found.get(id);
+            if (term != null) {
+                result.add(term);
             }
         }
         return result;
     }
 
+    /**
+     * Fetch a batch of terms from the Solr index, and store both the found terms and the missing terms in the cache.
+     *
+     * @param ids the identifiers of the terms to fetch, should not be more than {@link #MAX_TERMS_PER_QUERY}
+     * @param found where to put the fetched terms, keyed by their identifier
+     */
+    private void fetchTerms(Collection<String> ids, Map<String, VocabularyTerm> found)
+    {
+        StringBuilder query = new StringBuilder(ID_FIELD_NAME).append(":(");
+        for (String id : ids) {
+            query.append(ClientUtils.escapeQueryChars(id));
+            query.append(' ');
+        }
+        query.append(')');
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.Q, query.toString());
+        params.set(CommonParams.START, 0);
+        // Explicitly request all the terms, otherwise the default page size applies
+        params.set(CommonParams.ROWS, ids.size());
+        params.set(SPELLCHECK, false);
+        long startTime = System.nanoTime();
+        SolrDocumentList docs = this.search(params);
+        recordLoad(startTime);
+        if (docs == null) {
+            // The query failed, don't mark the terms as missing
+            return;
+        }
+        Cache<VocabularyTerm> cache = this.externalServicesAccess.getTermCache();
+        for (SolrDocument doc : docs) {
+            VocabularyTerm term = createCachedTerm(doc);
+            cache.set(term.getId(), term);
+            found.put(term.getId(), term);
+        }
+        for (String id : ids) {
+            if (!found.containsKey(id)) {
+                cache.set(id, EMPTY_MARKER);
+            }
+        }
+    }
+
+    /**
+     * Create the term to be stored in the term cache, using a compact representation which shares the repeated values
+     * with the other cached terms.
+     *
+     * @param doc the Solr document representing the term
+     * @return the compact term
+     */
+    private VocabularyTerm createCachedTerm(SolrDocument doc)
+    {
+        return new CompactVocabularyTerm(doc, this, this.stringPool);
+    }
+
+    /**
+     * Record in the cache statistics the time spent loading terms missing from the cache.
+     *
+     * @param startTime when loading started, as returned by {@link System#nanoTime()}
+     */
+    private void recordLoad(long startTime)
+    {
+        Cache<VocabularyTerm> cache = this.externalServicesAccess.getTermCache();
+        if (cache instanceof MonitoredTermCache) {
+            ((MonitoredTermCache) cache).recordLoad(System.nanoTime() - startTime);
+        }
+    }
+
     @Override
     public List<VocabularyTerm> search(Map<String, ?> fieldValues)
     {
@@ -168,12 +293,128 @@ public int reindex(String sourceUrl)
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public int update(String sourceUrl)
+    {
+        return reindex(sourceUrl);
+    }
+
     @Override
     public String getVersion()
     {
         return null;
     }
 
+    /**
+     * The file where the content hashes of the indexed terms are stored, used for {@link #update(String) incremental
+     * updates}.
+     *
+     * @return a file in the permanent directory, or {@code null} if the permanent directory isn't available
+     */
+    protected File getContentHashFile()
+    {
+        File permanentDirectory = this.environment.getPermanentDirectory();
+        if (permanentDirectory == null) {
+            return null;
+        }
+        return new File(permanentDirectory, "vocabularies/" + getCoreName() + ".hashes");
+    }
+
+    /**
+     * Evict specific terms from the term cache, after they were changed in the index.
+     *
+     * @param ids the identifiers of the changed terms
+     */
+    protected void invalidate(Collection<String> ids)
+    {
+        Cache<VocabularyTerm> cache = this.externalServicesAccess.getTermCache();
+        for (String id : ids) {
+            cache.remove(id);
+        }
+    }
+
+    /**
+     * Prepare the Solr core where a new version of the vocabulary will be indexed. Whenever possible, this is a
+     * separate replacement core, so that lookups and suggestions keep using the complete current data until the new
+     * data is fully indexed; otherwise, the current core is cleared and reindexed in place.
+     *
+     * @return the client to use for indexing, or {@code null} if the index could not be prepared
+     * @see #finishReindex(SolrClient, int)
+     */
+    protected SolrClient startReindex()
+    {
+        SolrClient replacement = this.externalServicesAccess.getReplacementSolrConnection();
+        if (replacement != null) {
+            return replacement;
+        }
+        SolrClient current = this.externalServicesAccess.getSolrConnection();
+        try {
+            current.deleteByQuery("*:*");
+            return current;
+        } catch (SolrServerException | IOException ex) {
+            this.logger.error("Failed to clear the Solr index: {}", ex.getMessage(), ex);
+        }
+        return null;
+    }
+
+    /**
+     * Complete a reindex started with {@link #startReindex()}. If indexing succeeded, the replacement core, if any,
+     * replaces the current core, otherwise it is discarded. The term cache is cleared if the data in use changed.
+     *
+     * @param target the client returned by {@link #startReindex()}, where the new data was indexed and committed
+     * @param status the outcome of indexing the new data, {@code 0} if it succeeded
+     * @return the final outcome of the reindex, {@code 0} if the new data is in use, {@code 1} if swapping the cores
+     *         failed, or the failed indexing status otherwise
+     */
+    protected int finishReindex(SolrClient target, int status)
+    {
+        PrefixSuggester newSuggester = this.pendingSuggester;
+        this.pendingSuggester = null;
+        if (target != this.externalServicesAccess.getSolrConnection()) {
+            if (status != 0) {
+                this.externalServicesAccess.discardReplacementCore();
+                return status;
+            } else if (!this.externalServicesAccess.replaceCore()) {
+                return 1;
+            }
+        }
+        // The data changed, even if only partially for a failed in-place reindex
+        synchronized (this.suggesterLock) {
+            this.suggester = status == 0 ? newSuggester : null;
+            this.suggesterFailure = 0;
+        }
+        indexReplaced(status == 0);
+        this.externalServicesAccess.getTermCache().removeAll();
+        this.stringPool = new StringPool();
+        notifyIndexChanged();
+        return status;
+    }
+
+    /**
+     * Called by {@link #finishReindex(SolrClient, int)} when the data in use changed, right after the replacement core
+     * was swapped in or the core was reindexed in place, and before other components are notified. Subclasses should
+     * publish here, and not earlier, the structures compiled while indexing, so that they always match the data being
+     * served. Does nothing by default.
+     *
+     * @param complete {@code true} if the new data was fully indexed, {@code false} if reindexing in place failed and
+     *            the index is in an unknown state, in which case the derived structures should be reloaded from Solr
+     *            when needed
+     */
+    protected void indexReplaced(boolean complete)
+    {
+        // Nothing to do by default
+    }
+
+    /**
+     * Notify other components that the indexed data changed, so that any information they cached about this
+     * vocabulary, such as its version, is discarded. Called automatically by {@link #finishReindex(SolrClient, int)},
+     * and must be called by any other method that changes the index, such as {@link #update(String)}.
+     */
+    protected void notifyIndexChanged()
+    {
+        this.observationManager.notify(new VocabularyIndexedEvent(getIdentifier()), this);
+    }
+
     @Override
     public long getDistance(String fromTermId, String toTermId)
     {
@@ -195,6 +436,276 @@ public List<VocabularyTerm> search(String input, int maxResults, String sort, St
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Preload the terms of this vocabulary into the term cache, fetching all the indexed documents in pages. Loading
+     * stops once the cache is full, so that warming up doesn't just evict the terms loaded previously.
+     *
+     * @return the number of terms that were loaded into the cache
+     * @since 1.3M2
+     */
+    public long warmUp()
+    {
+        Cache<VocabularyTerm> cache = this.externalServicesAccess.getTermCache();
+        long limit = Long.MAX_VALUE;
+        if (cache instanceof MonitoredTermCache) {
+            limit = ((MonitoredTermCache) cache).getMaxEntries();
+        }
+        long startTime = System.currentTimeMillis();
+        long loaded = 0;
+        SolrQuery query = new SolrQuery("*:*");
+        query.setSort(ID_FIELD_NAME, SolrQuery.ORDER.asc);
+        query.setRows(WARM_UP_PAGE_SIZE);
+        try {
+            long total = 1;
+            for (int start = 0; start < total && loaded < limit; start += WARM_UP_PAGE_SIZE) {
+                query.setStart(start);
+                SolrDocumentList page = this.externalServicesAccess.getSolrConnection().query(query).getResults();
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                total = page.getNumFound();
+                for (SolrDocument doc : page) {
+                    VocabularyTerm term = createCachedTerm(doc);
+                    if (term.getId() != null && loaded < limit) {
+                        cache.set(term.getId(), term);
+                        ++loaded;
+                    }
+                }
+                this.logger.info("Warming up [{}]: loaded {} of {} terms", getCoreName(), loaded, total);
+            }
+        } catch (SolrServerException | SolrException | IOException ex) {
+            this.logger.warn("Failed to warm up [{}]: {}", getCoreName(), ex.getMessage());
+        }
+        this.logger.info("Warmed up [{}] with {} terms in {}ms", getCoreName(), loaded,
+            System.currentTimeMillis() - startTime);
+        return loaded;
+    }
+
+    /**
+     * Whether this vocabulary should maintain an in-memory {@link PrefixSuggester prefix index} of its terms, used for
+     * answering plain autocomplete searches without querying Solr. Disabled by default.
+     *
+     * @return {@code true} if the prefix index should be maintained, {@code false} otherwise
+     */
+    protected boolean useSuggester()
+    {
+        return false;
+    }
+
+    /**
+     * Whether a term should be part of the prefix index. This should match the default filter used for searching,
+     * since suggestions completed from memory must be terms that Solr could also return.
+     *
+     * @param doc the indexed term
+     * @return {@code true} if the term can be suggested, {@code false} otherwise
+     */
+    protected boolean isSuggestible(SolrInputDocument doc)
+    {
+        return true;
+    }
+
+    /**
+     * The weights used for ranking the matches found in the prefix index. They should mirror the field boosts used by
+     * the text searches of this vocabulary, so that searches answered from memory are ranked like the ones answered
+     * by Solr.
+     *
+     * @return the weights to use, the {@link PrefixSuggester.Weights#DEFAULT default weights} unless overridden
+     */
+    protected PrefixSuggester.Weights getSuggesterWeights()
+    {
+        return PrefixSuggester.Weights.DEFAULT;
+    }
+
+    /**
+     * Create a builder for a new prefix index, to be filled while indexing the vocabulary.
+     *
+     * @return an empty builder, or {@code null} if this vocabulary doesn't {@link #useSuggester() use} a prefix index
+     */
+    protected PrefixSuggester.Builder suggesterBuilder()
+    {
+        return useSuggester() ? PrefixSuggester.builder(getSuggesterWeights()) : null;
+    }
+
+    /**
+     * Add a term to a prefix index being built, if it is {@link #isSuggestible suggestible}.
+     *
+     * @param builder the builder returned by {@link #suggesterBuilder()}, may be {@code null}
+     * @param doc the term being indexed
+     */
+    protected void addSuggestion(PrefixSuggester.Builder builder, SolrInputDocument doc)
+    {
+        if (builder != null && isSuggestible(doc)) {
+            builder.add(doc);
+        }
+    }
+
+    /**
+     * Compile the prefix index for the data being reindexed. It only replaces the current prefix index once the new
+     * data is in use, see {@link #finishReindex(SolrClient, int)}.
+     *
+     * @param builder the filled builder, or {@code null} to reload the prefix index from Solr when it is needed again
+     */
+    protected void prepareSuggester(PrefixSuggester.Builder builder)
+    {
+        this.pendingSuggester = builder == null ? null : builder.build();
+    }
+
+    /**
+     * Replace the prefix index, after the vocabulary was updated in place.
+     *
+     * @param builder the filled builder, or {@code null} to reload the prefix index from Solr when it is needed again
+     */
+    protected void setSuggester(PrefixSuggester.Builder builder)
+    {
+        PrefixSuggester newSuggester = builder == null ? null : builder.build();
+        synchronized (this.suggesterLock) {
+            this.suggester = newSuggester;
+            this.suggesterFailure = 0;
+        }
+    }
+
+    /**
+     * Answer a search from the in-memory prefix index, without querying Solr. This only works for plain searches,
+     * since custom sorts and filters can't be applied to the prefix index, and only when the prefix index finds enough
+     * terms: when it finds fewer than requested, the input is probably misspelled or worded differently, and the
+     * search must be answered by Solr, which also does fuzzy matching and spellchecking.
+     *
+     * @param input the text typed so far
+     * @param maxResults the maximum number of results to return
+     * @param sort an optional custom sort, which can't be applied to the prefix index
+     * @param customFilter an optional custom filter, which can't be applied to the prefix index
+     * @return the best matching terms, most relevant first, or {@code null} if the search must be answered by Solr
+     */
+    protected List<VocabularyTerm> suggest(String input, int maxResults, String sort, String customFilter)
+    {
+        if (maxResults <= 0 || StringUtils.isNotBlank(sort) || StringUtils.isNotBlank(customFilter)) {
+            return null;
+        }
+        PrefixSuggester crtSuggester = getSuggester();
+        if (crtSuggester == null) {
+            return null;
+        }
+        List<String> ids = crtSuggester.suggest(input, maxResults);
+        if (ids.size() < maxResults) {
+            return null;
+        }
+        List<VocabularyTerm> result = new ArrayList<>(getTerms(ids));
+        // The prefix index may list terms that are no longer in the Solr index
+        return result.size() < maxResults ? null : result;
+    }
+
+    /**
+     * Complete the results of a search with matches from the in-memory prefix index, when Solr found fewer terms than
+     * requested. This only happens when the search couldn't be {@link #suggest answered} from the prefix index alone.
+     * The ranking computed by Solr is always kept: prefix matches are only appended after the Solr results, skipping
+     * the terms already found. Only plain searches are completed, since custom sorts and filters can't be applied to
+     * the prefix index.
+     *
+     * @param results the terms found by Solr, in their ranked order, where the prefix matches will be appended
+     * @param input the text typed so far
+     * @param maxResults the maximum number of results to return
+     * @param sort an optional custom sort, which can't be applied to the prefix index
+     * @param customFilter an optional custom filter, which can't be applied to the prefix index
+     */
+    protected void addSuggestions(List<VocabularyTerm> results, String input, int maxResults, String sort,
+        String customFilter)
+    {
+        if (results.size() >= maxResults || StringUtils.isNotBlank(sort) || StringUtils.isNotBlank(customFilter)) {
+            return;
+        }
+        PrefixSuggester crtSuggester = getSuggester();
+        if (crtSuggester == null) {
+            return;
+        }
+        Set<String> found = new HashSet<>();
+        for (VocabularyTerm term : results) {
+            found.add(term.getId());
+        }
+        List<String> missing = new ArrayList<>();
+        for (String id : crtSuggester.suggest(input, maxResults + found.size())) {
+            if (found.size() + missing.size() >= maxResults) {
+                break;
+            }
+            if (!found.contains(id)) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            results.addAll(getTerms(missing));
+        }
+    }
+
+    private PrefixSuggester getSuggester()
+    {
+        if (!useSuggester()) {
+            return null;
+        }
+        PrefixSuggester result = this.suggester;
+        if (result == null && !isSuggesterBackingOff()) {
+            synchronized (this.suggesterLock) {
+                result = this.suggester;
+                if (result == null && !isSuggesterBackingOff()) {
+                    result = loadSuggester();
+                    this.suggester = result;
+                    // Until the next retry, searches are answered by Solr alone
+                    this.suggesterFailure = result == null ? System.currentTimeMillis() : 0;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isSuggesterBackingOff()
+    {
+        return this.suggesterFailure > 0 && System.currentTimeMillis() - this.suggesterFailure < SUGGESTER_RETRY_DELAY;
+    }
+
+    /**
+     * Build the prefix index from the terms already in the Solr index, fetching all the indexed documents in pages.
+     *
+     * @return the prefix index, or {@code null} if accessing the index failed
+     */
+    private PrefixSuggester loadSuggester()
+    {
+        long startTime = System.currentTimeMillis();
+        PrefixSuggester.Builder builder = PrefixSuggester.builder(getSuggesterWeights());
+        SolrQuery query = new SolrQuery("*:*");
+        query.setSort(ID_FIELD_NAME, SolrQuery.ORDER.asc);
+        query.setRows(SUGGESTER_PAGE_SIZE);
+        try {
+            long total = 1;
+            for (int start = 0; start < total; start += SUGGESTER_PAGE_SIZE) {
+                query.setStart(start);
+                SolrDocumentList page = this.externalServicesAccess.getSolrConnection().query(query).getResults();
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                total = page.getNumFound();
+                for (SolrDocument doc : page) {
+                    addSuggestion(builder, ClientUtils.toSolrInputDocument(doc));
+                }
+            }
+            PrefixSuggester result = builder.build();
+            this.logger.debug("Built the suggestion index of [{}] with {} terms in {}ms", getCoreName(), result.size(),
+                System.currentTimeMillis() - startTime);
+            return result;
+        } catch (SolrServerException | SolrException | IOException ex) {
+            this.logger.warn("Failed to load the suggestion index: {}", ex.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Get the compiled {@code is_a} structure of this vocabulary, used for answering structural queries without
+     * accessing the Solr index.
+     *
+     * @return the compiled graph, or {@code null} if this vocabulary doesn't maintain one
+     */
+    protected OntologyGraph getGraph()
+    {
+        return null;
+    }
+
     /**
      * Perform a search, falling back on the suggested spellchecked query if the original query fails to return any
      * results.
@@ -209,7 +720,8 @@ protected SolrDocumentList search(SolrParams params)
 
     /**
      * Perform a search, falling back on the suggested spellchecked query if the original query fails to return any
-     * results.
+     * results. If the Solr core has the {@link SpellcheckedResultsComponent} enabled, the spellchecked query is run in
+     * the same request, otherwise a second request is sent.
      *
      * @param params the Solr parameters to use, should contain at least a value for the "q" parameter
      * @param queryOptions extra options to include in the query; these override the default values, but don't override
@@ -223,7 +735,8 @@ protected SolrDocumentList search(SolrParams params, Map<String, String> queryOp
             this.logger.debug("Searching [{}] with query [{}]", getCoreName(), enhancedParams);
             QueryResponse response = this.externalServicesAccess.getSolrConnection().query(enhancedParams);
             SolrDocumentList results = response.getResults();
-            if (response.getSpellCheckResponse() != null && !response.getSpellCheckResponse().isCorrectlySpelled()
+            if (!isSpellcheckHandled(response) && response.getSpellCheckResponse() != null
+                && !response.getSpellCheckResponse().isCorrectlySpelled()
                 && StringUtils.isNotEmpty(response.getSpellCheckResponse().getCollatedResult())) {
                 enhancedParams =
                     SolrQueryUtils.applySpellcheckSuggestion(enhancedParams, response.getSpellCheckResponse()
@@ -242,6 +755,18 @@ protected SolrDocumentList search(SolrParams params, Map<String, String> queryOp
         return null;
     }
 
+    /**
+     * Check if the spellchecked query was already tried by Solr, while processing the original query.
+     *
+     * @param response the response to the original query
+     * @return {@code true} if the response comes from a core where {@link SpellcheckedResultsComponent} is enabled
+     */
+    private boolean isSpellcheckHandled(QueryResponse response)
+    {
+        return response.getResponse() != null
+            && response.getResponse().get(SpellcheckedResultsComponent.COLLATED_RESULTS) != null;
+    }
+
     /**
      * Get the number of entries that match a specific Lucene query.
      *
@@ -0,0 +1,207 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+
+/**
+ * Immutable in-memory index resolving the identifiers that are no longer in use, alternative identifiers of merged
+ * terms ({@code alt_id}) and obsolete terms replaced by another term ({@code replaced_by}), to the identifier of the
+ * current term, so that legacy identifiers can be resolved without querying Solr. Chains of replacements are followed
+ * when the index is built, so each identifier is resolved in one step.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+final class AlternativeIdIndex
+{
+    /** The name of the field holding the older identifiers of a term. */
+    static final String ALTERNATIVE_ID_FIELD = "alt_id";
+
+    /** The name of the field holding the identifier of the term replacing an obsolete term. */
+    static final String REPLACED_BY_FIELD = "replaced_by";
+
+    private static final String ID_FIELD = "id";
+
+    /** The number of documents to fetch at once when loading the index from Solr. */
+    private static final int PAGE_SIZE = 10000;
+
+    /** Legacy identifier to current identifier. */
+    private final Map<String, String> currentIds;
+
+    private AlternativeIdIndex(Map<String, String> currentIds)
+    {
+        this.currentIds = currentIds;
+    }
+
+    /**
+     * Create a new builder, to which terms can be added one at a time.
+     *
+     * @return a new empty builder
+     */
+    static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Build the index from the terms already in a Solr index, fetching only the identifier fields of all the indexed
+     * documents, in pages.
+     *
+     * @param client the Solr core holding the terms
+     * @return the compiled index
+     * @throws SolrServerException if querying Solr fails
+     * @throws IOException if communicating with Solr fails
+     */
+    static AlternativeIdIndex load(SolrClient client) throws SolrServerException, IOException
+    {
+        Builder builder = builder();
+        SolrQuery query = new SolrQuery("*:*");
+        query.setFields(ID_FIELD, ALTERNATIVE_ID_FIELD, REPLACED_BY_FIELD);
+        query.setSort(ID_FIELD, SolrQuery.ORDER.asc);
+        query.setRows(PAGE_SIZE);
+        long total = 1;
+        for (int start = 0; start < total; start += PAGE_SIZE) {
+            query.setStart(start);
+            QueryResponse response = client.query(query);
+            SolrDocumentList page = response != null ? response.getResults() : null;
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            total = page.getNumFound();
+            for (SolrDocument doc : page) {
+                Object id = doc.getFirstValue(ID_FIELD);
+                if (id != null) {
+                    builder.add(String.valueOf(id), doc.getFieldValues(ALTERNATIVE_ID_FIELD),
+                        doc.getFieldValues(REPLACED_BY_FIELD));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Find the current identifier of a legacy term.
+     *
+     * @param id the identifier to resolve
+     * @return the identifier of the current term, or {@code null} if the identifier is not an alternative identifier
+     *         or the identifier of a replaced term
+     */
+    String resolve(String id)
+    {
+        return this.currentIds.get(id);
+    }
+
+    /**
+     * The number of legacy identifiers that can be resolved.
+     *
+     * @return a positive number, or {@code 0} if the index is empty
+     */
+    int size()
+    {
+        return this.currentIds.size();
+    }
+
+    /**
+     * Incremental builder for an {@link AlternativeIdIndex}, useful when the terms are read one at a time, for example
+     * while indexing.
+     */
+    static final class Builder
+    {
+        private final Map<String, String> alternativeIds = new HashMap<>();
+
+        private final Map<String, String> replacements = new HashMap<>();
+
+        private Builder()
+        {
+            // Use AlternativeIdIndex#builder()
+        }
+
+        /**
+         * Add a term to the index.
+         *
+         * @param id the identifier of the term
+         * @param alternativeIds the older identifiers of the term, may be {@code null}
+         * @param replacedBy the identifier of the term replacing this term, if this is an obsolete term, may be
+         *            {@code null} or empty
+         * @return this builder, for chaining
+         */
+        Builder add(String id, Collection<?> alternativeIds, Collection<?> replacedBy)
+        {
+            if (alternativeIds != null) {
+                for (Object alternativeId : alternativeIds) {
+                    this.alternativeIds.put(String.valueOf(alternativeId), id);
+                }
+            }
+            if (replacedBy != null && !replacedBy.isEmpty()) {
+                this.replacements.put(id, String.valueOf(replacedBy.iterator().next()));
+            }
+            return this;
+        }
+
+        /**
+         * Compile the index with the terms added so far.
+         *
+         * @return the immutable index
+         */
+        AlternativeIdIndex build()
+        {
+            Map<String, String> result = new HashMap<>();
+            for (Map.Entry<String, String> entry : this.alternativeIds.entrySet()) {
+                result.put(entry.getKey(), follow(entry.getKey(), entry.getValue()));
+            }
+            // Replacements take precedence, obsolete terms may still list the identifiers they once replaced
+            for (Map.Entry<String, String> entry : this.replacements.entrySet()) {
+                result.put(entry.getKey(), follow(entry.getKey(), entry.getValue()));
+            }
+            return new AlternativeIdIndex(result.isEmpty() ? Collections.<String, String>emptyMap() : result);
+        }
+
+        /**
+         * Follow a chain of replacements, in case the replacement of an obsolete term is also obsolete.
+         *
+         * @param legacyId the identifier being resolved
+         * @param id the identifier that directly replaces it
+         * @return the last term in the chain, or the last term before the chain loops back to the legacy identifier
+         */
+        private String follow(String legacyId, String id)
+        {
+            String result = id;
+            // Stop after as many steps as there are replacements, longer chains must be cycles
+            for (int i = 0; i < this.replacements.size(); ++i) {
+                String next = this.replacements.get(result);
+                if (next == null || next.equals(legacyId)) {
+                    break;
+                }
+                result = next;
+            }
+            return result;
+        }
+    }
+}
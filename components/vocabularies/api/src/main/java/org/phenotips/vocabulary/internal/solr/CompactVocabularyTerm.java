@@ -0,0 +1,297 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.common.SolrDocument;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Compact implementation for {@link VocabularyTerm}, meant for terms kept in memory for a long time, such as the terms
+ * in the term cache. Instead of the whole Solr document, only two flat arrays are kept, one with the field names and
+ * one with the field values. Field names, as well as the identifiers and the other short values that repeat across
+ * terms, are shared between all the terms of a vocabulary through a {@link StringPool}. The related terms are taken
+ * from the {@link OntologyGraph compiled structure} of the vocabulary when available, otherwise they are only looked
+ * up when they are first needed.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public final class CompactVocabularyTerm implements VocabularyTerm
+{
+    private static final String ID = "id";
+
+    private static final String NAME = "name";
+
+    private static final String DEF = "def";
+
+    private static final String TERM_CATEGORY = "term_category";
+
+    private static final String IS_A = "is_a";
+
+    /**
+     * Only short values, like identifiers, categories and symbols, are shared; longer values, like names and
+     * definitions, are rarely repeated, so adding them to the pool would only waste memory.
+     */
+    private static final int MAX_POOLED_LENGTH = 32;
+
+    /** The names of the stored fields, shared. */
+    private final String[] fields;
+
+    /**
+     * The values of the stored fields, in the same order as {@link #fields}. Multi-valued fields are stored as arrays,
+     * which must never be modified.
+     */
+    private final Object[] values;
+
+    /** The owner vocabulary. */
+    private final Vocabulary vocabulary;
+
+    /** The parents of this term, {@code null} until they are needed. */
+    private volatile Set<VocabularyTerm> parents;
+
+    /** The ancestors of this term, {@code null} until they are needed. */
+    private volatile Set<VocabularyTerm> ancestors;
+
+    /** The ancestors of this term and the term itself, {@code null} until they are needed. */
+    private volatile Set<VocabularyTerm> ancestorsAndSelf;
+
+    /**
+     * Constructor that copies the data from a Solr document.
+     *
+     * @param doc the Solr document representing this term
+     * @param vocabulary the owner vocabulary
+     * @param pool the pool holding the strings shared between the terms of the vocabulary
+     */
+    CompactVocabularyTerm(SolrDocument doc, Vocabulary vocabulary, StringPool pool)
+    {
+        this.vocabulary = vocabulary;
+        this.fields = new String[doc.size()];
+        this.values = new Object[doc.size()];
+        Object id = doc.getFirstValue(ID);
+        int i = 0;
+        for (Map.Entry<String, Object> field : doc) {
+            this.fields[i] = pool.get(field.getKey());
+            if (field.getValue() instanceof Collection) {
+                Collection<?> items = (Collection<?>) field.getValue();
+                if (TERM_CATEGORY.equals(field.getKey()) && items.contains(id)) {
+                    // Same as SolrVocabularyTerm, the term isn't its own ancestor
+                    items = new ArrayList<Object>(items);
+                    items.remove(id);
+                }
+                Object[] array = new Object[items.size()];
+                int j = 0;
+                for (Object item : items) {
+                    array[j++] = share(item, pool);
+                }
+                this.values[i] = array;
+            } else {
+                this.values[i] = share(field.getValue(), pool);
+            }
+            ++i;
+        }
+    }
+
+    @Override
+    public String getId()
+    {
+        return (String) getFirstValue(ID);
+    }
+
+    @Override
+    public String getName()
+    {
+        return (String) getFirstValue(NAME);
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return (String) getFirstValue(DEF);
+    }
+
+    @Override
+    public Set<VocabularyTerm> getParents()
+    {
+        Set<VocabularyTerm> fromGraph = GraphTermSet.getParents(getId(), this.vocabulary);
+        if (fromGraph != null) {
+            return fromGraph;
+        }
+        Set<VocabularyTerm> result = this.parents;
+        if (result == null) {
+            result = new LazySolrTermSet(getValues(IS_A), this.vocabulary);
+            this.parents = result;
+        }
+        return result;
+    }
+
+    @Override
+    public Set<VocabularyTerm> getAncestors()
+    {
+        Set<VocabularyTerm> fromGraph = GraphTermSet.getAncestors(getId(), this.vocabulary);
+        if (fromGraph != null) {
+            return fromGraph;
+        }
+        Set<VocabularyTerm> result = this.ancestors;
+        if (result == null) {
+            result = new LazySolrTermSet(getValues(TERM_CATEGORY), this.vocabulary);
+            this.ancestors = result;
+        }
+        return result;
+    }
+
+    @Override
+    public Set<VocabularyTerm> getAncestorsAndSelf()
+    {
+        Set<VocabularyTerm> fromGraph = GraphTermSet.getAncestorsAndSelf(getId(), this.vocabulary);
+        if (fromGraph != null) {
+            return fromGraph;
+        }
+        Set<VocabularyTerm> result = this.ancestorsAndSelf;
+        if (result == null) {
+            Collection<Object> ids = new ArrayList<Object>(getValues(TERM_CATEGORY));
+            ids.add(getId());
+            result = new LazySolrTermSet(ids, this.vocabulary);
+            this.ancestorsAndSelf = result;
+        }
+        return result;
+    }
+
+    @Override
+    public Object get(String name)
+    {
+        int index = indexOf(name);
+        if (index < 0) {
+            return null;
+        }
+        Object value = this.values[index];
+        return value instanceof Object[] ? Collections.unmodifiableList(Arrays.asList((Object[]) value)) : value;
+    }
+
+    @Override
+    public Vocabulary getVocabulary()
+    {
+        return this.vocabulary;
+    }
+
+    @Override
+    public long getDistanceTo(VocabularyTerm other)
+    {
+        return SolrVocabularyTerm.getDistance(this, other);
+    }
+
+    @Override
+    public JSONObject toJSON()
+    {
+        JSONObject json = new JSONObject();
+        for (int i = 0; i < this.fields.length; ++i) {
+            if (this.values[i] instanceof Object[]) {
+                JSONArray array = new JSONArray();
+                for (Object item : (Object[]) this.values[i]) {
+                    array.put(item);
+                }
+                json.put(this.fields[i], array);
+            } else {
+                json.put(this.fields[i], this.values[i]);
+            }
+        }
+        return json;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + this.getId() + "] " + this.getName();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        String id = getId();
+        return (id != null ? id.hashCode() : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof VocabularyTerm)) {
+            return false;
+        }
+        return StringUtils.equals(getId(), ((VocabularyTerm) obj).getId());
+    }
+
+    private int indexOf(String name)
+    {
+        // Terms only have a few fields, a linear scan is faster than hashing
+        for (int i = 0; i < this.fields.length; ++i) {
+            if (this.fields[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object getFirstValue(String name)
+    {
+        int index = indexOf(name);
+        if (index < 0) {
+            return null;
+        }
+        Object value = this.values[index];
+        if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            return array.length > 0 ? array[0] : null;
+        }
+        return value;
+    }
+
+    private Collection<Object> getValues(String name)
+    {
+        int index = indexOf(name);
+        if (index < 0) {
+            return Collections.emptyList();
+        }
+        Object value = this.values[index];
+        if (value instanceof Object[]) {
+            return Arrays.asList((Object[]) value);
+        }
+        return Collections.singletonList(value);
+    }
+
+    private static Object share(Object value, StringPool pool)
+    {
+        if (value instanceof String && ((String) value).length() <= MAX_POOLED_LENGTH) {
+            return pool.get((String) value);
+        }
+        return value;
+    }
+}
@@ -23,17 +23,44 @@
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
+import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.environment.Environment;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.CoreDescriptor;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrResourceLoader;
+import org.slf4j.Logger;
 
 /**
  * Default implementation of {@link SolrCoreContainerHandler}, looking for the Solr configuration in a subdirectory of
- * the permanent directory called {@code solr}.
+ * the permanent directory called {@code solr}. Only the cores marked with {@code loadOnStartup=true}, the default, are
+ * loaded when the container starts; the others, such as the vocabulary cores, are loaded the first time they are
+ * accessed. Transient cores are kept open only while they fit in the {@code transientCacheSize} configured in
+ * {@code solr.xml}; the least recently used core is unloaded when the limit is exceeded, and loaded back on the next
+ * access. Solr only limits the number of open transient cores, so the limit can be configured in
+ * {@code xwiki.properties} either directly, as {@code phenotips.vocabularies.solr.transientCacheSize}, or as a memory
+ * budget in megabytes, as {@code phenotips.vocabularies.solr.transientCacheMemory}. A memory budget is turned into the
+ * largest number of cores that fit in it at startup, using the on-disk size of the transient core indexes as an
+ * estimate of the memory they need; indexes that are still empty or that grow later are only accounted for at the next
+ * restart. When both settings are present, the smaller limit wins.
  *
  * @version $Id$
  * @since 1.2M4 (under a different package since 1.0M13)
@@ -41,10 +68,28 @@
 @Component
 public class DefaultSolrCoreContainerHandler implements SolrCoreContainerHandler, Initializable, Disposable
 {
+    /** The setting holding the maximum number of transient cores to keep open at the same time. */
+    private static final String TRANSIENT_CACHE_SIZE_SETTING = "phenotips.vocabularies.solr.transientCacheSize";
+
+    /** The setting holding the memory budget, in megabytes, for the transient cores kept open at the same time. */
+    private static final String TRANSIENT_CACHE_MEMORY_SETTING = "phenotips.vocabularies.solr.transientCacheMemory";
+
+    /** The file marking a core directory and holding its settings. */
+    private static final String CORE_PROPERTIES = "core.properties";
+
     /** Provides access to the configured permanent directory. */
     @Inject
     private Environment environment;
 
+    /** Provides access to the transient cores settings. */
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
+    /** Logging helper object. */
+    @Inject
+    private Logger logger;
+
     /** The initialized core container. */
     private CoreContainer cores;
 
@@ -52,8 +97,116 @@ public class DefaultSolrCoreContainerHandler implements SolrCoreContainerHandler
     public void initialize()
     {
         File solrHome = new File(this.environment.getPermanentDirectory().getAbsolutePath(), "solr");
-        this.cores = new CoreContainer(solrHome.getAbsolutePath());
+        // Values available for substitution in solr.xml
+        Properties properties = new Properties();
+        int transientCacheSize = getTransientCacheSize(solrHome);
+        if (transientCacheSize < Integer.MAX_VALUE) {
+            properties.setProperty(TRANSIENT_CACHE_SIZE_SETTING, String.valueOf(transientCacheSize));
+        }
+        SolrResourceLoader loader = new SolrResourceLoader(solrHome.getAbsolutePath(), null, properties);
+        long start = System.currentTimeMillis();
+        this.cores = new LazyLoadingCoreContainer(loader, this.logger);
         this.cores.load();
+        this.logger.info("Loaded the Solr cores {} in {}ms, the other cores will be loaded when first needed",
+            this.cores.getCoreNames(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Compute the maximum number of transient cores to keep open, from the configured core count and memory budget.
+     *
+     * @param solrHome the Solr home directory, holding one subdirectory for each core
+     * @return the maximum number of open transient cores, {@link Integer#MAX_VALUE} if there's no limit
+     */
+    int getTransientCacheSize(File solrHome)
+    {
+        int result = Integer.MAX_VALUE;
+        Integer size = this.configuration.getProperty(TRANSIENT_CACHE_SIZE_SETTING, Integer.class);
+        if (size != null && size > 0) {
+            result = size;
+        }
+        Long memory = this.configuration.getProperty(TRANSIENT_CACHE_MEMORY_SETTING, Long.class);
+        if (memory != null && memory > 0) {
+            int fitting = countFittingCores(solrHome, memory * 1024 * 1024);
+            this.logger.info("Up to {} transient Solr cores fit in the {}MB memory budget", fitting, memory);
+            result = Math.min(result, fitting);
+        }
+        return result;
+    }
+
+    /**
+     * Count how many transient cores are sure to fit in the memory budget, assuming that the largest ones are open.
+     * At least one core is always allowed, otherwise a core larger than the budget could never be used.
+     *
+     * @param solrHome the Solr home directory, holding one subdirectory for each core
+     * @param budget the memory budget, in bytes
+     * @return the number of transient cores fitting in the budget
+     */
+    private int countFittingCores(File solrHome, long budget)
+    {
+        List<Long> sizes = new ArrayList<>();
+        File[] coreDirs = solrHome.listFiles();
+        if (coreDirs != null) {
+            for (File coreDir : coreDirs) {
+                Properties coreProperties = readCoreProperties(new File(coreDir, CORE_PROPERTIES));
+                if (coreProperties != null
+                    && Boolean.parseBoolean(coreProperties.getProperty(CoreDescriptor.CORE_TRANSIENT))) {
+                    String dataDir = coreProperties.getProperty(CoreDescriptor.CORE_DATADIR, "data");
+                    sizes.add(getSize(coreDir.toPath().resolve(dataDir)));
+                }
+            }
+        }
+        Collections.sort(sizes, Collections.reverseOrder());
+        int result = 0;
+        long total = 0;
+        for (long size : sizes) {
+            total += size;
+            if (total > budget) {
+                break;
+            }
+            ++result;
+        }
+        // All the transient cores fit, no need to unload any of them
+        if (result == sizes.size()) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(result, 1);
+    }
+
+    private Properties readCoreProperties(File file)
+    {
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties result = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            result.load(in);
+        } catch (IOException ex) {
+            this.logger.warn("Failed to read the Solr core settings from [{}]: {}", file, ex.getMessage());
+            return null;
+        }
+        return result;
+    }
+
+    private long getSize(Path directory)
+    {
+        final long[] result = new long[1];
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                {
+                    result[0] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            this.logger.warn("Failed to compute the size of the Solr index [{}]: {}", directory, ex.getMessage());
+        }
+        return result[0];
     }
 
     @Override
@@ -67,4 +220,32 @@ public void dispose() throws ComponentLifecycleException
     {
         this.cores.shutdown();
     }
+
+    /**
+     * Core container reporting how long each core took to load, when it is loaded on demand.
+     */
+    private static final class LazyLoadingCoreContainer extends CoreContainer
+    {
+        private final Logger logger;
+
+        LazyLoadingCoreContainer(SolrResourceLoader loader, Logger logger)
+        {
+            super(loader);
+            this.logger = logger;
+        }
+
+        @Override
+        public SolrCore getCore(String name)
+        {
+            if (isLoaded(name)) {
+                return super.getCore(name);
+            }
+            long start = System.currentTimeMillis();
+            SolrCore result = super.getCore(name);
+            if (result != null) {
+                this.logger.info("Loaded the Solr core [{}] in {}ms", name, System.currentTimeMillis() - start);
+            }
+            return result;
+        }
+    }
 }
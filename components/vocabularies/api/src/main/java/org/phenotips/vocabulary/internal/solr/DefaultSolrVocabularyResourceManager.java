@@ -25,15 +25,25 @@
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+
+import java.lang.management.ManagementFactory;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.slf4j.Logger;
 
 /**
  * Default implementation for the {@link SolrVocabularyResourceManager} component.
@@ -45,9 +55,22 @@
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 public class DefaultSolrVocabularyResourceManager implements SolrVocabularyResourceManager
 {
+    /** Prefix for the term cache settings in {@code xwiki.properties}. */
+    private static final String CONFIGURATION_PREFIX = "phenotips.vocabularies.";
+
+    private static final String MAX_ENTRIES_SETTING = "cache.maxEntries";
+
+    private static final String TIME_TO_LIVE_SETTING = "cache.timeToLive";
+
+    /** The default maximum number of cached terms, enough to hold the whole HPO. */
+    private static final int DEFAULT_MAX_ENTRIES = 20000;
+
     /** @see #getSolrConnection() */
     private SolrClient core;
 
+    /** Manages the replacement core used for reindexing. */
+    private ReplacementSolrCore replacement;
+
     /** @see #getTermCache() */
     private Cache<VocabularyTerm> cache;
 
@@ -59,12 +82,33 @@ public class DefaultSolrVocabularyResourceManager implements SolrVocabularyResou
     @Inject
     private CacheManager cacheFactory;
 
+    /** Provides access to the term cache settings. */
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
+    /** Logging helper object. */
+    @Inject
+    private Logger logger;
+
     @Override
     public void initialize(String vocabularyName) throws InitializationException
     {
         try {
             this.core = new EmbeddedSolrServer(this.cores.getContainer(), vocabularyName);
-            this.cache = this.cacheFactory.createNewLocalCache(new CacheConfiguration());
+            this.replacement = new ReplacementSolrCore(this.cores.getContainer(), vocabularyName, this.logger);
+            int maxEntries = getCacheSetting(vocabularyName, MAX_ENTRIES_SETTING, DEFAULT_MAX_ENTRIES);
+            int timeToLive = getCacheSetting(vocabularyName, TIME_TO_LIVE_SETTING, 0);
+            LRUEvictionConfiguration evictionConfiguration = new LRUEvictionConfiguration(maxEntries);
+            if (timeToLive > 0) {
+                evictionConfiguration.setTimeToLive(timeToLive);
+            }
+            Cache<VocabularyTerm> actualCache =
+                this.cacheFactory.createNewLocalCache(new CacheConfiguration(evictionConfiguration));
+            MonitoredTermCache monitoredCache =
+                new MonitoredTermCache(actualCache, vocabularyName, maxEntries, timeToLive);
+            registerStatistics(vocabularyName, monitoredCache);
+            this.cache = monitoredCache;
         } catch (RuntimeException ex) {
             throw new InitializationException("Invalid Solr core: " + ex.getMessage());
         } catch (final CacheException ex) {
@@ -72,6 +116,49 @@ public void initialize(String vocabularyName) throws InitializationException
         }
     }
 
+    /**
+     * Read a term cache setting, first looking for a vocabulary-specific value, for example
+     * {@code phenotips.vocabularies.hpo.cache.maxEntries}, then for a global value, for example
+     * {@code phenotips.vocabularies.cache.maxEntries}.
+     *
+     * @param vocabularyName the name of the vocabulary being configured
+     * @param setting the name of the setting
+     * @param defaultValue the value to return if the setting isn't configured
+     * @return the configured value, or the default value
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T getCacheSetting(String vocabularyName, String setting, T defaultValue)
+    {
+        Class<T> type = (Class<T>) defaultValue.getClass();
+        T result = this.configuration.getProperty(CONFIGURATION_PREFIX + vocabularyName + '.' + setting, type);
+        if (result == null) {
+            result = this.configuration.getProperty(CONFIGURATION_PREFIX + setting, type);
+        }
+        return result == null ? defaultValue : result;
+    }
+
+    /**
+     * Expose the cache statistics as a JMX bean, replacing any previous bean registered for the same vocabulary.
+     *
+     * @param vocabularyName the name of the vocabulary whose cache is monitored
+     * @param statistics the statistics to expose
+     */
+    private void registerStatistics(String vocabularyName, TermCacheStatistics statistics)
+    {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name =
+                new ObjectName("org.phenotips.vocabulary:type=TermCache,name=" + ObjectName.quote(vocabularyName));
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new StandardMBean(statistics, TermCacheStatistics.class), name);
+        } catch (JMException ex) {
+            this.logger.warn("Failed to expose the term cache statistics for [{}]: {}", vocabularyName,
+                ex.getMessage());
+        }
+    }
+
     @Override
     public Cache<VocabularyTerm> getTermCache()
     {
@@ -83,4 +170,22 @@ public SolrClient getSolrConnection()
     {
         return this.core;
     }
+
+    @Override
+    public SolrClient getReplacementSolrConnection()
+    {
+        return this.replacement.create();
+    }
+
+    @Override
+    public boolean replaceCore()
+    {
+        return this.replacement.swap();
+    }
+
+    @Override
+    public void discardReplacementCore()
+    {
+        this.replacement.discard();
+    }
 }
@@ -0,0 +1,337 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.json.JSONObject;
+
+/**
+ * A read-only set of terms whose identifiers come from the {@link OntologyGraph compiled structure} of a vocabulary.
+ * Unlike {@link LazySolrTermSet}, iterating over this set doesn't load the terms from Solr: the returned terms only
+ * know their identifier, and answer structural queries (parents, ancestors, distance) using the same graph. The
+ * actual terms are only fetched from the vocabulary when other data, such as a name, is requested, and then all the
+ * terms of the set are fetched at once, since the other terms are usually needed as well.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+final class GraphTermSet extends AbstractSet<VocabularyTerm>
+{
+    /** The graph that the term indexes refer to. */
+    private final OntologyGraph graph;
+
+    /** The sorted graph indexes of the terms in this set, not including {@link #self}. */
+    private final int[] indexes;
+
+    /** The graph index of the term whose ancestors are included in this set along with itself, {@code -1} if none. */
+    private final int self;
+
+    /** The vocabulary owning all the terms in this set. */
+    private final Vocabulary vocabulary;
+
+    /** The full terms, by identifier, {@code null} until the data of one of them is needed. */
+    private volatile Map<String, VocabularyTerm> terms;
+
+    private GraphTermSet(OntologyGraph graph, int[] indexes, int self, Vocabulary vocabulary)
+    {
+        this.graph = graph;
+        this.indexes = indexes;
+        this.self = self;
+        this.vocabulary = vocabulary;
+    }
+
+    /**
+     * Get the parents of a term, as known by the compiled structure of its vocabulary.
+     *
+     * @param id the identifier of the term
+     * @param vocabulary the vocabulary owning the term
+     * @return the parents of the term, or {@code null} if the vocabulary doesn't have a compiled structure, or the
+     *         term isn't part of it
+     */
+    static Set<VocabularyTerm> getParents(String id, Vocabulary vocabulary)
+    {
+        OntologyGraph graph = getGraph(id, vocabulary);
+        return graph == null ? null
+            : new GraphTermSet(graph, graph.getParentIndexes(graph.indexOf(id)), -1, vocabulary);
+    }
+
+    /**
+     * Get the ancestors of a term, not including the term itself, as known by the compiled structure of its
+     * vocabulary.
+     *
+     * @param id the identifier of the term
+     * @param vocabulary the vocabulary owning the term
+     * @return the ancestors of the term, or {@code null} if the vocabulary doesn't have a compiled structure, or the
+     *         term isn't part of it
+     */
+    static Set<VocabularyTerm> getAncestors(String id, Vocabulary vocabulary)
+    {
+        OntologyGraph graph = getGraph(id, vocabulary);
+        return graph == null ? null
+            : new GraphTermSet(graph, graph.getAncestorIndexes(graph.indexOf(id)), -1, vocabulary);
+    }
+
+    /**
+     * Get the ancestors of a term, including the term itself, as known by the compiled structure of its vocabulary.
+     *
+     * @param id the identifier of the term
+     * @param vocabulary the vocabulary owning the term
+     * @return the ancestors of the term and the term itself, or {@code null} if the vocabulary doesn't have a compiled
+     *         structure, or the term isn't part of it
+     */
+    static Set<VocabularyTerm> getAncestorsAndSelf(String id, Vocabulary vocabulary)
+    {
+        OntologyGraph graph = getGraph(id, vocabulary);
+        if (graph == null) {
+            return null;
+        }
+        int index = graph.indexOf(id);
+        return new GraphTermSet(graph, graph.getAncestorIndexes(index), index, vocabulary);
+    }
+
+    private static OntologyGraph getGraph(String id, Vocabulary vocabulary)
+    {
+        if (id == null || !(vocabulary instanceof AbstractSolrVocabulary)) {
+            return null;
+        }
+        OntologyGraph graph = ((AbstractSolrVocabulary) vocabulary).getGraph();
+        return graph != null && graph.contains(id) ? graph : null;
+    }
+
+    @Override
+    public int size()
+    {
+        return this.indexes.length + (this.self >= 0 ? 1 : 0);
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        String id = null;
+        if (o instanceof String) {
+            id = (String) o;
+        } else if (o instanceof VocabularyTerm) {
+            id = ((VocabularyTerm) o).getId();
+        }
+        int index = this.graph.indexOf(id);
+        return index >= 0 && (index == this.self || Arrays.binarySearch(this.indexes, index) >= 0);
+    }
+
+    @Override
+    public Iterator<VocabularyTerm> iterator()
+    {
+        return new Iterator<VocabularyTerm>()
+        {
+            /** The term itself comes first, at position {@code -1}. */
+            private int position = GraphTermSet.this.self >= 0 ? -1 : 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.position < GraphTermSet.this.indexes.length;
+            }
+
+            @Override
+            public VocabularyTerm next()
+            {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int index = this.position < 0 ? GraphTermSet.this.self : GraphTermSet.this.indexes[this.position];
+                ++this.position;
+                return new GraphTerm(GraphTermSet.this.graph.getId(index));
+            }
+
+            @Override
+            public void remove()
+            {
+                // This is readonly, nothing can be removed
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Get the full term for one of the terms in this set, fetching all the terms of the set the first time.
+     *
+     * @param id the identifier of a term in this set
+     * @return the full term, or {@code null} if the vocabulary doesn't know it
+     */
+    private VocabularyTerm load(String id)
+    {
+        Map<String, VocabularyTerm> loaded = this.terms;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = this.terms;
+                if (loaded == null) {
+                    List<String> ids = new ArrayList<>(size());
+                    if (this.self >= 0) {
+                        ids.add(this.graph.getId(this.self));
+                    }
+                    for (int index : this.indexes) {
+                        ids.add(this.graph.getId(index));
+                    }
+                    loaded = new HashMap<>();
+                    for (VocabularyTerm term : this.vocabulary.getTerms(ids)) {
+                        if (term != null) {
+                            loaded.put(term.getId(), term);
+                        }
+                    }
+                    this.terms = loaded;
+                }
+            }
+        }
+        return loaded.get(id);
+    }
+
+    /**
+     * A term known only by its identifier, which loads the full term, along with the other terms of the set, when data
+     * not available in the compiled structure is requested.
+     */
+    private final class GraphTerm implements VocabularyTerm
+    {
+        private final String id;
+
+        GraphTerm(String id)
+        {
+            this.id = id;
+        }
+
+        @Override
+        public String getId()
+        {
+            return this.id;
+        }
+
+        @Override
+        public String getName()
+        {
+            VocabularyTerm crtTerm = load();
+            return crtTerm != null ? crtTerm.getName() : null;
+        }
+
+        @Override
+        public String getDescription()
+        {
+            VocabularyTerm crtTerm = load();
+            return crtTerm != null ? crtTerm.getDescription() : null;
+        }
+
+        @Override
+        public Set<VocabularyTerm> getParents()
+        {
+            Set<VocabularyTerm> result = GraphTermSet.getParents(this.id, GraphTermSet.this.vocabulary);
+            if (result == null) {
+                VocabularyTerm crtTerm = load();
+                result = crtTerm != null ? crtTerm.getParents() : Collections.<VocabularyTerm>emptySet();
+            }
+            return result;
+        }
+
+        @Override
+        public Set<VocabularyTerm> getAncestors()
+        {
+            Set<VocabularyTerm> result = GraphTermSet.getAncestors(this.id, GraphTermSet.this.vocabulary);
+            if (result == null) {
+                VocabularyTerm crtTerm = load();
+                result = crtTerm != null ? crtTerm.getAncestors() : Collections.<VocabularyTerm>emptySet();
+            }
+            return result;
+        }
+
+        @Override
+        public Set<VocabularyTerm> getAncestorsAndSelf()
+        {
+            Set<VocabularyTerm> result = GraphTermSet.getAncestorsAndSelf(this.id, GraphTermSet.this.vocabulary);
+            if (result == null) {
+                VocabularyTerm crtTerm = load();
+                result = crtTerm != null ? crtTerm.getAncestorsAndSelf() : Collections.<VocabularyTerm>emptySet();
+            }
+            return result;
+        }
+
+        @Override
+        public long getDistanceTo(VocabularyTerm other)
+        {
+            return SolrVocabularyTerm.getDistance(this, other);
+        }
+
+        @Override
+        public Object get(String name)
+        {
+            VocabularyTerm crtTerm = load();
+            return crtTerm != null ? crtTerm.get(name) : null;
+        }
+
+        @Override
+        public Vocabulary getVocabulary()
+        {
+            return GraphTermSet.this.vocabulary;
+        }
+
+        @Override
+        public JSONObject toJSON()
+        {
+            VocabularyTerm crtTerm = load();
+            return crtTerm != null ? crtTerm.toJSON() : new JSONObject();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "[" + this.id + "] " + this.getName();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.id.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof VocabularyTerm)) {
+                return false;
+            }
+            return StringUtils.equals(this.id, ((VocabularyTerm) obj).getId());
+        }
+
+        private VocabularyTerm load()
+        {
+            return GraphTermSet.this.load(this.id);
+        }
+    }
+}
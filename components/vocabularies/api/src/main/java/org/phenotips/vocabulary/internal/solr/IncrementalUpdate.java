@@ -0,0 +1,325 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+
+/**
+ * Applies a new version of a vocabulary to an existing index, touching only the terms that actually changed. A hash of
+ * the content of each indexed document is kept in a file next to the index; incoming documents whose hash matches the
+ * known one are skipped, new or different documents are added, and indexed documents missing from the new version are
+ * deleted. Everything is committed once, at the end.
+ * <p>
+ * The hashes aren't stored in the index itself, since all fields are copied into the full text search fields. The
+ * hash file records the version and the size of the index it describes, and it is ignored if it doesn't match the
+ * current index, for example after a full reindex, in which case all the documents are considered changed.
+ * </p>
+ * <p>
+ * Usage: create an instance, {@link #add(SolrInputDocument) add} all the documents of the new version, then call
+ * {@link #finish()}. Instances are not reusable and not thread safe.
+ * </p>
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public class IncrementalUpdate
+{
+    private static final String ID_FIELD = "id";
+
+    private static final String VERSION_FIELD = "version";
+
+    private static final String SEPARATOR = "\t";
+
+    /** The number of documents to fetch at once when loading the indexed identifiers. */
+    private static final int PAGE_SIZE = 10000;
+
+    private final SolrClient client;
+
+    private final int batchSize;
+
+    private final File hashFile;
+
+    /** The hashes of the indexed documents not yet seen in the new version, by document identifier. */
+    private final Map<String, String> indexed = new HashMap<>();
+
+    /** The hashes of all the documents in the new version, by document identifier. */
+    private final Map<String, String> hashes = new HashMap<>();
+
+    /** The identifiers of the documents added, updated or deleted so far. */
+    private final Set<String> changed = new HashSet<>();
+
+    private Collection<SolrInputDocument> batch = new LinkedList<>();
+
+    private String version = "";
+
+    private int added;
+
+    private int updated;
+
+    private int unchanged;
+
+    private int deleted;
+
+    /**
+     * Prepares an update by loading the identifiers of all the documents currently in the index, and their known
+     * hashes.
+     *
+     * @param client the Solr core to update
+     * @param batchSize the number of documents to send to Solr at a time, or a negative number to send everything at
+     *            once
+     * @param hashFile the file holding the hashes of the indexed documents, may be {@code null} if hashes cannot be
+     *            stored, in which case all the documents are considered changed
+     * @throws SolrServerException if querying the index fails
+     * @throws IOException if communicating with the Solr server fails
+     */
+    public IncrementalUpdate(SolrClient client, int batchSize, File hashFile) throws SolrServerException, IOException
+    {
+        this.client = client;
+        this.batchSize = batchSize;
+        this.hashFile = hashFile;
+        SolrQuery query = new SolrQuery("*:*");
+        query.setFields(ID_FIELD, VERSION_FIELD);
+        query.setSort(ID_FIELD, SolrQuery.ORDER.asc);
+        query.setRows(PAGE_SIZE);
+        String indexVersion = "";
+        long total = 1;
+        for (int start = 0; start < total; start += PAGE_SIZE) {
+            query.setStart(start);
+            SolrDocumentList page = client.query(query).getResults();
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            total = page.getNumFound();
+            for (SolrDocument doc : page) {
+                this.indexed.put(String.valueOf(doc.getFirstValue(ID_FIELD)), "");
+                if (doc.getFirstValue(VERSION_FIELD) != null) {
+                    indexVersion = String.valueOf(doc.getFirstValue(VERSION_FIELD));
+                }
+            }
+        }
+        readHashes(indexVersion, this.indexed.size());
+    }
+
+    /**
+     * Process a document from the new version of the vocabulary, sending it to Solr if it is new or changed.
+     *
+     * @param doc the new version of the document
+     * @throws SolrServerException if sending a batch of documents fails
+     * @throws IOException if communicating with the Solr server fails
+     */
+    public void add(SolrInputDocument doc) throws SolrServerException, IOException
+    {
+        String id = String.valueOf(doc.getFieldValue(ID_FIELD));
+        String hash = hash(doc);
+        this.hashes.put(id, hash);
+        if (doc.getFieldValue(VERSION_FIELD) != null) {
+            this.version = String.valueOf(doc.getFieldValue(VERSION_FIELD));
+        }
+        String previousHash = this.indexed.remove(id);
+        if (hash.equals(previousHash)) {
+            ++this.unchanged;
+            return;
+        }
+        if (previousHash == null) {
+            ++this.added;
+        } else {
+            ++this.updated;
+        }
+        this.changed.add(id);
+        if (this.batch.size() == this.batchSize) {
+            this.client.add(this.batch);
+            this.batch = new LinkedList<>();
+        }
+        this.batch.add(doc);
+    }
+
+    /**
+     * Delete the indexed documents that weren't part of the new version, commit all the changes, and store the new
+     * hashes.
+     *
+     * @return the identifiers of all the added, updated and deleted documents, to be evicted from caches
+     * @throws SolrServerException if updating the index fails
+     * @throws IOException if communicating with the Solr server fails
+     */
+    public Set<String> finish() throws SolrServerException, IOException
+    {
+        if (!this.batch.isEmpty()) {
+            this.client.add(this.batch);
+            this.batch = new LinkedList<>();
+        }
+        if (!this.indexed.isEmpty()) {
+            List<String> obsolete = new ArrayList<>(this.indexed.keySet());
+            this.client.deleteById(obsolete);
+            this.changed.addAll(obsolete);
+            this.deleted = obsolete.size();
+            this.indexed.clear();
+        }
+        if (!this.changed.isEmpty()) {
+            this.client.commit();
+        }
+        writeHashes();
+        return Collections.unmodifiableSet(this.changed);
+    }
+
+    /**
+     * Undo the uncommitted changes, as much as possible, after a failure.
+     *
+     * @return {@code true} if the changes were rolled back, {@code false} if the index is in an unknown state
+     */
+    public boolean abort()
+    {
+        try {
+            this.client.rollback();
+            return true;
+        } catch (SolrServerException | IOException | RuntimeException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.added + " added, " + this.updated + " updated, " + this.deleted + " deleted, " + this.unchanged
+            + " unchanged";
+    }
+
+    /**
+     * Compute the hash of a document's content. The result doesn't depend on the order of fields and values.
+     *
+     * @param doc the document to hash
+     * @return a hexadecimal string
+     */
+    public static String hash(SolrInputDocument doc)
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            // MD5 is a mandatory algorithm in every Java implementation
+            throw new IllegalStateException(ex);
+        }
+        List<String> names = new ArrayList<>(doc.getFieldNames());
+        Collections.sort(names);
+        for (String name : names) {
+            digest.update(name.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            List<String> values = new ArrayList<>();
+            for (Object value : doc.getFieldValues(name)) {
+                values.add(String.valueOf(value));
+            }
+            Collections.sort(values);
+            for (String value : values) {
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            digest.update((byte) 1);
+        }
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+
+    /**
+     * Read the known hashes, if the hash file describes the current index.
+     *
+     * @param indexVersion the version of the current index
+     * @param indexSize the number of documents in the current index
+     */
+    private void readHashes(String indexVersion, int indexSize)
+    {
+        if (this.hashFile == null || !this.hashFile.isFile()) {
+            return;
+        }
+        try (BufferedReader in = Files.newBufferedReader(this.hashFile.toPath(), StandardCharsets.UTF_8)) {
+            String[] header = StringUtils.split(StringUtils.defaultString(in.readLine()), SEPARATOR);
+            if (header.length != 2 || !header[0].equals(indexVersion)
+                || !header[1].equals(String.valueOf(indexSize))) {
+                return;
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] pieces = StringUtils.split(line, SEPARATOR);
+                if (pieces.length == 2 && this.indexed.containsKey(pieces[0])) {
+                    this.indexed.put(pieces[0], pieces[1]);
+                }
+            }
+        } catch (IOException ex) {
+            // Unreadable hashes, consider all the documents changed
+            for (Map.Entry<String, String> entry : this.indexed.entrySet()) {
+                entry.setValue("");
+            }
+        }
+    }
+
+    /**
+     * Store the hashes of the new version. Failing to do so doesn't affect the update itself, only the next update will
+     * consider all the documents changed.
+     */
+    private void writeHashes()
+    {
+        if (this.hashFile == null) {
+            return;
+        }
+        File temporary = null;
+        try {
+            File parent = this.hashFile.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Cannot create the directory " + parent);
+            }
+            temporary = File.createTempFile(this.hashFile.getName(), ".part", parent);
+            try (BufferedWriter out = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8)) {
+                out.write(this.version + '\t' + this.hashes.size());
+                out.newLine();
+                for (Map.Entry<String, String> entry : this.hashes.entrySet()) {
+                    out.write(entry.getKey() + '\t' + entry.getValue());
+                    out.newLine();
+                }
+            }
+            Files.move(temporary.toPath(), this.hashFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            this.hashFile.delete();
+            if (temporary != null) {
+                temporary.delete();
+            }
+        }
+    }
+}
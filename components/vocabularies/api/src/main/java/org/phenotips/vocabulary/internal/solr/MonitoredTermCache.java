@@ -0,0 +1,254 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Term cache wrapper which keeps track of the cache usage. Removal events fired by the wrapped cache while an explicit
+ * {@link #remove(String)} or {@link #removeAll()} is running on the same thread are counted as explicit removals, all
+ * the others are counted as evictions.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public class MonitoredTermCache implements Cache<VocabularyTerm>, TermCacheStatistics
+{
+    private final Cache<VocabularyTerm> cache;
+
+    private final String vocabularyName;
+
+    private final int maxEntries;
+
+    private final int timeToLive;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong explicitRemovals = new AtomicLong();
+
+    /** Set while the current thread is explicitly removing entries, unset otherwise. */
+    private final ThreadLocal<Boolean> removing = new ThreadLocal<>();
+
+    private final AtomicLong loads = new AtomicLong();
+
+    private final AtomicLong loadTime = new AtomicLong();
+
+    /**
+     * Constructor wrapping an existing cache.
+     *
+     * @param cache the actual cache to wrap
+     * @param vocabularyName the name of the vocabulary whose terms are cached
+     * @param maxEntries the configured maximum number of entries
+     * @param timeToLive the configured entry lifespan, in seconds
+     */
+    public MonitoredTermCache(Cache<VocabularyTerm> cache, String vocabularyName, int maxEntries, int timeToLive)
+    {
+        this.cache = cache;
+        this.vocabularyName = vocabularyName;
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+        this.cache.addCacheEntryListener(new CacheEntryListener<VocabularyTerm>()
+        {
+            @Override
+            public void cacheEntryAdded(CacheEntryEvent<VocabularyTerm> event)
+            {
+                // Nothing to count
+            }
+
+            @Override
+            public void cacheEntryRemoved(CacheEntryEvent<VocabularyTerm> event)
+            {
+                if (MonitoredTermCache.this.removing.get() != null) {
+                    MonitoredTermCache.this.explicitRemovals.incrementAndGet();
+                } else {
+                    MonitoredTermCache.this.evictions.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void cacheEntryModified(CacheEntryEvent<VocabularyTerm> event)
+            {
+                // Nothing to count
+            }
+        });
+    }
+
+    /**
+     * Record that terms missing from the cache were loaded from the index.
+     *
+     * @param nanoseconds how long loading the terms took
+     */
+    public void recordLoad(long nanoseconds)
+    {
+        this.loads.incrementAndGet();
+        this.loadTime.addAndGet(nanoseconds);
+    }
+
+    @Override
+    public void set(String key, VocabularyTerm obj)
+    {
+        this.cache.set(key, obj);
+    }
+
+    @Override
+    public VocabularyTerm get(String key)
+    {
+        VocabularyTerm result = this.cache.get(key);
+        if (result == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    @Override
+    public void remove(String key)
+    {
+        this.removing.set(Boolean.TRUE);
+        try {
+            this.cache.remove(key);
+        } finally {
+            this.removing.remove();
+        }
+    }
+
+    @Override
+    public void removeAll()
+    {
+        this.removing.set(Boolean.TRUE);
+        try {
+            this.cache.removeAll();
+        } finally {
+            this.removing.remove();
+        }
+    }
+
+    /**
+     * The number of entries removed on request, through {@link #remove(String)} or {@link #removeAll()}.
+     *
+     * @return a positive number
+     */
+    public long getExplicitRemovals()
+    {
+        return this.explicitRemovals.get();
+    }
+
+    @Override
+    public void addCacheEntryListener(CacheEntryListener<VocabularyTerm> listener)
+    {
+        this.cache.addCacheEntryListener(listener);
+    }
+
+    @Override
+    public void removeCacheEntryListener(CacheEntryListener<VocabularyTerm> listener)
+    {
+        this.cache.removeCacheEntryListener(listener);
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.cache.dispose();
+    }
+
+    @Override
+    public String getVocabularyName()
+    {
+        return this.vocabularyName;
+    }
+
+    @Override
+    public int getMaxEntries()
+    {
+        return this.maxEntries;
+    }
+
+    @Override
+    public int getTimeToLive()
+    {
+        return this.timeToLive;
+    }
+
+    @Override
+    public long getHits()
+    {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    @Override
+    public double getHitRatio()
+    {
+        long crtHits = this.hits.get();
+        long total = crtHits + this.misses.get();
+        return total == 0 ? 0 : (double) crtHits / total;
+    }
+
+    @Override
+    public long getEvictions()
+    {
+        return this.evictions.get();
+    }
+
+    @Override
+    public long getLoads()
+    {
+        return this.loads.get();
+    }
+
+    @Override
+    public long getTotalLoadTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.loadTime.get());
+    }
+
+    @Override
+    public double getAverageLoadTime()
+    {
+        long crtLoads = this.loads.get();
+        return crtLoads == 0 ? 0 : (double) this.loadTime.get() / crtLoads / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public void resetStatistics()
+    {
+        this.hits.set(0);
+        this.misses.set(0);
+        this.evictions.set(0);
+        this.explicitRemovals.set(0);
+        this.loads.set(0);
+        this.loadTime.set(0);
+    }
+}
@@ -0,0 +1,591 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, immutable in-memory representation of the {@code is_a} structure of an ontology. Terms are identified
+ * internally by an integer index, parents and children are stored as primitive arrays, and the transitive closure of
+ * the ancestors is computed once, when the graph is built, as a sorted array of indexes for each term. This allows
+ * answering structural questions, such as the ancestors of a term or the distance between two terms, without querying
+ * the Solr index.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public final class OntologyGraph
+{
+    private static final int[] NONE = new int[0];
+
+    /** Maps term identifiers to their index in the graph. */
+    private final Map<String, Integer> indexes;
+
+    /** The term identifiers, in index order. */
+    private final String[] ids;
+
+    /** The direct parents of each term. */
+    private final int[][] parents;
+
+    /** The direct children of each term. */
+    private final int[][] children;
+
+    /** The sorted transitive closure of the parents of each term, not including the term itself. */
+    private final int[][] ancestors;
+
+    private OntologyGraph(Map<String, Integer> indexes, String[] ids, int[][] parents)
+    {
+        this.indexes = indexes;
+        this.ids = ids;
+        this.parents = parents;
+        this.children = invert(parents);
+        this.ancestors = new int[ids.length][];
+        computeAncestors();
+    }
+
+    /**
+     * Build a graph from a map of term identifiers to the identifiers of their direct parents. Parents that aren't
+     * themselves present as keys in the map are ignored.
+     *
+     * @param parentsMap the {@code is_a} relationships, may not be {@code null}
+     * @return the compiled graph
+     */
+    public static OntologyGraph build(Map<String, ? extends Collection<String>> parentsMap)
+    {
+        Map<String, Integer> indexes = new HashMap<>(parentsMap.size() * 4 / 3 + 1);
+        String[] ids = new String[parentsMap.size()];
+        int i = 0;
+        for (String id : parentsMap.keySet()) {
+            indexes.put(id, i);
+            ids[i++] = id;
+        }
+        int[][] parents = new int[ids.length][];
+        int[] buffer = new int[16];
+        for (Map.Entry<String, ? extends Collection<String>> entry : parentsMap.entrySet()) {
+            Collection<String> parentIds = entry.getValue();
+            if (parentIds == null || parentIds.isEmpty()) {
+                parents[indexes.get(entry.getKey())] = NONE;
+                continue;
+            }
+            if (buffer.length < parentIds.size()) {
+                buffer = new int[parentIds.size()];
+            }
+            int count = 0;
+            for (String parentId : parentIds) {
+                Integer parent = indexes.get(parentId);
+                if (parent != null) {
+                    buffer[count++] = parent;
+                }
+            }
+            parents[indexes.get(entry.getKey())] = unique(buffer, count);
+        }
+        return new OntologyGraph(indexes, ids, parents);
+    }
+
+    /**
+     * Create a new builder, which accepts terms and their parents one at a time.
+     *
+     * @return an empty builder
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * The number of terms in the graph.
+     *
+     * @return a positive number, or {@code 0} for an empty graph
+     */
+    public int size()
+    {
+        return this.ids.length;
+    }
+
+    /**
+     * Check if a term is part of this graph.
+     *
+     * @param id the identifier of the term to check
+     * @return {@code true} if the term is known
+     */
+    public boolean contains(String id)
+    {
+        return id != null && this.indexes.containsKey(id);
+    }
+
+    /**
+     * Get the identifiers of the direct parents of a term.
+     *
+     * @param id the identifier of the term whose parents are requested
+     * @return an unmodifiable collection of term identifiers, empty if the term is unknown or has no parents
+     */
+    public Collection<String> getParentIds(String id)
+    {
+        return toIds(get(this.parents, id), -1);
+    }
+
+    /**
+     * Get the identifiers of the direct children of a term.
+     *
+     * @param id the identifier of the term whose children are requested
+     * @return an unmodifiable collection of term identifiers, empty if the term is unknown or has no children
+     */
+    public Collection<String> getChildIds(String id)
+    {
+        return toIds(get(this.children, id), -1);
+    }
+
+    /**
+     * Get the identifiers of all the ancestors of a term, not including the term itself.
+     *
+     * @param id the identifier of the term whose ancestors are requested
+     * @return an unmodifiable collection of term identifiers, empty if the term is unknown or is a root
+     */
+    public Collection<String> getAncestorIds(String id)
+    {
+        return toIds(get(this.ancestors, id), -1);
+    }
+
+    /**
+     * Get the identifiers of all the ancestors of a term, including the term itself.
+     *
+     * @param id the identifier of the term whose ancestors are requested
+     * @return an unmodifiable collection of term identifiers, empty if the term is unknown
+     */
+    public Collection<String> getAncestorAndSelfIds(String id)
+    {
+        Integer index = id == null ? null : this.indexes.get(id);
+        if (index == null) {
+            return Collections.emptySet();
+        }
+        return toIds(this.ancestors[index], index);
+    }
+
+    /**
+     * Get the internal index of a term, used for representing sets of terms as sorted arrays of indexes.
+     *
+     * @param id the identifier of the term
+     * @return the index of the term, or {@code -1} if the term is unknown
+     */
+    int indexOf(String id)
+    {
+        Integer index = id == null ? null : this.indexes.get(id);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Get the identifier of a term from its {@link #indexOf internal index}.
+     *
+     * @param index a valid index
+     * @return the identifier of the term
+     */
+    String getId(int index)
+    {
+        return this.ids[index];
+    }
+
+    /**
+     * Get the internal indexes of the direct parents of a term.
+     *
+     * @param index a valid index
+     * @return the sorted indexes of the parents; must not be modified
+     */
+    int[] getParentIndexes(int index)
+    {
+        return this.parents[index];
+    }
+
+    /**
+     * Get the internal indexes of the ancestors of a term, not including the term itself.
+     *
+     * @param index a valid index
+     * @return the sorted indexes of the ancestors; must not be modified
+     */
+    int[] getAncestorIndexes(int index)
+    {
+        return this.ancestors[index];
+    }
+
+    /**
+     * Check if a term is an ancestor of another term.
+     *
+     * @param ancestorId the identifier of the potential ancestor
+     * @param descendantId the identifier of the potential descendant
+     * @return {@code true} if both terms are known, and the first is a (direct or indirect) ancestor of the second
+     */
+    public boolean isAncestor(String ancestorId, String descendantId)
+    {
+        Integer ancestor = ancestorId == null ? null : this.indexes.get(ancestorId);
+        Integer descendant = descendantId == null ? null : this.indexes.get(descendantId);
+        return ancestor != null && descendant != null
+            && Arrays.binarySearch(this.ancestors[descendant], ancestor) >= 0;
+    }
+
+    /**
+     * Find the distance between two terms, as the minimum number of edges that connect each of the two terms to a
+     * common ancestor. This is the same distance as computed by {@link SolrVocabularyTerm#getDistanceTo}.
+     *
+     * @param fromId the identifier of the first term
+     * @param toId the identifier of the second term
+     * @return the distance between the two terms, or {@code -1} if at least one of the terms is unknown or they don't
+     *         have a common ancestor
+     */
+    public long getDistance(String fromId, String toId)
+    {
+        Integer from = fromId == null ? null : this.indexes.get(fromId);
+        Integer to = toId == null ? null : this.indexes.get(toId);
+        if (from == null || to == null) {
+            return -1;
+        }
+        if (from.intValue() == to.intValue()) {
+            return 0;
+        }
+        // Distances from the first term to each of its ancestors, aligned with the sorted ancestors array
+        int[] fromAncestors = this.ancestors[from];
+        int[] fromDistances = levels(from, fromAncestors);
+        int[] toAncestors = this.ancestors[to];
+        int[] toDistances = levels(to, toAncestors);
+
+        long best = Long.MAX_VALUE;
+        // The terms themselves are at distance 0 from themselves
+        int position = Arrays.binarySearch(toAncestors, from);
+        if (position >= 0) {
+            best = toDistances[position];
+        }
+        position = Arrays.binarySearch(fromAncestors, to);
+        if (position >= 0) {
+            best = Math.min(best, fromDistances[position]);
+        }
+        // Both arrays are sorted, so common ancestors can be found with a linear merge
+        for (int i = 0, j = 0; i < fromAncestors.length && j < toAncestors.length;) {
+            if (fromAncestors[i] < toAncestors[j]) {
+                ++i;
+            } else if (fromAncestors[i] > toAncestors[j]) {
+                ++j;
+            } else {
+                best = Math.min(best, (long) fromDistances[i] + toDistances[j]);
+                ++i;
+                ++j;
+            }
+        }
+        return best == Long.MAX_VALUE ? -1 : best;
+    }
+
+    /**
+     * Breadth-first traversal of the parents of a term, computing the minimum number of edges to each ancestor.
+     *
+     * @param start the index of the starting term
+     * @param sortedAncestors the sorted ancestors of the starting term
+     * @return an array aligned with {@code sortedAncestors}, holding the distance to each ancestor
+     */
+    private int[] levels(int start, int[] sortedAncestors)
+    {
+        int[] result = new int[sortedAncestors.length];
+        Arrays.fill(result, -1);
+        int[] queue = new int[sortedAncestors.length + 1];
+        int[] queueDistances = new int[queue.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int crt = queue[head];
+            int distance = queueDistances[head++] + 1;
+            for (int parent : this.parents[crt]) {
+                int position = Arrays.binarySearch(sortedAncestors, parent);
+                if (position >= 0 && result[position] < 0) {
+                    result[position] = distance;
+                    queueDistances[tail] = distance;
+                    queue[tail++] = parent;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the closures of all the terms, in topological order: a depth-first traversal of the parents, where the
+     * closure of a term is computed once all its parents are done. Terms that are part of a cycle, in case the source
+     * ontology isn't a proper DAG, are ancestors of each other, so their closures are computed together, once the whole
+     * cycle was traversed, following Tarjan's strongly connected components algorithm. Uses explicit stacks, since
+     * ontologies can be deep.
+     */
+    private void computeAncestors()
+    {
+        int size = this.ids.length;
+        // The order in which terms were reached, 0 for terms not reached yet, and the earliest reached term still
+        // being processed that each term leads to, on its own or through its parents
+        int[] order = new int[size];
+        int[] lowLinks = new int[size];
+        int[] nodes = new int[size];
+        int[] positions = new int[size];
+        // The terms reached but not yet assigned to a completed cycle, or to a group of their own
+        int[] component = new int[size];
+        boolean[] onComponent = new boolean[size];
+        int counter = 0;
+        for (int root = 0; root < size; ++root) {
+            if (order[root] != 0) {
+                continue;
+            }
+            int top = 0;
+            int componentTop = 0;
+            order[root] = ++counter;
+            lowLinks[root] = counter;
+            component[componentTop++] = root;
+            onComponent[root] = true;
+            nodes[0] = root;
+            positions[0] = 0;
+            while (top >= 0) {
+                int node = nodes[top];
+                int[] directParents = this.parents[node];
+                if (positions[top] < directParents.length) {
+                    int parent = directParents[positions[top]++];
+                    if (order[parent] == 0) {
+                        order[parent] = ++counter;
+                        lowLinks[parent] = counter;
+                        component[componentTop++] = parent;
+                        onComponent[parent] = true;
+                        nodes[++top] = parent;
+                        positions[top] = 0;
+                    } else if (onComponent[parent]) {
+                        lowLinks[node] = Math.min(lowLinks[node], order[parent]);
+                    }
+                } else {
+                    if (lowLinks[node] == order[node]) {
+                        int start = componentTop;
+                        do {
+                            onComponent[component[--start]] = false;
+                        } while (component[start] != node);
+                        completeComponent(component, start, componentTop);
+                        componentTop = start;
+                    }
+                    if (--top >= 0) {
+                        lowLinks[nodes[top]] = Math.min(lowLinks[nodes[top]], lowLinks[node]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the closures of a group of terms which are all ancestors of each other, or of a single term. Their
+     * parents outside the group are already done.
+     */
+    private void completeComponent(int[] component, int start, int end)
+    {
+        if (end - start == 1) {
+            this.ancestors[component[start]] = mergeParents(component[start]);
+            return;
+        }
+        int total = 0;
+        for (int i = start; i < end; ++i) {
+            total += 1 + this.parents[component[i]].length;
+            for (int parent : this.parents[component[i]]) {
+                total += this.ancestors[parent] == null ? 0 : this.ancestors[parent].length;
+            }
+        }
+        int[] buffer = new int[total];
+        int count = 0;
+        for (int i = start; i < end; ++i) {
+            buffer[count++] = component[i];
+            count = collectParents(component[i], buffer, count);
+        }
+        int[] closure = unique(buffer, count);
+        for (int i = start; i < end; ++i) {
+            this.ancestors[component[i]] = remove(closure, component[i]);
+        }
+    }
+
+    /**
+     * Compute the closure of a term whose parents are all done, unless the term is its own parent.
+     */
+    private int[] mergeParents(int index)
+    {
+        int[] directParents = this.parents[index];
+        if (directParents.length == 0) {
+            return NONE;
+        }
+        if (directParents.length == 1 && directParents[0] != index) {
+            // Most terms have a single parent, just extend the parent's closure
+            return insert(this.ancestors[directParents[0]], directParents[0]);
+        }
+        int total = directParents.length;
+        for (int parent : directParents) {
+            total += this.ancestors[parent] == null ? 0 : this.ancestors[parent].length;
+        }
+        int[] buffer = new int[total];
+        return remove(unique(buffer, collectParents(index, buffer, 0)), index);
+    }
+
+    /** Parents from the same group aren't done yet, but they are collected as members of the group. */
+    private int collectParents(int index, int[] buffer, int count)
+    {
+        int result = count;
+        for (int parent : this.parents[index]) {
+            buffer[result++] = parent;
+            int[] parentAncestors = this.ancestors[parent] == null ? NONE : this.ancestors[parent];
+            System.arraycopy(parentAncestors, 0, buffer, result, parentAncestors.length);
+            result += parentAncestors.length;
+        }
+        return result;
+    }
+
+    private Collection<String> toIds(final int[] indexes, final int self)
+    {
+        if (indexes == null || indexes.length == 0 && self < 0) {
+            return Collections.emptySet();
+        }
+        return new AbstractList<String>()
+        {
+            @Override
+            public String get(int position)
+            {
+                if (self >= 0) {
+                    return position == 0 ? OntologyGraph.this.ids[self] : OntologyGraph.this.ids[indexes[position - 1]];
+                }
+                return OntologyGraph.this.ids[indexes[position]];
+            }
+
+            @Override
+            public int size()
+            {
+                return indexes.length + (self >= 0 ? 1 : 0);
+            }
+        };
+    }
+
+    private int[] get(int[][] relation, String id)
+    {
+        Integer index = id == null ? null : this.indexes.get(id);
+        return index == null ? null : relation[index];
+    }
+
+    private static int[][] invert(int[][] relation)
+    {
+        int[] counts = new int[relation.length];
+        for (int[] targets : relation) {
+            for (int target : targets) {
+                ++counts[target];
+            }
+        }
+        int[][] result = new int[relation.length][];
+        for (int i = 0; i < relation.length; ++i) {
+            result[i] = counts[i] == 0 ? NONE : new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int i = 0; i < relation.length; ++i) {
+            for (int target : relation[i]) {
+                result[target][counts[target]++] = i;
+            }
+        }
+        return result;
+    }
+
+    private static int[] insert(int[] sorted, int value)
+    {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position >= 0) {
+            return sorted;
+        }
+        position = -position - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(sorted, position, result, position + 1, sorted.length - position);
+        return result;
+    }
+
+    private static int[] remove(int[] sorted, int value)
+    {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, result.length - position);
+        return result;
+    }
+
+    private static int[] unique(int[] values, int count)
+    {
+        if (count == 0) {
+            return NONE;
+        }
+        int[] result = Arrays.copyOf(values, count);
+        Arrays.sort(result);
+        int length = 1;
+        for (int i = 1; i < count; ++i) {
+            if (result[i] != result[length - 1]) {
+                result[length++] = result[i];
+            }
+        }
+        return length == count ? result : Arrays.copyOf(result, length);
+    }
+
+    /**
+     * Incremental builder for an {@link OntologyGraph}, useful when the terms are read one at a time, for example when
+     * paging through a Solr index.
+     */
+    public static final class Builder
+    {
+        private final Map<String, List<String>> parentsMap = new LinkedHashMap<>();
+
+        private Builder()
+        {
+            // Use OntologyGraph#builder()
+        }
+
+        /**
+         * Add a term to the graph.
+         *
+         * @param id the identifier of the term
+         * @param parentIds the identifiers of the direct parents of the term, may be {@code null}
+         * @return this builder, for chaining
+         */
+        public Builder add(String id, Collection<String> parentIds)
+        {
+            List<String> crtParents = this.parentsMap.get(id);
+            if (crtParents == null) {
+                crtParents = new ArrayList<>(parentIds == null ? 0 : parentIds.size());
+                this.parentsMap.put(id, crtParents);
+            }
+            if (parentIds != null) {
+                crtParents.addAll(parentIds);
+            }
+            return this;
+        }
+
+        /**
+         * Compile the graph with the terms added so far.
+         *
+         * @return the immutable graph
+         */
+        public OntologyGraph build()
+        {
+            return OntologyGraph.build(this.parentsMap);
+        }
+    }
+}
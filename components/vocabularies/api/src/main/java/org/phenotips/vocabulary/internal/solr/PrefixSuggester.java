@@ -0,0 +1,417 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.common.SolrInputDocument;
+
+/**
+ * Compact, immutable in-memory prefix index over the identifiers, names and synonyms of the terms in a vocabulary, used
+ * for answering plain autocomplete searches without querying Solr. Every word of every label is a possible start for a
+ * match, so {@code hear} matches {@code Abnormality of the heart}. The normalized labels are stored only once, and the
+ * word starts are kept in a single array sorted by the text that follows them, so that all the matches for a prefix
+ * form a contiguous range, found with a binary search. Matches are ranked using {@link Weights} that mirror the field
+ * boosts of the vocabulary's Solr queries, depending on the matched field and on whether the label is matched entirely,
+ * at its start, or inside it; shorter labels rank above longer ones with the same weight.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public final class PrefixSuggester
+{
+    private static final String ID_FIELD = "id";
+
+    private static final String NAME_FIELD = "name";
+
+    private static final String SYNONYM_FIELD = "synonym";
+
+    private static final int ID = 0;
+
+    private static final int NAME = 1;
+
+    private static final int SYNONYM = 2;
+
+    /** Anything that isn't part of a word is treated as a word separator; colons are kept, since they appear in IDs. */
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}:]+");
+
+    /** The term identifiers, in index order. */
+    private final String[] ids;
+
+    /** The normalized labels. */
+    private final String[] labels;
+
+    /** The index of the term each label belongs to. */
+    private final int[] labelTerms;
+
+    /** The field each label comes from. */
+    private final byte[] labelFields;
+
+    /** The label of each entry, entries being sorted by the label text following their offset. */
+    private final int[] entryLabels;
+
+    /** The position in the label where each entry starts. */
+    private final int[] entryOffsets;
+
+    /** The weights of the different kinds of matches. */
+    private final Weights weights;
+
+    private PrefixSuggester(String[] ids, String[] labels, int[] labelTerms, byte[] labelFields, int[] entryLabels,
+        int[] entryOffsets, Weights weights)
+    {
+        this.ids = ids;
+        this.labels = labels;
+        this.labelTerms = labelTerms;
+        this.labelFields = labelFields;
+        this.entryLabels = entryLabels;
+        this.entryOffsets = entryOffsets;
+        this.weights = weights;
+    }
+
+    /**
+     * Create a new builder, to which terms can be added one at a time, ranking matches with the {@link Weights#DEFAULT
+     * default weights}.
+     *
+     * @return a new empty builder
+     */
+    public static Builder builder()
+    {
+        return builder(Weights.DEFAULT);
+    }
+
+    /**
+     * Create a new builder, to which terms can be added one at a time.
+     *
+     * @param weights the weights used for ranking matches
+     * @return a new empty builder
+     */
+    public static Builder builder(Weights weights)
+    {
+        return new Builder(weights);
+    }
+
+    /**
+     * The number of terms known to this index.
+     *
+     * @return a positive number, or {@code 0} if the index is empty
+     */
+    public int size()
+    {
+        return this.ids.length;
+    }
+
+    /**
+     * Find the terms having an identifier, a name or a synonym containing a word that starts with the given text.
+     *
+     * @param input the text typed so far, case and punctuation are ignored
+     * @param maxResults the maximum number of terms to return
+     * @return the identifiers of the best matching terms, most relevant first, may be empty
+     */
+    public List<String> suggest(String input, int maxResults)
+    {
+        String prefix = normalize(input);
+        if (prefix.isEmpty() || maxResults <= 0) {
+            return Collections.emptyList();
+        }
+        // Keep only the best match of each term
+        Map<Integer, Float> scores = new HashMap<>();
+        for (int entry = findFirst(prefix); entry < this.entryLabels.length && compare(entry, prefix) == 0; ++entry) {
+            int label = this.entryLabels[entry];
+            float score = score(entry, prefix.length());
+            Float previous = scores.put(this.labelTerms[label], score);
+            if (previous != null && previous > score) {
+                scores.put(this.labelTerms[label], previous);
+            }
+        }
+        List<Map.Entry<Integer, Float>> ranked = new ArrayList<>(scores.entrySet());
+        Collections.sort(ranked, new Comparator<Map.Entry<Integer, Float>>()
+        {
+            @Override
+            public int compare(Map.Entry<Integer, Float> o1, Map.Entry<Integer, Float> o2)
+            {
+                int result = Float.compare(o2.getValue(), o1.getValue());
+                return result != 0 ? result : PrefixSuggester.this.ids[o1.getKey()]
+                    .compareTo(PrefixSuggester.this.ids[o2.getKey()]);
+            }
+        });
+        List<String> result = new ArrayList<>(Math.min(maxResults, ranked.size()));
+        for (Map.Entry<Integer, Float> match : ranked) {
+            if (result.size() == maxResults) {
+                break;
+            }
+            result.add(this.ids[match.getKey()]);
+        }
+        return result;
+    }
+
+    /**
+     * The relevance of a matching entry: the weight of the kind of match, plus a bonus for shorter labels that is
+     * always smaller than the difference between two weights.
+     *
+     * @param entry the position of the matching entry
+     * @param prefixLength the length of the normalized prefix
+     * @return the score of the entry
+     */
+    private float score(int entry, int prefixLength)
+    {
+        int label = this.entryLabels[entry];
+        int length = this.labels[label].length();
+        float weight;
+        if (this.entryOffsets[entry] > 0) {
+            weight = this.weights.word[this.labelFields[label]];
+        } else if (length == prefixLength) {
+            weight = this.weights.exact[this.labelFields[label]];
+        } else {
+            weight = this.weights.prefix[this.labelFields[label]];
+        }
+        return weight + 1f / (1 + length);
+    }
+
+    /**
+     * Binary search for the first entry whose text is not lower than the prefix.
+     *
+     * @param prefix the normalized prefix to look for
+     * @return the position of the first candidate entry, may be the length of the entries array if none match
+     */
+    private int findFirst(String prefix)
+    {
+        int low = 0;
+        int high = this.entryLabels.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare the text of an entry with a prefix, looking only at the first characters of the entry.
+     *
+     * @param entry the position of the entry
+     * @param prefix the normalized prefix
+     * @return {@code 0} if the entry starts with the prefix, a negative number if it sorts before the prefix, a
+     *         positive number if it sorts after all the entries that start with the prefix
+     */
+    private int compare(int entry, String prefix)
+    {
+        String label = this.labels[this.entryLabels[entry]];
+        int offset = this.entryOffsets[entry];
+        int length = Math.min(label.length() - offset, prefix.length());
+        for (int i = 0; i < length; ++i) {
+            int diff = label.charAt(offset + i) - prefix.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return label.length() - offset < prefix.length() ? -1 : 0;
+    }
+
+    /**
+     * Bring a label or a query to the form used for matching: lowercase words separated by a single space.
+     *
+     * @param text the text to normalize, may be {@code null}
+     * @return the normalized text, may be empty
+     */
+    static String normalize(String text)
+    {
+        if (text == null) {
+            return "";
+        }
+        return StringUtils.normalizeSpace(SEPARATORS.matcher(text.toLowerCase(Locale.ROOT)).replaceAll(" "));
+    }
+
+    /**
+     * The weights of the different kinds of matches. They should be calibrated against the boosts used by the Solr
+     * queries of the vocabulary, so that answers from the prefix index are ranked like the answers from Solr.
+     * Identifiers always get the same weight, wherever they match.
+     */
+    public static final class Weights
+    {
+        /**
+         * Weights mirroring the phrase boosts of the HPO text queries: exact matches ({@code nameExact^100},
+         * {@code synonymExact^70}) above label prefixes ({@code namePrefix^30}, {@code synonymPrefix^20}) above matches
+         * inside labels ({@code name^20}, {@code synonym^15}).
+         */
+        public static final Weights DEFAULT = new Weights(200f, 100f, 30f, 20f, 70f, 20f, 15f);
+
+        private final float[] exact;
+
+        private final float[] prefix;
+
+        private final float[] word;
+
+        /**
+         * Simple constructor.
+         *
+         * @param id the weight of a match in the identifier
+         * @param nameExact the weight of a name equal to the input
+         * @param namePrefix the weight of a name starting with the input
+         * @param name the weight of a name containing a word starting with the input
+         * @param synonymExact the weight of a synonym equal to the input
+         * @param synonymPrefix the weight of a synonym starting with the input
+         * @param synonym the weight of a synonym containing a word starting with the input
+         */
+        public Weights(float id, float nameExact, float namePrefix, float name, float synonymExact,
+            float synonymPrefix, float synonym)
+        {
+            this.exact = new float[] { id, nameExact, synonymExact };
+            this.prefix = new float[] { id, namePrefix, synonymPrefix };
+            this.word = new float[] { id, name, synonym };
+        }
+    }
+
+    /**
+     * Incremental builder for a {@link PrefixSuggester}, useful when the terms are read one at a time, for example
+     * while indexing.
+     */
+    public static final class Builder
+    {
+        private final List<String> ids = new ArrayList<>();
+
+        private final List<String> labels = new ArrayList<>();
+
+        private final List<Integer> labelTerms = new ArrayList<>();
+
+        private final List<Byte> labelFields = new ArrayList<>();
+
+        private final Weights weights;
+
+        private Builder(Weights weights)
+        {
+            // Use PrefixSuggester#builder()
+            this.weights = weights;
+        }
+
+        /**
+         * Add a term to the index.
+         *
+         * @param id the identifier of the term
+         * @param names the names of the term, may be {@code null}
+         * @param synonyms the synonyms of the term, may be {@code null}
+         * @return this builder, for chaining
+         */
+        public Builder add(String id, Collection<?> names, Collection<?> synonyms)
+        {
+            int term = this.ids.size();
+            this.ids.add(id);
+            addLabel(term, id, ID);
+            addLabels(term, names, NAME);
+            addLabels(term, synonyms, SYNONYM);
+            return this;
+        }
+
+        /**
+         * Compile the index with the terms added so far.
+         *
+         * @return the immutable index
+         */
+        public PrefixSuggester build()
+        {
+            final String[] allLabels = this.labels.toArray(new String[this.labels.size()]);
+            List<long[]> entries = new ArrayList<>();
+            for (int label = 0; label < allLabels.length; ++label) {
+                // Labels are normalized, so words are separated by exactly one space
+                entries.add(new long[] { label, 0 });
+                for (int offset = allLabels[label].indexOf(' ') + 1; offset > 0;
+                    offset = allLabels[label].indexOf(' ', offset) + 1) {
+                    entries.add(new long[] { label, offset });
+                }
+            }
+            Collections.sort(entries, new Comparator<long[]>()
+            {
+                @Override
+                public int compare(long[] o1, long[] o2)
+                {
+                    String label1 = allLabels[(int) o1[0]];
+                    String label2 = allLabels[(int) o2[0]];
+                    int offset1 = (int) o1[1];
+                    int offset2 = (int) o2[1];
+                    int length = Math.min(label1.length() - offset1, label2.length() - offset2);
+                    for (int i = 0; i < length; ++i) {
+                        int diff = label1.charAt(offset1 + i) - label2.charAt(offset2 + i);
+                        if (diff != 0) {
+                            return diff;
+                        }
+                    }
+                    return (label1.length() - offset1) - (label2.length() - offset2);
+                }
+            });
+            int[] entryLabels = new int[entries.size()];
+            int[] entryOffsets = new int[entries.size()];
+            for (int i = 0; i < entryLabels.length; ++i) {
+                entryLabels[i] = (int) entries.get(i)[0];
+                entryOffsets[i] = (int) entries.get(i)[1];
+            }
+            int[] terms = new int[allLabels.length];
+            byte[] fields = new byte[allLabels.length];
+            for (int i = 0; i < allLabels.length; ++i) {
+                terms[i] = this.labelTerms.get(i);
+                fields[i] = this.labelFields.get(i);
+            }
+            return new PrefixSuggester(this.ids.toArray(new String[this.ids.size()]), allLabels, terms, fields,
+                entryLabels, entryOffsets, this.weights);
+        }
+
+        /**
+         * Add an indexed term to the index, using its {@code id}, {@code name} and {@code synonym} fields.
+         *
+         * @param doc the term to add
+         * @return this builder, for chaining
+         */
+        public Builder add(SolrInputDocument doc)
+        {
+            Object id = doc.getFieldValue(ID_FIELD);
+            if (id == null) {
+                return this;
+            }
+            return add(String.valueOf(id), doc.getFieldValues(NAME_FIELD), doc.getFieldValues(SYNONYM_FIELD));
+        }
+
+        private void addLabels(int term, Collection<?> values, int field)
+        {
+            if (values != null) {
+                for (Object value : values) {
+                    addLabel(term, String.valueOf(value), field);
+                }
+            }
+        }
+
+        private void addLabel(int term, String value, int field)
+        {
+            String label = normalize(value);
+            if (!label.isEmpty()) {
+                this.labels.add(label);
+                this.labelTerms.add(term);
+                this.labelFields.add((byte) field);
+            }
+        }
+    }
+}
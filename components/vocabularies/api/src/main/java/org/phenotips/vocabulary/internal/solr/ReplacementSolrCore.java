@@ -0,0 +1,200 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Properties;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.CoreDescriptor;
+import org.slf4j.Logger;
+
+/**
+ * Manages the replacement core where a new version of a vocabulary is indexed, next to the core currently in use, which
+ * keeps serving requests until the two cores are swapped. The replacement core uses a copy of the configuration and of
+ * the loading settings of the current core, in a sibling directory. Since the cores swap places, the current core may
+ * end up living in the replacement directory, in which case the next replacement reuses the original directory.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public class ReplacementSolrCore
+{
+    /** Suffix added to the vocabulary name for the name of the core used for reindexing. */
+    private static final String SUFFIX = "_reindex";
+
+    private final CoreContainer container;
+
+    private final String coreName;
+
+    private final String replacementName;
+
+    private final Logger logger;
+
+    /** The client for the replacement core, {@code null} when there's no replacement core. */
+    private SolrClient client;
+
+    /**
+     * Simple constructor.
+     *
+     * @param container the Solr core container holding the cores
+     * @param coreName the name of the core currently in use
+     * @param logger where to report problems
+     */
+    public ReplacementSolrCore(CoreContainer container, String coreName, Logger logger)
+    {
+        this.container = container;
+        this.coreName = coreName;
+        this.replacementName = coreName + SUFFIX;
+        this.logger = logger;
+    }
+
+    /**
+     * Create a new, empty replacement core, discarding any leftover replacement core.
+     *
+     * @return a client for the new core, or {@code null} if the core couldn't be created
+     */
+    public synchronized SolrClient create()
+    {
+        discard();
+        try {
+            CoreDescriptor current = this.container.getCoreDescriptor(this.coreName);
+            if (current == null) {
+                return null;
+            }
+            Path currentDir = Paths.get(current.getInstanceDir());
+            Path replacementDir = currentDir.resolveSibling(this.replacementName);
+            if (replacementDir.equals(currentDir)) {
+                replacementDir = currentDir.resolveSibling(this.coreName);
+            }
+            deleteDirectory(replacementDir);
+            copyDirectory(currentDir.resolve("conf"), replacementDir.resolve("conf"));
+            // The replacement takes the place of the current core, so it must be loaded and kept in the same way
+            Properties properties = new Properties();
+            properties.setProperty(CoreDescriptor.CORE_TRANSIENT, String.valueOf(current.isTransient()));
+            properties.setProperty(CoreDescriptor.CORE_LOADONSTARTUP, String.valueOf(current.isLoadOnStartup()));
+            CoreDescriptor descriptor = new CoreDescriptor(this.container, this.replacementName,
+                replacementDir.toAbsolutePath().toString(), properties);
+            this.container.getCoresLocator().create(this.container, descriptor);
+            this.container.create(descriptor);
+            this.client = new EmbeddedSolrServer(this.container, this.replacementName);
+            return this.client;
+        } catch (IOException | SolrException ex) {
+            this.logger.warn("Failed to create a replacement core for [{}], reindexing in place: {}", this.coreName,
+                ex.getMessage());
+            discard();
+        }
+        return null;
+    }
+
+    /**
+     * Atomically swap the current core with the replacement core, then discard the old data. Clients identify cores by
+     * name, so requests go to the new data as soon as the cores are swapped, while requests still running on the old
+     * core complete normally.
+     *
+     * @return {@code true} if the cores were swapped, {@code false} if there's no replacement core or swapping failed
+     */
+    public synchronized boolean swap()
+    {
+        if (this.client == null) {
+            return false;
+        }
+        boolean swapped = false;
+        try {
+            this.container.swap(this.coreName, this.replacementName);
+            swapped = true;
+        } catch (SolrException ex) {
+            this.logger.error("Failed to replace the core for [{}]: {}", this.coreName, ex.getMessage());
+        }
+        // Either the old data or the failed replacement
+        discard();
+        return swapped;
+    }
+
+    /**
+     * Unload the replacement core, if any, and delete its data and configuration.
+     */
+    public synchronized void discard()
+    {
+        this.client = null;
+        if (this.container.getCoreNames().contains(this.replacementName)) {
+            try {
+                this.container.unload(this.replacementName, true, true, true);
+            } catch (SolrException ex) {
+                this.logger.warn("Failed to discard the replacement core for [{}]: {}", this.coreName,
+                    ex.getMessage());
+            }
+        }
+    }
+
+    private void copyDirectory(final Path source, final Path target) throws IOException
+    {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+            {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+            {
+                Files.copy(file, target.resolve(source.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void deleteDirectory(Path directory) throws IOException
+    {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException ex) throws IOException
+            {
+                if (ex != null) {
+                    throw ex;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
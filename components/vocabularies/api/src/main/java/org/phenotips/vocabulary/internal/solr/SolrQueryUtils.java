@@ -42,6 +42,8 @@
 
     private static final String SPELLCHECK = "spellcheck";
 
+    private static final String COLLATED_RESULTS = SpellcheckedResultsComponent.COLLATED_RESULTS;
+
     /** Private default constructor, so that this utility class can't be instantiated. */
     private SolrQueryUtils()
     {
@@ -77,8 +79,9 @@ public static SolrParams enhanceParams(SolrParams originalParams)
 
     /**
      * Adds extra parameters to a Solr query for better term searches, including custom options. More specifically, adds
-     * parameters for requesting the score to be included in the results, for requesting a spellcheck result, and sets
-     * the {@code start} and {@code rows} parameters when missing.
+     * parameters for requesting the score to be included in the results, for requesting a spellcheck result, for
+     * requesting the results of the spellchecked query in the same response, and sets the {@code start} and
+     * {@code rows} parameters when missing.
      *
      * @param originalParams the original Solr parameters to enhance
      * @param queryOptions extra options to include in the query; these override the default values, but don't override
@@ -110,6 +113,10 @@ public static SolrParams enhanceParams(SolrParams originalParams, Map<String, St
             newParams.set(SPELLCHECK, Boolean.toString(true));
             newParams.set(SpellingParams.SPELLCHECK_COLLATE, Boolean.toString(true));
         }
+        if (newParams.getBool(SPELLCHECK, false) && newParams.get(COLLATED_RESULTS) == null) {
+            // Let the server also try the spellchecked query, if it supports it, instead of sending a second request
+            newParams.set(COLLATED_RESULTS, Boolean.toString(true));
+        }
         return newParams;
     }
 
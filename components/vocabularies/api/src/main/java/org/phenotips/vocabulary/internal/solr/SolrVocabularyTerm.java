@@ -63,14 +63,16 @@ public class SolrVocabularyTerm implements VocabularyTerm
     private Vocabulary ontology;
 
     /**
-     * The parents of this term, transformed from a set of IDs into a real set of terms.
+     * The parents of this term, transformed from a set of IDs into a real set of terms. Only used when the vocabulary
+     * doesn't have a {@link OntologyGraph compiled structure}.
      *
      * @see #getParents()
      */
     private Set<VocabularyTerm> parents;
 
     /**
-     * The ancestors of this term, transformed from a set of IDs into a real set of terms.
+     * The ancestors of this term, transformed from a set of IDs into a real set of terms. Only used when the vocabulary
+     * doesn't have a {@link OntologyGraph compiled structure}.
      *
      * @see #getAncestors()
      */
@@ -78,6 +80,7 @@ public class SolrVocabularyTerm implements VocabularyTerm
 
     /**
      * A set containing the term itself and its ancestors, transformed from a set of IDs into a real set of terms.
+     * Only used when the vocabulary doesn't have a {@link OntologyGraph compiled structure}.
      *
      * @see #getAncestorsAndSelf()
      */
@@ -143,18 +146,30 @@ public String getDescription()
     @Override
     public Set<VocabularyTerm> getParents()
     {
+        Set<VocabularyTerm> result = GraphTermSet.getParents(getId(), this.ontology);
+        if (result != null) {
+            return result;
+        }
         return this.parents != null ? this.parents : Collections.<VocabularyTerm>emptySet();
     }
 
     @Override
     public Set<VocabularyTerm> getAncestors()
     {
+        Set<VocabularyTerm> result = GraphTermSet.getAncestors(getId(), this.ontology);
+        if (result != null) {
+            return result;
+        }
         return this.ancestors != null ? this.ancestors : Collections.<VocabularyTerm>emptySet();
     }
 
     @Override
     public Set<VocabularyTerm> getAncestorsAndSelf()
     {
+        Set<VocabularyTerm> result = GraphTermSet.getAncestorsAndSelf(getId(), this.ontology);
+        if (result != null) {
+            return result;
+        }
         return this.ancestorsAndSelf != null ? this.ancestorsAndSelf : Collections.<VocabularyTerm>emptySet();
     }
 
@@ -178,23 +193,45 @@ public String toString()
 
     @Override
     public long getDistanceTo(final VocabularyTerm other)
+    {
+        return getDistance(this, other);
+    }
+
+    /**
+     * Compute the distance between two terms, as defined in {@link VocabularyTerm#getDistanceTo(VocabularyTerm)}. The
+     * compiled structure of the vocabulary is used when available, otherwise the ancestors of both terms are explored
+     * one level at a time.
+     *
+     * @param term the starting term
+     * @param other the target term
+     * @return the distance between the two terms, or {@code -1} if they aren't connected
+     */
+    static long getDistance(VocabularyTerm term, VocabularyTerm other)
     {
         if (other == null) {
             return -1;
         }
-        if (this.equals(other)) {
+        if (term.equals(other)) {
             return 0;
         }
 
+        Vocabulary vocabulary = term.getVocabulary();
+        if (vocabulary instanceof AbstractSolrVocabulary && vocabulary == other.getVocabulary()) {
+            OntologyGraph graph = ((AbstractSolrVocabulary) vocabulary).getGraph();
+            if (graph != null && graph.contains(term.getId()) && graph.contains(other.getId())) {
+                return graph.getDistance(term.getId(), other.getId());
+            }
+        }
+
         long distance = Integer.MAX_VALUE;
 
         Map<String, Integer> myLevelMap = new HashMap<String, Integer>();
-        myLevelMap.put(getId(), 0);
+        myLevelMap.put(term.getId(), 0);
         Map<String, Integer> otherLevelMap = new HashMap<String, Integer>();
         otherLevelMap.put(other.getId(), 0);
 
         Set<VocabularyTerm> myCrtLevel = new HashSet<VocabularyTerm>();
-        myCrtLevel.add(this);
+        myCrtLevel.add(term);
         Set<VocabularyTerm> otherCrtLevel = new HashSet<VocabularyTerm>();
         otherCrtLevel.add(other);
 
@@ -205,7 +242,7 @@ public long getDistanceTo(final VocabularyTerm other)
         return distance == Integer.MAX_VALUE ? -1 : distance;
     }
 
-    private long processAncestorsAtDistance(int localDistance, Set<VocabularyTerm> sourceUnprocessedAncestors,
+    private static long processAncestorsAtDistance(int localDistance, Set<VocabularyTerm> sourceUnprocessedAncestors,
         Map<String, Integer> sourceDistanceMap, Map<String, Integer> targetDistanceMap)
     {
         long minDistance = Integer.MAX_VALUE;
@@ -0,0 +1,152 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.handler.component.ResponseBuilder;
+import org.apache.solr.handler.component.SearchComponent;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.response.ResultContext;
+import org.apache.solr.search.DocList;
+import org.apache.solr.search.DocListAndSet;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.QueryParsing;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.SortSpec;
+import org.apache.solr.search.SyntaxError;
+
+/**
+ * Solr search component which, when the spellchecker suggests a correction for a misspelled query, also runs the
+ * corrected query inside the same request, and returns its results instead of the original results if they are more
+ * relevant. This spares clients from having to send a second request with the spellchecked query. It must be
+ * registered in the {@code last-components} of the search handler, after the {@code spellcheck} component, and it is
+ * only active for requests where the {@value #COLLATED_RESULTS} parameter is {@code true}. Requests where the corrected
+ * query was tried are marked with a {@value #COLLATED_RESULTS} entry in the response, so that clients know that they
+ * don't need to try it again.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public class SpellcheckedResultsComponent extends SearchComponent
+{
+    /** The name of the request parameter enabling this component, and of the response entry it adds. */
+    public static final String COLLATED_RESULTS = "spellcheck.collatedResults";
+
+    private static final String SPELLCHECK = "spellcheck";
+
+    private static final String COLLATION = "collation";
+
+    @Override
+    public void prepare(ResponseBuilder rb)
+    {
+        // Nothing to prepare, this component only uses the results of the other components
+    }
+
+    @Override
+    public void process(ResponseBuilder rb) throws IOException
+    {
+        SolrParams params = rb.req.getParams();
+        DocListAndSet results = rb.getResults();
+        if (!params.getBool(COLLATED_RESULTS, false) || results == null || results.docList == null) {
+            return;
+        }
+        String collation = getCollation(rb.rsp.getValues().get(SPELLCHECK));
+        boolean replaced = false;
+        if (StringUtils.isNotEmpty(collation)) {
+            SolrParams collatedParams = SolrQueryUtils.applySpellcheckSuggestion(params, collation);
+            LocalSolrQueryRequest collatedRequest = new LocalSolrQueryRequest(rb.req.getCore(), collatedParams);
+            try {
+                Query query = QParser.getParser(collatedParams.get(CommonParams.Q),
+                    collatedParams.get(QueryParsing.DEFTYPE, QParserPlugin.DEFAULT_QTYPE), collatedRequest).getQuery();
+                SortSpec sort = rb.getSortSpec();
+                DocList collatedResults = rb.req.getSearcher().getDocList(query, rb.getFilters(), sort.getSort(),
+                    sort.getOffset(), sort.getCount(), SolrIndexSearcher.GET_SCORES);
+                if (results.docList.maxScore() < collatedResults.maxScore()) {
+                    replaceResults(rb, query, collatedResults);
+                    replaced = true;
+                }
+            } catch (SyntaxError ex) {
+                // The spellchecker produced an invalid query, keep the original results
+            } finally {
+                collatedRequest.close();
+            }
+        }
+        rb.rsp.add(COLLATED_RESULTS, replaced);
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "Replaces the results of misspelled queries with the results of the spellchecked query";
+    }
+
+    @Override
+    public String getSource()
+    {
+        return null;
+    }
+
+    /**
+     * Extract the best collation from the response of the spellcheck component.
+     *
+     * @param spellcheck the response of the spellcheck component, may be {@code null}
+     * @return the collated query, or {@code null} if the query is correctly spelled or no collation is available
+     */
+    private String getCollation(Object spellcheck)
+    {
+        if (!(spellcheck instanceof NamedList)) {
+            return null;
+        }
+        NamedList<?> response = (NamedList<?>) spellcheck;
+        if (Boolean.TRUE.equals(response.get("correctlySpelled"))) {
+            return null;
+        }
+        Object collations = response.get("collations");
+        if (!(collations instanceof NamedList)) {
+            return null;
+        }
+        Object collation = ((NamedList<?>) collations).get(COLLATION);
+        if (collation instanceof NamedList) {
+            // Extended collation results
+            collation = ((NamedList<?>) collation).get("collationQuery");
+        }
+        return collation == null ? null : String.valueOf(collation);
+    }
+
+    private void replaceResults(ResponseBuilder rb, Query query, DocList docs)
+    {
+        ResultContext context = new ResultContext();
+        context.query = query;
+        context.docs = docs;
+        NamedList<Object> values = rb.rsp.getValues();
+        int position = values.indexOf("response", 0);
+        if (position >= 0) {
+            values.setVal(position, context);
+        } else {
+            values.add("response", context);
+        }
+        rb.getResults().docList = docs;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread safe pool of shared strings, used for storing only one copy of the field names and of the values repeated
+ * across the terms of a vocabulary, such as the identifiers of the parents and ancestors of each term. Unlike
+ * {@link String#intern()}, the pool is owned by a vocabulary, so it is discarded along with the data it holds when the
+ * vocabulary is reindexed.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+final class StringPool
+{
+    private final ConcurrentMap<String, String> values = new ConcurrentHashMap<>();
+
+    /**
+     * Get the shared copy of a string, adding it to the pool if it isn't already there.
+     *
+     * @param value the string to share, may be {@code null}
+     * @return the shared string equal to the requested value, {@code null} if the value is {@code null}
+     */
+    String get(String value)
+    {
+        if (value == null) {
+            return null;
+        }
+        String result = this.values.putIfAbsent(value, value);
+        return result != null ? result : value;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+/**
+ * Usage statistics for the term cache of a vocabulary, exposed as a JMX bean named
+ * {@code org.phenotips.vocabulary:type=TermCache,name=<vocabulary name>}.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public interface TermCacheStatistics
+{
+    /**
+     * The vocabulary whose terms are cached.
+     *
+     * @return the name of the vocabulary, for example {@code hpo}
+     */
+    String getVocabularyName();
+
+    /**
+     * The configured maximum number of entries in the cache.
+     *
+     * @return a positive number
+     */
+    int getMaxEntries();
+
+    /**
+     * The configured lifespan of a cache entry.
+     *
+     * @return the number of seconds after which an entry is discarded, or {@code 0} if entries don't expire
+     */
+    int getTimeToLive();
+
+    /**
+     * The number of lookups that found an entry in the cache, including entries marking missing terms.
+     *
+     * @return a positive number
+     */
+    long getHits();
+
+    /**
+     * The number of lookups that didn't find an entry in the cache.
+     *
+     * @return a positive number
+     */
+    long getMisses();
+
+    /**
+     * The ratio of lookups that were served from the cache.
+     *
+     * @return a number between {@code 0} and {@code 1}
+     */
+    double getHitRatio();
+
+    /**
+     * The number of entries discarded by the cache itself, either because the cache was full or because they expired.
+     *
+     * @return a positive number
+     */
+    long getEvictions();
+
+    /**
+     * The number of times terms missing from the cache were loaded from the index.
+     *
+     * @return a positive number
+     */
+    long getLoads();
+
+    /**
+     * The total time spent loading terms missing from the cache.
+     *
+     * @return the time, in milliseconds
+     */
+    long getTotalLoadTime();
+
+    /**
+     * The average time needed to load terms missing from the cache.
+     *
+     * @return the time, in milliseconds, or {@code 0} if nothing was loaded yet
+     */
+    double getAverageLoadTime();
+
+    /** Reset all the counters. */
+    void resetStatistics();
+}
@@ -0,0 +1,107 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.VocabularyManager;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.ApplicationStartedEvent;
+import org.xwiki.observation.event.Event;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+
+/**
+ * Preloads the configured vocabularies when the application starts, so that the first requests after a restart don't
+ * have to fetch every term from the index. The vocabularies to preload are listed in {@code xwiki.properties}, for
+ * example {@code phenotips.vocabularies.warmup = hpo, omim}. Warming up happens in a background thread, and doesn't
+ * block the startup or request handling.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Component
+@Named("vocabulary-warmup")
+@Singleton
+public class VocabularyWarmUpListener extends AbstractEventListener
+{
+    /** The name of the setting listing the vocabularies to warm up. */
+    private static final String WARMUP_SETTING = "phenotips.vocabularies.warmup";
+
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
+    /** Provides access to the vocabularies; lazily, since vocabularies are expensive to initialize. */
+    @Inject
+    private Provider<VocabularyManager> vocabularies;
+
+    @Inject
+    private Logger logger;
+
+    /** Default constructor, sets up the listener name and the list of events to subscribe to. */
+    public VocabularyWarmUpListener()
+    {
+        super("vocabulary-warmup", new ApplicationStartedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        final String[] vocabularyIds =
+            StringUtils.split(this.configuration.getProperty(WARMUP_SETTING, StringUtils.EMPTY), ", ");
+        if (vocabularyIds == null || vocabularyIds.length == 0) {
+            return;
+        }
+        Thread worker = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                warmUp(vocabularyIds);
+            }
+        }, "Vocabulary warm-up");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    private void warmUp(String[] vocabularyIds)
+    {
+        for (String vocabularyId : vocabularyIds) {
+            try {
+                Vocabulary vocabulary = this.vocabularies.get().getVocabulary(vocabularyId);
+                if (vocabulary instanceof AbstractSolrVocabulary) {
+                    ((AbstractSolrVocabulary) vocabulary).warmUp();
+                } else {
+                    this.logger.warn("Vocabulary [{}] cannot be warmed up", vocabularyId);
+                }
+            } catch (RuntimeException ex) {
+                this.logger.warn("Failed to warm up vocabulary [{}]: {}", vocabularyId, ex.getMessage());
+            }
+        }
+    }
+}
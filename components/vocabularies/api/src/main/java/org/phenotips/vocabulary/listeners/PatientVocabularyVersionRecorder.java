@@ -21,6 +21,7 @@
 import org.phenotips.data.Patient;
 import org.phenotips.data.events.PatientChangingEvent;
 import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.events.VocabularyIndexedEvent;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.context.Execution;
@@ -29,10 +30,12 @@
 import org.xwiki.observation.AbstractEventListener;
 import org.xwiki.observation.event.Event;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -46,7 +49,10 @@
 import com.xpn.xwiki.objects.BaseObject;
 
 /**
- * Store the used vocabulary versions (in the form name:String, version:String) in the patient record.
+ * Store the used vocabulary versions (in the form name:String, version:String) in the patient record. Since versions
+ * only change when a vocabulary is reindexed, they are computed once and reused for all the saved patient records,
+ * until a {@link VocabularyIndexedEvent} is received. Since vocabularies may also change without an event, for example
+ * when a remote vocabulary is updated, the computed versions also expire after a while.
  *
  * @version $Id$
  * @since 1.2M4 (under different names since 1.0M10)
@@ -64,6 +70,9 @@ public class PatientVocabularyVersionRecorder extends AbstractEventListener
 
     private static final String VERSION_FIELD = "version";
 
+    /** How long the computed versions are reused, in milliseconds. */
+    private static final long VERSIONS_TTL = TimeUnit.HOURS.toMillis(1);
+
     /** Access to services that are needed to get the ontology version. */
     @Inject
     private Map<String, Vocabulary> ontologies;
@@ -71,15 +80,29 @@ public class PatientVocabularyVersionRecorder extends AbstractEventListener
     @Inject
     private Execution execution;
 
+    /** The current versions of all the vocabularies, {@code null} until they are needed again. */
+    private volatile Map<String, String> versions;
+
+    /** When the {@link #versions computed versions} must be computed again. */
+    private volatile long versionsExpiration;
+
     /** Default constructor, sets up the listener name and the list of events to subscribe to. */
     public PatientVocabularyVersionRecorder()
     {
-        super("vocabulary-version-recorder", new PatientChangingEvent());
+        super("vocabulary-version-recorder", new PatientChangingEvent(), new VocabularyIndexedEvent());
     }
 
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
+        if (event instanceof VocabularyIndexedEvent) {
+            // Waits for a snapshot being computed, which might have used the old version
+            synchronized (this) {
+                this.versions = null;
+            }
+            return;
+        }
+
         XWikiContext context = (XWikiContext) this.execution.getContext().getProperty("xwikicontext");
         XWikiDocument doc = (XWikiDocument) source;
 
@@ -117,9 +140,28 @@ public void onEvent(Event event, Object source, Object data)
     /**
      * Modify this function to add more version types.
      *
-     * @return Map of all the version types. Each entry becomes an object in the patient record.
+     * @return Map of all the version types, unmodifiable. Each entry becomes an object in the patient record.
      */
     public Map<String, String> getOntologiesVersions()
+    {
+        Map<String, String> result = this.versions;
+        if (result == null || System.currentTimeMillis() >= this.versionsExpiration) {
+            synchronized (this) {
+                result = this.versions;
+                if (result == null || System.currentTimeMillis() >= this.versionsExpiration) {
+                    result = Collections.unmodifiableMap(computeOntologiesVersions());
+                    // No versions at all means that the vocabularies aren't available yet, try again next time
+                    if (!result.isEmpty()) {
+                        this.versionsExpiration = System.currentTimeMillis() + VERSIONS_TTL;
+                        this.versions = result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private Map<String, String> computeOntologiesVersions()
     {
         Map<String, String> result = new HashMap<>();
 
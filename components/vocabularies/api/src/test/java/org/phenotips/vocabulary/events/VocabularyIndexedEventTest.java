@@ -0,0 +1,57 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.events;
+
+import org.phenotips.data.events.PatientChangingEvent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VocabularyIndexedEventTest
+{
+    @Test
+    public void getVocabulary()
+    {
+        VocabularyIndexedEvent evt = new VocabularyIndexedEvent();
+        Assert.assertNull(evt.getVocabulary());
+
+        evt = new VocabularyIndexedEvent("hpo");
+        Assert.assertEquals("hpo", evt.getVocabulary());
+    }
+
+    @Test
+    public void matches()
+    {
+        VocabularyIndexedEvent evt1 = new VocabularyIndexedEvent();
+        Assert.assertTrue(evt1.matches(evt1));
+
+        VocabularyIndexedEvent evt2 = new VocabularyIndexedEvent("hpo");
+        Assert.assertTrue(evt1.matches(evt2));
+        Assert.assertTrue(evt2.matches(evt2));
+        Assert.assertFalse(evt2.matches(evt1));
+
+        VocabularyIndexedEvent evt3 = new VocabularyIndexedEvent("omim");
+        Assert.assertTrue(evt1.matches(evt3));
+        Assert.assertFalse(evt2.matches(evt3));
+
+        PatientChangingEvent evt4 = new PatientChangingEvent();
+        Assert.assertFalse(evt1.matches(evt4));
+        Assert.assertFalse(evt2.matches(evt4));
+        Assert.assertFalse(evt1.matches(null));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link AlternativeIdIndex} class.
+ *
+ * @version $Id$
+ */
+public class AlternativeIdIndexTest
+{
+    @Test
+    public void alternativeIdsAreResolved()
+    {
+        AlternativeIdIndex index = AlternativeIdIndex.builder()
+            .add("HP:0000001", Arrays.asList("HP:0000002", "HP:0000003"), null)
+            .add("HP:0000004", null, Collections.emptyList())
+            .build();
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals("HP:0000001", index.resolve("HP:0000002"));
+        Assert.assertEquals("HP:0000001", index.resolve("HP:0000003"));
+        Assert.assertNull(index.resolve("HP:0000001"));
+        Assert.assertNull(index.resolve("HP:0000004"));
+        Assert.assertNull(index.resolve("HP:9999999"));
+    }
+
+    @Test
+    public void obsoleteTermsAreResolvedToTheirReplacement()
+    {
+        // HP:0000001 was replaced by HP:0000002, which was later replaced by HP:0000003, which absorbed HP:0000004
+        AlternativeIdIndex index = AlternativeIdIndex.builder()
+            .add("HP:0000001", null, Arrays.asList("HP:0000002"))
+            .add("HP:0000002", null, Arrays.asList("HP:0000003"))
+            .add("HP:0000003", Arrays.asList("HP:0000004"), null)
+            .build();
+        Assert.assertEquals("HP:0000003", index.resolve("HP:0000001"));
+        Assert.assertEquals("HP:0000003", index.resolve("HP:0000002"));
+        Assert.assertEquals("HP:0000003", index.resolve("HP:0000004"));
+        Assert.assertNull(index.resolve("HP:0000003"));
+    }
+
+    @Test
+    public void replacementCyclesAreBroken()
+    {
+        AlternativeIdIndex index = AlternativeIdIndex.builder()
+            .add("HP:0000001", null, Arrays.asList("HP:0000002"))
+            .add("HP:0000002", null, Arrays.asList("HP:0000001"))
+            .build();
+        Assert.assertEquals("HP:0000002", index.resolve("HP:0000001"));
+        Assert.assertEquals("HP:0000001", index.resolve("HP:0000002"));
+    }
+
+    @Test
+    public void emptyIndexResolvesNothing()
+    {
+        AlternativeIdIndex index = AlternativeIdIndex.builder().build();
+        Assert.assertEquals(0, index.size());
+        Assert.assertNull(index.resolve("HP:0000001"));
+    }
+}
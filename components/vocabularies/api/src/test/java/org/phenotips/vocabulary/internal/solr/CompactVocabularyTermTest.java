@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.solr.common.SolrDocument;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the {@link CompactVocabularyTerm} class.
+ *
+ * @version $Id$
+ */
+public class CompactVocabularyTermTest
+{
+    private Vocabulary vocabulary;
+
+    private StringPool pool;
+
+    @Before
+    public void setUp()
+    {
+        this.vocabulary = mock(Vocabulary.class);
+        this.pool = new StringPool();
+    }
+
+    @Test
+    public void fieldsAreCopiedFromTheDocument()
+    {
+        VocabularyTerm term = new CompactVocabularyTerm(document("HP:0000002", "HP:0000001"), this.vocabulary,
+            this.pool);
+
+        Assert.assertEquals("HP:0000002", term.getId());
+        Assert.assertEquals("Term HP:0000002", term.getName());
+        Assert.assertEquals("The definition of HP:0000002", term.getDescription());
+        Assert.assertEquals(Arrays.asList("HP:0000001"), term.get("is_a"));
+        Assert.assertEquals(Arrays.asList("synonym one", "synonym two"), term.get("synonym"));
+        Assert.assertEquals(3, term.get("count"));
+        Assert.assertNull(term.get("missing"));
+        Assert.assertSame(this.vocabulary, term.getVocabulary());
+    }
+
+    @Test
+    public void termIsNotItsOwnAncestor()
+    {
+        VocabularyTerm term = new CompactVocabularyTerm(document("HP:0000002", "HP:0000001"), this.vocabulary,
+            this.pool);
+
+        Assert.assertEquals(Arrays.asList("HP:0000001"), term.get("term_category"));
+        Assert.assertEquals(1, term.getParents().size());
+        Assert.assertEquals(1, term.getAncestors().size());
+        Assert.assertEquals(2, term.getAncestorsAndSelf().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void multipleValuesCannotBeModified()
+    {
+        VocabularyTerm term = new CompactVocabularyTerm(document("HP:0000002", "HP:0000001"), this.vocabulary,
+            this.pool);
+
+        @SuppressWarnings("unchecked")
+        List<Object> values = (List<Object>) term.get("is_a");
+        values.add("HP:0000003");
+    }
+
+    @Test
+    public void repeatedValuesAreShared()
+    {
+        VocabularyTerm first = new CompactVocabularyTerm(document("HP:0000002", "HP:0000001"), this.vocabulary,
+            this.pool);
+        // Build a distinct copy of the parent identifier
+        String parent = new StringBuilder("HP:").append("0000001").toString();
+        VocabularyTerm second = new CompactVocabularyTerm(document("HP:0000003", parent), this.vocabulary, this.pool);
+
+        Assert.assertSame(((List<?>) first.get("is_a")).get(0), ((List<?>) second.get("is_a")).get(0));
+    }
+
+    @Test
+    public void toJSONIncludesAllFields()
+    {
+        SolrDocument doc = document("HP:0000002", "HP:0000001");
+        VocabularyTerm term = new CompactVocabularyTerm(doc, this.vocabulary, this.pool);
+
+        JSONObject json = term.toJSON();
+        Assert.assertEquals(doc.size(), json.length());
+        Assert.assertEquals("HP:0000002", json.getString("id"));
+        Assert.assertEquals("HP:0000001", json.getJSONArray("is_a").getString(0));
+        Assert.assertEquals(2, json.getJSONArray("synonym").length());
+        Assert.assertEquals(3, json.getInt("count"));
+    }
+
+    @Test
+    public void equalsSolrTermWithTheSameIdentifier()
+    {
+        VocabularyTerm term = new CompactVocabularyTerm(document("HP:0000002", "HP:0000001"), this.vocabulary,
+            this.pool);
+        VocabularyTerm other = new SolrVocabularyTerm(document("HP:0000002", "HP:0000001"), this.vocabulary);
+
+        Assert.assertEquals(other, term);
+        Assert.assertEquals(term, other);
+        Assert.assertEquals(other.hashCode(), term.hashCode());
+        Assert.assertEquals(0, term.getDistanceTo(other));
+        Assert.assertEquals(-1, term.getDistanceTo(null));
+    }
+
+    private SolrDocument document(String id, String parent)
+    {
+        SolrDocument doc = new SolrDocument();
+        doc.setField("id", id);
+        doc.setField("name", "Term " + id);
+        doc.setField("def", "The definition of " + id);
+        doc.setField("is_a", new ArrayList<Object>(Arrays.asList(parent)));
+        doc.setField("term_category", new ArrayList<Object>(Arrays.asList(id, parent)));
+        doc.setField("synonym", new ArrayList<Object>(Arrays.asList("synonym one", "synonym two")));
+        doc.setField("count", 3);
+        return doc;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.configuration.ConfigurationSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the transient cores limit computed by {@link DefaultSolrCoreContainerHandler}.
+ *
+ * @version $Id$
+ */
+public class DefaultSolrCoreContainerHandlerTest
+{
+    private static final String SIZE_SETTING = "phenotips.vocabularies.solr.transientCacheSize";
+
+    private static final String MEMORY_SETTING = "phenotips.vocabularies.solr.transientCacheMemory";
+
+    private static final int MB = 1024 * 1024;
+
+    @Rule
+    public final TemporaryFolder home = new TemporaryFolder();
+
+    private DefaultSolrCoreContainerHandler handler;
+
+    private ConfigurationSource configuration;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.handler = new DefaultSolrCoreContainerHandler();
+        this.configuration = mock(ConfigurationSource.class);
+        ReflectionUtils.setFieldValue(this.handler, "configuration", this.configuration);
+        ReflectionUtils.setFieldValue(this.handler, "logger", mock(Logger.class));
+
+        createCore("hpo", true, 3 * MB);
+        createCore("omim", true, 2 * MB);
+        createCore("chebi", true, 1 * MB);
+        createCore("patients", false, 10 * MB);
+    }
+
+    @Test
+    public void noLimitWithoutSettings()
+    {
+        Assert.assertEquals(Integer.MAX_VALUE, this.handler.getTransientCacheSize(this.home.getRoot()));
+    }
+
+    @Test
+    public void coreCountIsUsedAsIs()
+    {
+        when(this.configuration.getProperty(SIZE_SETTING, Integer.class)).thenReturn(2);
+        Assert.assertEquals(2, this.handler.getTransientCacheSize(this.home.getRoot()));
+    }
+
+    @Test
+    public void memoryBudgetAssumesTheLargestCoresAreOpen()
+    {
+        // hpo and omim fit in 5MB, adding chebi would exceed 5MB
+        when(this.configuration.getProperty(MEMORY_SETTING, Long.class)).thenReturn(5L);
+        Assert.assertEquals(2, this.handler.getTransientCacheSize(this.home.getRoot()));
+    }
+
+    @Test
+    public void memoryBudgetIgnoresNonTransientCores()
+    {
+        when(this.configuration.getProperty(MEMORY_SETTING, Long.class)).thenReturn(6L);
+        Assert.assertEquals(Integer.MAX_VALUE, this.handler.getTransientCacheSize(this.home.getRoot()));
+    }
+
+    @Test
+    public void memoryBudgetAlwaysAllowsOneCore()
+    {
+        when(this.configuration.getProperty(MEMORY_SETTING, Long.class)).thenReturn(1L);
+        Assert.assertEquals(1, this.handler.getTransientCacheSize(this.home.getRoot()));
+    }
+
+    @Test
+    public void smallestLimitWins()
+    {
+        when(this.configuration.getProperty(SIZE_SETTING, Integer.class)).thenReturn(1);
+        when(this.configuration.getProperty(MEMORY_SETTING, Long.class)).thenReturn(5L);
+        Assert.assertEquals(1, this.handler.getTransientCacheSize(this.home.getRoot()));
+
+        when(this.configuration.getProperty(SIZE_SETTING, Integer.class)).thenReturn(3);
+        Assert.assertEquals(2, this.handler.getTransientCacheSize(this.home.getRoot()));
+    }
+
+    private void createCore(String name, boolean isTransient, int indexSize) throws IOException
+    {
+        File core = this.home.newFolder(name);
+        Files.write(new File(core, "core.properties").toPath(),
+            ("transient=" + isTransient + "\n").getBytes(StandardCharsets.UTF_8));
+        File index = new File(new File(core, "data"), "index");
+        index.mkdirs();
+        Files.write(new File(index, "_0.cfs").toPath(), new byte[indexSize]);
+    }
+}
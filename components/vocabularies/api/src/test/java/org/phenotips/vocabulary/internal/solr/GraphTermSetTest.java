@@ -0,0 +1,212 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.solr.common.SolrDocument;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the {@link GraphTermSet} class, and its use in {@link SolrVocabularyTerm} and
+ * {@link CompactVocabularyTerm}.
+ *
+ * @version $Id$
+ */
+public class GraphTermSetTest
+{
+    private AbstractSolrVocabulary vocabulary;
+
+    private OntologyGraph graph;
+
+    @Before
+    public void setUp()
+    {
+        // ROOT <- A <- C <- E, ROOT <- B <- E
+        this.graph = OntologyGraph.builder()
+            .add("ROOT", null)
+            .add("A", Arrays.asList("ROOT"))
+            .add("B", Arrays.asList("ROOT"))
+            .add("C", Arrays.asList("A"))
+            .add("E", Arrays.asList("C", "B"))
+            .build();
+        this.vocabulary = mock(AbstractSolrVocabulary.class);
+        when(this.vocabulary.getGraph()).thenReturn(this.graph);
+    }
+
+    @Test
+    public void solrTermsUseTheGraph()
+    {
+        assertStructureFromGraph(new SolrVocabularyTerm(document("E", "STALE"), this.vocabulary));
+    }
+
+    @Test
+    public void compactTermsUseTheGraph()
+    {
+        assertStructureFromGraph(new CompactVocabularyTerm(document("E", "STALE"), this.vocabulary, new StringPool()));
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void termsAreLoadedTogetherOnlyWhenTheirDataIsNeeded()
+    {
+        VocabularyTerm loadedB = mock(VocabularyTerm.class);
+        when(loadedB.getId()).thenReturn("B");
+        when(loadedB.getName()).thenReturn("Term B");
+        VocabularyTerm loadedC = mock(VocabularyTerm.class);
+        when(loadedC.getId()).thenReturn("C");
+        when(loadedC.getName()).thenReturn("Term C");
+        when(this.vocabulary.getTerms(anyCollectionOf(String.class)))
+            .thenReturn(new HashSet<>(Arrays.asList(loadedB, loadedC)));
+
+        VocabularyTerm term = new SolrVocabularyTerm(document("E", "C"), this.vocabulary);
+        VocabularyTerm b = null;
+        VocabularyTerm c = null;
+        for (VocabularyTerm crt : term.getParents()) {
+            if ("C".equals(crt.getId())) {
+                c = crt;
+            } else {
+                b = crt;
+            }
+        }
+        verify(this.vocabulary, never()).getTerms(anyCollectionOf(String.class));
+
+        Assert.assertEquals("Term C", c.getName());
+        Assert.assertEquals("Term B", b.getName());
+        Assert.assertEquals("Term C", c.getName());
+        ArgumentCaptor<Collection> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(this.vocabulary, times(1)).getTerms(ids.capture());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("B", "C")), new HashSet<>(ids.getValue()));
+        verify(this.vocabulary, never()).getTerm(anyString());
+    }
+
+    @Test
+    public void membershipIsCheckedInTheGraph()
+    {
+        VocabularyTerm term = new SolrVocabularyTerm(document("E", "C"), this.vocabulary);
+        Set<VocabularyTerm> ancestorsAndSelf = term.getAncestorsAndSelf();
+        for (String id : Arrays.asList("E", "C", "B", "A", "ROOT")) {
+            Assert.assertTrue(id, ancestorsAndSelf.contains(id));
+        }
+        Assert.assertTrue(ancestorsAndSelf.contains(term));
+        Assert.assertFalse(ancestorsAndSelf.contains("UNKNOWN"));
+        Assert.assertFalse(ancestorsAndSelf.contains(null));
+        Assert.assertFalse(ancestorsAndSelf.contains(1));
+
+        Set<VocabularyTerm> parents = term.getParents();
+        Assert.assertTrue(parents.contains("B"));
+        Assert.assertFalse(parents.contains("E"));
+        Assert.assertFalse(parents.contains("A"));
+        // The term itself comes first
+        Assert.assertEquals("E", ancestorsAndSelf.iterator().next().getId());
+        Assert.assertEquals(5, ancestorsAndSelf.size());
+    }
+
+    @Test
+    public void solrIsUsedWithoutGraph()
+    {
+        when(this.vocabulary.getGraph()).thenReturn(null);
+        VocabularyTerm term = new SolrVocabularyTerm(document("E", "C"), this.vocabulary);
+        Assert.assertTrue(term.getParents() instanceof LazySolrTermSet);
+        Assert.assertTrue(term.getAncestors().contains("C"));
+        Assert.assertFalse(term.getAncestors().contains("A"));
+    }
+
+    @Test
+    public void solrIsUsedForTermsMissingFromTheGraph()
+    {
+        VocabularyTerm term = new CompactVocabularyTerm(document("X", "C"), this.vocabulary, new StringPool());
+        Assert.assertTrue(term.getParents() instanceof LazySolrTermSet);
+        Assert.assertEquals(2, term.getAncestorsAndSelf().size());
+    }
+
+    @Test
+    public void setsAreReadOnly()
+    {
+        Set<VocabularyTerm> parents = new SolrVocabularyTerm(document("E", "C"), this.vocabulary).getParents();
+        try {
+            parents.clear();
+            Assert.fail("The set should be read-only");
+        } catch (UnsupportedOperationException ex) {
+            // Expected
+        }
+        Assert.assertEquals(2, parents.size());
+    }
+
+    private void assertStructureFromGraph(VocabularyTerm term)
+    {
+        Assert.assertEquals(new HashSet<>(Arrays.asList("C", "B")), ids(term.getParents()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("C", "B", "A", "ROOT")), ids(term.getAncestors()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("E", "C", "B", "A", "ROOT")),
+            ids(term.getAncestorsAndSelf()));
+        Assert.assertTrue(term.getAncestors().contains("ROOT"));
+        Assert.assertFalse(term.getAncestors().contains("STALE"));
+        Assert.assertFalse(term.getAncestors().contains("E"));
+
+        // Navigating further up doesn't need the terms either
+        VocabularyTerm c = null;
+        VocabularyTerm b = null;
+        for (VocabularyTerm parent : term.getParents()) {
+            if ("C".equals(parent.getId())) {
+                c = parent;
+            } else {
+                b = parent;
+            }
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList("A")), ids(c.getParents()));
+        Assert.assertEquals(3, c.getDistanceTo(b));
+        Assert.assertEquals(2, term.getDistanceTo(new SolrVocabularyTerm(document("A", "ROOT"), this.vocabulary)));
+
+        verify(this.vocabulary, never()).getTerm(anyString());
+        verify(this.vocabulary, never()).getTerms(anyCollectionOf(String.class));
+    }
+
+    private Set<String> ids(Collection<VocabularyTerm> terms)
+    {
+        Set<String> result = new HashSet<>();
+        for (VocabularyTerm term : terms) {
+            result.add(term.getId());
+        }
+        return result;
+    }
+
+    private SolrDocument document(String id, String parent)
+    {
+        SolrDocument doc = new SolrDocument();
+        doc.setField("id", id);
+        doc.setField("is_a", Arrays.asList(parent));
+        doc.setField("term_category", Arrays.asList(parent));
+        return doc;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for the {@link MonitoredTermCache} class.
+ *
+ * @version $Id$
+ */
+public class MonitoredTermCacheTest
+{
+    private final Map<String, VocabularyTerm> entries = new HashMap<>();
+
+    private CacheEntryListener<VocabularyTerm> listener;
+
+    private MonitoredTermCache cache;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp()
+    {
+        Cache<VocabularyTerm> actualCache = mock(Cache.class);
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            {
+                MonitoredTermCacheTest.this.entries.put((String) invocation.getArguments()[0],
+                    (VocabularyTerm) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(actualCache).set(anyString(), any(VocabularyTerm.class));
+        doAnswer(new Answer<VocabularyTerm>()
+        {
+            @Override
+            public VocabularyTerm answer(InvocationOnMock invocation)
+            {
+                return MonitoredTermCacheTest.this.entries.get(invocation.getArguments()[0]);
+            }
+        }).when(actualCache).get(anyString());
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            {
+                if (MonitoredTermCacheTest.this.entries.remove(invocation.getArguments()[0]) != null) {
+                    fireRemoval();
+                }
+                return null;
+            }
+        }).when(actualCache).remove(anyString());
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            {
+                for (int i = MonitoredTermCacheTest.this.entries.size(); i > 0; --i) {
+                    fireRemoval();
+                }
+                MonitoredTermCacheTest.this.entries.clear();
+                return null;
+            }
+        }).when(actualCache).removeAll();
+
+        this.cache = new MonitoredTermCache(actualCache, "hpo", 100, 60);
+        ArgumentCaptor<CacheEntryListener> captor = ArgumentCaptor.forClass(CacheEntryListener.class);
+        verify(actualCache).addCacheEntryListener(captor.capture());
+        this.listener = captor.getValue();
+    }
+
+    @Test
+    public void hitsAndMissesAreCounted()
+    {
+        this.cache.set("HP:1", mock(VocabularyTerm.class));
+        Assert.assertNotNull(this.cache.get("HP:1"));
+        Assert.assertNotNull(this.cache.get("HP:1"));
+        Assert.assertNull(this.cache.get("HP:2"));
+
+        Assert.assertEquals(2, this.cache.getHits());
+        Assert.assertEquals(1, this.cache.getMisses());
+        Assert.assertEquals(2.0 / 3, this.cache.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void onlyActualRemovalsAreCountedAsExplicit()
+    {
+        this.cache.set("HP:1", mock(VocabularyTerm.class));
+        this.cache.remove("HP:1");
+        this.cache.remove("HP:1");
+        this.cache.remove("HP:2");
+
+        Assert.assertEquals(1, this.cache.getExplicitRemovals());
+        Assert.assertEquals(0, this.cache.getEvictions());
+
+        // An eviction after removing missing entries is still counted
+        fireRemoval();
+        Assert.assertEquals(1, this.cache.getEvictions());
+    }
+
+    @Test
+    public void removeAllIsNotCountedAsEvictions()
+    {
+        this.cache.set("HP:1", mock(VocabularyTerm.class));
+        this.cache.set("HP:2", mock(VocabularyTerm.class));
+        this.cache.set("HP:3", mock(VocabularyTerm.class));
+        this.cache.removeAll();
+
+        Assert.assertEquals(3, this.cache.getExplicitRemovals());
+        Assert.assertEquals(0, this.cache.getEvictions());
+    }
+
+    @Test
+    public void evictionsAreCounted()
+    {
+        fireRemoval();
+        fireRemoval();
+        Assert.assertEquals(2, this.cache.getEvictions());
+        Assert.assertEquals(0, this.cache.getExplicitRemovals());
+    }
+
+    @Test
+    public void loadsAreCounted()
+    {
+        this.cache.recordLoad(TimeUnit.MILLISECONDS.toNanos(10));
+        this.cache.recordLoad(TimeUnit.MILLISECONDS.toNanos(30));
+
+        Assert.assertEquals(2, this.cache.getLoads());
+        Assert.assertEquals(40, this.cache.getTotalLoadTime());
+        Assert.assertEquals(20.0, this.cache.getAverageLoadTime(), 0.0001);
+    }
+
+    @Test
+    public void resetStatisticsClearsAllCounters()
+    {
+        this.cache.set("HP:1", mock(VocabularyTerm.class));
+        this.cache.get("HP:1");
+        this.cache.get("HP:2");
+        this.cache.remove("HP:1");
+        fireRemoval();
+        this.cache.recordLoad(1000);
+
+        this.cache.resetStatistics();
+        Assert.assertEquals(0, this.cache.getHits());
+        Assert.assertEquals(0, this.cache.getMisses());
+        Assert.assertEquals(0, this.cache.getExplicitRemovals());
+        Assert.assertEquals(0, this.cache.getEvictions());
+        Assert.assertEquals(0, this.cache.getLoads());
+        Assert.assertEquals(0.0, this.cache.getHitRatio(), 0.0);
+        Assert.assertEquals(0.0, this.cache.getAverageLoadTime(), 0.0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fireRemoval()
+    {
+        this.listener.cacheEntryRemoved(mock(CacheEntryEvent.class));
+    }
+}
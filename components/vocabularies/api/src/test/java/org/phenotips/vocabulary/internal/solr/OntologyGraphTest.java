@@ -0,0 +1,125 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link OntologyGraph} class.
+ *
+ * @version $Id$
+ */
+public class OntologyGraphTest
+{
+    private OntologyGraph graph;
+
+    @Before
+    public void setUp()
+    {
+        // ROOT <- A <- C <- E, ROOT <- B <- E, B <- F, and an unrelated term X
+        this.graph = OntologyGraph.builder()
+            .add("ROOT", null)
+            .add("A", Arrays.asList("ROOT"))
+            .add("B", Arrays.asList("ROOT"))
+            .add("C", Arrays.asList("A"))
+            .add("E", Arrays.asList("C", "B", "MISSING"))
+            .add("F", Arrays.asList("B"))
+            .add("X", null)
+            .build();
+    }
+
+    @Test
+    public void relationsAreCompiled()
+    {
+        Assert.assertEquals(7, this.graph.size());
+        assertIds(this.graph.getParentIds("E"), "C", "B");
+        assertIds(this.graph.getChildIds("B"), "E", "F");
+        assertIds(this.graph.getAncestorIds("E"), "C", "B", "A", "ROOT");
+        assertIds(this.graph.getAncestorAndSelfIds("E"), "E", "C", "B", "A", "ROOT");
+        assertIds(this.graph.getAncestorIds("ROOT"));
+        assertIds(this.graph.getAncestorAndSelfIds("ROOT"), "ROOT");
+        Assert.assertTrue(this.graph.isAncestor("ROOT", "E"));
+        Assert.assertFalse(this.graph.isAncestor("E", "ROOT"));
+        Assert.assertFalse(this.graph.isAncestor("F", "E"));
+    }
+
+    @Test
+    public void unknownTermsAreHandled()
+    {
+        Assert.assertFalse(this.graph.contains("MISSING"));
+        Assert.assertFalse(this.graph.contains(null));
+        assertIds(this.graph.getParentIds("MISSING"));
+        assertIds(this.graph.getAncestorAndSelfIds(null));
+        Assert.assertEquals(-1, this.graph.getDistance("E", "MISSING"));
+        Assert.assertEquals(-1, this.graph.getDistance(null, "E"));
+    }
+
+    @Test
+    public void distancesAreComputed()
+    {
+        Assert.assertEquals(0, this.graph.getDistance("E", "E"));
+        Assert.assertEquals(1, this.graph.getDistance("E", "B"));
+        Assert.assertEquals(2, this.graph.getDistance("E", "ROOT"));
+        Assert.assertEquals(2, this.graph.getDistance("ROOT", "E"));
+        Assert.assertEquals(2, this.graph.getDistance("E", "F"));
+        Assert.assertEquals(4, this.graph.getDistance("C", "F"));
+        Assert.assertEquals(-1, this.graph.getDistance("E", "X"));
+    }
+
+    @Test
+    public void cyclesDontBreakCompilation()
+    {
+        OntologyGraph cyclic = OntologyGraph.builder()
+            .add("A", Arrays.asList("B"))
+            .add("B", Arrays.asList("A"))
+            .build();
+        Assert.assertTrue(cyclic.isAncestor("B", "A"));
+        Assert.assertEquals(1, cyclic.getDistance("A", "B"));
+    }
+
+    @Test
+    public void allTermsInACycleShareTheirAncestors()
+    {
+        OntologyGraph cyclic = OntologyGraph.builder()
+            .add("ROOT", Arrays.<String>asList())
+            .add("D", Arrays.asList("C"))
+            .add("C", Arrays.asList("B"))
+            .add("B", Arrays.asList("A"))
+            .add("A", Arrays.asList("C", "ROOT"))
+            .add("E", Arrays.asList("E", "ROOT"))
+            .build();
+        assertIds(cyclic.getAncestorIds("A"), "B", "C", "ROOT");
+        assertIds(cyclic.getAncestorIds("B"), "A", "C", "ROOT");
+        assertIds(cyclic.getAncestorIds("C"), "A", "B", "ROOT");
+        assertIds(cyclic.getAncestorIds("D"), "A", "B", "C", "ROOT");
+        assertIds(cyclic.getAncestorIds("E"), "ROOT");
+        assertIds(cyclic.getAncestorAndSelfIds("E"), "E", "ROOT");
+    }
+
+    private void assertIds(Collection<String> actual, String... expected)
+    {
+        Assert.assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(actual));
+        Assert.assertEquals(expected.length, actual.size());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link PrefixSuggester} class.
+ *
+ * @version $Id$
+ */
+public class PrefixSuggesterTest
+{
+    private PrefixSuggester suggester;
+
+    @Before
+    public void setUp()
+    {
+        SolrInputDocument asd = new SolrInputDocument();
+        asd.addField("id", "HP:0001631");
+        asd.addField("name", "Atrial septal defect");
+        asd.addField("synonym", "ASD");
+        this.suggester = PrefixSuggester.builder()
+            .add("HP:0001627", Arrays.asList("Abnormality of the heart"),
+                Arrays.asList("Cardiac abnormality", "Heart defect"))
+            .add(asd)
+            .add("HP:0012759", Arrays.asList("Neurodevelopmental abnormality"), null)
+            .add(new SolrInputDocument())
+            .build();
+    }
+
+    @Test
+    public void allLabelsAreIndexed()
+    {
+        Assert.assertEquals(3, this.suggester.size());
+        Assert.assertEquals(Arrays.asList("HP:0001627", "HP:0001631"), this.suggester.suggest("hp:00016", 10));
+        Assert.assertEquals(Arrays.asList("HP:0001631"), this.suggester.suggest("asd", 10));
+        Assert.assertEquals(Arrays.asList("HP:0001627"), this.suggester.suggest("cardiac", 10));
+    }
+
+    @Test
+    public void wordsInsideLabelsAreMatched()
+    {
+        Assert.assertEquals(Arrays.asList("HP:0001627"), this.suggester.suggest("hear", 10));
+        Assert.assertEquals(Arrays.asList("HP:0001631"), this.suggester.suggest("septal de", 10));
+    }
+
+    @Test
+    public void caseAndPunctuationAreIgnored()
+    {
+        Assert.assertEquals(Arrays.asList("HP:0001627"), this.suggester.suggest("  ABNORMALITY, of-the ", 10));
+    }
+
+    @Test
+    public void betterMatchesComeFirst()
+    {
+        // Matches at the start of a label come first, then names before synonyms
+        Assert.assertEquals(Arrays.asList("HP:0001627", "HP:0012759"), this.suggester.suggest("abnormality", 10));
+        Assert.assertEquals(Arrays.asList("HP:0001631", "HP:0001627"), this.suggester.suggest("defect", 10));
+        Assert.assertEquals(Arrays.asList("HP:0001631"), this.suggester.suggest("defect", 1));
+    }
+
+    @Test
+    public void exactMatchesComeBeforeLongerLabels()
+    {
+        PrefixSuggester exact = PrefixSuggester.builder()
+            .add("HP:0007359", Arrays.asList("Focal seizures"), null)
+            .add("HP:0001250", Arrays.asList("Seizures"), null)
+            .add("HP:0011097", Arrays.asList("Seizures, epileptic"), Arrays.asList("Epileptic seizures"))
+            .build();
+        Assert.assertEquals(Arrays.asList("HP:0001250", "HP:0011097", "HP:0007359"), exact.suggest("seizures", 10));
+    }
+
+    @Test
+    public void weightsCanBeCustomized()
+    {
+        PrefixSuggester.Weights synonymsFirst = new PrefixSuggester.Weights(100f, 1f, 1f, 1f, 5f, 5f, 5f);
+        PrefixSuggester custom = PrefixSuggester.builder(synonymsFirst)
+            .add("HP:0001627", Arrays.asList("Heart"), null)
+            .add("HP:0001678", Arrays.asList("Atrioventricular block"), Arrays.asList("Heart block"))
+            .build();
+        Assert.assertEquals(Arrays.asList("HP:0001678", "HP:0001627"), custom.suggest("heart", 10));
+    }
+
+    @Test
+    public void missingPrefixesReturnNothing()
+    {
+        Assert.assertEquals(Collections.emptyList(), this.suggester.suggest("zebra", 10));
+        Assert.assertEquals(Collections.emptyList(), this.suggester.suggest("abnormality of the heart muscle", 10));
+        Assert.assertEquals(Collections.emptyList(), this.suggester.suggest(" ", 10));
+        Assert.assertEquals(Collections.emptyList(), this.suggester.suggest(null, 10));
+        Assert.assertEquals(Collections.emptyList(), this.suggester.suggest("heart", 0));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.CoreDescriptor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the {@link ReplacementSolrCore} class, using an embedded Solr container.
+ *
+ * @version $Id$
+ */
+public class ReplacementSolrCoreTest
+{
+    private static final String CORE_NAME = "spellcheckedresults";
+
+    @Rule
+    public final TemporaryFolder home = new TemporaryFolder();
+
+    private CoreContainer container;
+
+    @After
+    public void tearDown()
+    {
+        if (this.container != null) {
+            this.container.shutdown();
+        }
+    }
+
+    @Test
+    public void replacementKeepsTheLoadingSettings() throws IOException
+    {
+        start("transient=true\nloadOnStartup=false\n");
+        ReplacementSolrCore replacement = new ReplacementSolrCore(this.container, CORE_NAME, mock(Logger.class));
+
+        Assert.assertNotNull(replacement.create());
+
+        CoreDescriptor descriptor = this.container.getCoreDescriptor(CORE_NAME + "_reindex");
+        Assert.assertTrue(descriptor.isTransient());
+        Assert.assertFalse(descriptor.isLoadOnStartup());
+        replacement.discard();
+    }
+
+    @Test
+    public void swappedCoreKeepsTheLoadingSettingsAndServesTheNewData() throws IOException, SolrServerException
+    {
+        start("loadOnStartup=false\n");
+        ReplacementSolrCore replacement = new ReplacementSolrCore(this.container, CORE_NAME, mock(Logger.class));
+        SolrClient client = replacement.create();
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.setField("id", "1");
+        doc.setField("name", "heart defect");
+        client.add(doc);
+        client.commit();
+
+        Assert.assertTrue(replacement.swap());
+
+        CoreDescriptor descriptor = this.container.getCoreDescriptor(CORE_NAME);
+        Assert.assertFalse(descriptor.isTransient());
+        Assert.assertFalse(descriptor.isLoadOnStartup());
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.Q, "id:1");
+        Assert.assertEquals(1, new EmbeddedSolrServer(this.container, CORE_NAME).query(params).getResults()
+            .getNumFound());
+        Assert.assertFalse(this.container.getCoreNames().contains(CORE_NAME + "_reindex"));
+        Assert.assertFalse(new File(this.home.getRoot(), CORE_NAME).exists());
+    }
+
+    @Test
+    public void swapWorksWithTransientCoresEvictedFromTheCache() throws IOException, SolrServerException
+    {
+        // Only one of the two cores can be loaded at a time
+        start("transient=true\nloadOnStartup=false\n", "<solr><int name=\"transientCacheSize\">1</int></solr>");
+        SolrClient current = new EmbeddedSolrServer(this.container, CORE_NAME);
+        add(current, "0", "old data");
+        ReplacementSolrCore replacement = new ReplacementSolrCore(this.container, CORE_NAME, mock(Logger.class));
+        SolrClient client = replacement.create();
+        add(client, "1", "heart defect");
+        // Loads the current core again, evicting the replacement core
+        Assert.assertEquals(1, count(current, "id:0"));
+
+        Assert.assertTrue(replacement.swap());
+
+        Assert.assertEquals(1, count(current, "id:1"));
+        Assert.assertEquals(0, count(current, "id:0"));
+        Assert.assertTrue(this.container.getCoreDescriptor(CORE_NAME).isTransient());
+        Assert.assertFalse(this.container.getCoreNames().contains(CORE_NAME + "_reindex"));
+        // The old data lived in the original directory, the new data in the replacement directory
+        Assert.assertFalse(new File(this.home.getRoot(), CORE_NAME).exists());
+        Assert.assertTrue(new File(this.home.getRoot(), CORE_NAME + "_reindex").isDirectory());
+    }
+
+    private void add(SolrClient client, String id, String name) throws IOException, SolrServerException
+    {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.setField("id", id);
+        doc.setField("name", name);
+        client.add(doc);
+        client.commit();
+    }
+
+    private long count(SolrClient client, String query) throws IOException, SolrServerException
+    {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.Q, query);
+        return client.query(params).getResults().getNumFound();
+    }
+
+    private void start(String coreProperties) throws IOException
+    {
+        start(coreProperties, "<solr/>");
+    }
+
+    private void start(String coreProperties, String solrConfiguration) throws IOException
+    {
+        File core = this.home.newFolder(CORE_NAME);
+        File conf = new File(core, "conf");
+        conf.mkdirs();
+        copy("solrconfig.xml", conf);
+        copy("schema.xml", conf);
+        Files.write(new File(core, "core.properties").toPath(),
+            ("name=" + CORE_NAME + "\n" + coreProperties).getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(this.home.getRoot(), "solr.xml").toPath(),
+            solrConfiguration.getBytes(StandardCharsets.UTF_8));
+        this.container = new CoreContainer(this.home.getRoot().getAbsolutePath());
+        this.container.load();
+    }
+
+    private void copy(String name, File target) throws IOException
+    {
+        try (InputStream in = getClass().getResourceAsStream('/' + CORE_NAME + "/conf/" + name)) {
+            Files.copy(in, new File(target, name).toPath());
+        }
+    }
+}
@@ -54,10 +54,20 @@ public void testEnhanceParamsDefaultValues()
         Assert.assertNull(output.get(CommonParams.Q));
         Assert.assertEquals("* score", output.get(CommonParams.FL));
         Assert.assertEquals(true, output.getBool(SpellingParams.SPELLCHECK_COLLATE));
+        Assert.assertEquals(true, output.getBool(SpellcheckedResultsComponent.COLLATED_RESULTS));
         Assert.assertEquals(0, (int) output.getInt(CommonParams.START));
         Assert.assertTrue(output.getInt(CommonParams.ROWS) > 100);
     }
 
+    @Test
+    public void testEnhanceParamsDoesntRequestCollatedResultsWithoutSpellcheck()
+    {
+        ModifiableSolrParams input = new ModifiableSolrParams();
+        input.set("spellcheck", false);
+        SolrParams output = SolrQueryUtils.enhanceParams(input);
+        Assert.assertNull(output.get(SpellcheckedResultsComponent.COLLATED_RESULTS));
+    }
+
     @Test
     public void testEnhanceParamsDoesntReplaceExistingValues()
     {
@@ -0,0 +1,152 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.CoreContainer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link SpellcheckedResultsComponent} class, running inside an embedded Solr core.
+ *
+ * @version $Id$
+ */
+public class SpellcheckedResultsComponentTest
+{
+    private static final String CORE_NAME = "spellcheckedresults";
+
+    @Rule
+    public final TemporaryFolder home = new TemporaryFolder();
+
+    private CoreContainer container;
+
+    private EmbeddedSolrServer server;
+
+    @Before
+    public void setUp() throws IOException, SolrServerException
+    {
+        File core = this.home.newFolder(CORE_NAME);
+        File conf = new File(core, "conf");
+        conf.mkdirs();
+        copy("solrconfig.xml", conf);
+        copy("schema.xml", conf);
+        Files.write(new File(core, "core.properties").toPath(),
+            ("name=" + CORE_NAME).getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(this.home.getRoot(), "solr.xml").toPath(), "<solr/>".getBytes(StandardCharsets.UTF_8));
+
+        this.container = new CoreContainer(this.home.getRoot().getAbsolutePath());
+        this.container.load();
+        this.server = new EmbeddedSolrServer(this.container, CORE_NAME);
+
+        add("1", "heart defect");
+        add("2", "heart murmur");
+        add("3", "small hand");
+        this.server.commit();
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.container.shutdown();
+    }
+
+    @Test
+    public void misspelledQueryIsReplacedWithCollatedResults() throws IOException, SolrServerException
+    {
+        QueryResponse response = this.server.query(params("hart", true));
+
+        Assert.assertEquals(Boolean.TRUE, response.getResponse().get(SpellcheckedResultsComponent.COLLATED_RESULTS));
+        Assert.assertEquals(2, response.getResults().size());
+        for (SolrDocument doc : response.getResults()) {
+            Assert.assertTrue(String.valueOf(doc.getFieldValue("name")).startsWith("heart"));
+        }
+    }
+
+    @Test
+    public void existingResultsAreKept() throws IOException, SolrServerException
+    {
+        QueryResponse response = this.server.query(params("hand", true));
+
+        Assert.assertEquals(Boolean.FALSE, response.getResponse().get(SpellcheckedResultsComponent.COLLATED_RESULTS));
+        Assert.assertEquals(Arrays.asList("3"), ids(response));
+    }
+
+    @Test
+    public void componentIsInactiveUnlessRequested() throws IOException, SolrServerException
+    {
+        QueryResponse response = this.server.query(params("hart", false));
+
+        Assert.assertNull(response.getResponse().get(SpellcheckedResultsComponent.COLLATED_RESULTS));
+        Assert.assertTrue(response.getResults().isEmpty());
+        Assert.assertEquals("heart", response.getSpellCheckResponse().getCollatedResult());
+    }
+
+    private ModifiableSolrParams params(String query, boolean collatedResults)
+    {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.Q, query);
+        if (collatedResults) {
+            params.set(SpellcheckedResultsComponent.COLLATED_RESULTS, true);
+        }
+        return params;
+    }
+
+    private void add(String id, String name) throws IOException, SolrServerException
+    {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.setField("id", id);
+        doc.setField("name", name);
+        this.server.add(doc);
+    }
+
+    private List<String> ids(QueryResponse response)
+    {
+        List<String> result = new ArrayList<>();
+        for (SolrDocument doc : response.getResults()) {
+            result.add(String.valueOf(doc.getFieldValue("id")));
+        }
+        return result;
+    }
+
+    private void copy(String name, File target) throws IOException
+    {
+        try (InputStream in = getClass().getResourceAsStream('/' + CORE_NAME + "/conf/" + name)) {
+            Files.copy(in, new File(target, name).toPath());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.VocabularyManager;
+
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.ApplicationStartedEvent;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the {@link VocabularyWarmUpListener} component.
+ *
+ * @version $Id$
+ */
+public class VocabularyWarmUpListenerTest
+{
+    private static final String WARMUP_SETTING = "phenotips.vocabularies.warmup";
+
+    @Rule
+    public final MockitoComponentMockingRule<EventListener> mocker =
+        new MockitoComponentMockingRule<EventListener>(VocabularyWarmUpListener.class);
+
+    private ConfigurationSource configuration;
+
+    private VocabularyManager vocabularies;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.configuration = this.mocker.getInstance(ConfigurationSource.class, "xwikiproperties");
+        this.vocabularies = mock(VocabularyManager.class);
+        Provider<VocabularyManager> provider =
+            this.mocker.getInstance(new DefaultParameterizedType(null, Provider.class, VocabularyManager.class));
+        when(provider.get()).thenReturn(this.vocabularies);
+    }
+
+    @Test
+    public void configuredVocabulariesAreWarmedUp() throws Exception
+    {
+        when(this.configuration.getProperty(WARMUP_SETTING, "")).thenReturn("hpo, omim");
+        AbstractSolrVocabulary hpo = mock(AbstractSolrVocabulary.class);
+        AbstractSolrVocabulary omim = mock(AbstractSolrVocabulary.class);
+        when(this.vocabularies.getVocabulary("hpo")).thenReturn(hpo);
+        when(this.vocabularies.getVocabulary("omim")).thenReturn(omim);
+
+        this.mocker.getComponentUnderTest().onEvent(new ApplicationStartedEvent(), null, null);
+
+        verify(hpo, timeout(5000)).warmUp();
+        verify(omim, timeout(5000)).warmUp();
+    }
+
+    @Test
+    public void failuresDoNotStopTheWarmUp() throws Exception
+    {
+        when(this.configuration.getProperty(WARMUP_SETTING, "")).thenReturn("hpo, other, omim");
+        AbstractSolrVocabulary hpo = mock(AbstractSolrVocabulary.class);
+        when(hpo.warmUp()).thenThrow(new IllegalStateException("broken"));
+        AbstractSolrVocabulary omim = mock(AbstractSolrVocabulary.class);
+        when(this.vocabularies.getVocabulary("hpo")).thenReturn(hpo);
+        when(this.vocabularies.getVocabulary("other")).thenReturn(mock(Vocabulary.class));
+        when(this.vocabularies.getVocabulary("omim")).thenReturn(omim);
+
+        this.mocker.getComponentUnderTest().onEvent(new ApplicationStartedEvent(), null, null);
+
+        verify(omim, timeout(5000)).warmUp();
+        Logger logger = this.mocker.getMockedLogger();
+        verify(logger).warn(eq("Failed to warm up vocabulary [{}]: {}"), eq("hpo"), anyString());
+        verify(logger).warn("Vocabulary [{}] cannot be warmed up", "other");
+    }
+
+    @Test
+    public void nothingHappensWithoutSettings() throws Exception
+    {
+        when(this.configuration.getProperty(WARMUP_SETTING, "")).thenReturn("");
+
+        this.mocker.getComponentUnderTest().onEvent(new ApplicationStartedEvent(), null, null);
+
+        verifyZeroInteractions(this.vocabularies);
+    }
+}
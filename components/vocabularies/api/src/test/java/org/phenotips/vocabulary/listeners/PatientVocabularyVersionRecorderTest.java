@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.listeners;
+
+import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.events.VocabularyIndexedEvent;
+
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PatientVocabularyVersionRecorderTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<PatientVocabularyVersionRecorder> mocker =
+        new MockitoComponentMockingRule<PatientVocabularyVersionRecorder>(PatientVocabularyVersionRecorder.class);
+
+    private PatientVocabularyVersionRecorder recorder;
+
+    private Vocabulary hpo;
+
+    private Vocabulary omim;
+
+    @Before
+    public void setUp() throws ComponentLookupException
+    {
+        this.hpo = mock(Vocabulary.class);
+        when(this.hpo.getVersion()).thenReturn("2016-01-01");
+        this.omim = mock(Vocabulary.class);
+        when(this.omim.getVersion()).thenReturn("2016-02-02");
+        Map<String, Vocabulary> vocabularies = new HashMap<>();
+        vocabularies.put("hpo", this.hpo);
+        vocabularies.put("omim", this.omim);
+        this.recorder = this.mocker.getComponentUnderTest();
+        ReflectionUtils.setFieldValue(this.recorder, "ontologies", vocabularies);
+    }
+
+    @Test
+    public void versionsAreComputedOnce()
+    {
+        Map<String, String> expected = new HashMap<>();
+        expected.put("hpo", "2016-01-01");
+        expected.put("omim", "2016-02-02");
+        Assert.assertEquals(expected, this.recorder.getOntologiesVersions());
+        Assert.assertEquals(expected, this.recorder.getOntologiesVersions());
+        verify(this.hpo, times(1)).getVersion();
+        verify(this.omim, times(1)).getVersion();
+    }
+
+    @Test
+    public void versionsAreRecomputedAfterReindex()
+    {
+        this.recorder.getOntologiesVersions();
+        when(this.hpo.getVersion()).thenReturn("2016-03-03");
+        this.recorder.onEvent(new VocabularyIndexedEvent("hpo"), null, null);
+        Assert.assertEquals("2016-03-03", this.recorder.getOntologiesVersions().get("hpo"));
+        verify(this.hpo, times(2)).getVersion();
+    }
+
+    @Test
+    public void versionsExpire()
+    {
+        this.recorder.getOntologiesVersions();
+        when(this.omim.getVersion()).thenReturn("2016-03-03");
+        // Pretend the versions were computed long ago
+        ReflectionUtils.setFieldValue(this.recorder, "versionsExpiration", 1L);
+        Assert.assertEquals("2016-03-03", this.recorder.getOntologiesVersions().get("omim"));
+        verify(this.omim, times(2)).getVersion();
+    }
+
+    @Test
+    public void emptyVersionsAreNotCached()
+    {
+        when(this.hpo.getVersion()).thenReturn(null, "2016-01-01");
+        when(this.omim.getVersion()).thenReturn("", "2016-02-02");
+        Assert.assertEquals(Collections.emptyMap(), this.recorder.getOntologiesVersions());
+        Assert.assertEquals("2016-01-01", this.recorder.getOntologiesVersions().get("hpo"));
+        Assert.assertEquals("2016-01-01", this.recorder.getOntologiesVersions().get("hpo"));
+        verify(this.hpo, times(2)).getVersion();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.benchmarks;
+
+import org.xwiki.configuration.ConfigurationSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory configuration used instead of {@code xwiki.properties} while benchmarking, so that the vocabularies run
+ * with their default settings, except for the few properties explicitly set by the fixtures.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public class FixtureConfigurationSource implements ConfigurationSource
+{
+    private final Map<String, Object> properties = new HashMap<>();
+
+    /**
+     * Set the value of a property.
+     *
+     * @param key the name of the property
+     * @param value the new value
+     */
+    public void setProperty(String key, Object value)
+    {
+        this.properties.put(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getProperty(String key, T defaultValue)
+    {
+        if (defaultValue == null) {
+            return getProperty(key);
+        }
+        T result = getProperty(key, (Class<T>) defaultValue.getClass());
+        return result != null ? result : defaultValue;
+    }
+
+    @Override
+    public <T> T getProperty(String key, Class<T> valueClass)
+    {
+        Object value = this.properties.get(key);
+        if (value == null || valueClass.isInstance(value)) {
+            return valueClass.cast(value);
+        }
+        // Values are only set from code, the only conversion ever needed is from strings to numbers
+        if (Integer.class.equals(valueClass)) {
+            return valueClass.cast(Integer.valueOf(String.valueOf(value)));
+        } else if (Long.class.equals(valueClass)) {
+            return valueClass.cast(Long.valueOf(String.valueOf(value)));
+        } else if (String.class.equals(valueClass)) {
+            return valueClass.cast(String.valueOf(value));
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getProperty(String key)
+    {
+        return (T) this.properties.get(key);
+    }
+
+    @Override
+    public List<String> getKeys()
+    {
+        return new ArrayList<>(this.properties.keySet());
+    }
+
+    @Override
+    public boolean containsKey(String key)
+    {
+        return this.properties.containsKey(key);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return this.properties.isEmpty();
+    }
+}
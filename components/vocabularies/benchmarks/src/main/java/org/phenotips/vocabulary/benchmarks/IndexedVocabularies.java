@@ -0,0 +1,81 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.benchmarks;
+
+import org.phenotips.vocabulary.Vocabulary;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark state holding the HPO, OMIM and HGNC vocabularies, indexed from the trimmed fixtures once per trial.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@State(Scope.Benchmark)
+public class IndexedVocabularies
+{
+    private VocabularyFixtures fixtures;
+
+    /**
+     * Prepare the environment and index the fixtures.
+     *
+     * @throws IOException if preparing the environment fails
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.fixtures = new VocabularyFixtures();
+        this.fixtures.reindex();
+    }
+
+    /** Stop the vocabularies and delete the environment. */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.fixtures.close();
+    }
+
+    /**
+     * Access the fixtures.
+     *
+     * @return the prepared fixtures
+     */
+    public VocabularyFixtures getFixtures()
+    {
+        return this.fixtures;
+    }
+
+    /**
+     * Access one of the indexed vocabularies.
+     *
+     * @param identifier the vocabulary identifier, one of {@link VocabularyFixtures#HPO},
+     *            {@link VocabularyFixtures#OMIM}, or {@link VocabularyFixtures#HGNC}
+     * @return the vocabulary component
+     */
+    public Vocabulary getVocabulary(String identifier)
+    {
+        return this.fixtures.getVocabulary(identifier);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.benchmarks;
+
+import org.phenotips.obo2solr.SolrUpdateGenerator;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing the vocabulary sources and fully reindexing the vocabularies. Each call is measured separately, since a
+ * reindex is a long, one-off operation.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IndexingBenchmark
+{
+    /**
+     * Parsing the HPO source, without indexing it.
+     *
+     * @param state the indexed vocabularies
+     * @return the number of parsed terms
+     */
+    @Benchmark
+    public int parsePhenotypes(IndexedVocabularies state)
+    {
+        return new SolrUpdateGenerator()
+            .transform(state.getFixtures().getSourceLocation(VocabularyFixtures.HPO), new HashMap<String, Double>())
+            .size();
+    }
+
+    /**
+     * Reindexing HPO.
+     *
+     * @param state the indexed vocabularies
+     */
+    @Benchmark
+    public void reindexPhenotypes(IndexedVocabularies state)
+    {
+        state.getFixtures().reindex(VocabularyFixtures.HPO);
+    }
+
+    /**
+     * Reindexing OMIM, which includes looking up the HPO annotations of each disorder.
+     *
+     * @param state the indexed vocabularies
+     */
+    @Benchmark
+    public void reindexDisorders(IndexedVocabularies state)
+    {
+        state.getFixtures().reindex(VocabularyFixtures.OMIM);
+    }
+
+    /**
+     * Reindexing HGNC.
+     *
+     * @param state the indexed vocabularies
+     */
+    @Benchmark
+    public void reindexGenes(IndexedVocabularies state)
+    {
+        state.getFixtures().reindex(VocabularyFixtures.HGNC);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.benchmarks;
+
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Suggestion queries, as sent by the autocomplete widgets while the user types.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SuggestionBenchmark
+{
+    private static final int MAX_RESULTS = 10;
+
+    /** Partial words, several words, identifiers, and a misspelling that needs the spellchecker. */
+    @Param({ "sei", "short stat", "abnormality of the", "HP:00012", "hypotelorsm" })
+    private String input;
+
+    /**
+     * Phenotype suggestions.
+     *
+     * @param state the indexed vocabularies
+     * @return the suggested terms
+     */
+    @Benchmark
+    public List<VocabularyTerm> suggestPhenotypes(IndexedVocabularies state)
+    {
+        return state.getVocabulary(VocabularyFixtures.HPO).search(this.input, MAX_RESULTS, null, null);
+    }
+
+    /**
+     * Disorder suggestions.
+     *
+     * @param state the indexed vocabularies
+     * @return the suggested terms
+     */
+    @Benchmark
+    public List<VocabularyTerm> suggestDisorders(IndexedVocabularies state)
+    {
+        return state.getVocabulary(VocabularyFixtures.OMIM).search(this.input, MAX_RESULTS, null, null);
+    }
+
+    /**
+     * Gene suggestions.
+     *
+     * @param state the indexed vocabularies
+     * @return the suggested terms
+     */
+    @Benchmark
+    public List<VocabularyTerm> suggestGenes(IndexedVocabularies state)
+    {
+        return state.getVocabulary(VocabularyFixtures.HGNC).search(this.input, MAX_RESULTS, null, null);
+    }
+}
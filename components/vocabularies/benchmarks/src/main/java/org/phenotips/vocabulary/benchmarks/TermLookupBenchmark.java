@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.benchmarks;
+
+import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Term lookup and structural computations: fetching terms by identifier, alone or in batches, resolving alternative
+ * identifiers, expanding ancestors, and computing distances between terms.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TermLookupBenchmark
+{
+    private static final String ID_FIELD = "id";
+
+    /** Phenotypes typical of a patient record, from several branches of the ontology. */
+    private static final List<String> PATIENT_PHENOTYPES = Arrays.asList("HP:0001250", "HP:0001249", "HP:0001263",
+        "HP:0001252", "HP:0000252", "HP:0004322", "HP:0001631", "HP:0000316", "HP:0000175", "HP:0001159",
+        "HP:0000407", "HP:0002020");
+
+    /**
+     * A single term, served from the term cache after the first call.
+     *
+     * @param state the indexed vocabularies
+     * @return the term
+     */
+    @Benchmark
+    public VocabularyTerm getTerm(IndexedVocabularies state)
+    {
+        return state.getVocabulary(VocabularyFixtures.HPO).getTerm("HP:0001250");
+    }
+
+    /**
+     * A single term requested through a retired identifier.
+     *
+     * @param state the indexed vocabularies
+     * @return the current term
+     */
+    @Benchmark
+    public VocabularyTerm getTermByAlternativeId(IndexedVocabularies state)
+    {
+        return state.getVocabulary(VocabularyFixtures.HPO).getTerm("HP:0001532");
+    }
+
+    /**
+     * A single term, always fetched from Solr.
+     *
+     * @param state the indexed vocabularies
+     * @return the matching terms
+     */
+    @Benchmark
+    public List<VocabularyTerm> searchById(IndexedVocabularies state)
+    {
+        return state.getVocabulary(VocabularyFixtures.HPO).search(Collections.singletonMap(ID_FIELD, "HP:0001250"));
+    }
+
+    /**
+     * All the phenotypes of a patient record, in one call.
+     *
+     * @param state the indexed vocabularies
+     * @return the terms
+     */
+    @Benchmark
+    public Set<VocabularyTerm> getTerms(IndexedVocabularies state)
+    {
+        return state.getVocabulary(VocabularyFixtures.HPO).getTerms(PATIENT_PHENOTYPES);
+    }
+
+    /**
+     * A gene, looked up by its symbol.
+     *
+     * @param state the indexed vocabularies
+     * @return the gene
+     */
+    @Benchmark
+    public VocabularyTerm getGeneBySymbol(IndexedVocabularies state)
+    {
+        return state.getVocabulary(VocabularyFixtures.HGNC).getTerm("FGFR3");
+    }
+
+    /**
+     * The ancestors of all the phenotypes of a patient record, as needed by the phenotype scorers and the indexer.
+     *
+     * @param state the indexed vocabularies
+     * @return the total number of ancestors
+     */
+    @Benchmark
+    public int getAncestors(IndexedVocabularies state)
+    {
+        int result = 0;
+        for (VocabularyTerm term : state.getVocabulary(VocabularyFixtures.HPO).getTerms(PATIENT_PHENOTYPES)) {
+            result += term.getAncestorsAndSelf().size();
+        }
+        return result;
+    }
+
+    /**
+     * The distances between all the pairs of phenotypes of a patient record.
+     *
+     * @param state the indexed vocabularies
+     * @return the sum of the distances
+     */
+    @Benchmark
+    public long getDistanceTo(IndexedVocabularies state)
+    {
+        Vocabulary hpo = state.getVocabulary(VocabularyFixtures.HPO);
+        long result = 0;
+        for (String from : PATIENT_PHENOTYPES) {
+            VocabularyTerm fromTerm = hpo.getTerm(from);
+            for (String to : PATIENT_PHENOTYPES) {
+                result += fromTerm.getDistanceTo(hpo.getTerm(to));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.benchmarks;
+
+import org.phenotips.vocabulary.Vocabulary;
+
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.environment.Environment;
+import org.xwiki.environment.internal.StandardEnvironment;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A self-contained vocabulary environment for benchmarks: a fresh permanent directory holding an embedded Solr home
+ * with the HPO, OMIM and HGNC cores, a component manager running the real vocabulary components, and trimmed copies of
+ * the vocabulary sources, shipped with this module, so that indexing never needs network access.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public final class VocabularyFixtures implements Closeable
+{
+    /** The identifier of the Human Phenotype Ontology. */
+    public static final String HPO = "hpo";
+
+    /** The identifier of the Online Mendelian Inheritance in Man vocabulary. */
+    public static final String OMIM = "omim";
+
+    /** The identifier of the HUGO Gene Nomenclature vocabulary. */
+    public static final String HGNC = "hgnc";
+
+    private static final String FIXTURES = "fixtures/";
+
+    private static final String HPO_SOURCE = "hp.obo";
+
+    private static final String HGNC_SOURCE = "hgnc_complete_set.txt";
+
+    /** The OMIM source is compressed, but is shipped as plain text, and compressed when the fixtures are prepared. */
+    private static final String OMIM_SOURCE = "omim.txt";
+
+    private static final String OMIM_MIRROR_SETTING = "phenotips.vocabularies.omim.sourceMirror";
+
+    private static final String[] CORES = { HPO, OMIM, HGNC };
+
+    private static final String[] OMIM_ANNOTATIONS = { "mim2gene.txt", "phenotype_annotation.tab",
+        "negative_phenotype_annotation.tab", "NBKid_shortname_OMIM.txt" };
+
+    private final File home;
+
+    private final File sources;
+
+    private final EmbeddableComponentManager componentManager;
+
+    /**
+     * Prepare a new environment in a temporary directory. The vocabularies start empty, call {@link #reindex()} to
+     * load the fixtures.
+     *
+     * @throws IOException if preparing the environment fails
+     */
+    public VocabularyFixtures() throws IOException
+    {
+        this.home = Files.createTempDirectory("phenotips-benchmarks").toFile();
+        this.sources = new File(this.home, "sources");
+        copyResource("solr.xml", new File(this.home, "solr/solr.xml"));
+        for (String core : CORES) {
+            copyResources(core + '/', new File(this.home, "solr/" + core));
+        }
+        copyResource(FIXTURES + HPO_SOURCE, new File(this.sources, HPO_SOURCE));
+        copyResource(FIXTURES + HGNC_SOURCE, new File(this.sources, HGNC_SOURCE));
+        File omimSources = new File(this.sources, OMIM);
+        for (String annotations : OMIM_ANNOTATIONS) {
+            copyResource(FIXTURES + "omim/" + annotations, new File(omimSources, annotations));
+        }
+        compressResource(FIXTURES + "omim/" + OMIM_SOURCE, new File(omimSources, OMIM_SOURCE + ".Z"));
+
+        this.componentManager = new EmbeddableComponentManager();
+        this.componentManager.initialize(getClass().getClassLoader());
+        try {
+            StandardEnvironment environment = this.componentManager.getInstance(Environment.class);
+            environment.setPermanentDirectory(this.home);
+            environment.setTemporaryDirectory(new File(this.home, "tmp"));
+            FixtureConfigurationSource configuration = new FixtureConfigurationSource();
+            // All the OMIM sources are read from the fixtures, including the annotations
+            configuration.setProperty(OMIM_MIRROR_SETTING, omimSources.getAbsolutePath());
+            registerConfiguration(configuration, "default");
+            registerConfiguration(configuration, "xwikiproperties");
+        } catch (ComponentLookupException | RuntimeException ex) {
+            close();
+            throw new IOException("Failed to set up the component manager: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Access one of the benchmarked vocabularies.
+     *
+     * @param identifier the vocabulary identifier, one of {@link #HPO}, {@link #OMIM}, or {@link #HGNC}
+     * @return the vocabulary component
+     */
+    public Vocabulary getVocabulary(String identifier)
+    {
+        try {
+            return this.componentManager.getInstance(Vocabulary.class, identifier);
+        } catch (ComponentLookupException ex) {
+            throw new IllegalStateException("Vocabulary not available: " + identifier, ex);
+        }
+    }
+
+    /**
+     * The location of the trimmed source of a vocabulary, to be passed to {@link Vocabulary#reindex(String)}.
+     *
+     * @param identifier the vocabulary identifier, one of {@link #HPO}, {@link #OMIM}, or {@link #HGNC}
+     * @return a local file URL
+     */
+    public String getSourceLocation(String identifier)
+    {
+        File source;
+        if (HPO.equals(identifier)) {
+            source = new File(this.sources, HPO_SOURCE);
+        } else if (OMIM.equals(identifier)) {
+            source = new File(this.sources, OMIM + '/' + OMIM_SOURCE + ".Z");
+        } else {
+            source = new File(this.sources, HGNC_SOURCE);
+        }
+        return source.toURI().toString();
+    }
+
+    /**
+     * Index all the vocabularies from their trimmed sources. HPO is indexed first, since the OMIM index includes the
+     * ancestors of the HPO terms annotating each disorder.
+     *
+     * @throws IllegalStateException if any of the vocabularies fails to index
+     */
+    public void reindex()
+    {
+        for (String core : CORES) {
+            reindex(core);
+        }
+    }
+
+    /**
+     * Index one vocabulary from its trimmed source.
+     *
+     * @param identifier the vocabulary identifier, one of {@link #HPO}, {@link #OMIM}, or {@link #HGNC}
+     * @throws IllegalStateException if indexing fails
+     */
+    public void reindex(String identifier)
+    {
+        int status = getVocabulary(identifier).reindex(getSourceLocation(identifier));
+        if (status != 0) {
+            throw new IllegalStateException("Failed to index [" + identifier + "], status " + status);
+        }
+    }
+
+    /**
+     * Stop the vocabularies and the Solr cores, and delete all the files created for this environment.
+     */
+    @Override
+    public void close()
+    {
+        if (this.componentManager != null) {
+            this.componentManager.dispose();
+        }
+        FileUtils.deleteQuietly(this.home);
+    }
+
+    private void registerConfiguration(ConfigurationSource configuration, String hint)
+    {
+        DefaultComponentDescriptor<ConfigurationSource> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setRoleType(ConfigurationSource.class);
+        descriptor.setRoleHint(hint);
+        descriptor.setImplementation(FixtureConfigurationSource.class);
+        this.componentManager.registerComponent(descriptor, configuration);
+    }
+
+    private static void copyResource(String path, File target) throws IOException
+    {
+        try (InputStream in = openResource(path)) {
+            FileUtils.copyInputStreamToFile(in, target);
+        }
+    }
+
+    private static void compressResource(String path, File target) throws IOException
+    {
+        // The OMIM parser detects the compression format, gzip is as good as the original compress format
+        target.getParentFile().mkdirs();
+        try (InputStream in = openResource(path);
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(target))) {
+            IOUtils.copy(in, out);
+        }
+    }
+
+    private static InputStream openResource(String path) throws IOException
+    {
+        InputStream result = VocabularyFixtures.class.getClassLoader().getResourceAsStream(path);
+        if (result == null) {
+            throw new IOException("Missing resource: " + path);
+        }
+        return result;
+    }
+
+    /**
+     * Copy a directory from the classpath, either from the packaged benchmarks or from the exploded build output.
+     *
+     * @param path the path of the directory, ending with a slash
+     * @param target where to copy the directory
+     * @throws IOException if the directory is missing or copying fails
+     */
+    private static void copyResources(String path, File target) throws IOException
+    {
+        URL url = VocabularyFixtures.class.getClassLoader().getResource(path);
+        if (url == null) {
+            throw new IOException("Missing resource: " + path);
+        }
+        if ("jar".equals(url.getProtocol())) {
+            JarURLConnection connection = (JarURLConnection) url.openConnection();
+            connection.setUseCaches(false);
+            try (JarFile jar = connection.getJarFile()) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().startsWith(path)) {
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            FileUtils.copyInputStreamToFile(in,
+                                new File(target, entry.getName().substring(path.length())));
+                        }
+                    }
+                }
+            }
+        } else {
+            try {
+                FileUtils.copyDirectory(new File(url.toURI()), target);
+            } catch (URISyntaxException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@
 
 import org.phenotips.vocabulary.Vocabulary;
 import org.phenotips.vocabulary.VocabularyTerm;
+import org.phenotips.vocabulary.events.VocabularyIndexedEvent;
 
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
@@ -27,9 +28,12 @@
 import org.xwiki.cache.eviction.EntryEvictionConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.observation.ObservationManager;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -56,7 +60,6 @@
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.solr.client.solrj.util.ClientUtils;
 import org.apache.solr.common.params.CommonParams;
 import org.json.JSONArray;
@@ -73,7 +76,7 @@
 @Component
 @Named("hgnc")
 @Singleton
-public class RemoteGeneNomenclature implements Vocabulary, Initializable
+public class RemoteGeneNomenclature implements Vocabulary, Initializable, Disposable
 {
     /**
      * Object used to mark in the cache that a term doesn't exist, since null means that the cache doesn't contain the
@@ -91,12 +94,27 @@ public class RemoteGeneNomenclature implements Vocabulary, Initializable
 
     private static final String DEFAULT_OPERATOR = "AND";
 
+    private static final String SETTINGS_PREFIX = "phenotips.ontologies.hgnc.";
+
+    /** The default maximum number of parallel requests sent to the remote service. */
+    private static final int DEFAULT_MAX_CONNECTIONS = 8;
+
+    /** The default timeout for requests sent to the remote service, in milliseconds. */
+    private static final int DEFAULT_TIMEOUT = 10000;
+
+    /** The default maximum number of cached terms, enough to hold all the approved gene symbols. */
+    private static final int DEFAULT_CACHE_SIZE = 50000;
+
     private static final Map<String, String> QUERY_OPERATORS = new HashMap<>();
 
     @Inject
     @Named("xwikiproperties")
     private ConfigurationSource configuration;
 
+    /** Notifies other components when the cached data is discarded. */
+    @Inject
+    private ObservationManager observationManager;
+
     private String baseServiceURL;
 
     private String searchServiceURL;
@@ -105,15 +123,18 @@ public class RemoteGeneNomenclature implements Vocabulary, Initializable
 
     private String fetchServiceURL;
 
-    /** Performs HTTP requests to the remote REST service. */
-    private final CloseableHttpClient client = HttpClients.createSystem();
+    /** Performs HTTP requests to the remote REST service, using a pool of connections. */
+    private CloseableHttpClient client;
+
+    /** Fetches terms in parallel, coalescing concurrent requests for the same term. */
+    private RemoteTermFetcher fetcher;
 
     @Inject
     private Logger logger;
 
     /**
      * Cache for the recently accessed terms; useful since the ontology rarely changes, so a search should always return
-     * the same thing.
+     * the same thing. The least recently used terms are evicted once the configured size is reached.
      */
     private Cache<VocabularyTerm> cache;
 
@@ -129,14 +150,35 @@ public void initialize() throws InitializationException
     {
         try {
             this.baseServiceURL =
-                this.configuration.getProperty("phenotips.ontologies.hgnc.serviceURL", "http://rest.genenames.org/");
+                this.configuration.getProperty(SETTINGS_PREFIX + "serviceURL", "http://rest.genenames.org/");
             this.searchServiceURL = this.baseServiceURL + "search/";
             this.infoServiceURL = this.baseServiceURL + "info";
             this.fetchServiceURL = this.baseServiceURL + "fetch/";
-            this.cache = this.cacheFactory.createNewLocalCache(new CacheConfiguration());
+            LRUEvictionConfiguration termConfig =
+                new LRUEvictionConfiguration(getSetting("cache.maxEntries", DEFAULT_CACHE_SIZE));
+            int timeToLive = getSetting("cache.timeToLive", 0);
+            if (timeToLive > 0) {
+                termConfig.setTimeToLive(timeToLive);
+            }
+            this.cache = this.cacheFactory.createNewLocalCache(new CacheConfiguration(termConfig));
             EntryEvictionConfiguration infoConfig = new LRUEvictionConfiguration(1);
             infoConfig.setTimeToLive(300);
             this.infoCache = this.cacheFactory.createNewLocalCache(new CacheConfiguration(infoConfig));
+            int maxConnections = getSetting("maxConnections", DEFAULT_MAX_CONNECTIONS);
+            int timeout = getSetting("timeout", DEFAULT_TIMEOUT);
+            if (this.client == null) {
+                this.client = RemoteTermFetcher.createClient(maxConnections, timeout);
+            }
+            if (this.fetcher == null) {
+                this.fetcher = new RemoteTermFetcher(new RemoteTermFetcher.Loader()
+                {
+                    @Override
+                    public VocabularyTerm load(String id)
+                    {
+                        return fetchTerm(id);
+                    }
+                }, maxConnections, timeout, this.logger);
+            }
         } catch (final CacheException ex) {
             throw new InitializationException("Cannot create cache: " + ex.getMessage());
         }
@@ -145,33 +187,29 @@ public void initialize() throws InitializationException
         QUERY_OPERATORS.put("NOT", "-");
     }
 
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.fetcher.dispose();
+        try {
+            this.client.close();
+        } catch (IOException ex) {
+            this.logger.debug("Failed to close the HTTP connections: {}", ex.getMessage());
+        }
+    }
+
+    private int getSetting(String name, int defaultValue)
+    {
+        Integer value = this.configuration.getProperty(SETTINGS_PREFIX + name, Integer.class);
+        return (value == null || value <= 0) ? defaultValue : value;
+    }
+
     @Override
     public VocabularyTerm getTerm(String id)
     {
         VocabularyTerm result = this.cache.get(id);
-        String safeID;
         if (result == null) {
-            try {
-                safeID = URLEncoder.encode(id, Consts.UTF_8.name());
-            } catch (UnsupportedEncodingException e) {
-                safeID = id.replaceAll("\\s", "");
-                this.logger.warn("Could not find the encoding: {}", Consts.UTF_8.name());
-            }
-            HttpGet method = new HttpGet(this.fetchServiceURL + "symbol/" + safeID);
-            method.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
-            try (CloseableHttpResponse httpResponse = this.client.execute(method)) {
-                String response = IOUtils.toString(httpResponse.getEntity().getContent(), Consts.UTF_8);
-                JSONObject responseJSON = new JSONObject(response);
-                JSONArray docs = responseJSON.getJSONObject(RESPONSE_KEY).getJSONArray(DATA_KEY);
-                if (docs.length() == 1) {
-                    result = new JSONOntologyTerm(docs.getJSONObject(0), this);
-                    this.cache.set(id, result);
-                } else {
-                    this.cache.set(id, EMPTY_MARKER);
-                }
-            } catch (IOException | JSONException ex) {
-                this.logger.warn("Failed to fetch gene definition: {}", ex.getMessage());
-            }
+            result = this.fetcher.get(id);
         }
         return (result == EMPTY_MARKER) ? null : result;
     }
@@ -179,17 +217,63 @@ public VocabularyTerm getTerm(String id)
     @Override
     public Set<VocabularyTerm> getTerms(Collection<String> ids)
     {
-        // FIXME Reimplement with a bunch of async connections fired in parallel
+        Map<String, VocabularyTerm> found = new HashMap<>();
+        Collection<String> missing = new LinkedHashSet<>();
+        for (String id : ids) {
+            VocabularyTerm term = this.cache.get(id);
+            if (term == null) {
+                missing.add(id);
+            } else {
+                found.put(id, term);
+            }
+        }
+        if (!missing.isEmpty()) {
+            found.putAll(this.fetcher.getAll(missing));
+        }
         Set<VocabularyTerm> result = new LinkedHashSet<>();
         for (String id : ids) {
-            VocabularyTerm term = getTerm(id);
-            if (term != null) {
+            VocabularyTerm term = found.get(id);
+            if (term != null && term != EMPTY_MARKER) {
                 result.add(term);
             }
         }
         return result;
     }
 
+    /**
+     * Fetch a term from the remote service, and store the result in the cache. Terms that don't exist are cached as
+     * well, so that they aren't requested again.
+     *
+     * @param id the symbol of the gene to fetch
+     * @return the fetched term, {@link #EMPTY_MARKER} if the term doesn't exist, or {@code null} if the request failed
+     */
+    private VocabularyTerm fetchTerm(String id)
+    {
+        String safeID;
+        try {
+            safeID = URLEncoder.encode(id, Consts.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            safeID = id.replaceAll("\\s", "");
+            this.logger.warn("Could not find the encoding: {}", Consts.UTF_8.name());
+        }
+        HttpGet method = new HttpGet(this.fetchServiceURL + "symbol/" + safeID);
+        method.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+        try (CloseableHttpResponse httpResponse = this.client.execute(method)) {
+            String response = IOUtils.toString(httpResponse.getEntity().getContent(), Consts.UTF_8);
+            JSONObject responseJSON = new JSONObject(response);
+            JSONArray docs = responseJSON.getJSONObject(RESPONSE_KEY).getJSONArray(DATA_KEY);
+            VocabularyTerm result = EMPTY_MARKER;
+            if (docs.length() == 1) {
+                result = new JSONOntologyTerm(docs.getJSONObject(0), this);
+            }
+            this.cache.set(id, result);
+            return result;
+        } catch (IOException | JSONException ex) {
+            this.logger.warn("Failed to fetch gene definition: {}", ex.getMessage());
+        }
+        return null;
+    }
+
     @Override
     public List<VocabularyTerm> search(Map<String, ?> fieldValues)
     {
@@ -199,40 +283,34 @@ public List<VocabularyTerm> search(Map<String, ?> fieldValues)
     @Override
     public List<VocabularyTerm> search(Map<String, ?> fieldValues, Map<String, String> queryOptions)
     {
+        int start = 0;
+        if (StringUtils.isNumeric(queryOptions.get(CommonParams.START))) {
+            start = Integer.parseInt(queryOptions.get(CommonParams.START));
+        }
+        int rows = -1;
+        if (StringUtils.isNumeric(queryOptions.get(CommonParams.ROWS))) {
+            rows = Integer.parseInt(queryOptions.get(CommonParams.ROWS));
+        }
         try {
-            HttpGet method =
-                new HttpGet(this.searchServiceURL + URLEncoder.encode(generateQuery(fieldValues), Consts.UTF_8.name()));
-            method.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
-            try (CloseableHttpResponse httpResponse = this.client.execute(method)) {
-                String response = IOUtils.toString(httpResponse.getEntity().getContent(), Consts.UTF_8);
-                JSONObject responseJSON = new JSONObject(response);
-                JSONArray docs = responseJSON.getJSONObject(RESPONSE_KEY).getJSONArray(DATA_KEY);
-                if (docs.length() >= 1) {
-                    List<VocabularyTerm> result = new LinkedList<>();
-                    // The remote service doesn't offer any query control, manually select the right range
-                    int start = 0;
-                    if (queryOptions.containsKey(CommonParams.START)
-                        && StringUtils.isNumeric(queryOptions.get(CommonParams.START))) {
-                        start = Math.max(0, Integer.parseInt(queryOptions.get(CommonParams.START)));
-                    }
-                    int end = docs.length();
-                    if (queryOptions.containsKey(CommonParams.ROWS)
-                        && StringUtils.isNumeric(queryOptions.get(CommonParams.ROWS))) {
-                        end = Math.min(end, start + Integer.parseInt(queryOptions.get(CommonParams.ROWS)));
-                    }
-
-                    for (int i = start; i < end; ++i) {
-                        result.add(new JSONOntologyTerm(docs.getJSONObject(i), this));
-                    }
-                    return result;
-                    // This is too slow, for the moment only return summaries
-                    // return getTerms(ids);
+            JSONObject response = requestSearch(fieldValues, start, rows);
+            JSONArray docs = response.getJSONArray(DATA_KEY);
+            if (docs.length() >= 1) {
+                List<VocabularyTerm> result = new LinkedList<>();
+                // Services that don't support paging return all the results, select the right range manually
+                int offset = response.optInt(CommonParams.START, 0) == start ? 0 : start;
+                int end = docs.length();
+                if (rows >= 0) {
+                    end = Math.min(end, offset + rows);
                 }
-            } catch (IOException | JSONException ex) {
-                this.logger.warn("Failed to search gene names: {}", ex.getMessage());
+                for (int i = offset; i < end; ++i) {
+                    result.add(new JSONOntologyTerm(docs.getJSONObject(i), this));
+                }
+                return result;
+                // This is too slow, for the moment only return summaries
+                // return getTerms(ids);
             }
-        } catch (UnsupportedEncodingException ex) {
-            // This will not happen, UTF-8 is always available
+        } catch (IOException | JSONException ex) {
+            this.logger.warn("Failed to search gene names: {}", ex.getMessage());
         }
         return Collections.emptyList();
     }
@@ -250,7 +328,7 @@ public List<VocabularyTerm> search(String input, int maxResults, String sort, St
         queryMap.put("prev_symbol", formattedQuery);
         fieldValues.put("status", "Approved");
         fieldValues.put(DEFAULT_OPERATOR, queryMap);
-        rowsMap.put("rows", Integer.toString(maxResults));
+        rowsMap.put(CommonParams.ROWS, Integer.toString(maxResults));
 
         return this.search(fieldValues, rowsMap);
     }
@@ -259,23 +337,46 @@ public List<VocabularyTerm> search(String input, int maxResults, String sort, St
     public long count(Map<String, ?> fieldValues)
     {
         try {
-            HttpGet method =
-                new HttpGet(this.searchServiceURL + URLEncoder.encode(generateQuery(fieldValues), Consts.UTF_8.name()));
-            method.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
-            try (CloseableHttpResponse httpResponse = this.client.execute(method)) {
-                String response = IOUtils.toString(httpResponse.getEntity().getContent(), Consts.UTF_8);
-                JSONObject responseJSON = new JSONObject(response);
-                JSONArray docs = responseJSON.getJSONObject(RESPONSE_KEY).getJSONArray(DATA_KEY);
-                return docs.length();
-            } catch (IOException | JSONException ex) {
-                this.logger.warn("Failed to count matching gene names: {}", ex.getMessage());
-            }
-        } catch (UnsupportedEncodingException ex) {
-            // This will not happen, UTF-8 is always available
+            // Only the number of matches is needed, not the matches themselves
+            JSONObject response = requestSearch(fieldValues, 0, 0);
+            return response.optLong("numFound", response.getJSONArray(DATA_KEY).length());
+        } catch (IOException | JSONException ex) {
+            this.logger.warn("Failed to count matching gene names: {}", ex.getMessage());
         }
         return -1;
     }
 
+    /**
+     * Send a search request to the remote service, asking only for a range of the results.
+     *
+     * @param fieldValues the search query, see {@link #generateQuery(Map)}
+     * @param start the offset of the first result to return, ignored if not positive
+     * @param rows the maximum number of results to return, ignored if negative
+     * @return the {@code response} part of the response, holding the total number of matches, the actual start offset
+     *         of the results, and the returned results
+     * @throws IOException if the request fails
+     * @throws JSONException if the response is invalid
+     */
+    private JSONObject requestSearch(Map<String, ?> fieldValues, int start, int rows) throws IOException
+    {
+        StringBuilder url = new StringBuilder(this.searchServiceURL)
+            .append(URLEncoder.encode(generateQuery(fieldValues), Consts.UTF_8.name()));
+        char separator = '?';
+        if (start > 0) {
+            url.append(separator).append(CommonParams.START).append('=').append(start);
+            separator = '&';
+        }
+        if (rows >= 0) {
+            url.append(separator).append(CommonParams.ROWS).append('=').append(rows);
+        }
+        HttpGet method = new HttpGet(url.toString());
+        method.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+        try (CloseableHttpResponse httpResponse = this.client.execute(method)) {
+            String response = IOUtils.toString(httpResponse.getEntity().getContent(), Consts.UTF_8);
+            return new JSONObject(response).getJSONObject(RESPONSE_KEY);
+        }
+    }
+
     @Override
     public long getDistance(String fromTermId, String toTermId)
     {
@@ -321,11 +422,20 @@ public long size()
     @Override
     public int reindex(String ontologyUrl)
     {
-        // Remote ontology, we cannot reindex, but we can clear the local cache
+        // Remote ontology, we cannot reindex, but we can clear the local caches
         this.cache.removeAll();
+        this.infoCache.removeAll();
+        this.observationManager.notify(new VocabularyIndexedEvent(getIdentifier()), this);
         return 0;
     }
 
+    @Override
+    public int update(String ontologyUrl)
+    {
+        // Remote ontology, there's nothing to update locally besides the cache
+        return reindex(ontologyUrl);
+    }
+
     @Override
     public String getDefaultSourceLocation()
     {
@@ -0,0 +1,224 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal;
+
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+
+/**
+ * Fetches terms from a remote service, running at most a fixed number of requests in parallel. Concurrent requests for
+ * the same term are coalesced: only the first one actually contacts the remote service, while the others wait for its
+ * result.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+class RemoteTermFetcher
+{
+    /** Performs the actual request for one term. */
+    interface Loader
+    {
+        /**
+         * Fetch one term from the remote service.
+         *
+         * @param id the identifier of the term to fetch
+         * @return the fetched term, a marker for terms that don't exist, or {@code null} if the request failed
+         */
+        VocabularyTerm load(String id);
+    }
+
+    /** The requests currently in progress, indexed by the requested identifier. */
+    private final ConcurrentHashMap<String, Future<VocabularyTerm>> inFlight = new ConcurrentHashMap<>();
+
+    private final Loader loader;
+
+    private final ExecutorService executor;
+
+    /** How long to wait for a request to complete, in milliseconds. */
+    private final long timeout;
+
+    private final Logger logger;
+
+    /**
+     * Simple constructor.
+     *
+     * @param loader performs the actual requests
+     * @param maxConcurrent the maximum number of requests to run in parallel
+     * @param timeout how long to wait for a request to complete, in milliseconds
+     * @param logger the logger to use for reporting failed requests
+     */
+    RemoteTermFetcher(Loader loader, int maxConcurrent, long timeout, Logger logger)
+    {
+        this.loader = loader;
+        this.timeout = timeout;
+        this.logger = logger;
+        this.executor = Executors.newFixedThreadPool(maxConcurrent, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task)
+            {
+                Thread result = new Thread(task, "Remote term fetcher " + this.count.incrementAndGet());
+                result.setDaemon(true);
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Create an HTTP client with a connection pool sized for the number of parallel requests, and with timeouts set for
+     * establishing connections, obtaining a connection from the pool, and waiting for data.
+     *
+     * @param maxConnections the maximum number of connections to open
+     * @param timeout the timeout to use, in milliseconds
+     * @return a new HTTP client, which also honors the standard Java networking system properties, such as proxies
+     */
+    static CloseableHttpClient createClient(int maxConnections, int timeout)
+    {
+        PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(maxConnections);
+        connections.setDefaultMaxPerRoute(maxConnections);
+        RequestConfig config = RequestConfig.custom().setConnectTimeout(timeout)
+            .setConnectionRequestTimeout(timeout).setSocketTimeout(timeout).build();
+        return HttpClients.custom().useSystemProperties().setConnectionManager(connections)
+            .setDefaultRequestConfig(config).build();
+    }
+
+    /**
+     * Fetch one term, in the current thread, unless a request for the same term is already in progress.
+     *
+     * @param id the identifier of the term to fetch
+     * @return the result of the {@link Loader}, or {@code null} if the request failed
+     */
+    VocabularyTerm get(String id)
+    {
+        FutureTask<VocabularyTerm> task = new FetchTask(id);
+        Future<VocabularyTerm> existing = this.inFlight.putIfAbsent(id, task);
+        if (existing == null) {
+            task.run();
+            return waitFor(id, task);
+        }
+        return waitFor(id, existing);
+    }
+
+    /**
+     * Fetch several terms in parallel.
+     *
+     * @param ids the identifiers of the terms to fetch
+     * @return the results of the {@link Loader}, in the same order as the requested identifiers; failed requests are
+     *         not included
+     */
+    Map<String, VocabularyTerm> getAll(Collection<String> ids)
+    {
+        Map<String, Future<VocabularyTerm>> pending = new LinkedHashMap<>();
+        for (String id : ids) {
+            if (!pending.containsKey(id)) {
+                pending.put(id, submit(id));
+            }
+        }
+        Map<String, VocabularyTerm> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<VocabularyTerm>> request : pending.entrySet()) {
+            VocabularyTerm term = waitFor(request.getKey(), request.getValue());
+            if (term != null) {
+                result.put(request.getKey(), term);
+            }
+        }
+        return result;
+    }
+
+    /** Stop the request threads. */
+    void dispose()
+    {
+        this.executor.shutdownNow();
+    }
+
+    private Future<VocabularyTerm> submit(String id)
+    {
+        FutureTask<VocabularyTerm> task = new FetchTask(id);
+        Future<VocabularyTerm> existing = this.inFlight.putIfAbsent(id, task);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            this.executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            // Shutting down, fall back to a synchronous request
+            task.run();
+        }
+        return task;
+    }
+
+    private VocabularyTerm waitFor(String id, Future<VocabularyTerm> request)
+    {
+        try {
+            return request.get(this.timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ex) {
+            this.logger.warn("Failed to fetch [{}]: {}", id, ex.getMessage());
+        }
+        return null;
+    }
+
+    /** A request for one term, which stops being shared as soon as it completes. */
+    private final class FetchTask extends FutureTask<VocabularyTerm>
+    {
+        private final String id;
+
+        FetchTask(final String id)
+        {
+            super(new Callable<VocabularyTerm>()
+            {
+                @Override
+                public VocabularyTerm call()
+                {
+                    return RemoteTermFetcher.this.loader.load(id);
+                }
+            });
+            this.id = id;
+        }
+
+        @Override
+        protected void done()
+        {
+            RemoteTermFetcher.this.inFlight.remove(this.id, this);
+        }
+    }
+}
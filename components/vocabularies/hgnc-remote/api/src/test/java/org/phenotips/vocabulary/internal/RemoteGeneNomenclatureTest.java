@@ -19,6 +19,7 @@
 
 import org.phenotips.vocabulary.Vocabulary;
 import org.phenotips.vocabulary.VocabularyTerm;
+import org.phenotips.vocabulary.events.VocabularyIndexedEvent;
 
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
@@ -29,20 +30,35 @@
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.component.util.ReflectionUtils;
 import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.observation.ObservationManager;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.client.ClientProtocolException;
@@ -54,12 +70,17 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.internal.matchers.CapturingMatcher;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -211,23 +232,130 @@ public void getTermWithExceptionReturnsNull() throws ComponentLookupException, U
     }
 
     @Test
-    public void getTermsFetchesFromRemoteServer() throws ComponentLookupException, URISyntaxException,
-        ClientProtocolException, IOException
+    public void getTermsFetchesFromRemoteServer() throws Exception
     {
-        URI expectedURI1 = new URI("http://rest.genenames.org/fetch/symbol/BRCA1");
-        URI expectedURI2 = new URI("http://rest.genenames.org/fetch/symbol/NOTHING");
-        CapturingMatcher<HttpUriRequest> reqCapture = new CapturingMatcher<>();
-        when(this.client.execute(Matchers.argThat(reqCapture))).thenReturn(this.response);
-        when(this.response.getEntity()).thenReturn(this.responseEntity);
-        when(this.responseEntity.getContent()).thenReturn(ClassLoader.getSystemResourceAsStream("BRCA1.json"),
-            ClassLoader.getSystemResourceAsStream("NOTHING.json"));
-        Set<VocabularyTerm> result = this.mocker.getComponentUnderTest().getTerms(Arrays.asList("BRCA1", "NOTHING"));
-        List<HttpUriRequest> calledURIs = reqCapture.getAllValues();
-        Assert.assertEquals(expectedURI1, calledURIs.get(0).getURI());
-        Assert.assertEquals(expectedURI2, calledURIs.get(1).getURI());
-        Assert.assertEquals("application/json", reqCapture.getLastValue().getLastHeader("Accept").getValue());
-        Assert.assertEquals(1, result.size());
-        Assert.assertEquals("BRCA1", result.iterator().next().getId());
+        final Set<String> requested = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final Set<String> accepted = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicInteger serialized = new AtomicInteger();
+        final CountDownLatch parallel = new CountDownLatch(2);
+        HttpServer server = startServer(new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                requested.add(exchange.getRequestURI().getPath());
+                accepted.add(exchange.getRequestHeaders().getFirst("Accept"));
+                parallel.countDown();
+                try {
+                    // Both requests must be in progress at the same time
+                    if (!parallel.await(5, TimeUnit.SECONDS)) {
+                        serialized.incrementAndGet();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                String symbol = StringUtils.substringAfterLast(exchange.getRequestURI().getPath(), "/");
+                respond(exchange, "BRCA1".equals(symbol) ? "BRCA1.json" : "NOTHING.json");
+            }
+        });
+        try {
+            Set<VocabularyTerm> result =
+                this.mocker.getComponentUnderTest().getTerms(Arrays.asList("NOTHING", "BRCA1", "NOTHING"));
+            Assert.assertEquals(
+                new HashSet<>(Arrays.asList("/fetch/symbol/BRCA1", "/fetch/symbol/NOTHING")), requested);
+            Assert.assertEquals(Collections.singleton("application/json"), accepted);
+            Assert.assertEquals(0, serialized.get());
+            Assert.assertEquals(1, result.size());
+            Assert.assertEquals("BRCA1", result.iterator().next().getId());
+            verify(this.cache).set("NOTHING", this.emptyMarker);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void concurrentRequestsForTheSameTermAreCoalesced() throws Exception
+    {
+        final AtomicInteger requests = new AtomicInteger();
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = startServer(new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                requests.incrementAndGet();
+                received.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                respond(exchange, "BRCA1.json");
+            }
+        });
+        try {
+            final Vocabulary vocabulary = this.mocker.getComponentUnderTest();
+            final VocabularyTerm[] results = new VocabularyTerm[2];
+            Thread first = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    results[0] = vocabulary.getTerm("BRCA1");
+                }
+            };
+            Thread second = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    results[1] = vocabulary.getTerm("BRCA1");
+                }
+            };
+            first.start();
+            Assert.assertTrue(received.await(5, TimeUnit.SECONDS));
+            second.start();
+            // Wait until the second request is blocked waiting for the first one to complete
+            while (second.getState() != Thread.State.TIMED_WAITING && second.isAlive()) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            first.join(5000);
+            second.join(5000);
+            Assert.assertEquals(1, requests.get());
+            Assert.assertNotNull(results[0]);
+            Assert.assertSame(results[0], results[1]);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Start a local HTTP server standing in for the remote service, and point the vocabulary to it, using real HTTP
+     * connections instead of the mocked client.
+     */
+    private HttpServer startServer(HttpHandler handler) throws Exception
+    {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", handler);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        when(this.configuration.getProperty("phenotips.ontologies.hgnc.serviceURL", "http://rest.genenames.org/"))
+            .thenReturn("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        ReflectionUtils.setFieldValue(this.mocker.getComponentUnderTest(), "client", null);
+        ((Initializable) this.mocker.getComponentUnderTest()).initialize();
+        return server;
+    }
+
+    private void respond(HttpExchange exchange, String resource) throws IOException
+    {
+        byte[] body = IOUtils.toByteArray(ClassLoader.getSystemResourceAsStream(resource));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
     }
 
     @Test
@@ -302,7 +430,12 @@ public void getVersionWithErrorReturnsEmptyString() throws ComponentLookupExcept
     public void reindexInvalidatesCache() throws ComponentLookupException
     {
         Assert.assertEquals(0, this.mocker.getComponentUnderTest().reindex(null));
-        Mockito.verify(this.cache).removeAll();
+        // The same mock is used for both the term cache and the metadata cache
+        Mockito.verify(this.cache, Mockito.times(2)).removeAll();
+        ObservationManager observationManager = this.mocker.getInstance(ObservationManager.class);
+        ArgumentCaptor<VocabularyIndexedEvent> event = ArgumentCaptor.forClass(VocabularyIndexedEvent.class);
+        verify(observationManager).notify(event.capture(), Matchers.same(this.mocker.getComponentUnderTest()));
+        Assert.assertEquals("hgncRemote", event.getValue().getVocabulary());
         Mockito.verifyNoMoreInteractions(this.client);
     }
 
@@ -334,7 +467,7 @@ public void searchFetchesFromRemoteServer() throws ComponentLookupException, URI
         ClientProtocolException, IOException
     {
         URI expectedURI = new URI("http://rest.genenames.org/search/"
-            + "+status%3A%28Approved%29+AND+%28+symbol%3A%28brcA*%29+alias_symbol%3A%28brcA*%29%29");
+            + "+status%3A%28Approved%29+AND+%28+symbol%3A%28brcA*%29+alias_symbol%3A%28brcA*%29%29?start=3&rows=2");
         CapturingMatcher<HttpUriRequest> reqCapture = new CapturingMatcher<>();
         when(this.client.execute(Matchers.argThat(reqCapture))).thenReturn(this.response);
         when(this.response.getEntity()).thenReturn(this.responseEntity);
@@ -357,6 +490,25 @@ public void searchFetchesFromRemoteServer() throws ComponentLookupException, URI
         Assert.assertEquals("BRCA1P1", terms.next().getId());
     }
 
+    @Test
+    public void searchUsesServerSidePaging() throws ComponentLookupException, ClientProtocolException, IOException
+    {
+        when(this.client.execute(any(HttpUriRequest.class))).thenReturn(this.response);
+        when(this.response.getEntity()).thenReturn(this.responseEntity);
+        when(this.responseEntity.getContent()).thenReturn(new ByteArrayInputStream(
+            ("{\"response\":{\"numFound\":6,\"start\":3,\"docs\":"
+                + "[{\"symbol\":\"BRCA1\"},{\"symbol\":\"BRCA1P1\"}]}}").getBytes(StandardCharsets.UTF_8)));
+        Map<String, Object> search = new LinkedHashMap<>();
+        search.put("status", "Approved");
+        Map<String, String> queryOptions = new LinkedHashMap<>();
+        queryOptions.put("start", "3");
+        queryOptions.put("rows", "2");
+        List<VocabularyTerm> result = this.mocker.getComponentUnderTest().search(search, queryOptions);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals("BRCA1", result.get(0).getId());
+        Assert.assertEquals("BRCA1P1", result.get(1).getId());
+    }
+
     @Test
     public void searchWithErrorReturnsEmptySet() throws ComponentLookupException, URISyntaxException,
         ClientProtocolException, IOException
@@ -398,7 +550,7 @@ public void countFetchesFromRemoteServer() throws ComponentLookupException, URIS
         ClientProtocolException, IOException
     {
         URI expectedURI = new URI("http://rest.genenames.org/search/"
-            + "+status%3A%28Approved%29+AND+%28+symbol%3A%28brcA*%29+alias_symbol%3A%28brcA*%29%29");
+            + "+status%3A%28Approved%29+AND+%28+symbol%3A%28brcA*%29+alias_symbol%3A%28brcA*%29%29?rows=0");
         CapturingMatcher<HttpUriRequest> reqCapture = new CapturingMatcher<>();
         when(this.client.execute(Matchers.argThat(reqCapture))).thenReturn(this.response);
         when(this.response.getEntity()).thenReturn(this.responseEntity);
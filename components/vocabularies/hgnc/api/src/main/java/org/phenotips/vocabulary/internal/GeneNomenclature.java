@@ -22,12 +22,17 @@
 import org.phenotips.vocabulary.internal.solr.SolrVocabularyTerm;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -37,15 +42,19 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.util.ClientUtils;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.DisMaxParams;
@@ -64,7 +73,7 @@
 @Component
 @Named("hgnc")
 @Singleton
-public class GeneNomenclature extends AbstractCSVSolrVocabulary
+public class GeneNomenclature extends AbstractCSVSolrVocabulary implements Disposable
 {
     private static final String ID_FIELD_NAME = "id";
 
@@ -76,6 +85,15 @@ public class GeneNomenclature extends AbstractCSVSolrVocabulary
 
     private static final String ALTERNATIVE_ID_FIELD_NAME = "alt_id";
 
+    /** How often to synchronize the local index with the HGNC source, in hours; disabled if not positive. */
+    private static final String SYNC_INTERVAL_SETTING = "phenotips.vocabularies.hgnc.mirror.syncInterval";
+
+    /** Where to synchronize the local index from, defaults to the {@link #getDefaultSourceLocation() HGNC dump}. */
+    private static final String SYNC_SOURCE_SETTING = "phenotips.vocabularies.hgnc.mirror.source";
+
+    /** How long to wait before trying to load the symbol index again after a failure, in milliseconds. */
+    private static final long SYMBOL_INDEX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(10);
+
     private static final Map<String, String> COMMON_SEARCH_OPTIONS;
 
     private static final Map<String, String> DISMAX_SEARCH_OPTIONS;
@@ -127,6 +145,43 @@ public class GeneNomenclature extends AbstractCSVSolrVocabulary
         SPELLCHECKED_TEXT_SEARCH_OPTIONS = Collections.unmodifiableMap(options);
     }
 
+    /** Provides access to the mirror synchronization settings. */
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
+    /** Resolves symbols to gene identifiers without querying Solr, {@code null} until it is first needed. */
+    private volatile GeneSymbolIndex symbolIndex;
+
+    /** When loading the symbol index last failed, {@code 0} if it didn't. */
+    private volatile long symbolIndexFailure;
+
+    /** Guards loading and replacing the symbol index, without waiting for a running reindex or update. */
+    private final Object symbolIndexLock = new Object();
+
+    /** Periodically synchronizes the local index with the HGNC source, if configured. */
+    private PeriodicUpdater updater;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        super.initialize();
+        Integer interval = this.configuration.getProperty(SYNC_INTERVAL_SETTING, Integer.class);
+        if (interval != null && interval > 0) {
+            String source = this.configuration.getProperty(SYNC_SOURCE_SETTING, getDefaultSourceLocation());
+            this.updater = new PeriodicUpdater(this, source, this.logger);
+            this.updater.start(interval);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.updater != null) {
+            this.updater.stop();
+        }
+    }
+
     @Override
     public String getDefaultSourceLocation()
     {
@@ -169,6 +224,12 @@ public Set<String> getAliases()
     @Override
     public VocabularyTerm getTerm(String symbol)
     {
+        GeneSymbolIndex index = getSymbolIndex();
+        if (index != null) {
+            String id = index.resolve(symbol);
+            return id == null ? null : super.getTerm(id);
+        }
+
         String escapedSymbol = ClientUtils.escapeQueryChars(symbol);
 
         VocabularyTerm result = getTermById(escapedSymbol);
@@ -195,10 +256,11 @@ private VocabularyTerm getTermBySymbolOrAlias(String id)
     }
 
     /**
-     * Access an individual term from the vocabulary, identified by its alternative ids: either Ensembl Gene ID or
-     * Entrez Gene ID.
+     * Access an individual term from the vocabulary, identified by its alternative ids: a previous or alias symbol, an
+     * Ensembl Gene ID, an Entrez Gene ID, a RefSeq accession or an ENA accession.
      *
-     * @param id the term identifier that is one of property names: {@code ensembl_gene_id} or {@code entrez_id}
+     * @param id the term identifier that is one of property names: {@code ensembl_gene_id}, {@code entrez_id},
+     *            {@code refseq_accession} or {@code ena}
      * @return the requested term, or {@code null} if the term doesn't exist in this vocabulary
      */
     private VocabularyTerm getTermByAlternativeId(String id)
@@ -269,6 +331,19 @@ private List<VocabularyTerm> searchTextSpellchecked(String input, int maxResults
     @Override
     public Set<VocabularyTerm> getTerms(Collection<String> symbols)
     {
+        GeneSymbolIndex index = getSymbolIndex();
+        if (index != null) {
+            // All the genes can be fetched at once, once their identifiers are known
+            Collection<String> ids = new ArrayList<>(symbols.size());
+            for (String symbol : symbols) {
+                String id = index.resolve(symbol);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+            return super.getTerms(ids);
+        }
+
         Set<VocabularyTerm> result = new LinkedHashSet<>();
         for (String symbol : symbols) {
             VocabularyTerm term = getTerm(symbol);
@@ -293,6 +368,59 @@ public long getDistance(VocabularyTerm fromTerm, VocabularyTerm toTerm)
         return -1;
     }
 
+    @Override
+    protected void indexChanged(Collection<SolrInputDocument> data)
+    {
+        GeneSymbolIndex newIndex = null;
+        if (data != null) {
+            GeneSymbolIndex.Builder builder = GeneSymbolIndex.builder();
+            for (SolrInputDocument doc : data) {
+                builder.add(doc);
+            }
+            newIndex = builder.build();
+        }
+        synchronized (this.symbolIndexLock) {
+            this.symbolIndexFailure = 0;
+            this.symbolIndex = newIndex;
+        }
+    }
+
+    /**
+     * Get the symbol index, loading it from the Solr core if needed.
+     *
+     * @return the symbol index, or {@code null} if it couldn't be loaded recently, in which case terms are looked up
+     *         with Solr queries until the next retry
+     */
+    private GeneSymbolIndex getSymbolIndex()
+    {
+        GeneSymbolIndex result = this.symbolIndex;
+        if (result == null && !isSymbolIndexBackingOff()) {
+            synchronized (this.symbolIndexLock) {
+                result = this.symbolIndex;
+                if (result == null && !isSymbolIndexBackingOff()) {
+                    try {
+                        long startTime = System.currentTimeMillis();
+                        result = GeneSymbolIndex.load(this.externalServicesAccess.getSolrConnection());
+                        this.symbolIndex = result;
+                        this.logger.debug("Loaded the symbol index of [{}] with {} entries in {}ms", getCoreName(),
+                            result.size(), System.currentTimeMillis() - startTime);
+                    } catch (SolrServerException | SolrException | IOException ex) {
+                        this.symbolIndexFailure = System.currentTimeMillis();
+                        this.logger.warn("Failed to load the gene symbols, using Solr queries for now: {}",
+                            ex.getMessage());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isSymbolIndexBackingOff()
+    {
+        return this.symbolIndexFailure > 0
+            && System.currentTimeMillis() - this.symbolIndexFailure < SYMBOL_INDEX_RETRY_DELAY;
+    }
+
     @Override
     protected Collection<SolrInputDocument> load(URL url)
     {
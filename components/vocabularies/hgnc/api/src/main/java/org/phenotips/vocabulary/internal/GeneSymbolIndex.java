@@ -0,0 +1,229 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+
+/**
+ * Immutable in-memory index resolving any gene identifier known to HGNC to the HGNC identifier of the gene, so that
+ * looking up a gene by its symbol doesn't require querying Solr for each possible kind of identifier. When a value is
+ * ambiguous, HGNC identifiers and approved symbols take precedence over previous symbols and aliases, which take
+ * precedence over Ensembl, Entrez, RefSeq and ENA identifiers; this is the same order in which the Solr queries used
+ * to be tried. Like in the Solr schema, HGNC identifiers must match exactly, while all the other values are matched
+ * regardless of their case.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+final class GeneSymbolIndex
+{
+    private static final String ID_FIELD = "id";
+
+    private static final String SYMBOL_FIELD = "symbol";
+
+    private static final String[] SECONDARY_FIELDS = { "prev_symbol", "alias_symbol" };
+
+    /** The fields copied into the {@code alt_id} field of the Solr schema, besides the secondary fields. */
+    private static final String[] ALTERNATIVE_FIELDS = { "ensembl_gene_id", "entrez_id", "refseq_accession", "ena" };
+
+    /** The number of documents to fetch at once when loading the index from Solr. */
+    private static final int PAGE_SIZE = 10000;
+
+    /** HGNC identifiers and approved symbols, exactly as they are written. */
+    private final Map<String, String> exact;
+
+    /** Lowercased approved symbols. */
+    private final Map<String, String> primary;
+
+    /** Lowercased previous symbols and aliases. */
+    private final Map<String, String> secondary;
+
+    /** Lowercased Ensembl, Entrez, RefSeq and ENA identifiers. */
+    private final Map<String, String> alternative;
+
+    private GeneSymbolIndex(Builder builder)
+    {
+        this.exact = builder.exact;
+        this.primary = builder.primary;
+        this.secondary = builder.secondary;
+        this.alternative = builder.alternative;
+    }
+
+    /**
+     * Create a new builder, to which genes can be added one at a time.
+     *
+     * @return a new empty builder
+     */
+    static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Build the index from the genes already in a Solr index, fetching only the identifier fields of all the indexed
+     * documents, in pages.
+     *
+     * @param client the Solr core holding the genes
+     * @return the compiled index
+     * @throws SolrServerException if querying Solr fails
+     * @throws IOException if communicating with Solr fails
+     */
+    static GeneSymbolIndex load(SolrClient client) throws SolrServerException, IOException
+    {
+        Builder builder = builder();
+        SolrQuery query = new SolrQuery("*:*");
+        query.addField(ID_FIELD);
+        query.addField(SYMBOL_FIELD);
+        for (String[] fields : new String[][] { SECONDARY_FIELDS, ALTERNATIVE_FIELDS }) {
+            for (String field : fields) {
+                query.addField(field);
+            }
+        }
+        query.setSort(ID_FIELD, SolrQuery.ORDER.asc);
+        query.setRows(PAGE_SIZE);
+        long total = 1;
+        for (int start = 0; start < total; start += PAGE_SIZE) {
+            query.setStart(start);
+            SolrDocumentList page = client.query(query).getResults();
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            total = page.getNumFound();
+            for (SolrDocument doc : page) {
+                builder.add(ClientUtils.toSolrInputDocument(doc));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Find the gene identified by a symbol.
+     *
+     * @param symbol an HGNC identifier, an approved, previous or alias symbol, or an Ensembl, Entrez, RefSeq or ENA
+     *            identifier; identifiers must match exactly, everything else is matched regardless of case
+     * @return the HGNC identifier of the matching gene, or {@code null} if the symbol isn't known
+     */
+    String resolve(String symbol)
+    {
+        if (symbol == null) {
+            return null;
+        }
+        String result = this.exact.get(symbol);
+        if (result == null) {
+            String key = symbol.toLowerCase(Locale.ROOT);
+            result = this.primary.get(key);
+            if (result == null) {
+                result = this.secondary.get(key);
+            }
+            if (result == null) {
+                result = this.alternative.get(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The number of distinct values that can be resolved.
+     *
+     * @return a positive number, or {@code 0} if the index is empty
+     */
+    int size()
+    {
+        return this.exact.size() + this.primary.size() + this.secondary.size() + this.alternative.size();
+    }
+
+    /**
+     * Incremental builder for a {@link GeneSymbolIndex}, useful when the genes are read one at a time, for example
+     * while indexing.
+     */
+    static final class Builder
+    {
+        private final Map<String, String> exact = new HashMap<>();
+
+        private final Map<String, String> primary = new HashMap<>();
+
+        private final Map<String, String> secondary = new HashMap<>();
+
+        private final Map<String, String> alternative = new HashMap<>();
+
+        private Builder()
+        {
+            // Use GeneSymbolIndex#builder()
+        }
+
+        /**
+         * Add a gene to the index. Documents without an identifier are ignored.
+         *
+         * @param doc the indexed gene
+         * @return this builder, for chaining
+         */
+        Builder add(SolrInputDocument doc)
+        {
+            Object id = doc.getFieldValue(ID_FIELD);
+            if (id != null) {
+                String gene = String.valueOf(id);
+                this.exact.put(gene, gene);
+                addAll(this.exact, gene, doc, false, SYMBOL_FIELD);
+                addAll(this.primary, gene, doc, true, SYMBOL_FIELD);
+                addAll(this.secondary, gene, doc, true, SECONDARY_FIELDS);
+                addAll(this.alternative, gene, doc, true, ALTERNATIVE_FIELDS);
+            }
+            return this;
+        }
+
+        /**
+         * Compile the index with the genes added so far.
+         *
+         * @return the immutable index
+         */
+        GeneSymbolIndex build()
+        {
+            return new GeneSymbolIndex(this);
+        }
+
+        private void addAll(Map<String, String> target, String gene, SolrInputDocument doc, boolean lowercase,
+            String... fields)
+        {
+            for (String field : fields) {
+                Collection<Object> values = doc.getFieldValues(field);
+                if (values == null) {
+                    continue;
+                }
+                for (Object value : values) {
+                    String key = lowercase ? String.valueOf(value).toLowerCase(Locale.ROOT) : String.valueOf(value);
+                    // Keep the first gene claiming an ambiguous value
+                    if (!target.containsKey(key)) {
+                        target.put(key, gene);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal;
+
+import org.phenotips.vocabulary.Vocabulary;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+
+/**
+ * Keeps a local copy of a vocabulary current by periodically applying an {@link Vocabulary#update(String) incremental
+ * update} from its source, in a background thread.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+final class PeriodicUpdater implements Runnable
+{
+    private final Vocabulary vocabulary;
+
+    private final String sourceUrl;
+
+    private final Logger logger;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * Simple constructor.
+     *
+     * @param vocabulary the vocabulary to update
+     * @param sourceUrl where to get the current version of the vocabulary from
+     * @param logger the logger to use for reporting the outcome of each update
+     */
+    PeriodicUpdater(Vocabulary vocabulary, String sourceUrl, Logger logger)
+    {
+        this.vocabulary = vocabulary;
+        this.sourceUrl = sourceUrl;
+        this.logger = logger;
+    }
+
+    /**
+     * Start updating the vocabulary, the first update being performed after one interval.
+     *
+     * @param interval the time between two updates, in hours
+     */
+    void start(long interval)
+    {
+        start(interval, TimeUnit.HOURS);
+    }
+
+    /**
+     * Start updating the vocabulary, the first update being performed after one interval.
+     *
+     * @param interval the time between two updates
+     * @param unit the unit of the interval
+     */
+    synchronized void start(long interval, TimeUnit unit)
+    {
+        if (this.executor != null) {
+            return;
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable task)
+            {
+                Thread result =
+                    new Thread(task, "Vocabulary updater: " + PeriodicUpdater.this.vocabulary.getIdentifier());
+                result.setDaemon(true);
+                result.setPriority(Thread.MIN_PRIORITY);
+                return result;
+            }
+        });
+        this.executor.scheduleWithFixedDelay(this, interval, interval, unit);
+    }
+
+    /** Stop updating the vocabulary, interrupting the current update, if any. */
+    synchronized void stop()
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        long startTime = System.currentTimeMillis();
+        try {
+            int status = this.vocabulary.update(this.sourceUrl);
+            if (status == 0) {
+                this.logger.info("Synchronized [{}] with [{}] in {}ms", this.vocabulary.getIdentifier(),
+                    this.sourceUrl, System.currentTimeMillis() - startTime);
+            } else {
+                this.logger.warn("Failed to synchronize [{}] with [{}]: status {}", this.vocabulary.getIdentifier(),
+                    this.sourceUrl, status);
+            }
+        } catch (RuntimeException ex) {
+            // An exception would cancel all the following updates
+            this.logger.error("Failed to synchronize [{}]: {}", this.vocabulary.getIdentifier(), ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal;
+
+import org.phenotips.vocabulary.SolrVocabularyResourceManager;
+import org.phenotips.vocabulary.Vocabulary;
+
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GeneNomenclatureTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<Vocabulary> mocker =
+        new MockitoComponentMockingRule<Vocabulary>(GeneNomenclature.class);
+
+    private ConfigurationSource configuration;
+
+    private SolrClient server;
+
+    @Before
+    public void setup() throws Exception
+    {
+        this.configuration = this.mocker.getInstance(ConfigurationSource.class, "xwikiproperties");
+        this.server = mock(SolrClient.class);
+        SolrVocabularyResourceManager externalServicesAccess =
+            this.mocker.getInstance(SolrVocabularyResourceManager.class);
+        when(externalServicesAccess.getSolrConnection()).thenReturn(this.server);
+    }
+
+    @Test
+    public void mirrorIsDisabledByDefault() throws Exception
+    {
+        Assert.assertNull(ReflectionUtils.getFieldValue(this.mocker.getComponentUnderTest(), "updater"));
+        ((Disposable) this.mocker.getComponentUnderTest()).dispose();
+    }
+
+    @Test
+    public void mirrorIsSynchronizedWhenConfigured() throws Exception
+    {
+        when(this.configuration.getProperty("phenotips.vocabularies.hgnc.mirror.syncInterval", Integer.class))
+            .thenReturn(24);
+        when(this.configuration.getProperty("phenotips.vocabularies.hgnc.mirror.source",
+            "ftp://ftp.ebi.ac.uk/pub/databases/genenames/new/tsv/hgnc_complete_set.txt"))
+                .thenReturn("http://mirror.example.org/hgnc.txt");
+        Vocabulary hgnc = this.mocker.getComponentUnderTest();
+        PeriodicUpdater updater = ReflectionUtils.getFieldValue(hgnc, "updater");
+        Assert.assertNotNull(updater);
+        Assert.assertEquals("http://mirror.example.org/hgnc.txt", ReflectionUtils.getFieldValue(updater, "sourceUrl"));
+        ((Disposable) hgnc).dispose();
+        Assert.assertNull(ReflectionUtils.getFieldValue(updater, "executor"));
+    }
+
+    @Test
+    public void failedSymbolIndexLoadIsNotRetriedOnEveryLookup() throws Exception
+    {
+        when(this.server.query(any(SolrParams.class))).thenThrow(new SolrServerException("unavailable"));
+        Vocabulary hgnc = this.mocker.getComponentUnderTest();
+        Assert.assertNull(hgnc.getTerm("BRCA1"));
+        Assert.assertNull(hgnc.getTerm("BRCA2"));
+
+        ArgumentCaptor<SolrParams> queries = ArgumentCaptor.forClass(SolrParams.class);
+        verify(this.server, atLeast(1)).query(queries.capture());
+        int indexLoads = 0;
+        int termQueries = 0;
+        for (SolrParams query : queries.getAllValues()) {
+            if ("*:*".equals(query.get(CommonParams.Q))) {
+                ++indexLoads;
+            } else {
+                ++termQueries;
+            }
+        }
+        Assert.assertEquals(1, indexLoads);
+        // Both lookups fall back to querying Solr directly
+        Assert.assertEquals(6, termQueries);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GeneSymbolIndexTest
+{
+    private GeneSymbolIndex index;
+
+    @Before
+    public void setup()
+    {
+        SolrInputDocument brca1 = new SolrInputDocument();
+        brca1.addField("id", "HGNC:1100");
+        brca1.addField("symbol", "BRCA1");
+        brca1.addField("prev_symbol", "RNF53");
+        brca1.addField("alias_symbol", "BRCC1");
+        brca1.addField("alias_symbol", "PPP1R53");
+        brca1.addField("ensembl_gene_id", "ENSG00000012048");
+        brca1.addField("entrez_id", "672");
+        brca1.addField("refseq_accession", "NM_007294");
+        brca1.addField("ena", "U14680");
+
+        SolrInputDocument c1orf112 = new SolrInputDocument();
+        c1orf112.addField("id", "HGNC:25565");
+        c1orf112.addField("symbol", "C1orf112");
+        // Ambiguous value, the approved symbol of BRCA1 must win
+        c1orf112.addField("alias_symbol", "BRCA1");
+        c1orf112.addField("alias_symbol", "FLJ10706");
+
+        SolrInputDocument noId = new SolrInputDocument();
+        noId.addField("symbol", "ORPHAN");
+
+        this.index = GeneSymbolIndex.builder().add(brca1).add(c1orf112).add(noId).build();
+    }
+
+    @Test
+    public void resolvesIdentifiersAndApprovedSymbols()
+    {
+        Assert.assertEquals("HGNC:1100", this.index.resolve("HGNC:1100"));
+        Assert.assertEquals("HGNC:1100", this.index.resolve("BRCA1"));
+        Assert.assertEquals("HGNC:25565", this.index.resolve("C1orf112"));
+    }
+
+    @Test
+    public void resolvesSymbolsRegardlessOfCase()
+    {
+        Assert.assertEquals("HGNC:1100", this.index.resolve("brca1"));
+        Assert.assertEquals("HGNC:25565", this.index.resolve("c1orf112"));
+        Assert.assertEquals("HGNC:25565", this.index.resolve("C1ORF112"));
+        Assert.assertEquals("HGNC:25565", this.index.resolve("flj10706"));
+    }
+
+    @Test
+    public void resolvesPreviousSymbolsAndAliases()
+    {
+        Assert.assertEquals("HGNC:1100", this.index.resolve("RNF53"));
+        Assert.assertEquals("HGNC:1100", this.index.resolve("BRCC1"));
+        Assert.assertEquals("HGNC:1100", this.index.resolve("Ppp1r53"));
+    }
+
+    @Test
+    public void resolvesAlternativeIdentifiers()
+    {
+        Assert.assertEquals("HGNC:1100", this.index.resolve("ENSG00000012048"));
+        Assert.assertEquals("HGNC:1100", this.index.resolve("672"));
+        Assert.assertEquals("HGNC:1100", this.index.resolve("NM_007294"));
+        Assert.assertEquals("HGNC:1100", this.index.resolve("u14680"));
+    }
+
+    @Test
+    public void approvedSymbolsTakePrecedenceOverAliases()
+    {
+        Assert.assertEquals("HGNC:1100", this.index.resolve("BRCA1"));
+        Assert.assertEquals("HGNC:1100", this.index.resolve("Brca1"));
+    }
+
+    @Test
+    public void unknownValuesAreNotResolved()
+    {
+        Assert.assertNull(this.index.resolve("NOTAGENE"));
+        Assert.assertNull(this.index.resolve("ORPHAN"));
+        Assert.assertNull(this.index.resolve("hgnc:1100"));
+        Assert.assertNull(this.index.resolve(null));
+    }
+
+    @Test
+    public void loadReadsAllPages() throws Exception
+    {
+        SolrClient client = mock(SolrClient.class);
+        QueryResponse response = mock(QueryResponse.class);
+        SolrDocumentList page = new SolrDocumentList();
+        SolrDocument doc = new SolrDocument();
+        doc.addField("id", "HGNC:1100");
+        doc.addField("symbol", "BRCA1");
+        doc.addField("refseq_accession", "NM_007294");
+        page.add(doc);
+        page.setNumFound(1);
+        when(client.query(any(SolrQuery.class))).thenReturn(response);
+        when(response.getResults()).thenReturn(page);
+
+        GeneSymbolIndex loaded = GeneSymbolIndex.load(client);
+        Assert.assertEquals("HGNC:1100", loaded.resolve("brca1"));
+        Assert.assertEquals("HGNC:1100", loaded.resolve("NM_007294"));
+    }
+}
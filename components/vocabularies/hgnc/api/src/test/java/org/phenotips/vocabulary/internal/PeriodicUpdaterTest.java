@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal;
+
+import org.phenotips.vocabulary.Vocabulary;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PeriodicUpdaterTest
+{
+    private static final String SOURCE = "http://example.org/hgnc_complete_set.txt";
+
+    private Vocabulary vocabulary;
+
+    private Logger logger;
+
+    private PeriodicUpdater updater;
+
+    @Before
+    public void setup()
+    {
+        this.vocabulary = mock(Vocabulary.class);
+        when(this.vocabulary.getIdentifier()).thenReturn("hgnc");
+        this.logger = mock(Logger.class);
+        this.updater = new PeriodicUpdater(this.vocabulary, SOURCE, this.logger);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.updater.stop();
+    }
+
+    @Test
+    public void updatesArePerformedPeriodically()
+    {
+        this.updater.start(10, TimeUnit.MILLISECONDS);
+        verify(this.vocabulary, timeout(2000).atLeast(3)).update(SOURCE);
+    }
+
+    @Test
+    public void firstUpdateWaitsForOneInterval() throws InterruptedException
+    {
+        this.updater.start(1);
+        Thread.sleep(50);
+        verify(this.vocabulary, never()).update(SOURCE);
+    }
+
+    @Test
+    public void failedUpdatesDontCancelTheFollowingOnes()
+    {
+        when(this.vocabulary.update(SOURCE)).thenThrow(new IllegalStateException("failed")).thenReturn(1)
+            .thenReturn(0);
+        this.updater.start(10, TimeUnit.MILLISECONDS);
+        verify(this.vocabulary, timeout(2000).atLeast(3)).update(SOURCE);
+        verify(this.logger, atLeast(1)).warn(anyString(), Mockito.<Object>anyVararg());
+    }
+
+    @Test
+    public void stopCancelsUpdates() throws InterruptedException
+    {
+        this.updater.start(10, TimeUnit.MILLISECONDS);
+        verify(this.vocabulary, timeout(2000).atLeast(1)).update(SOURCE);
+        this.updater.stop();
+        Thread.sleep(50);
+        Mockito.reset(this.vocabulary);
+        Thread.sleep(50);
+        verify(this.vocabulary, never()).update(SOURCE);
+    }
+
+    @Test
+    public void runReportsTheOutcome()
+    {
+        this.updater.run();
+        verify(this.logger).info(anyString(), Mockito.<Object>anyVararg());
+
+        when(this.vocabulary.update(SOURCE)).thenReturn(2);
+        this.updater.run();
+        verify(this.logger).warn(anyString(), Mockito.<Object>anyVararg());
+    }
+}
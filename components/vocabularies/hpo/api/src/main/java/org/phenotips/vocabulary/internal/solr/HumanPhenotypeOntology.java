@@ -22,6 +22,7 @@
 import org.xwiki.component.annotation.Component;
 
 import java.text.MessageFormat;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -37,6 +38,7 @@
 import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.util.ClientUtils;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.DisMaxParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
@@ -57,6 +59,15 @@ public class HumanPhenotypeOntology extends AbstractOBOSolrVocabulary
     /** For determining if a query is a an id. */
     private static final Pattern ID_PATTERN = Pattern.compile("^HP:[0-9]+$", Pattern.CASE_INSENSITIVE);
 
+    /** Only phenotypic abnormalities are suggested by default. */
+    private static final String PHENOTYPIC_ABNORMALITY = "HP:0000118";
+
+    /** The Solr options used when searching for an identifier, compiled only once. */
+    private static final Map<String, String> ID_SEARCH_OPTIONS = Collections.unmodifiableMap(getStaticSolrParams());
+
+    /** The Solr options used when searching for text, compiled only once. */
+    private static final Map<String, String> TEXT_SEARCH_OPTIONS = Collections.unmodifiableMap(getTextSolrParams());
+
     @Override
     protected String getCoreName()
     {
@@ -76,6 +87,27 @@ protected int getSolrDocsPerBatch()
         return 15000;
     }
 
+    @Override
+    protected boolean useCompiledGraph()
+    {
+        // HPO is used in many structural computations, such as specificity scores and indexing
+        return true;
+    }
+
+    @Override
+    protected boolean useSuggester()
+    {
+        // Every keystroke in the phenotype pickers is a search, and the last word is often only partially typed
+        return true;
+    }
+
+    @Override
+    protected boolean isSuggestible(SolrInputDocument doc)
+    {
+        Collection<Object> categories = doc.getFieldValues("term_category");
+        return categories != null && categories.contains(PHENOTYPIC_ABNORMALITY);
+    }
+
     @Override
     public String getIdentifier()
     {
@@ -105,19 +137,24 @@ public List<VocabularyTerm> search(String input, int maxResults, String sort, St
             return Collections.emptyList();
         }
         boolean isId = this.isId(input);
-        Map<String, String> options = this.getStaticSolrParams();
         if (!isId) {
-            options.putAll(this.getStaticFieldSolrParams());
+            List<VocabularyTerm> suggestions = suggest(input, maxResults, sort, customFilter);
+            if (suggestions != null) {
+                return suggestions;
+            }
         }
         List<VocabularyTerm> result = new LinkedList<>();
         for (SolrDocument doc : this.search(produceDynamicSolrParams(input, maxResults, sort, customFilter, isId),
-            options)) {
+            isId ? ID_SEARCH_OPTIONS : TEXT_SEARCH_OPTIONS)) {
             result.add(new SolrVocabularyTerm(doc, this));
         }
+        if (!isId) {
+            addSuggestions(result, input, maxResults, sort, customFilter);
+        }
         return result;
     }
 
-    private Map<String, String> getStaticSolrParams()
+    private static Map<String, String> getStaticSolrParams()
     {
         Map<String, String> params = new HashMap<>();
         params.put("spellcheck", Boolean.toString(true));
@@ -129,9 +166,10 @@ private Map<String, String> getStaticSolrParams()
         return params;
     }
 
-    private Map<String, String> getStaticFieldSolrParams()
+    private static Map<String, String> getTextSolrParams()
     {
-        Map<String, String> params = new HashMap<>();
+        Map<String, String> params = getStaticSolrParams();
+        // PrefixSuggester.Weights.DEFAULT mirrors the name and synonym phrase boosts, keep them in sync
         params.put(DisMaxParams.PF, "name^20 nameSpell^36 nameExact^100 namePrefix^30 "
             + "synonym^15 synonymSpell^25 synonymExact^70 synonymPrefix^20 "
             + "text^3 textSpell^5");
@@ -150,7 +188,8 @@ private SolrParams produceDynamicSolrParams(String originalQuery, Integer rows,
             params.add(CommonParams.FQ, StringUtils.defaultIfBlank(customFq,
                 new MessageFormat("id:{0} alt_id:{0}").format(new String[] { escapedQuery })));
         } else {
-            params.add(CommonParams.FQ, StringUtils.defaultIfBlank(customFq, "term_category:HP\\:0000118"));
+            params.add(CommonParams.FQ, StringUtils.defaultIfBlank(customFq,
+                "term_category:" + ClientUtils.escapeQueryChars(PHENOTYPIC_ABNORMALITY)));
         }
         params.add(CommonParams.Q, escapedQuery);
         params.add(SpellingParams.SPELLCHECK_Q, query);
@@ -24,25 +24,33 @@
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.util.ReflectionUtils;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.SpellCheckResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.DisMaxParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 
@@ -98,6 +106,74 @@ public void testHumanPhenotypeOntologyReindex()
         Assert.assertTrue(this.ontologyServiceResult == 0);
     }
 
+    @Test
+    public void testHumanPhenotypeOntologyReindexUsesReplacementCore() throws ComponentLookupException, IOException,
+        SolrServerException
+    {
+        SolrVocabularyResourceManager externalServicesAccess =
+            this.mocker.getInstance(SolrVocabularyResourceManager.class);
+        SolrClient replacement = mock(SolrClient.class);
+        when(externalServicesAccess.getReplacementSolrConnection()).thenReturn(replacement);
+        when(externalServicesAccess.replaceCore()).thenReturn(true);
+        Mockito.reset(this.server, this.cache);
+
+        int result = this.ontologyService.reindex(this.getClass().getResource("/hpo-test.obo").toString());
+
+        Assert.assertEquals(0, result);
+        // The current core must not be touched until the new data is complete
+        Mockito.verifyZeroInteractions(this.server);
+        InOrder order = Mockito.inOrder(replacement, externalServicesAccess, this.cache);
+        order.verify(replacement).add(Matchers.anyCollectionOf(SolrInputDocument.class));
+        order.verify(replacement).commit();
+        order.verify(externalServicesAccess).replaceCore();
+        order.verify(this.cache).removeAll();
+        Mockito.verify(externalServicesAccess, Mockito.never()).discardReplacementCore();
+        Mockito.verifyNoMoreInteractions(replacement, this.cache);
+    }
+
+    @Test
+    public void testHumanPhenotypeOntologyFailedReindexKeepsCurrentCore() throws ComponentLookupException
+    {
+        SolrVocabularyResourceManager externalServicesAccess =
+            this.mocker.getInstance(SolrVocabularyResourceManager.class);
+        SolrClient replacement = mock(SolrClient.class);
+        when(externalServicesAccess.getReplacementSolrConnection()).thenReturn(replacement);
+        Mockito.reset(this.server, this.cache);
+
+        int result = this.ontologyService.reindex(this.getClass().getResource("/hpo-test.obo").toString() + ".missing");
+
+        Assert.assertEquals(2, result);
+        Mockito.verifyZeroInteractions(this.server, this.cache);
+        Mockito.verify(externalServicesAccess).discardReplacementCore();
+        Mockito.verify(externalServicesAccess, Mockito.never()).replaceCore();
+    }
+
+    @Test
+    public void testHumanPhenotypeOntologyUpdateAppliesOnlyChanges() throws IOException, SolrServerException
+    {
+        QueryResponse response = mock(QueryResponse.class);
+        when(this.server.query(any(SolrParams.class))).thenReturn(response);
+        SolrDocumentList indexed = new SolrDocumentList();
+        for (String id : Arrays.asList("HP:0000001", "HP:9999999")) {
+            SolrDocument doc = new SolrDocument();
+            doc.setField("id", id);
+            indexed.add(doc);
+        }
+        indexed.setNumFound(2);
+        when(response.getResults()).thenReturn(indexed);
+        Mockito.reset(this.cache);
+
+        int result = this.ontologyService.update(this.getClass().getResource("/hpo-test.obo").toString());
+
+        Assert.assertEquals(0, result);
+        verify(this.server).deleteById(Arrays.asList("HP:9999999"));
+        verify(this.server, Mockito.times(2)).add(Matchers.anyCollectionOf(SolrInputDocument.class));
+        verify(this.cache).remove("HP:9999999");
+        verify(this.cache).remove("HP:0000001");
+        verify(this.cache).remove("HP:0000118");
+        verify(this.cache, Mockito.never()).removeAll();
+    }
+
     @Test
     public void testHumanPhenotypeOntologyVersion() throws SolrServerException, IOException
     {
@@ -155,6 +231,27 @@ public void testHumanPhenotypeOntologySuggestTermsIsNotId() throws ComponentLook
         verify(this.server).query(argThat(new IsDisMaxQuery()));
     }
 
+    @Test
+    public void searchDoesntResendSpellcheckedQueryWhenHandledBySolr() throws ComponentLookupException,
+        SolrServerException, IOException
+    {
+        QueryResponse response = mock(QueryResponse.class);
+        when(this.server.query(any(SolrParams.class))).thenReturn(response);
+        SpellCheckResponse spellcheck = mock(SpellCheckResponse.class);
+        when(spellcheck.isCorrectlySpelled()).thenReturn(false);
+        when(spellcheck.getCollatedResult()).thenReturn("heart");
+        when(response.getSpellCheckResponse()).thenReturn(spellcheck);
+        NamedList<Object> rawResponse = new NamedList<>();
+        rawResponse.add(SpellcheckedResultsComponent.COLLATED_RESULTS, true);
+        when(response.getResponse()).thenReturn(rawResponse);
+        when(response.getResults()).thenReturn(new SolrDocumentList());
+
+        this.mocker.getComponentUnderTest().search("haert", 0, null, null);
+
+        verify(this.server).query(argThat(new IsDisMaxQuery()));
+        Mockito.verifyNoMoreInteractions(this.server);
+    }
+
     @Test
     public void testHumanPhenotypeOntologySuggestTermsMultipleWords() throws ComponentLookupException,
         SolrServerException, IOException
@@ -169,6 +266,160 @@ public void testHumanPhenotypeOntologySuggestTermsMultipleWords() throws Compone
         verify(this.server).query(argThat(new IsDisMaxQuery()));
     }
 
+    @Test
+    public void searchAnswersPlainPrefixesFromMemory() throws SolrServerException, IOException
+    {
+        VocabularyTerm growthAbnormality = mock(VocabularyTerm.class);
+        when(growthAbnormality.getId()).thenReturn("HP:0001507");
+        when(this.cache.get("HP:0001507")).thenReturn(growthAbnormality);
+        VocabularyTerm growthDelay = mock(VocabularyTerm.class);
+        when(growthDelay.getId()).thenReturn("HP:0001510");
+        when(this.cache.get("HP:0001510")).thenReturn(growthDelay);
+
+        List<VocabularyTerm> results = this.ontologyService.search("growth", 2, null, null);
+
+        // Both names start with the input, the shorter one ranks first
+        Assert.assertEquals(Arrays.asList("HP:0001510", "HP:0001507"), ids(results));
+        verify(this.server, Mockito.never()).query(argThat(new IsDisMaxQuery()));
+    }
+
+    @Test
+    public void searchFallsBackToSolrWhenTheMemoryMisses() throws SolrServerException, IOException
+    {
+        mockSearchResults("HP:0001507");
+
+        List<VocabularyTerm> results = this.ontologyService.search("grwoth", 2, null, null);
+
+        Assert.assertEquals(Arrays.asList("HP:0001507"), ids(results));
+        verify(this.server).query(argThat(new IsDisMaxQuery()));
+    }
+
+    @Test
+    public void searchCompletesShortResultsWithPrefixMatches() throws SolrServerException, IOException
+    {
+        mockSearchResults("HP:0001507");
+        VocabularyTerm growthDelay = mock(VocabularyTerm.class);
+        when(growthDelay.getId()).thenReturn("HP:0001510");
+        when(this.cache.get("HP:0001510")).thenReturn(growthDelay);
+
+        // Only two terms start with the input, so Solr is asked for more
+        List<VocabularyTerm> results = this.ontologyService.search("growth", 5, null, null);
+
+        // Solr results come first, prefix matches are appended without duplicates
+        Assert.assertEquals(Arrays.asList("HP:0001507", "HP:0001510"), ids(results));
+        Assert.assertSame(growthDelay, results.get(1));
+        verify(this.server).query(argThat(new IsDisMaxQuery()));
+    }
+
+    @Test
+    public void searchWithCustomFilterIsNotCompleted() throws SolrServerException, IOException
+    {
+        mockSearchResults("HP:0001507");
+
+        List<VocabularyTerm> results = this.ontologyService.search("growth", 5, null, "id:HP\\:0001507");
+
+        Assert.assertEquals(Arrays.asList("HP:0001507"), ids(results));
+        verify(this.cache, Mockito.never()).get(Matchers.anyString());
+    }
+
+    @Test
+    public void testHumanPhenotypeOntologyGetTermsCachesHitsAndMisses() throws ComponentLookupException,
+        SolrServerException, IOException
+    {
+        VocabularyTerm cached = mock(VocabularyTerm.class);
+        when(this.cache.get("HP:0000001")).thenReturn(cached);
+        QueryResponse response = mock(QueryResponse.class);
+        when(this.server.query(any(SolrParams.class))).thenReturn(response);
+        SolrDocumentList results = new SolrDocumentList();
+        SolrDocument doc = new SolrDocument();
+        doc.setField("id", "HP:0000118");
+        results.add(doc);
+        when(response.getResults()).thenReturn(results);
+
+        Set<VocabularyTerm> terms =
+            this.mocker.getComponentUnderTest().getTerms(Arrays.asList("HP:0000001", "HP:0000118", "HP:9999999"));
+
+        Assert.assertEquals(2, terms.size());
+        Assert.assertTrue(terms.contains(cached));
+        verify(this.server).query(argThat(new ArgumentMatcher<SolrParams>()
+        {
+            @Override
+            public boolean matches(Object argument)
+            {
+                SolrParams params = (SolrParams) argument;
+                return "2".equals(params.get(CommonParams.ROWS)) && !params.get(CommonParams.Q).contains("0000001");
+            }
+        }));
+        verify(this.cache).set(Matchers.eq("HP:0000118"), any(VocabularyTerm.class));
+        verify(this.cache).set(Matchers.eq("HP:9999999"), any(VocabularyTerm.class));
+    }
+
+    @Test
+    public void failedStructureLoadIsNotRetriedRightAway() throws SolrServerException, IOException
+    {
+        ReflectionUtils.setFieldValue(this.ontologyService, "graph", null);
+        when(this.server.query(any(SolrParams.class))).thenThrow(new SolrServerException("Server down"));
+        HumanPhenotypeOntology hpo = (HumanPhenotypeOntology) this.ontologyService;
+
+        Assert.assertNull(hpo.getGraph());
+        Assert.assertNull(hpo.getGraph());
+
+        verify(this.server, Mockito.times(1)).query(any(SolrParams.class));
+        // A new index is a new chance
+        this.ontologyService.reindex(this.getClass().getResource("/hpo-test.obo").toString());
+        Assert.assertNotNull(hpo.getGraph());
+    }
+
+    @Test
+    public void failedAlternativeIdsLoadIsNotRetriedRightAway() throws SolrServerException, IOException
+    {
+        ReflectionUtils.setFieldValue(this.ontologyService, "alternativeIds", null);
+        when(this.server.query(any(SolrParams.class))).thenThrow(new SolrServerException("Server down"));
+        VocabularyTerm cached = mock(VocabularyTerm.class);
+        when(this.cache.get("HP:0000118")).thenReturn(cached);
+
+        Assert.assertSame(cached, this.ontologyService.getTerm("HP:0000118"));
+        Assert.assertSame(cached, this.ontologyService.getTerm("HP:0000118"));
+
+        verify(this.server, Mockito.times(1)).query(any(SolrParams.class));
+    }
+
+    @Test
+    public void failedSuggesterLoadIsNotRetriedRightAway() throws SolrServerException, IOException
+    {
+        ReflectionUtils.setFieldValue(this.ontologyService, "suggester", null);
+        when(this.server.query(any(SolrParams.class))).thenThrow(new SolrServerException("Server down"));
+        HumanPhenotypeOntology hpo = (HumanPhenotypeOntology) this.ontologyService;
+
+        Assert.assertNull(hpo.suggest("growth", 2, null, null));
+        Assert.assertNull(hpo.suggest("growth", 2, null, null));
+
+        verify(this.server, Mockito.times(1)).query(any(SolrParams.class));
+    }
+
+    private void mockSearchResults(String... ids) throws SolrServerException, IOException
+    {
+        QueryResponse response = mock(QueryResponse.class);
+        when(this.server.query(any(SolrParams.class))).thenReturn(response);
+        SolrDocumentList results = new SolrDocumentList();
+        for (String id : ids) {
+            SolrDocument doc = new SolrDocument();
+            doc.setField("id", id);
+            results.add(doc);
+        }
+        results.setNumFound(ids.length);
+        when(response.getResults()).thenReturn(results);
+    }
+
+    private List<String> ids(List<VocabularyTerm> terms)
+    {
+        List<String> result = new ArrayList<>();
+        for (VocabularyTerm term : terms) {
+            result.add(term.getId());
+        }
+        return result;
+    }
+
     class IsDisMaxQuery extends ArgumentMatcher<SolrParams>
     {
         @Override
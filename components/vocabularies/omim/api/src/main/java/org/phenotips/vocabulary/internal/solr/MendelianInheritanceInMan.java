@@ -21,7 +21,10 @@
 import org.phenotips.vocabulary.VocabularyTerm;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.environment.Environment;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
@@ -37,6 +40,7 @@
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.QueryResponse;
@@ -65,10 +69,33 @@ public class MendelianInheritanceInMan extends AbstractSolrVocabulary
     /** The standard name of this ontology, used as a term prefix. */
     public static final String STANDARD_NAME = "MIM";
 
+    /** Configuration property pointing to a local directory holding copies of all the OMIM source files. */
+    private static final String MIRROR_SETTING = "phenotips.vocabularies.omim.sourceMirror";
+
+    /** The Solr options used for searches, compiled only once. */
+    private static final Map<String, String> SEARCH_OPTIONS = Collections.unmodifiableMap(getStaticSolrParams());
+
+    /**
+     * Ranking of the searches answered from memory, mirroring the phrase boosts of the text search: name^40 +
+     * nameSpell^70, synonym^15 + synonymSpell^25. There are no exact or prefix fields, so within a field only shorter
+     * labels, which Solr's length normalization favors, rank higher.
+     */
+    private static final PrefixSuggester.Weights SUGGESTER_WEIGHTS =
+        new PrefixSuggester.Weights(200f, 110f, 110f, 110f, 40f, 40f, 40f);
+
     @Inject
     @Named("hpo")
     private Vocabulary hpo;
 
+    /** Provides access to the permanent directory, where the downloaded source files are cached. */
+    @Inject
+    private Environment environment;
+
+    /** Provides access to the configured local mirror of the source files. */
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
     @Override
     protected String getCoreName()
     {
@@ -94,15 +121,39 @@ public List<VocabularyTerm> search(String input, int maxResults, String sort, St
         if (StringUtils.isBlank(input)) {
             return Collections.emptyList();
         }
-        Map<String, String> options = this.getStaticSolrParams();
-        options.putAll(this.getStaticFieldSolrParams());
-        List<VocabularyTerm> result = new LinkedList<>();
-        for (SolrDocument doc : this.search(produceDynamicSolrParams(input, maxResults, sort, customFilter), options)) {
+        List<VocabularyTerm> result = suggest(input, maxResults, sort, customFilter);
+        if (result != null) {
+            return result;
+        }
+        result = new LinkedList<>();
+        for (SolrDocument doc : this.search(produceDynamicSolrParams(input, maxResults, sort, customFilter),
+            SEARCH_OPTIONS)) {
             result.add(new SolrVocabularyTerm(doc, this));
         }
+        addSuggestions(result, input, maxResults, sort, customFilter);
         return result;
     }
 
+    @Override
+    protected boolean useSuggester()
+    {
+        return true;
+    }
+
+    @Override
+    protected PrefixSuggester.Weights getSuggesterWeights()
+    {
+        return SUGGESTER_WEIGHTS;
+    }
+
+    @Override
+    protected boolean isSuggestible(SolrInputDocument doc)
+    {
+        // Same as the default search filter: moved and removed entries have names starting with a special marker
+        String name = (String) doc.getFieldValue("name");
+        return StringUtils.isNotBlank(name) && !StringUtils.startsWithAny(name, "*", "+", "^");
+    }
+
     @Override
     public String getIdentifier()
     {
@@ -131,7 +182,7 @@ public String getDefaultSourceLocation()
         return OmimSourceParser.OMIM_SOURCE_URL;
     }
 
-    private Map<String, String> getStaticSolrParams()
+    private static Map<String, String> getStaticSolrParams()
     {
         Map<String, String> params = new HashMap<>();
         params.put("spellcheck", Boolean.toString(true));
@@ -140,12 +191,7 @@ private Map<String, String> getStaticSolrParams()
         params.put(SpellingParams.SPELLCHECK_MAX_COLLATION_TRIES, "3");
         params.put("lowercaseOperators", Boolean.toString(false));
         params.put("defType", "edismax");
-        return params;
-    }
-
-    private Map<String, String> getStaticFieldSolrParams()
-    {
-        Map<String, String> params = new HashMap<>();
+        // The suggester weights mirror the name and synonym phrase boosts, keep them in sync
         params.put(DisMaxParams.PF, "name^40 nameSpell^70 synonym^15 synonymSpell^25 text^3 textSpell^5");
         params.put(DisMaxParams.QF,
             "name^10 nameSpell^18 nameStub^5 synonym^6 synonymSpell^10 synonymStub^3 text^1 textSpell^2 textStub^0.5");
@@ -198,39 +244,33 @@ public String getVersion()
     @Override
     public synchronized int reindex(String sourceURL)
     {
+        String mirror = this.configuration.getProperty(MIRROR_SETTING, String.class);
+        OmimSourceCache sources =
+            new OmimSourceCache(new File(this.environment.getPermanentDirectory(), "omim-sources"),
+                StringUtils.isBlank(mirror) ? null : new File(mirror));
+        Collection<SolrInputDocument> data = new OmimSourceParser(this.hpo, sourceURL, sources).getData();
+        if (data.isEmpty()) {
+            return 2;
+        }
+        SolrClient target = startReindex();
+        if (target == null) {
+            return 1;
+        }
+        int status = 0;
         try {
-            Collection<SolrInputDocument> data = new OmimSourceParser(this.hpo, sourceURL).getData();
-            if (data.isEmpty()) {
-                return 2;
+            target.add(data);
+            target.commit();
+            PrefixSuggester.Builder suggestions = suggesterBuilder();
+            if (suggestions != null) {
+                for (SolrInputDocument doc : data) {
+                    addSuggestion(suggestions, doc);
+                }
             }
-            if (clear() == 1) {
-                return 1;
-            }
-            this.externalServicesAccess.getSolrConnection().add(data);
-            this.externalServicesAccess.getSolrConnection().commit();
-            this.externalServicesAccess.getTermCache().removeAll();
+            prepareSuggester(suggestions);
         } catch (SolrServerException | IOException ex) {
             this.logger.error("Failed to reindex OMIM: {}", ex.getMessage(), ex);
-            return 1;
-        }
-        return 0;
-    }
-
-    /**
-     * Delete all the data in the Solr index.
-     *
-     * @return {@code 0} if the command was successful, {@code 1} otherwise
-     */
-    private int clear()
-    {
-        try {
-            this.externalServicesAccess.getSolrConnection().deleteByQuery("*:*");
-            return 0;
-        } catch (SolrServerException ex) {
-            this.logger.error("SolrServerException while clearing the Solr index", ex);
-        } catch (IOException ex) {
-            this.logger.error("IOException while clearing the Solr index", ex);
+            status = 1;
         }
-        return 1;
+        return finishReindex(target, status);
     }
 }
@@ -0,0 +1,206 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps local copies of the remote files needed for building the OMIM index, so that unchanged files aren't downloaded
+ * again, and so that reindexing works even when the remote sources are not reachable. Files are looked up by name in
+ * an optional local mirror directory first, which allows reindexing completely offline. Otherwise, the remote file is
+ * downloaded into the cache directory, unless the cached copy is still up to date: HTTP sources are requested
+ * conditionally, while for FTP sources the size and modification time reported by the server are compared with the
+ * cached copy. If downloading fails, the previously cached copy is used, if any.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+public class OmimSourceCache
+{
+    private static final int TIMEOUT = 60000;
+
+    /** The format of the modification times returned by the FTP {@code MDTM} command, always in UTC. */
+    private static final String FTP_TIME_FORMAT = "yyyyMMddHHmmss";
+
+    private static final String ANONYMOUS = "anonymous";
+
+    private final File cacheDirectory;
+
+    private final File mirrorDirectory;
+
+    private final Logger logger = LoggerFactory.getLogger(OmimSourceCache.class);
+
+    /**
+     * Simple constructor.
+     *
+     * @param cacheDirectory where to store the downloaded files
+     * @param mirrorDirectory an optional local directory holding copies of the source files, used instead of the remote
+     *            files; may be {@code null}
+     */
+    public OmimSourceCache(File cacheDirectory, File mirrorDirectory)
+    {
+        this.cacheDirectory = cacheDirectory;
+        this.mirrorDirectory = mirrorDirectory;
+    }
+
+    /**
+     * Get a local copy of a source file.
+     *
+     * @param location the location of the source file, may be a ftp, http, or local file URL
+     * @return a local file with the content of the source
+     * @throws IOException if the source is not available locally and cannot be downloaded
+     */
+    public File get(String location) throws IOException
+    {
+        URL url = new URL(location);
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return new File(url.toURI());
+            } catch (URISyntaxException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+        String fileName = StringUtils.substringAfterLast(url.getPath(), "/");
+        if (this.mirrorDirectory != null) {
+            File mirrored = new File(this.mirrorDirectory, fileName);
+            if (mirrored.isFile()) {
+                return mirrored;
+            }
+            this.logger.warn("No local copy of [{}] in [{}], downloading it", fileName, this.mirrorDirectory);
+        }
+        File cached = new File(this.cacheDirectory, fileName);
+        try {
+            download(url, cached);
+        } catch (IOException ex) {
+            if (!cached.isFile()) {
+                throw ex;
+            }
+            this.logger.warn("Failed to download [{}], using the cached copy: {}", location, ex.getMessage());
+        }
+        return cached;
+    }
+
+    private void download(URL url, File target) throws IOException
+    {
+        if (target.isFile() && "ftp".equals(url.getProtocol()) && isUpToDate(url, target)) {
+            this.logger.debug("[{}] is up to date", url);
+            return;
+        }
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (target.isFile()) {
+            connection.setIfModifiedSince(target.lastModified());
+        }
+        if (connection instanceof HttpURLConnection
+            && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            this.logger.debug("[{}] is up to date", url);
+            return;
+        }
+        if (!this.cacheDirectory.isDirectory() && !this.cacheDirectory.mkdirs()) {
+            throw new IOException("Cannot create the cache directory " + this.cacheDirectory);
+        }
+        // Download into a temporary file first, so that an interrupted download doesn't replace a valid copy
+        File temporary = File.createTempFile(target.getName(), ".part", this.cacheDirectory);
+        try (InputStream in = connection.getInputStream()) {
+            Files.copy(in, temporary.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+        long lastModified = connection.getLastModified();
+        if (lastModified > 0) {
+            target.setLastModified(lastModified);
+        }
+    }
+
+    /**
+     * Check if the cached copy of a FTP source is up to date, having the same size as the remote file, and being more
+     * recent. Java's own FTP support can't get this information without downloading the file.
+     *
+     * @param url the location of the source file on a FTP server
+     * @param cached the cached copy of the source file
+     * @return {@code true} if the cached copy is up to date, {@code false} if it must be downloaded again, including
+     *         when the server doesn't report the size or the modification time of the file
+     */
+    private boolean isUpToDate(URL url, File cached)
+    {
+        FTPClient ftp = createFtpClient();
+        ftp.setConnectTimeout(TIMEOUT);
+        ftp.setDefaultTimeout(TIMEOUT);
+        try {
+            ftp.connect(url.getHost(), url.getPort() > 0 ? url.getPort() : ftp.getDefaultPort());
+            String user = StringUtils.defaultIfEmpty(StringUtils.substringBefore(url.getUserInfo(), ":"), ANONYMOUS);
+            String password = StringUtils.defaultIfEmpty(StringUtils.substringAfter(url.getUserInfo(), ":"), ANONYMOUS);
+            if (!ftp.login(user, password) || !ftp.setFileType(FTP.BINARY_FILE_TYPE)) {
+                return false;
+            }
+            if (!FTPReply.isPositiveCompletion(ftp.sendCommand("SIZE", url.getPath()))
+                || Long.parseLong(StringUtils.substringAfter(ftp.getReplyString(), " ").trim()) != cached.length()) {
+                return false;
+            }
+            String modified = ftp.getModificationTime(url.getPath());
+            if (modified == null || modified.trim().length() < FTP_TIME_FORMAT.length()) {
+                return false;
+            }
+            SimpleDateFormat format = new SimpleDateFormat(FTP_TIME_FORMAT);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return format.parse(modified.trim().substring(0, FTP_TIME_FORMAT.length())).getTime() <= cached
+                .lastModified();
+        } catch (IOException | ParseException | NumberFormatException ex) {
+            this.logger.debug("Cannot check if [{}] changed, downloading it: {}", url, ex.getMessage());
+            return false;
+        } finally {
+            if (ftp.isConnected()) {
+                try {
+                    ftp.disconnect();
+                } catch (IOException ex) {
+                    // Nothing to do, the connection is dropped anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the client used for checking if FTP sources changed.
+     *
+     * @return a new, not connected, FTP client
+     */
+    protected FTPClient createFtpClient()
+    {
+        return new FTPClient();
+    }
+}
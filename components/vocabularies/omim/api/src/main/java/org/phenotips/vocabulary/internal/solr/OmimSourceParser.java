@@ -20,15 +20,23 @@
 import org.phenotips.vocabulary.Vocabulary;
 import org.phenotips.vocabulary.VocabularyTerm;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.URL;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
@@ -97,6 +105,12 @@
 
     private Vocabulary hpo;
 
+    /**
+     * The identifiers of the ancestors of each HPO term, including the term itself, memoized for the whole run, since
+     * the same terms appear in many annotations.
+     */
+    private Map<String, Set<String>> hpoAncestors = new HashMap<>();
+
     /**
      * Constructor which prepares the vocabulary data, parsing OMIM from the official site.
      *
@@ -115,19 +129,43 @@ public OmimSourceParser(Vocabulary hpo)
      *            file URL
      */
     public OmimSourceParser(Vocabulary hpo, String sourceURL)
+    {
+        this(hpo, sourceURL, new OmimSourceCache(new File(System.getProperty("java.io.tmpdir"), "omim-sources"), null));
+    }
+
+    /**
+     * Constructor which prepares the vocabulary data, parsing OMIM from the specified source file. All the sources
+     * are fetched concurrently, through the specified cache, and parsed as soon as they're available.
+     *
+     * @param hpo the HPO vocabulary, needed for computing the ancestors for the MIM-Phenotype mapping
+     * @param sourceURL the location from which to fetch the OMIM source, as a zipped file; may be a ftp, http, or local
+     *            file URL
+     * @param sources provides local copies of the source files
+     * @since 1.3M2
+     */
+    public OmimSourceParser(Vocabulary hpo, String sourceURL, OmimSourceCache sources)
     {
         this.hpo = hpo;
-        try (BufferedReader in =
-            new BufferedReader(new InputStreamReader(new CompressorStreamFactory().createCompressorInputStream(
-                new URL(sourceURL).openConnection().getInputStream()), ENCODING))) {
-            transform(in);
-            loadGenes();
-            loadSymptoms(true);
-            loadSymptoms(false);
-            loadGeneReviews();
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<File> omim = fetch(executor, sources, sourceURL);
+            Future<File> genes = fetch(executor, sources, GENE_ANNOTATIONS_URL);
+            Future<File> positiveAnnotations = fetch(executor, sources, POSITIVE_ANNOTATIONS_URL);
+            Future<File> negativeAnnotations = fetch(executor, sources, NEGATIVE_ANNOTATIONS_URL);
+            Future<File> geneReviews = fetch(executor, sources, GENEREVIEWS_MAPPING_URL);
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new CompressorStreamFactory()
+                .createCompressorInputStream(new BufferedInputStream(new FileInputStream(get(omim)))), ENCODING))) {
+                transform(in);
+            }
+            loadGenes(genes);
+            loadSymptoms(positiveAnnotations, true);
+            loadSymptoms(negativeAnnotations, false);
+            loadGeneReviews(geneReviews);
             loadVersion();
         } catch (NullPointerException | CompressorException | IOException ex) {
             this.logger.error("Failed to prepare the OMIM index: {}", ex.getMessage(), ex);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -198,14 +236,42 @@ private void loadField(String name, String value)
         }
     }
 
-    private void loadSymptoms(boolean positive)
+    private Future<File> fetch(ExecutorService executor, final OmimSourceCache sources, final String location)
+    {
+        return executor.submit(new Callable<File>()
+        {
+            @Override
+            public File call() throws IOException
+            {
+                return sources.get(location);
+            }
+        });
+    }
+
+    private File get(Future<File> source) throws IOException
+    {
+        try {
+            return source.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof IOException ? (IOException) ex.getCause()
+                : new IOException(ex.getCause().getMessage(), ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching the sources", ex);
+        }
+    }
+
+    private BufferedReader open(Future<File> source) throws IOException
+    {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(get(source)), ENCODING));
+    }
+
+    private void loadSymptoms(Future<File> source, boolean positive)
     {
         String omimId = "";
         String previousOmimId = null;
         Set<String> ancestors = new HashSet<>();
-        try (BufferedReader in = new BufferedReader(
-            new InputStreamReader(new URL(positive ? POSITIVE_ANNOTATIONS_URL : NEGATIVE_ANNOTATIONS_URL)
-                .openConnection().getInputStream(), ENCODING))) {
+        try (BufferedReader in = open(source)) {
             for (CSVRecord row : CSVFormat.TDF.parse(in)) {
                 if ("OMIM".equals(row.get(0))) {
                     omimId = row.get(1);
@@ -215,12 +281,7 @@ private void loadSymptoms(boolean positive)
                     if (term != null) {
                         term.addField(positive ? "actual_symptom" : "actual_not_symptom", row.get(4));
                     }
-                    VocabularyTerm vterm = this.hpo.getTerm(row.get(4));
-                    if (vterm != null) {
-                        for (VocabularyTerm ancestor : vterm.getAncestorsAndSelf()) {
-                            ancestors.add(ancestor.getId());
-                        }
-                    }
+                    ancestors.addAll(getHpoAncestors(row.get(4)));
                 }
             }
             addAncestors(omimId, null, ancestors, positive);
@@ -229,6 +290,24 @@ private void loadSymptoms(boolean positive)
         }
     }
 
+    private Set<String> getHpoAncestors(String hpoId)
+    {
+        Set<String> result = this.hpoAncestors.get(hpoId);
+        if (result == null) {
+            VocabularyTerm vterm = this.hpo.getTerm(hpoId);
+            if (vterm == null) {
+                result = Collections.emptySet();
+            } else {
+                result = new HashSet<>();
+                for (VocabularyTerm ancestor : vterm.getAncestorsAndSelf()) {
+                    result.add(ancestor.getId());
+                }
+            }
+            this.hpoAncestors.put(hpoId, result);
+        }
+        return result;
+    }
+
     private void addAncestors(String previousOmimId, String newOmimId, Set<String> ancestors, boolean positive)
     {
         if (previousOmimId == null || previousOmimId.equals(newOmimId)) {
@@ -245,11 +324,10 @@ private void addAncestors(String previousOmimId, String newOmimId, Set<String> a
         ancestors.clear();
     }
 
-    private void loadGenes()
+    private void loadGenes(Future<File> source)
     {
         final String missing = "-";
-        try (BufferedReader in = new BufferedReader(
-            new InputStreamReader(new URL(GENE_ANNOTATIONS_URL).openConnection().getInputStream(), ENCODING))) {
+        try (BufferedReader in = open(source)) {
             for (CSVRecord row : CSVFormat.TDF.withHeader().parse(in)) {
                 if (!row.get("Type").contains("gene")) {
                     continue;
@@ -271,10 +349,9 @@ private void loadGenes()
         }
     }
 
-    private void loadGeneReviews()
+    private void loadGeneReviews(Future<File> source)
     {
-        try (BufferedReader in = new BufferedReader(
-            new InputStreamReader(new URL(GENEREVIEWS_MAPPING_URL).openConnection().getInputStream(), ENCODING))) {
+        try (BufferedReader in = open(source)) {
             for (CSVRecord row : CSVFormat.TDF.withHeader().parse(in)) {
                 SolrInputDocument term = this.data.get(row.get(2));
                 if (term != null) {
@@ -0,0 +1,331 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabulary.internal.solr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the {@link OmimSourceCache} class, with an embedded HTTP server and a mocked FTP client.
+ *
+ * @version $Id$
+ */
+public class OmimSourceCacheTest
+{
+    /** A closed port on the local host, so that remote connections fail right away. */
+    private static final String UNREACHABLE_FTP = "ftp://127.0.0.1:1/OMIM/";
+
+    private static final String FILE_NAME = "mim2gene.txt";
+
+    private static final String REMOTE_PATH = "/OMIM/" + FILE_NAME;
+
+    /** When the remote file was last changed, 2016-10-17 12:00:00 UTC. */
+    private static final long REMOTE_TIME = 1476705600000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDirectory;
+
+    private File cached;
+
+    private HttpServer server;
+
+    private final List<String> ifModifiedSince = new CopyOnWriteArrayList<>();
+
+    private volatile int status = 200;
+
+    private volatile String content = "new content";
+
+    private FTPClient ftp;
+
+    private OmimSourceCache sources;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.cacheDirectory = this.folder.newFolder("cache");
+        this.cached = new File(this.cacheDirectory, FILE_NAME);
+        this.ftp = mock(FTPClient.class);
+        when(this.ftp.login("anonymous", "anonymous")).thenReturn(true);
+        when(this.ftp.setFileType(anyInt())).thenReturn(true);
+        when(this.ftp.isConnected()).thenReturn(true);
+        this.sources = new OmimSourceCache(this.cacheDirectory, null)
+        {
+            @Override
+            protected FTPClient createFtpClient()
+            {
+                return OmimSourceCacheTest.this.ftp;
+            }
+        };
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                respond(exchange);
+            }
+        });
+        this.server.start();
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void localFilesAreUsedDirectly() throws IOException
+    {
+        File local = this.folder.newFile(FILE_NAME);
+        Assert.assertEquals(local, this.sources.get(local.toURI().toURL().toString()));
+        Assert.assertFalse(this.cached.exists());
+    }
+
+    @Test
+    public void mirroredFilesAreUsedWithoutDownloading() throws IOException
+    {
+        File mirror = this.folder.newFolder("mirror");
+        File mirrored = write(new File(mirror, FILE_NAME), "mirrored content");
+        OmimSourceCache mirroredSources = new OmimSourceCache(this.cacheDirectory, mirror);
+
+        Assert.assertEquals(mirrored, mirroredSources.get(httpLocation()));
+
+        Assert.assertTrue(this.ifModifiedSince.isEmpty());
+        Assert.assertFalse(this.cached.exists());
+    }
+
+    @Test
+    public void filesMissingFromTheMirrorAreDownloaded() throws IOException
+    {
+        OmimSourceCache mirroredSources = new OmimSourceCache(this.cacheDirectory, this.folder.newFolder("mirror"));
+
+        Assert.assertEquals(this.cached, mirroredSources.get(httpLocation()));
+
+        Assert.assertEquals("new content", read(this.cached));
+    }
+
+    @Test
+    public void httpDownloadsKeepTheRemoteModificationTime() throws IOException
+    {
+        Assert.assertEquals(this.cached, this.sources.get(httpLocation()));
+
+        Assert.assertEquals("new content", read(this.cached));
+        Assert.assertEquals(REMOTE_TIME, this.cached.lastModified());
+        // Nothing cached yet, so the first request isn't conditional
+        Assert.assertEquals(1, this.ifModifiedSince.size());
+        Assert.assertNull(this.ifModifiedSince.get(0));
+    }
+
+    @Test
+    public void unmodifiedHttpSourcesAreNotDownloadedAgain() throws IOException
+    {
+        this.sources.get(httpLocation());
+        this.content = "changed content";
+        this.status = 304;
+
+        Assert.assertEquals(this.cached, this.sources.get(httpLocation()));
+
+        Assert.assertEquals("new content", read(this.cached));
+        Assert.assertEquals(2, this.ifModifiedSince.size());
+        Assert.assertEquals(REMOTE_TIME, httpTime(this.ifModifiedSince.get(1)));
+    }
+
+    @Test
+    public void modifiedHttpSourcesAreDownloadedAgain() throws IOException
+    {
+        this.sources.get(httpLocation());
+        this.content = "changed content";
+
+        this.sources.get(httpLocation());
+
+        Assert.assertEquals("changed content", read(this.cached));
+    }
+
+    @Test
+    public void cachedCopyIsUsedWhenDownloadingFails() throws IOException
+    {
+        write(this.cached, "old content");
+        this.status = 500;
+
+        Assert.assertEquals(this.cached, this.sources.get(httpLocation()));
+
+        Assert.assertEquals("old content", read(this.cached));
+        Assert.assertEquals(1, this.ifModifiedSince.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void failedDownloadWithoutCachedCopyIsReported() throws IOException
+    {
+        this.status = 500;
+        this.sources.get(httpLocation());
+    }
+
+    @Test
+    public void unchangedFtpSourcesAreNotDownloadedAgain() throws IOException
+    {
+        write(this.cached, "old content");
+        this.cached.setLastModified(REMOTE_TIME);
+        mockFtpFile("old content".length(), "20161017120000");
+
+        Assert.assertEquals(this.cached, this.sources.get(UNREACHABLE_FTP + FILE_NAME));
+
+        Assert.assertEquals("old content", read(this.cached));
+        verify(this.ftp).connect("127.0.0.1", 1);
+        verify(this.ftp).getModificationTime(REMOTE_PATH);
+        verify(this.ftp).disconnect();
+    }
+
+    @Test
+    public void ftpSourcesWithAnotherSizeAreDownloadedAgain() throws IOException
+    {
+        write(this.cached, "old content");
+        this.cached.setLastModified(REMOTE_TIME);
+        mockFtpFile(1234, "20161017120000");
+
+        // The download fails, since the server isn't real, and the cached copy is used instead
+        Assert.assertEquals(this.cached, this.sources.get(UNREACHABLE_FTP + FILE_NAME));
+
+        verify(this.ftp).sendCommand("SIZE", REMOTE_PATH);
+        verify(this.ftp, never()).getModificationTime(anyString());
+        verify(this.ftp).disconnect();
+    }
+
+    @Test
+    public void newerFtpSourcesAreDownloadedAgain() throws IOException
+    {
+        write(this.cached, "old content");
+        this.cached.setLastModified(REMOTE_TIME - 1000);
+        mockFtpFile("old content".length(), "20161017120000");
+
+        Assert.assertEquals(this.cached, this.sources.get(UNREACHABLE_FTP + FILE_NAME));
+
+        verify(this.ftp).getModificationTime(REMOTE_PATH);
+        Assert.assertEquals(REMOTE_TIME - 1000, this.cached.lastModified());
+    }
+
+    @Test
+    public void ftpSourcesAreDownloadedWhenTheServerRejectsTheLogin() throws IOException
+    {
+        write(this.cached, "old content");
+        when(this.ftp.login("anonymous", "anonymous")).thenReturn(false);
+
+        Assert.assertEquals(this.cached, this.sources.get(UNREACHABLE_FTP + FILE_NAME));
+
+        verify(this.ftp, never()).sendCommand(anyString(), anyString());
+        verify(this.ftp).disconnect();
+    }
+
+    @Test
+    public void ftpSourcesAreNotCheckedWithoutCachedCopy() throws IOException
+    {
+        try {
+            this.sources.get(UNREACHABLE_FTP + FILE_NAME);
+            Assert.fail("The download should fail");
+        } catch (IOException ex) {
+            verify(this.ftp, never()).connect(anyString(), anyInt());
+        }
+    }
+
+    private void mockFtpFile(long size, String modified) throws IOException
+    {
+        when(this.ftp.sendCommand("SIZE", REMOTE_PATH)).thenReturn(213);
+        when(this.ftp.getReplyString()).thenReturn("213 " + size + "\r\n");
+        when(this.ftp.getModificationTime(REMOTE_PATH)).thenReturn(modified);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException
+    {
+        this.ifModifiedSince.add(exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+        if (this.status != 200) {
+            exchange.sendResponseHeaders(this.status, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = this.content.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Last-Modified", httpDateFormat().format(REMOTE_TIME));
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String httpLocation()
+    {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort() + REMOTE_PATH;
+    }
+
+    private long httpTime(String value)
+    {
+        try {
+            return httpDateFormat().parse(value).getTime();
+        } catch (ParseException ex) {
+            throw new AssertionError(value);
+        }
+    }
+
+    private SimpleDateFormat httpDateFormat()
+    {
+        SimpleDateFormat result = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        result.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return result;
+    }
+
+    private File write(File file, String text) throws IOException
+    {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String read(File file) throws IOException
+    {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
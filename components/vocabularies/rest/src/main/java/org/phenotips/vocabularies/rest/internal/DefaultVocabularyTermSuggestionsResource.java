@@ -33,6 +33,7 @@
 import org.xwiki.stability.Unstable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -66,6 +67,10 @@ public class DefaultVocabularyTermSuggestionsResource extends XWikiResource impl
     @Inject
     private Provider<Autolinker> autolinker;
 
+    /** Holds the term representations built for recent requests. */
+    @Inject
+    private SuggestionsCache cache;
+
     @Override
     public VocabularyTerms suggest(String vocabularyId, String input, @DefaultValue("10") int maxResults, String sort,
         String customFilter)
@@ -77,6 +82,25 @@ public VocabularyTerms suggest(String vocabularyId, String input, @DefaultValue(
         if (vocabulary == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
+        // Requests differing only in extra whitespace search for the same text, and share the same cache entry
+        String text = StringUtils.normalizeSpace(input);
+        // The term links depend on the requested vocabulary alias and on the base URI
+        String cacheKey =
+            this.cache.getKey(vocabularyId, this.uriInfo.getBaseUri(), text, maxResults, sort, customFilter);
+        List<VocabularyTermSummary> termReps = this.cache.get(vocabulary.getIdentifier(), cacheKey);
+        if (termReps == null) {
+            termReps = Collections.unmodifiableList(getSuggestions(vocabulary, vocabularyId, text, maxResults, sort,
+                customFilter));
+            this.cache.set(vocabulary.getIdentifier(), cacheKey, termReps);
+        }
+        VocabularyTerms result = new VocabularyTerms().withVocabularyTerms(termReps);
+        result.withLinks(this.autolinker.get().forResource(getClass(), this.uriInfo).build());
+        return result;
+    }
+
+    private List<VocabularyTermSummary> getSuggestions(Vocabulary vocabulary, String vocabularyId, String input,
+        int maxResults, String sort, String customFilter)
+    {
         List<VocabularyTerm> termSuggestions = vocabulary.search(input, maxResults, sort, customFilter);
 
         List<VocabularyTermSummary> termReps = new ArrayList<>();
@@ -89,8 +113,6 @@ public VocabularyTerms suggest(String vocabularyId, String input, @DefaultValue(
                 .build());
             termReps.add(termRep);
         }
-        VocabularyTerms result = new VocabularyTerms().withVocabularyTerms(termReps);
-        result.withLinks(this.autolinker.get().forResource(getClass(), this.uriInfo).build());
-        return result;
+        return termReps;
     }
 }
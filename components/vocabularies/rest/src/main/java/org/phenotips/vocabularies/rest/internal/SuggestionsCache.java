@@ -0,0 +1,158 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabularies.rest.internal;
+
+import org.phenotips.vocabularies.rest.model.VocabularyTermSummary;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+
+/**
+ * Bounded caches for the term suggestions served by {@link DefaultVocabularyTermSuggestionsResource}. Autocomplete
+ * requests are very repetitive, since many users type the same prefixes, so the fully built term representations,
+ * including their links, are kept for the most recent requests. Each vocabulary has its own cache, discarded whenever
+ * that vocabulary is reindexed, see {@link SuggestionsCacheInvalidator}, so that frequent updates of one vocabulary
+ * don't affect the suggestions cached for the others.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Component(roles = { SuggestionsCache.class })
+@Singleton
+public class SuggestionsCache
+{
+    /** The maximum number of cached suggestion lists for each vocabulary. */
+    private static final int CACHE_SIZE = 2000;
+
+    /** Separates the parts of a cache key, a character that doesn't normally appear in the request parameters. */
+    private static final char SEPARATOR = '\u0000';
+
+    @Inject
+    private CacheManager cacheFactory;
+
+    @Inject
+    private Logger logger;
+
+    /** The caches created so far, for each vocabulary identifier. */
+    private final ConcurrentMap<String, Cache<List<VocabularyTermSummary>>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Build the cache key identifying a suggestions request to a vocabulary. The parts are used as they are, so the
+     * input text must already be normalized in the same way as the text actually searched for.
+     *
+     * @param parts the searched text, and all the other request parameters affecting the response
+     * @return a cache key
+     */
+    public String getKey(Object... parts)
+    {
+        StringBuilder key = new StringBuilder();
+        for (Object part : parts) {
+            key.append(String.valueOf(part)).append(SEPARATOR);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Get the cached suggestions for a request.
+     *
+     * @param vocabulary the identifier of the vocabulary that was queried
+     * @param key the cache key, as returned by {@link #getKey(Object...)}
+     * @return the cached term representations, unmodifiable, or {@code null} if the request isn't cached
+     */
+    public List<VocabularyTermSummary> get(String vocabulary, String key)
+    {
+        Cache<List<VocabularyTermSummary>> cache = this.caches.get(vocabulary);
+        return cache == null ? null : cache.get(key);
+    }
+
+    /**
+     * Store the suggestions for a request. The cached representations must not be changed afterwards.
+     *
+     * @param vocabulary the identifier of the vocabulary that was queried
+     * @param key the cache key, as returned by {@link #getKey(Object...)}
+     * @param suggestions the term representations to cache, should be unmodifiable
+     */
+    public void set(String vocabulary, String key, List<VocabularyTermSummary> suggestions)
+    {
+        Cache<List<VocabularyTermSummary>> cache = getCache(vocabulary);
+        if (cache != null) {
+            cache.set(key, suggestions);
+        }
+    }
+
+    /**
+     * Discard the cached suggestions for one vocabulary, for example after it was reindexed.
+     *
+     * @param vocabulary the identifier of the vocabulary whose suggestions are outdated
+     */
+    public void clear(String vocabulary)
+    {
+        Cache<List<VocabularyTermSummary>> cache = this.caches.get(vocabulary);
+        if (cache != null) {
+            cache.removeAll();
+        }
+    }
+
+    /** Discard all the cached suggestions, for all the vocabularies. */
+    public void clear()
+    {
+        for (Cache<List<VocabularyTermSummary>> cache : this.caches.values()) {
+            cache.removeAll();
+        }
+    }
+
+    /**
+     * Get the cache for a vocabulary, creating it the first time it's needed.
+     *
+     * @param vocabulary the identifier of the vocabulary
+     * @return the cache, or {@code null} if it cannot be created, in which case suggestions aren't cached
+     */
+    private Cache<List<VocabularyTermSummary>> getCache(String vocabulary)
+    {
+        Cache<List<VocabularyTermSummary>> cache = this.caches.get(vocabulary);
+        if (cache == null) {
+            synchronized (this.caches) {
+                cache = this.caches.get(vocabulary);
+                if (cache == null) {
+                    try {
+                        cache = this.cacheFactory.createNewLocalCache(
+                            new CacheConfiguration(new LRUEvictionConfiguration(CACHE_SIZE)));
+                        this.caches.put(vocabulary, cache);
+                    } catch (CacheException ex) {
+                        this.logger.warn("Cannot create the suggestions cache for [{}]: {}", vocabulary,
+                            ex.getMessage());
+                    }
+                }
+            }
+        }
+        return cache;
+    }
+}
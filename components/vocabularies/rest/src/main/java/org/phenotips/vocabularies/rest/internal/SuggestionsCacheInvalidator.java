@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabularies.rest.internal;
+
+import org.phenotips.vocabulary.events.VocabularyIndexedEvent;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Clears the {@link SuggestionsCache} of a vocabulary whenever it is reindexed, since its cached suggestions may be
+ * outdated. The suggestions cached for the other vocabularies are kept.
+ *
+ * @version $Id$
+ * @since 1.3M2
+ */
+@Component
+@Named("vocabulary-suggestions-cache-invalidator")
+@Singleton
+public class SuggestionsCacheInvalidator extends AbstractEventListener
+{
+    @Inject
+    private SuggestionsCache cache;
+
+    /** Default constructor, sets up the listener name and the list of events to subscribe to. */
+    public SuggestionsCacheInvalidator()
+    {
+        super("vocabulary-suggestions-cache-invalidator", new VocabularyIndexedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        String vocabulary = ((VocabularyIndexedEvent) event).getVocabulary();
+        if (vocabulary == null) {
+            this.cache.clear();
+        } else {
+            this.cache.clear(vocabulary);
+        }
+    }
+}
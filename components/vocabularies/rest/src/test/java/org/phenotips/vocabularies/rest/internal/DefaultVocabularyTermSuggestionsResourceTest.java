@@ -0,0 +1,195 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabularies.rest.internal;
+
+import org.phenotips.rest.Autolinker;
+import org.phenotips.vocabularies.rest.DomainObjectFactory;
+import org.phenotips.vocabularies.rest.VocabularyTermSuggestionsResource;
+import org.phenotips.vocabularies.rest.model.VocabularyTermSummary;
+import org.phenotips.vocabularies.rest.model.VocabularyTerms;
+import org.phenotips.vocabulary.Vocabulary;
+import org.phenotips.vocabulary.VocabularyManager;
+import org.phenotips.vocabulary.VocabularyTerm;
+
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+import javax.ws.rs.core.UriInfo;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the caching done by {@link DefaultVocabularyTermSuggestionsResource}.
+ *
+ * @version $Id$
+ */
+public class DefaultVocabularyTermSuggestionsResourceTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<VocabularyTermSuggestionsResource> mocker =
+        new MockitoComponentMockingRule<VocabularyTermSuggestionsResource>(
+            DefaultVocabularyTermSuggestionsResource.class);
+
+    private VocabularyTermSuggestionsResource resource;
+
+    private Vocabulary hpo;
+
+    private Map<String, List<VocabularyTermSummary>> cached = new HashMap<>();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Execution execution = mock(Execution.class);
+        ExecutionContext executionContext = mock(ExecutionContext.class);
+        ComponentManager compManager = this.mocker.getInstance(ComponentManager.class, "context");
+        Provider<XWikiContext> provider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(compManager.getInstance(Execution.class)).thenReturn(execution);
+        doReturn(executionContext).when(execution).getContext();
+        doReturn(provider.get()).when(executionContext).getProperty("xwikicontext");
+
+        this.resource = this.mocker.getComponentUnderTest();
+        UriInfo uriInfo = mock(UriInfo.class);
+        doReturn(new URI("http://host/rest/")).when(uriInfo).getBaseUri();
+        ReflectionUtils.setFieldValue(this.resource, "uriInfo", uriInfo);
+
+        this.hpo = mock(Vocabulary.class);
+        when(this.hpo.getIdentifier()).thenReturn("hpo");
+        VocabularyManager vm = this.mocker.getInstance(VocabularyManager.class);
+        when(vm.getVocabulary("hpo")).thenReturn(this.hpo);
+        VocabularyTerm term = mock(VocabularyTerm.class);
+        when(term.getId()).thenReturn("HP:0001627");
+        when(this.hpo.search(anyString(), Matchers.anyInt(), anyString(), anyString()))
+            .thenReturn(Collections.singletonList(term));
+
+        DomainObjectFactory factory = this.mocker.getInstance(DomainObjectFactory.class);
+        when(factory.createVocabularyTermRepresentation(any(VocabularyTerm.class))).thenAnswer(
+            new Answer<VocabularyTermSummary>()
+            {
+                @Override
+                public VocabularyTermSummary answer(InvocationOnMock invocation)
+                {
+                    return new VocabularyTermSummary();
+                }
+            });
+        Autolinker autolinker = this.mocker.getInstance(Autolinker.class);
+        when(autolinker.forResource(any(Class.class), any(UriInfo.class))).thenReturn(autolinker);
+        when(autolinker.forSecondaryResource(any(Class.class), any(UriInfo.class))).thenReturn(autolinker);
+        when(autolinker.withActionableResources(any(Class.class))).thenReturn(autolinker);
+        when(autolinker.withExtraParameters(anyString(), anyString())).thenReturn(autolinker);
+        when(autolinker.build()).thenReturn(Collections.<org.phenotips.rest.model.Link>emptyList());
+
+        SuggestionsCache cache = this.mocker.getInstance(SuggestionsCache.class);
+        when(cache.getKey(Matchers.<Object>anyVararg())).thenCallRealMethod();
+        when(cache.get(anyString(), anyString())).thenAnswer(new Answer<List<VocabularyTermSummary>>()
+        {
+            @Override
+            public List<VocabularyTermSummary> answer(InvocationOnMock invocation)
+            {
+                return DefaultVocabularyTermSuggestionsResourceTest.this.cached
+                    .get(invocation.getArguments()[0] + ":" + invocation.getArguments()[1]);
+            }
+        });
+        doAnswer(new Answer<Void>()
+        {
+            @SuppressWarnings("unchecked")
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            {
+                DefaultVocabularyTermSuggestionsResourceTest.this.cached.put(
+                    invocation.getArguments()[0] + ":" + invocation.getArguments()[1],
+                    (List<VocabularyTermSummary>) invocation.getArguments()[2]);
+                return null;
+            }
+        }).when(cache).set(anyString(), anyString(), Matchers.<List<VocabularyTermSummary>>any());
+    }
+
+    @Test
+    public void repeatedRequestsAreServedFromTheCache()
+    {
+        VocabularyTerms first = this.resource.suggest("hpo", "heart", 10, "nameSort asc", "");
+        VocabularyTerms second = this.resource.suggest("hpo", "heart", 10, "nameSort asc", "");
+
+        verify(this.hpo, times(1)).search("heart", 10, "nameSort asc", "");
+        Assert.assertEquals(1, first.getVocabularyTerms().size());
+        Assert.assertSame(first.getVocabularyTerms().get(0), second.getVocabularyTerms().get(0));
+    }
+
+    @Test
+    public void requestsDifferingInWhitespaceSearchAndCacheTheSameText()
+    {
+        this.resource.suggest("hpo", "heart  defect", 10, "nameSort asc", "");
+        this.resource.suggest("hpo", " heart defect ", 10, "nameSort asc", "");
+
+        verify(this.hpo, times(1)).search("heart defect", 10, "nameSort asc", "");
+        verify(this.hpo, times(1)).search(anyString(), Matchers.anyInt(), anyString(), anyString());
+    }
+
+    @Test
+    public void differentParametersAreCachedSeparately()
+    {
+        this.resource.suggest("hpo", "heart", 10, "nameSort asc", "");
+        this.resource.suggest("hpo", "heart", 20, "nameSort asc", "");
+        this.resource.suggest("hpo", "heart", 10, "nameSort asc", "is_a:HP\\:0000118");
+
+        verify(this.hpo).search("heart", 10, "nameSort asc", "");
+        verify(this.hpo).search("heart", 20, "nameSort asc", "");
+        verify(this.hpo).search("heart", 10, "nameSort asc", "is_a:HP\\:0000118");
+        Assert.assertEquals(3, this.cached.size());
+    }
+
+    @Test
+    public void suggestionsAreCachedForTheActualVocabulary() throws Exception
+    {
+        VocabularyManager vm = this.mocker.getInstance(VocabularyManager.class);
+        when(vm.getVocabulary("HP")).thenReturn(this.hpo);
+
+        this.resource.suggest("HP", "heart", 10, "nameSort asc", "");
+
+        SuggestionsCache cache = this.mocker.getInstance(SuggestionsCache.class);
+        verify(cache).get(eq("hpo"), anyString());
+        verify(cache).set(eq("hpo"), anyString(), Matchers.<List<VocabularyTermSummary>>any());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabularies.rest.internal;
+
+import org.phenotips.vocabulary.events.VocabularyIndexedEvent;
+
+import org.xwiki.observation.EventListener;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for the {@link SuggestionsCacheInvalidator} component.
+ *
+ * @version $Id$
+ */
+public class SuggestionsCacheInvalidatorTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<EventListener> mocker =
+        new MockitoComponentMockingRule<EventListener>(SuggestionsCacheInvalidator.class);
+
+    @Test
+    public void listensToVocabularyReindexing() throws Exception
+    {
+        Assert.assertEquals("vocabulary-suggestions-cache-invalidator", this.mocker.getComponentUnderTest().getName());
+        Assert.assertEquals(1, this.mocker.getComponentUnderTest().getEvents().size());
+        Assert.assertTrue(this.mocker.getComponentUnderTest().getEvents().get(0) instanceof VocabularyIndexedEvent);
+    }
+
+    @Test
+    public void reindexingClearsOnlyTheReindexedVocabulary() throws Exception
+    {
+        this.mocker.getComponentUnderTest().onEvent(new VocabularyIndexedEvent("hpo"), null, null);
+        SuggestionsCache cache = this.mocker.getInstance(SuggestionsCache.class);
+        verify(cache).clear("hpo");
+        verify(cache, never()).clear();
+    }
+
+    @Test
+    public void eventsWithoutAVocabularyClearAllTheCaches() throws Exception
+    {
+        this.mocker.getComponentUnderTest().onEvent(new VocabularyIndexedEvent(), null, null);
+        verify(this.mocker.getInstance(SuggestionsCache.class)).clear();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ */
+package org.phenotips.vocabularies.rest.internal;
+
+import org.phenotips.vocabularies.rest.model.VocabularyTermSummary;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the {@link SuggestionsCache} component.
+ *
+ * @version $Id$
+ */
+public class SuggestionsCacheTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<SuggestionsCache> mocker =
+        new MockitoComponentMockingRule<SuggestionsCache>(SuggestionsCache.class);
+
+    private Cache<List<VocabularyTermSummary>> cache;
+
+    private Cache<List<VocabularyTermSummary>> otherCache;
+
+    private CacheManager cacheManager;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() throws Exception
+    {
+        this.cache = mock(Cache.class);
+        this.otherCache = mock(Cache.class);
+        this.cacheManager = this.mocker.getInstance(CacheManager.class);
+        when(this.cacheManager.<List<VocabularyTermSummary>>createNewLocalCache(any(CacheConfiguration.class)))
+            .thenReturn(this.cache, this.otherCache);
+    }
+
+    @Test
+    public void keysDependOnAllTheParts() throws Exception
+    {
+        SuggestionsCache suggestions = this.mocker.getComponentUnderTest();
+        String key = suggestions.getKey("HP", "http://host/rest/", "heart", 10, "nameSort asc", null);
+
+        Assert.assertEquals(key,
+            suggestions.getKey("HP", "http://host/rest/", "heart", 10, "nameSort asc", null));
+        Assert.assertNotEquals(key,
+            suggestions.getKey("hpo", "http://host/rest/", "heart", 10, "nameSort asc", null));
+        Assert.assertNotEquals(key,
+            suggestions.getKey("HP", "http://other/rest/", "heart", 10, "nameSort asc", null));
+        Assert.assertNotEquals(key,
+            suggestions.getKey("HP", "http://host/rest/", "hearts", 10, "nameSort asc", null));
+        Assert.assertNotEquals(key,
+            suggestions.getKey("HP", "http://host/rest/", "heart", 20, "nameSort asc", null));
+        Assert.assertNotEquals(key, suggestions.getKey("HP", "http://host/rest/", "heart", 10, null, null));
+        Assert.assertNotEquals(key,
+            suggestions.getKey("HP", "http://host/rest/", "heart", 10, "nameSort asc", "is_a:HP\\:0000118"));
+    }
+
+    @Test
+    public void keysDoNotMergeAdjacentParts() throws Exception
+    {
+        SuggestionsCache suggestions = this.mocker.getComponentUnderTest();
+        Assert.assertNotEquals(suggestions.getKey("HP", "heart defect"), suggestions.getKey("HP heart", "defect"));
+    }
+
+    @Test
+    public void getAndSetUseTheVocabularyCache() throws Exception
+    {
+        SuggestionsCache suggestions = this.mocker.getComponentUnderTest();
+        List<VocabularyTermSummary> terms = Collections.singletonList(new VocabularyTermSummary());
+        when(this.cache.get("key")).thenReturn(terms);
+
+        suggestions.set("hpo", "key", terms);
+        verify(this.cache).set("key", terms);
+        Assert.assertSame(terms, suggestions.get("hpo", "key"));
+        Assert.assertNull(suggestions.get("hpo", "other"));
+        Assert.assertNull(suggestions.get("omim", "key"));
+    }
+
+    @Test
+    public void eachVocabularyHasOneCache() throws Exception
+    {
+        SuggestionsCache suggestions = this.mocker.getComponentUnderTest();
+        List<VocabularyTermSummary> terms = Collections.singletonList(new VocabularyTermSummary());
+
+        suggestions.set("hpo", "key", terms);
+        suggestions.set("hpo", "other", terms);
+        suggestions.set("omim", "key", terms);
+        verify(this.cacheManager, times(2)).createNewLocalCache(any(CacheConfiguration.class));
+        verify(this.cache).set("key", terms);
+        verify(this.cache).set("other", terms);
+        verify(this.otherCache).set("key", terms);
+    }
+
+    @Test
+    public void clearingAVocabularyKeepsTheOtherCaches() throws Exception
+    {
+        SuggestionsCache suggestions = this.mocker.getComponentUnderTest();
+        List<VocabularyTermSummary> terms = Collections.singletonList(new VocabularyTermSummary());
+        suggestions.set("hpo", "key", terms);
+        suggestions.set("omim", "key", terms);
+
+        suggestions.clear("hpo");
+        suggestions.clear("hgnc");
+        verify(this.cache).removeAll();
+        verify(this.otherCache, never()).removeAll();
+    }
+
+    @Test
+    public void clearEmptiesAllTheCaches() throws Exception
+    {
+        SuggestionsCache suggestions = this.mocker.getComponentUnderTest();
+        List<VocabularyTermSummary> terms = Collections.singletonList(new VocabularyTermSummary());
+        suggestions.set("hpo", "key", terms);
+        suggestions.set("omim", "key", terms);
+
+        suggestions.clear();
+        verify(this.cache).removeAll();
+        verify(this.otherCache).removeAll();
+    }
+
+    @Test
+    public void suggestionsAreNotCachedWhenTheCacheCannotBeCreated() throws Exception
+    {
+        when(this.cacheManager.<List<VocabularyTermSummary>>createNewLocalCache(any(CacheConfiguration.class)))
+            .thenThrow(new CacheException("failed"));
+        SuggestionsCache suggestions = this.mocker.getComponentUnderTest();
+
+        suggestions.set("hpo", "key", Collections.singletonList(new VocabularyTermSummary()));
+        Assert.assertNull(suggestions.get("hpo", "key"));
+    }
+}